@@ -3,7 +3,28 @@ package org.leeminkan.redis;
 public enum CommandType {
     GET((byte) 1),
     SET((byte) 2),
-    CAS((byte) 3); // Compare-And-Swap (The "Banking" feature)
+    CAS((byte) 3), // Compare-And-Swap (The "Banking" feature)
+    INCR((byte) 4), // Atomic counters, evaluated server-side
+    INCRBY((byte) 5),
+    DECRBY((byte) 6),
+    THROTTLE((byte) 7), // Native rate limiting (GCRA)
+    HSET((byte) 8), // Hash type: field-level access
+    HGET((byte) 9),
+    HDEL((byte) 10),
+    HGETALL((byte) 11),
+    ZADD((byte) 12), // Sorted set: off-heap skiplist + hash
+    ZRANGE((byte) 13),
+    ZRANGEBYSCORE((byte) 14),
+    ZREM((byte) 15),
+    SCAN((byte) 16), // Cursor-based key iteration
+    EXEC((byte) 17), // Transaction: N commands applied atomically
+    SUBSCRIBE((byte) 18), // Pub/Sub
+    UNSUBSCRIBE((byte) 19),
+    PUBLISH((byte) 20),
+    DEL((byte) 21),
+    TRACKING((byte) 22), // Client-side caching: invalidation pushes
+    MEMORY((byte) 23), // Off-heap memory report / leak detector
+    HOTKEYS((byte) 24); // Most read / written keys (sampled)
 
     private final byte code;
 
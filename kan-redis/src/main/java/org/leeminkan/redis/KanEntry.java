@@ -0,0 +1,191 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * KanEntry
+ * Layout of one value in off-heap memory. Every segment stored in KanStore starts with a small header:
+ *
+ * [Type (1 byte)] [Flags (1 byte)] [Payload ...]
+ *
+ * Types:
+ * - STRING:  payload is the raw value bytes (what SET stores). With FLAG_COMPRESSED the payload is
+ *            [Original length (Int)][LZ4 block] instead, see KanLz4. Clients never know the difference.
+ * - INTEGER: payload is a 64-bit signed counter (what INCR creates). Updated IN PLACE.
+ * - THROTTLE: payload is a rate-limit bucket (what THROTTLE creates), see KanThrottle.
+ * - HASH:     field/value pairs (what HSET creates), see KanHash. Flags hold the encoding.
+ * - ZSET:     skiplist + member index (what ZADD creates), see KanSortedSet.
+ *
+ * Clients never see the header: GET renders STRING and INTEGER back to bytes
+ * (an INTEGER is rendered as its decimal string, like Redis does).
+ * Other types are internal structures and answer GET with the error response.
+ */
+public final class KanEntry {
+
+    public static final int HEADER_SIZE = 2;
+
+    public static final byte TYPE_STRING = 0;
+    public static final byte TYPE_INTEGER = 1;
+    public static final byte TYPE_THROTTLE = 2;
+    public static final byte TYPE_HASH = 3;
+    public static final byte TYPE_ZSET = 4;
+
+    // STRING flags
+    static final byte FLAG_COMPRESSED = 1;
+    static final int ORIGINAL_LENGTH_SIZE = 4;
+
+    // Counters are not 8-byte aligned (header is 2 bytes), so use the unaligned layout
+    private static final ValueLayout.OfLong COUNTER = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    private KanEntry() {
+    }
+
+    public static byte type(MemorySegment entry) {
+        return entry.get(ValueLayout.JAVA_BYTE, 0);
+    }
+
+    static void writeHeader(MemorySegment entry, byte type) {
+        entry.set(ValueLayout.JAVA_BYTE, 0, type);
+        entry.set(ValueLayout.JAVA_BYTE, 1, (byte) 0);
+    }
+
+    static byte flags(MemorySegment entry) {
+        return entry.get(ValueLayout.JAVA_BYTE, 1);
+    }
+
+    static void setFlags(MemorySegment entry, byte flags) {
+        entry.set(ValueLayout.JAVA_BYTE, 1, flags);
+    }
+
+    public static long payloadSize(MemorySegment entry) {
+        return entry.byteSize() - HEADER_SIZE;
+    }
+
+    // --- INTEGER ---
+
+    static long getCounter(MemorySegment entry) {
+        return entry.get(COUNTER, HEADER_SIZE);
+    }
+
+    static void setCounter(MemorySegment entry, long value) {
+        entry.set(COUNTER, HEADER_SIZE, value);
+    }
+
+    /** True for the types a plain GET/CAS can read (STRING and INTEGER). */
+    public static boolean isReadable(MemorySegment entry) {
+        byte type = type(entry);
+        return type == TYPE_STRING || type == TYPE_INTEGER;
+    }
+
+    // --- Rendering ---
+
+    /**
+     * Writes a GET response for this entry: [Len][Value bytes].
+     * Copies straight from off-heap into the response buffer.
+     */
+    public static void writeValue(MemorySegment entry, ByteBuffer out) {
+        if (type(entry) == TYPE_INTEGER) {
+            writeDecimal(out, getCounter(entry));
+            return;
+        }
+        out.putInt((int) valueLength(entry));
+        writeStringBytes(entry, out);
+    }
+
+    /** A STRING value's bytes alone, no [Len]: for RESP, which frames them its own way. */
+    static void writeStringBytes(MemorySegment entry, ByteBuffer out) {
+        if (isCompressed(entry)) {
+            // Decompress straight into the response buffer: no temporary array
+            int originalLength = originalLength(entry);
+            MemorySegment target = MemorySegment.ofBuffer(out).asSlice(0, originalLength); // starts at position()
+            KanLz4.decompress(entry, HEADER_SIZE + ORIGINAL_LENGTH_SIZE,
+                    payloadSize(entry) - ORIGINAL_LENGTH_SIZE, target);
+            out.position(out.position() + originalLength);
+            return;
+        }
+        out.put(entry.asSlice(HEADER_SIZE, payloadSize(entry)).asByteBuffer());
+    }
+
+    /** Length of the value as GET renders it. */
+    public static long valueLength(MemorySegment entry) {
+        if (type(entry) == TYPE_INTEGER) {
+            return 20; // Upper bound of a rendered long, it always fits a response
+        }
+        if (isCompressed(entry)) {
+            return originalLength(entry);
+        }
+        return payloadSize(entry);
+    }
+
+    /**
+     * The value as a read-only buffer, for responses too large to copy (ADR-003).
+     * Raw values are a view of the off-heap memory itself; compressed ones are decompressed once.
+     */
+    public static ByteBuffer valueView(MemorySegment entry) {
+        if (type(entry) == TYPE_INTEGER || isCompressed(entry)) {
+            return ByteBuffer.wrap(valueBytes(entry)).asReadOnlyBuffer();
+        }
+        return entry.asSlice(HEADER_SIZE).asByteBuffer().asReadOnlyBuffer();
+    }
+
+    /** The value as a client would see it (used by CAS comparisons and conversions). */
+    public static byte[] valueBytes(MemorySegment entry) {
+        if (type(entry) == TYPE_INTEGER) {
+            return Long.toString(getCounter(entry)).getBytes(StandardCharsets.US_ASCII);
+        }
+        if (isCompressed(entry)) {
+            byte[] value = new byte[originalLength(entry)];
+            KanLz4.decompress(entry, HEADER_SIZE + ORIGINAL_LENGTH_SIZE,
+                    payloadSize(entry) - ORIGINAL_LENGTH_SIZE, MemorySegment.ofArray(value));
+            return value;
+        }
+        return entry.asSlice(HEADER_SIZE).toArray(ValueLayout.JAVA_BYTE);
+    }
+
+    // --- Compressed STRING ---
+
+    static boolean isCompressed(MemorySegment entry) {
+        return type(entry) == TYPE_STRING && (flags(entry) & FLAG_COMPRESSED) != 0;
+    }
+
+    static int originalLength(MemorySegment entry) {
+        return entry.get(ValueLayout.JAVA_INT_UNALIGNED, HEADER_SIZE);
+    }
+
+    /** [Len][ASCII digits] without going through a String (no allocation). */
+    private static void writeDecimal(ByteBuffer out, long value) {
+        out.putInt(decimalLength(value));
+        writeDigits(out, value);
+    }
+
+    /** How many characters {@code value} takes in decimal, sign included. */
+    static int decimalLength(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int digits = 1;
+        for (long rest = Math.abs(value) / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        return value < 0 ? digits + 1 : digits;
+    }
+
+    /** The ASCII digits of {@code value}, written backwards from the last one: no String, no allocation. */
+    static void writeDigits(ByteBuffer out, long value) {
+        int length = decimalLength(value);
+        int start = out.position();
+        if (value < 0) {
+            out.put(start, (byte) '-');
+        }
+        int index = start + length - 1;
+        do {
+            // Negate each remainder instead of the value: -Long.MIN_VALUE doesn't exist
+            out.put(index--, (byte) ('0' + Math.abs(value % 10)));
+            value /= 10;
+        } while (value != 0);
+        out.position(start + length);
+    }
+}
@@ -0,0 +1,506 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.ValueLayout;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * KanHash
+ * The HASH type (HSET/HGET/HDEL/HGETALL), stored entirely off-heap with two encodings,
+ * the same idea as Redis' "listpack -> hashtable" conversion:
+ *
+ * 1. LISTPACK (small hashes): all fields packed back to back in ONE segment.
+ *    [Header][Count][Used] [FieldLen][Field][ValueLen][Value] [FieldLen][Field]...
+ *    Lookups are a linear scan, which beats hashing for a handful of short fields,
+ *    and the whole record costs one allocation. Updating a field only shifts the bytes
+ *    behind it (or nothing at all if the value length is unchanged).
+ *
+ * 2. TABLE (large hashes): an off-heap chained hash table.
+ *    Entry:   [Header][Count][BucketCount][BucketsAddress]
+ *    Buckets: BucketCount x 8-byte node addresses (0 = empty)
+ *    Node:    [NextAddress][Hash][FieldLen][ValueLen][Field][Value]
+ *    An update touches one node, so its cost is proportional to the field, not the record.
+ *
+ * A listpack is converted to a table when it exceeds {@link #MAX_LISTPACK_ENTRIES} fields
+ * or a field/value longer than {@link #MAX_LISTPACK_VALUE} bytes is written (Redis defaults).
+ *
+ * The table's buckets and nodes are reached through raw addresses. {@link #buckets} and
+ * {@link #node} rebuild them at their own size in the scope of the arena they came from, so
+ * reading one after that arena is closed fails FFM's liveness check instead of touching freed memory.
+ *
+ * Not thread-safe: KanStore calls these methods inside compute() for the key.
+ */
+final class KanHash {
+
+    static final byte ENCODING_LISTPACK = 0;
+    static final byte ENCODING_TABLE = 1;
+
+    // Redis defaults: hash-max-listpack-entries / hash-max-listpack-value
+    static final int MAX_LISTPACK_ENTRIES = 128;
+    static final int MAX_LISTPACK_VALUE = 64;
+
+    // Big-endian like the wire format: HGETALL copies the listpack body out as is
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    // Both encodings: field count right after the entry header
+    private static final long COUNT = KanEntry.HEADER_SIZE;
+
+    // LISTPACK
+    private static final long LP_USED = COUNT + 4;
+    private static final long LP_DATA = LP_USED + 4;
+    private static final long LP_INITIAL_CAPACITY = 128;
+
+    // TABLE
+    private static final long TB_BUCKET_COUNT = COUNT + 4;
+    private static final long TB_BUCKETS = TB_BUCKET_COUNT + 4;
+    private static final long TB_SIZE = TB_BUCKETS + 8;
+    private static final int TB_INITIAL_BUCKETS = 256;
+    private static final float TB_LOAD_FACTOR = 0.75f;
+
+    // TABLE node
+    private static final long N_NEXT = 0;
+    private static final long N_HASH = 8;
+    private static final long N_FIELD_LEN = 12;
+    private static final long N_VALUE_LEN = 16;
+    private static final long N_DATA = 20;
+
+    private KanHash() {
+    }
+
+    static int count(MemorySegment hash) {
+        return hash.get(INT, COUNT);
+    }
+
+    static byte encoding(MemorySegment hash) {
+        return KanEntry.flags(hash);
+    }
+
+    // ------------------------------------------------------------------
+    // HSET
+    // ------------------------------------------------------------------
+
+    /**
+     * Sets field = value. Returns the entry to keep in the store: usually {@code hash} itself,
+     * but a new segment if the listpack had to grow or was converted to a table.
+     *
+     * @param hash    the current entry, or null to create a new hash
+     * @param created out-param: set to true if the field did not exist
+     */
+    static MemorySegment set(MemorySegment hash, byte[] field, byte[] value,
+                             SegmentAllocator allocator, Arena arena, boolean[] created) {
+        if (hash == null) {
+            hash = allocator.allocate(Math.max(LP_INITIAL_CAPACITY, LP_DATA + 8 + field.length + value.length));
+            KanEntry.writeHeader(hash, KanEntry.TYPE_HASH);
+            KanEntry.setFlags(hash, ENCODING_LISTPACK);
+            hash.set(INT, COUNT, 0);
+            hash.set(INT, LP_USED, 0);
+        }
+
+        if (encoding(hash) == ENCODING_TABLE) {
+            tableSet(hash, field, value, hashOf(field), allocator, arena, created);
+            return hash;
+        }
+
+        long position = listpackFind(hash, field);
+        boolean tooBig = field.length > MAX_LISTPACK_VALUE || value.length > MAX_LISTPACK_VALUE;
+        boolean tooMany = position < 0 && count(hash) >= MAX_LISTPACK_ENTRIES;
+        if (tooBig || tooMany) {
+            MemorySegment table = convertToTable(hash, allocator, arena);
+            tableSet(table, field, value, hashOf(field), allocator, arena, created);
+            return table;
+        }
+        return listpackSet(hash, position, field, value, allocator, created);
+    }
+
+    private static MemorySegment listpackSet(MemorySegment hash, long position, byte[] field, byte[] value,
+                                             SegmentAllocator allocator, boolean[] created) {
+        int used = hash.get(INT, LP_USED);
+
+        if (position >= 0) {
+            // Existing field: replace the value
+            long valueLenAt = position + 4 + field.length;
+            int oldLength = hash.get(INT, valueLenAt);
+            int delta = value.length - oldLength;
+
+            if (delta != 0) {
+                if (LP_DATA + used + delta > hash.byteSize()) {
+                    hash = listpackGrow(hash, LP_DATA + used + delta, allocator);
+                }
+                // Shift everything behind this field (copy() handles the overlap)
+                long tailStart = valueLenAt + 4 + oldLength;
+                long tailLength = LP_DATA + used - tailStart;
+                MemorySegment.copy(hash, tailStart, hash, tailStart + delta, tailLength);
+                hash.set(INT, valueLenAt, value.length);
+                hash.set(INT, LP_USED, used + delta);
+            }
+            MemorySegment.copy(value, 0, hash, ValueLayout.JAVA_BYTE, valueLenAt + 4, value.length);
+            created[0] = false;
+            return hash;
+        }
+
+        // New field: append at the end
+        long needed = 8L + field.length + value.length;
+        if (LP_DATA + used + needed > hash.byteSize()) {
+            hash = listpackGrow(hash, LP_DATA + used + needed, allocator);
+        }
+        long at = LP_DATA + used;
+        at = putBytes(hash, at, field);
+        putBytes(hash, at, value);
+        hash.set(INT, LP_USED, (int) (used + needed));
+        hash.set(INT, COUNT, count(hash) + 1);
+        created[0] = true;
+        return hash;
+    }
+
+    private static MemorySegment listpackGrow(MemorySegment hash, long required, SegmentAllocator allocator) {
+        MemorySegment grown = allocator.allocate(Math.max(hash.byteSize() * 2, required));
+        MemorySegment.copy(hash, 0, grown, 0, LP_DATA + hash.get(INT, LP_USED));
+        return grown;
+    }
+
+    /** Offset of the field's [FieldLen] in the listpack, or -1. */
+    private static long listpackFind(MemorySegment hash, byte[] field) {
+        long end = LP_DATA + hash.get(INT, LP_USED);
+        long at = LP_DATA;
+        while (at < end) {
+            int fieldLength = hash.get(INT, at);
+            if (fieldLength == field.length && equalsAt(hash, at + 4, field)) {
+                return at;
+            }
+            long valueLenAt = at + 4 + fieldLength;
+            at = valueLenAt + 4 + hash.get(INT, valueLenAt);
+        }
+        return -1;
+    }
+
+    private static MemorySegment convertToTable(MemorySegment listpack, SegmentAllocator allocator, Arena arena) {
+        MemorySegment table = allocator.allocate(TB_SIZE);
+        KanEntry.writeHeader(table, KanEntry.TYPE_HASH);
+        KanEntry.setFlags(table, ENCODING_TABLE);
+        table.set(INT, COUNT, 0);
+        MemorySegment buckets = allocator.allocate((long) TB_INITIAL_BUCKETS * Long.BYTES);
+        buckets.fill((byte) 0);
+        table.set(INT, TB_BUCKET_COUNT, TB_INITIAL_BUCKETS);
+        table.set(LONG, TB_BUCKETS, buckets.address());
+
+        boolean[] ignored = new boolean[1];
+        long end = LP_DATA + listpack.get(INT, LP_USED);
+        long at = LP_DATA;
+        while (at < end) {
+            int fieldLength = listpack.get(INT, at);
+            byte[] field = listpack.asSlice(at + 4, fieldLength).toArray(ValueLayout.JAVA_BYTE);
+            long valueLenAt = at + 4 + fieldLength;
+            int valueLength = listpack.get(INT, valueLenAt);
+            byte[] value = listpack.asSlice(valueLenAt + 4, valueLength).toArray(ValueLayout.JAVA_BYTE);
+            tableSet(table, field, value, hashOf(field), allocator, arena, ignored);
+            at = valueLenAt + 4 + valueLength;
+        }
+        return table;
+    }
+
+    private static void tableSet(MemorySegment table, byte[] field, byte[] value, int hash,
+                                 SegmentAllocator allocator, Arena arena, boolean[] created) {
+        MemorySegment buckets = buckets(table, arena);
+        long slot = (long) (hash & (table.get(INT, TB_BUCKET_COUNT) - 1)) * Long.BYTES;
+
+        // "link" = the 8 bytes that point at the current node (a bucket slot or a node's next field)
+        MemorySegment linkOwner = buckets;
+        long linkOffset = slot;
+        long address = buckets.get(LONG, slot);
+        while (address != 0) {
+            MemorySegment node = node(address, arena);
+            if (node.get(INT, N_HASH) == hash && node.get(INT, N_FIELD_LEN) == field.length
+                    && equalsAt(node, N_DATA, field)) {
+                created[0] = false;
+                if (node.get(INT, N_VALUE_LEN) == value.length) {
+                    // Same size: overwrite in place, nothing else moves
+                    MemorySegment.copy(value, 0, node, ValueLayout.JAVA_BYTE, N_DATA + field.length, value.length);
+                } else {
+                    MemorySegment replacement = newNode(field, value, hash, node.get(LONG, N_NEXT), allocator);
+                    linkOwner.set(LONG, linkOffset, replacement.address());
+                }
+                return;
+            }
+            linkOwner = node;
+            linkOffset = N_NEXT;
+            address = node.get(LONG, N_NEXT);
+        }
+
+        MemorySegment node = newNode(field, value, hash, buckets.get(LONG, slot), allocator);
+        buckets.set(LONG, slot, node.address());
+        int count = count(table) + 1;
+        table.set(INT, COUNT, count);
+        created[0] = true;
+
+        if (count > table.get(INT, TB_BUCKET_COUNT) * TB_LOAD_FACTOR) {
+            rehash(table, allocator, arena);
+        }
+    }
+
+    /** Doubles the bucket array and relinks the existing nodes (nodes are not copied). */
+    private static void rehash(MemorySegment table, SegmentAllocator allocator, Arena arena) {
+        MemorySegment oldBuckets = buckets(table, arena);
+        int oldCount = table.get(INT, TB_BUCKET_COUNT);
+        int newCount = oldCount * 2;
+        MemorySegment newBuckets = allocator.allocate((long) newCount * Long.BYTES);
+        newBuckets.fill((byte) 0);
+
+        for (int i = 0; i < oldCount; i++) {
+            long address = oldBuckets.get(LONG, (long) i * Long.BYTES);
+            while (address != 0) {
+                MemorySegment node = node(address, arena);
+                long next = node.get(LONG, N_NEXT);
+                long slot = (long) (node.get(INT, N_HASH) & (newCount - 1)) * Long.BYTES;
+                node.set(LONG, N_NEXT, newBuckets.get(LONG, slot));
+                newBuckets.set(LONG, slot, address);
+                address = next;
+            }
+        }
+        table.set(INT, TB_BUCKET_COUNT, newCount);
+        table.set(LONG, TB_BUCKETS, newBuckets.address());
+    }
+
+    private static MemorySegment newNode(byte[] field, byte[] value, int hash, long next, SegmentAllocator allocator) {
+        MemorySegment node = allocator.allocate(N_DATA + field.length + value.length);
+        node.set(LONG, N_NEXT, next);
+        node.set(INT, N_HASH, hash);
+        node.set(INT, N_FIELD_LEN, field.length);
+        node.set(INT, N_VALUE_LEN, value.length);
+        MemorySegment.copy(field, 0, node, ValueLayout.JAVA_BYTE, N_DATA, field.length);
+        MemorySegment.copy(value, 0, node, ValueLayout.JAVA_BYTE, N_DATA + field.length, value.length);
+        return node;
+    }
+
+    // ------------------------------------------------------------------
+    // HGET / HGETALL
+    // ------------------------------------------------------------------
+
+    /**
+     * Writes [Len][Value] (or [Len=0] if the field is missing) straight from off-heap memory.
+     * A value that doesn't fit in {@code out} is not written: it is returned as a heap copy for
+     * the caller to attach (ADR-003). Not a view like GET's: HSET/HDEL shift and free these
+     * bytes in place, so they are only stable while the caller holds the key's lock.
+     */
+    static ByteBuffer writeField(MemorySegment hash, byte[] field, ByteBuffer out, Arena arena) {
+        MemorySegment source;
+        long offset;
+        int length;
+        if (encoding(hash) == ENCODING_LISTPACK) {
+            long position = listpackFind(hash, field);
+            if (position < 0) {
+                out.putInt(0);
+                return null;
+            }
+            long valueLenAt = position + 4 + field.length;
+            source = hash;
+            offset = valueLenAt + 4;
+            length = hash.get(INT, valueLenAt);
+        } else {
+            MemorySegment node = tableFind(hash, field, hashOf(field), arena);
+            if (node == null) {
+                out.putInt(0);
+                return null;
+            }
+            source = node;
+            offset = N_DATA + field.length;
+            length = node.get(INT, N_VALUE_LEN);
+        }
+
+        if (4 + length > out.remaining()) {
+            return copyOf(source, offset, length);
+        }
+        writeBytes(source, offset, length, out);
+        return null;
+    }
+
+    /**
+     * HGETALL response: [Len][Count] then [FieldLen][Field][ValueLen][Value] per field.
+     * Like {@link #writeField}, a response that doesn't fit in {@code out} is returned instead,
+     * as a heap buffer holding everything after [Len].
+     */
+    static ByteBuffer writeAll(MemorySegment hash, ByteBuffer out, Arena arena) {
+        long bodySize = 4 + pairsSize(hash, arena);
+        if (4 + bodySize <= out.remaining()) {
+            out.putInt((int) bodySize);
+            writePairs(hash, out, arena);
+            return null;
+        }
+        if (bodySize > Integer.MAX_VALUE - 4) {
+            throw new BufferOverflowException(); // Over 2 GB: not even a heap buffer can hold it
+        }
+        ByteBuffer body = ByteBuffer.allocate((int) bodySize);
+        writePairs(hash, body, arena);
+        return body.flip().asReadOnlyBuffer();
+    }
+
+    private static void writePairs(MemorySegment hash, ByteBuffer out, Arena arena) {
+        out.putInt(count(hash));
+        if (encoding(hash) == ENCODING_LISTPACK) {
+            // The listpack body already IS the wire format: one bulk copy
+            int used = hash.get(INT, LP_USED);
+            out.put(hash.asSlice(LP_DATA, used).asByteBuffer());
+            return;
+        }
+        MemorySegment buckets = buckets(hash, arena);
+        int bucketCount = hash.get(INT, TB_BUCKET_COUNT);
+        for (int i = 0; i < bucketCount; i++) {
+            long address = buckets.get(LONG, (long) i * Long.BYTES);
+            while (address != 0) {
+                MemorySegment node = node(address, arena);
+                int fieldLength = node.get(INT, N_FIELD_LEN);
+                writeBytes(node, N_DATA, fieldLength, out);
+                writeBytes(node, N_DATA + fieldLength, node.get(INT, N_VALUE_LEN), out);
+                address = node.get(LONG, N_NEXT);
+            }
+        }
+    }
+
+    // Bytes of the [FieldLen][Field][ValueLen][Value] pairs
+    private static long pairsSize(MemorySegment hash, Arena arena) {
+        if (encoding(hash) == ENCODING_LISTPACK) {
+            return hash.get(INT, LP_USED);
+        }
+        long size = 0;
+        MemorySegment buckets = buckets(hash, arena);
+        int bucketCount = hash.get(INT, TB_BUCKET_COUNT);
+        for (int i = 0; i < bucketCount; i++) {
+            long address = buckets.get(LONG, (long) i * Long.BYTES);
+            while (address != 0) {
+                MemorySegment node = node(address, arena);
+                size += 8L + node.get(INT, N_FIELD_LEN) + node.get(INT, N_VALUE_LEN);
+                address = node.get(LONG, N_NEXT);
+            }
+        }
+        return size;
+    }
+
+    // ------------------------------------------------------------------
+    // HDEL
+    // ------------------------------------------------------------------
+
+    /** Removes the field. Returns true if it existed. */
+    static boolean delete(MemorySegment hash, byte[] field, Arena arena) {
+        if (encoding(hash) == ENCODING_LISTPACK) {
+            long position = listpackFind(hash, field);
+            if (position < 0) {
+                return false;
+            }
+            int used = hash.get(INT, LP_USED);
+            long valueLenAt = position + 4 + field.length;
+            long entryEnd = valueLenAt + 4 + hash.get(INT, valueLenAt);
+            long entrySize = entryEnd - position;
+            MemorySegment.copy(hash, entryEnd, hash, position, LP_DATA + used - entryEnd);
+            hash.set(INT, LP_USED, (int) (used - entrySize));
+            hash.set(INT, COUNT, count(hash) - 1);
+            return true;
+        }
+
+        int hashCode = hashOf(field);
+        MemorySegment buckets = buckets(hash, arena);
+        long slot = (long) (hashCode & (hash.get(INT, TB_BUCKET_COUNT) - 1)) * Long.BYTES;
+        MemorySegment linkOwner = buckets;
+        long linkOffset = slot;
+        long address = buckets.get(LONG, slot);
+        while (address != 0) {
+            MemorySegment node = node(address, arena);
+            if (node.get(INT, N_HASH) == hashCode && node.get(INT, N_FIELD_LEN) == field.length
+                    && equalsAt(node, N_DATA, field)) {
+                linkOwner.set(LONG, linkOffset, node.get(LONG, N_NEXT));
+                hash.set(INT, COUNT, count(hash) - 1);
+                return true;
+            }
+            linkOwner = node;
+            linkOffset = N_NEXT;
+            address = node.get(LONG, N_NEXT);
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------
+    // Memory accounting (MEMORY STATS, see KanMemory)
+    // ------------------------------------------------------------------
+
+    /** Every segment this hash owns: the listpack (and its unused tail), or the table, its buckets and nodes. */
+    static void visitSegments(MemorySegment hash, KanMemory.SegmentVisitor visitor, Arena arena) {
+        if (encoding(hash) == ENCODING_LISTPACK) {
+            visitor.segment(hash.address(), hash.byteSize(), LP_DATA + hash.get(INT, LP_USED));
+            return;
+        }
+        visitor.segment(hash.address(), hash.byteSize(), TB_SIZE);
+        MemorySegment buckets = buckets(hash, arena);
+        visitor.segment(buckets.address(), buckets.byteSize(), buckets.byteSize());
+        int bucketCount = hash.get(INT, TB_BUCKET_COUNT);
+        for (int i = 0; i < bucketCount; i++) {
+            long address = buckets.get(LONG, (long) i * Long.BYTES);
+            while (address != 0) {
+                MemorySegment node = node(address, arena);
+                visitor.segment(address, node.byteSize(), node.byteSize());
+                address = node.get(LONG, N_NEXT);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------
+
+    private static MemorySegment tableFind(MemorySegment table, byte[] field, int hash, Arena arena) {
+        MemorySegment buckets = buckets(table, arena);
+        long address = buckets.get(LONG, (long) (hash & (table.get(INT, TB_BUCKET_COUNT) - 1)) * Long.BYTES);
+        while (address != 0) {
+            MemorySegment node = node(address, arena);
+            if (node.get(INT, N_HASH) == hash && node.get(INT, N_FIELD_LEN) == field.length
+                    && equalsAt(node, N_DATA, field)) {
+                return node;
+            }
+            address = node.get(LONG, N_NEXT);
+        }
+        return null;
+    }
+
+    private static MemorySegment buckets(MemorySegment table, Arena arena) {
+        long size = (long) table.get(INT, TB_BUCKET_COUNT) * Long.BYTES;
+        return MemorySegment.ofAddress(table.get(LONG, TB_BUCKETS)).reinterpret(size, arena, null);
+    }
+
+    /** Turns a raw node address back into a segment bounded to the node, in {@code arena}'s scope. */
+    private static MemorySegment node(long address, Arena arena) {
+        MemorySegment header = MemorySegment.ofAddress(address).reinterpret(N_DATA, arena, null);
+        return header.reinterpret(N_DATA + header.get(INT, N_FIELD_LEN) + header.get(INT, N_VALUE_LEN));
+    }
+
+    private static long putBytes(MemorySegment target, long at, byte[] bytes) {
+        target.set(INT, at, bytes.length);
+        MemorySegment.copy(bytes, 0, target, ValueLayout.JAVA_BYTE, at + 4, bytes.length);
+        return at + 4 + bytes.length;
+    }
+
+    private static ByteBuffer copyOf(MemorySegment source, long offset, int length) {
+        return ByteBuffer.wrap(source.asSlice(offset, length).toArray(ValueLayout.JAVA_BYTE)).asReadOnlyBuffer();
+    }
+
+    private static void writeBytes(MemorySegment source, long offset, int length, ByteBuffer out) {
+        out.putInt(length);
+        out.put(source.asSlice(offset, length).asByteBuffer());
+    }
+
+    static boolean equalsAt(MemorySegment segment, long offset, byte[] bytes) {
+        return MemorySegment.mismatch(segment, offset, offset + bytes.length,
+                MemorySegment.ofArray(bytes), 0, bytes.length) == -1;
+    }
+
+    /** FNV-1a: cheap and well spread for short keys. */
+    static int hashOf(byte[] field) {
+        int hash = 0x811C9DC5;
+        for (byte b : field) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
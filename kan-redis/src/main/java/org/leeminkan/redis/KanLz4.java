@@ -0,0 +1,183 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * KanLz4
+ * A small LZ4 block-format codec (no frame format, no checksums), used to compress large STRING values.
+ *
+ * Why LZ4 and not Deflate: decoding is a loop of "copy N literal bytes, then copy M bytes from
+ * earlier in the output". No entropy coding, no bit twiddling, so it runs at memory-copy speed,
+ * which is what a GET on the event loop can afford. JSON snapshots still shrink several times.
+ *
+ * Block format, a list of sequences:
+ * [Token: LiteralLen (4 bits) | MatchLen-4 (4 bits)] [LiteralLen overflow bytes...] [Literals]
+ * [Offset (2 bytes, little endian)] [MatchLen overflow bytes...]
+ * A length nibble of 15 continues in following bytes (255 = keep adding). The last sequence
+ * has literals only: the block ends after them.
+ */
+final class KanLz4 {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5; // The format requires the block to end with literals
+    private static final int MF_LIMIT = 12;     // ...and no match may start this close to the end
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    // Position + 1 of the last 4-byte sequence seen per hash slot (0 = empty). Reused per thread.
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    private KanLz4() {
+    }
+
+    /** Worst case output size (incompressible input grows by ~0.4%). */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src} into {@code dst} (sized with {@link #maxCompressedLength}).
+     * @return the compressed length
+     */
+    static int compress(byte[] src, byte[] dst) {
+        int[] table = HASH_TABLE.get();
+        Arrays.fill(table, 0);
+
+        int length = src.length;
+        int anchor = 0; // Start of the literals not emitted yet
+        int op = 0;
+
+        if (length >= MF_LIMIT + 1) {
+            int matchStartLimit = length - MF_LIMIT;
+            int matchEndLimit = length - LAST_LITERALS;
+            int ip = 0;
+            int misses = 0;
+            while (ip < matchStartLimit) {
+                int sequence = readInt(src, ip);
+                int slot = hash(sequence);
+                int ref = table[slot] - 1;
+                table[slot] = ip + 1;
+
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    // Skip faster through data that doesn't compress (same trick as the reference LZ4)
+                    ip += 1 + (misses++ >>> 6);
+                    continue;
+                }
+                misses = 0;
+
+                // Extend the match backwards into pending literals, then forwards
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchEndLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        // Last sequence: the remaining bytes as literals, no match
+        return writeSequence(src, anchor, length - anchor, 0, 0, dst, op);
+    }
+
+    /**
+     * Decompresses {@code compressedLength} bytes at {@code srcOffset} of {@code src} into
+     * {@code dst}, which must be exactly the original size. Works for any pair of segments
+     * (off-heap entry -> response buffer, or -> heap array), so GET needs no intermediate copy.
+     */
+    static void decompress(MemorySegment src, long srcOffset, long compressedLength, MemorySegment dst) {
+        long ip = srcOffset;
+        long end = srcOffset + compressedLength;
+        long op = 0;
+        while (true) {
+            int token = Byte.toUnsignedInt(src.get(ValueLayout.JAVA_BYTE, ip++));
+
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int extra;
+                do {
+                    extra = Byte.toUnsignedInt(src.get(ValueLayout.JAVA_BYTE, ip++));
+                    literalLength += extra;
+                } while (extra == 255);
+            }
+            MemorySegment.copy(src, ip, dst, op, literalLength);
+            ip += literalLength;
+            op += literalLength;
+            if (ip >= end) {
+                return; // The last sequence has no match part
+            }
+
+            int offset = Byte.toUnsignedInt(src.get(ValueLayout.JAVA_BYTE, ip))
+                    | Byte.toUnsignedInt(src.get(ValueLayout.JAVA_BYTE, ip + 1)) << 8;
+            ip += 2;
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int extra;
+                do {
+                    extra = Byte.toUnsignedInt(src.get(ValueLayout.JAVA_BYTE, ip++));
+                    matchLength += extra;
+                } while (extra == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            long from = op - offset;
+            if (offset >= matchLength) {
+                MemorySegment.copy(dst, from, dst, op, matchLength); // No overlap: a plain block copy
+            } else {
+                // Overlapping match repeats a short pattern ("abcabcabc..."): must copy byte by byte
+                for (int i = 0; i < matchLength; i++) {
+                    dst.set(ValueLayout.JAVA_BYTE, op + i, dst.get(ValueLayout.JAVA_BYTE, from + i));
+                }
+            }
+            op += matchLength;
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLength,
+                                     int offset, int matchLength, byte[] dst, int op) {
+        int tokenAt = op++;
+        int token = Math.min(literalLength, 15) << 4;
+        if (literalLength >= 15) {
+            op = writeLengthOverflow(literalLength - 15, dst, op);
+        }
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int storedMatch = matchLength - MIN_MATCH;
+            token |= Math.min(storedMatch, 15);
+            if (storedMatch >= 15) {
+                op = writeLengthOverflow(storedMatch - 15, dst, op);
+            }
+        }
+        dst[tokenAt] = (byte) token;
+        return op;
+    }
+
+    private static int writeLengthOverflow(int rest, byte[] dst, int op) {
+        while (rest >= 255) {
+            dst[op++] = (byte) 255;
+            rest -= 255;
+        }
+        dst[op++] = (byte) rest;
+        return op;
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8
+                | (bytes[index + 2] & 0xFF) << 16 | (bytes[index + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG); // Knuth multiplicative hash
+    }
+}
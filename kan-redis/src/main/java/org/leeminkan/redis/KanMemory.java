@@ -0,0 +1,146 @@
+package org.leeminkan.redis;
+
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KanMemory
+ * Where the off-heap memory goes: MEMORY STATS, MEMORY LEAKS and the JMX memory attributes.
+ *
+ * The shared arena never frees anything. An overwritten value, a deleted key, or a listpack
+ * that grew into a bigger segment stays allocated until the server stops. OffHeapMemoryUsage
+ * (every byte ever allocated) can't tell that garbage apart from data. This report walks the
+ * index and splits the allocated bytes:
+ * - live:          bytes in use by values reachable from the index
+ * - fragmentation: unused capacity inside live segments (a listpack's free tail)
+ * - unreferenced:  allocated, but no longer reachable: overwritten, deleted or outgrown
+ *                  segments. This is what a free list would hand out again.
+ * - index:         heap used by the key -> pointer map (an estimate, see INDEX_BYTES_PER_KEY)
+ * - connection buffers: heap held by connections (input buffers, queued output)
+ *
+ * The walk is O(keys), and each key is read under its map lock so a concurrent writer can't
+ * change a hash or a sorted set while it is measured. Cheap enough for a dashboard every few
+ * seconds (JMX reads are cached, see KanMonitor), not for every command.
+ *
+ * -Dkan.memory.debug=true also records every allocation with its call site. MEMORY LEAKS
+ * then lists the allocations that are not reachable from the index, grouped by call site,
+ * which shows which code path produces the garbage.
+ */
+public final class KanMemory {
+
+    /** Receives each off-heap segment a value owns. */
+    interface SegmentVisitor {
+        /**
+         * @param capacity bytes allocated for the segment
+         * @param used     bytes of it in use (equal to capacity for most segments)
+         */
+        void segment(long address, long capacity, long used);
+    }
+
+    // Heap per key in the index, with compressed oops: ConcurrentHashMap.Node (32) + String (24)
+    // + MemorySegment (40) + ~2 table slots (8). The key's byte[] is added per key
+    static final int INDEX_BYTES_PER_KEY = 32 + 24 + 40 + 8;
+
+    public record Report(long allocatedBytes, long liveBytes, long fragmentationBytes, long unreferencedBytes,
+                         long indexBytes, long connectionBufferBytes, long keys) {
+
+        public static final List<String> FIELDS = List.of("allocated_bytes", "live_bytes", "fragmentation_bytes",
+                "unreferenced_bytes", "index_bytes_estimate", "connection_buffer_bytes", "keys");
+
+        /** Same order as {@link #FIELDS}. */
+        public long[] values() {
+            return new long[]{allocatedBytes, liveBytes, fragmentationBytes, unreferencedBytes, indexBytes,
+                    connectionBufferBytes, keys};
+        }
+
+        /** "name:value" lines, like Redis INFO. */
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            long[] values = values();
+            for (int i = 0; i < values.length; i++) {
+                text.append(FIELDS.get(i)).append(':').append(values[i]).append("\r\n");
+            }
+            return text.toString();
+        }
+    }
+
+    // Accumulates one walk over one or more stores
+    static final class Usage implements SegmentVisitor {
+        long live;
+        long slack;
+        long index;
+        long keys;
+
+        void key(String key) {
+            keys++;
+            index += INDEX_BYTES_PER_KEY + align(16 + key.length()); // byte[] header + Latin-1 bytes
+        }
+
+        @Override
+        public void segment(long address, long capacity, long used) {
+            live += used;
+            slack += capacity - used;
+        }
+
+        private static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+    }
+
+    private final List<KanStore> stores;
+    private final KanMetrics metrics;
+
+    /** @param stores every store of this server (one per shard in shared-nothing mode) */
+    public KanMemory(List<KanStore> stores, KanMetrics metrics) {
+        this.stores = List.copyOf(stores);
+        this.metrics = metrics;
+    }
+
+    public Report report() {
+        Usage usage = new Usage();
+        long allocated = 0;
+        for (KanStore store : stores) {
+            allocated += store.allocatedBytes(); // Before the walk: what it finds was allocated by then
+            store.visitMemory(usage);
+        }
+        // Writers keep allocating during the walk: never report a negative remainder
+        long unreferenced = Math.max(0, allocated - usage.live - usage.slack);
+        return new Report(allocated, usage.live, usage.slack, unreferenced, usage.index,
+                metrics.getConnectionBufferBytes(), usage.keys);
+    }
+
+    /**
+     * Unreferenced allocations by call site, largest first (-Dkan.memory.debug=true only).
+     * An allocation made while the report runs, and not yet stored, can show up once.
+     */
+    public String leakReport(int maxSites) {
+        if (!KanStore.MEMORY_DEBUG) {
+            return "leak_detector:off (start the server with -Dkan.memory.debug=true)\r\n";
+        }
+        Map<String, long[]> sites = new HashMap<>(); // Call site -> {allocations, bytes}
+        for (KanStore store : stores) {
+            store.collectUnreferenced(sites);
+        }
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(sites.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+
+        long count = 0;
+        long bytes = 0;
+        for (long[] site : sites.values()) {
+            count += site[0];
+            bytes += site[1];
+        }
+        StringBuilder text = new StringBuilder("leak_detector:on\r\n")
+                .append("unreferenced_allocations:").append(count).append("\r\n")
+                .append("unreferenced_bytes:").append(bytes).append("\r\n");
+        for (Map.Entry<String, long[]> site : sorted.subList(0, Math.min(maxSites, sorted.size()))) {
+            text.append(site.getValue()[1]).append(" bytes in ").append(site.getValue()[0])
+                    .append(" allocations: ").append(site.getKey()).append("\r\n");
+        }
+        return text.toString();
+    }
+}
@@ -1,18 +1,84 @@
 package org.leeminkan.redis;
 
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanHotKeys;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.pubsub.KanPubSub;
+import org.leeminkan.redis.tracking.KanTracking;
+
 import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
 import java.nio.BufferUnderflowException;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
 
 public class KanProtocol {
 
+    private static final KanLogger LOG = KanLogger.getLogger(KanProtocol.class);
+
+    /** SET values at least this large are streamed off-heap instead of buffered (ADR-003). */
+    public static final int STREAMING_THRESHOLD = 64 * 1024;
+    /** Largest SET value accepted on the streaming path (the buffered path stays at MAX_FRAME_SIZE). */
+    public static final int MAX_VALUE_SIZE = Integer.getInteger("kan.max-value-size", 512 * 1024 * 1024);
+    // Call sites listed by MEMORY LEAKS
+    static final int MEMORY_LEAK_SITES = 20;
+    // Keys per kind HOTKEYS lists when the client asks for 0
+    static final int HOTKEYS_DEFAULT_COUNT = 10;
+    // EXEC response: [Len][Executed][Count], then at least this much kept for each command's answer
+    // (THROTTLE's 13 bytes is the largest fixed-size one; reads answer in less when space runs out)
+    static final int EXEC_HEADER_SIZE = 9;
+    static final int EXEC_RESERVED_PER_COMMAND = 13;
+
     private final KanStore store;
-    public static final AtomicLong totalCommands = new AtomicLong(0);
+    private final KanMetrics metrics;
+    private final KanHotKeys hotKeys;
+    private final KanPubSub pubSub;
+    private final KanTracking tracking;
+    private final KanMemory memory;
+    private final KanResp resp;
+
+    public KanProtocol(KanStore store, KanMetrics metrics) {
+        this(store, metrics, new KanPubSub(), new KanTracking());
+    }
+
+    public KanProtocol(KanStore store, KanMetrics metrics, KanPubSub pubSub, KanTracking tracking) {
+        this(store, metrics, pubSub, tracking, new KanMemory(List.of(store), metrics));
+    }
 
-    public KanProtocol(KanStore store) {
+    /** @param memory the MEMORY report, over every store of the server (all shards) */
+    public KanProtocol(KanStore store, KanMetrics metrics, KanPubSub pubSub, KanTracking tracking, KanMemory memory) {
         this.store = store;
+        this.metrics = metrics;
+        this.hotKeys = metrics.hotKeys();
+        this.pubSub = pubSub;
+        this.tracking = tracking;
+        this.memory = memory;
+        this.resp = new KanResp(store, metrics, pubSub, tracking, memory);
+    }
+
+    /** The RESP front-end on the same store, for connections whose first byte says RESP (ADR-006). */
+    public KanResp resp() {
+        return resp;
+    }
+
+    /** Must be called by the transport when a connection closes (drops subscriptions and tracking). */
+    public void connectionClosed(KanSession session) {
+        pubSub.unsubscribeAll(session);
+        tracking.connectionClosed(session);
+    }
+
+    /** True while the connection has subscriptions: it may legitimately stay silent for hours. */
+    public boolean hasSubscriptions(KanSession session) {
+        return pubSub.isSubscribed(session);
+    }
+
+    /**
+     * Same as {@link #process(ByteBuffer, ByteBuffer, KanSession)} for callers without a
+     * connection (benchmarks, EXEC): SUBSCRIBE answers with the error response.
+     */
+    public boolean process(ByteBuffer buffer, ByteBuffer responseBuffer) {
+        return process(buffer, responseBuffer, null);
     }
 
     /**
@@ -20,12 +86,13 @@ public class KanProtocol {
      * @return true if a command was successfully processed.
      * false if there wasn't enough data (fragmentation).
      */
-    public boolean process(ByteBuffer buffer, ByteBuffer responseBuffer) {
+    public boolean process(ByteBuffer buffer, ByteBuffer responseBuffer, KanSession session) {
         if (buffer.remaining() < 1) return false; // Not even a command byte
 
         // Mark the current position. If we run out of data mid-command,
         // we rewind to this mark so we can try again later when more data arrives.
         buffer.mark();
+        int start = buffer.position();
 
         try {
             byte cmdByte = buffer.get();
@@ -39,11 +106,35 @@ public class KanProtocol {
                 return true; // We handled it (by erroring), so return true
             }
 
-            totalCommands.incrementAndGet();
+            metrics.recordCommand();
             switch (type) {
-                case GET -> handleGet(buffer, responseBuffer);
+                case GET -> handleGet(buffer, responseBuffer, session);
                 case SET -> handleSet(buffer, responseBuffer);
                 case CAS -> handleCas(buffer, responseBuffer);
+                case INCR -> handleIncrement(buffer, responseBuffer, false, 1);
+                case INCRBY -> handleIncrement(buffer, responseBuffer, true, 1);
+                case DECRBY -> handleIncrement(buffer, responseBuffer, true, -1);
+                case THROTTLE -> handleThrottle(buffer, responseBuffer);
+                case HSET -> handleHashSet(buffer, responseBuffer);
+                case HGET -> handleHashGet(buffer, responseBuffer, session);
+                case HDEL -> handleHashDelete(buffer, responseBuffer);
+                case HGETALL -> handleHashGetAll(buffer, responseBuffer, session);
+                case ZADD -> handleSortedSetAdd(buffer, responseBuffer);
+                case ZRANGE -> handleSortedSetRange(buffer, responseBuffer);
+                case ZRANGEBYSCORE -> handleSortedSetRangeByScore(buffer, responseBuffer);
+                case ZREM -> handleSortedSetRemove(buffer, responseBuffer);
+                case SCAN -> handleScan(buffer, responseBuffer);
+                case EXEC -> handleExec(buffer, responseBuffer);
+                case SUBSCRIBE -> handleSubscribe(buffer, responseBuffer, session, true);
+                case UNSUBSCRIBE -> handleSubscribe(buffer, responseBuffer, session, false);
+                case PUBLISH -> handlePublish(buffer, responseBuffer);
+                case DEL -> handleDelete(buffer, responseBuffer);
+                case TRACKING -> handleTracking(buffer, responseBuffer, session);
+                case MEMORY -> handleMemory(buffer, responseBuffer);
+                case HOTKEYS -> handleHotKeys(buffer, responseBuffer);
+            }
+            if (hotKeys.sample()) {
+                sampleKey(type, buffer, start);
             }
             return true; // Success!
 
@@ -56,6 +147,25 @@ public class KanProtocol {
         }
     }
 
+    /**
+     * HOTKEYS: counts the key of a sampled command. Every keyed command starts with [KeyLen][Key],
+     * and the whole frame is still in the buffer, so the key is read in place (no String).
+     */
+    private void sampleKey(CommandType type, ByteBuffer in, int start) {
+        boolean write;
+        switch (type) {
+            case GET, HGET, HGETALL, ZRANGE, ZRANGEBYSCORE -> write = false;
+            case SET, CAS, INCR, INCRBY, DECRBY, THROTTLE, HSET, HDEL, ZADD, ZREM, DEL -> write = true;
+            default -> {
+                return; // No key: SCAN, EXEC (its commands are sampled one by one), Pub/Sub, ...
+            }
+        }
+        int keyLength = in.getInt(start + 1);
+        if (keyLength > 0) {
+            hotKeys.record(write, in, start + 5, keyLength);
+        }
+    }
+
     private void handleSet(ByteBuffer in, ByteBuffer out) {
         String key = readString(in);
 
@@ -63,26 +173,413 @@ public class KanProtocol {
         byte[] valueBytes = readByteArray(in);
 
         store.set(key, valueBytes);
+        tracking.keyModified(key);
 
         out.putInt(1);
         out.put((byte) 1);
     }
 
-    private void handleGet(ByteBuffer in, ByteBuffer out) {
+    private void handleGet(ByteBuffer in, ByteBuffer out, KanSession session) {
         String key = readString(in);
         MemorySegment valueSeg = store.get(key);
+        tracking.keyRead(session, key);
 
         if (valueSeg == null) {
             out.putInt(0);
+        } else if (!KanEntry.isReadable(valueSeg)) {
+            writeError(out, "WRONGTYPE");
+        } else if (4 + KanEntry.valueLength(valueSeg) > out.remaining()) {
+            // Bigger than the response buffer (ADR-003): the transport writes it from off-heap itself
+            ByteBuffer body = KanEntry.valueView(valueSeg);
+            if (session != null && session.attach(body)) {
+                out.putInt(body.remaining());
+            } else {
+                writeError(out, "value too large for this transport");
+            }
         } else {
-            long size = valueSeg.byteSize();
-            out.putInt((int) size);
-
             // OPTIMIZED: Copy from Off-Heap (Segment) directly to On-Heap (ByteBuffer)
-            // MemorySegment.asByteBuffer() creates a view we can put()
-            ByteBuffer view = valueSeg.asByteBuffer();
-            out.put(view);
+            KanEntry.writeValue(valueSeg, out);
+        }
+    }
+
+    /**
+     * INCR / INCRBY / DECRBY: one round trip, evaluated atomically on the server.
+     * Replaces the client-side "GET, add, CAS, retry on collision" loop.
+     */
+    private void handleIncrement(ByteBuffer in, ByteBuffer out, boolean hasDelta, int sign) {
+        String key = readString(in);
+        long delta = hasDelta ? in.getLong() : 1;
+
+        long value;
+        try {
+            value = store.incrementBy(key, Math.multiplyExact(delta, sign));
+            tracking.keyModified(key);
+        } catch (NumberFormatException | ArithmeticException | WrongTypeException e) {
+            // Not an integer, 64-bit overflow, or not a string key
+            writeError(out, e.getMessage());
+            return;
+        }
+        out.putInt(Long.BYTES);
+        out.putLong(value);
+    }
+
+    /**
+     * THROTTLE key limit window: "may this caller do one more request?" in a single round trip.
+     * Response: [Len=9] [Allowed (1 byte)] [Remaining (Long)]
+     */
+    private void handleThrottle(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        long limit = in.getLong();
+        long windowSeconds = in.getLong();
+
+        long remaining;
+        try {
+            remaining = store.throttle(key, limit, windowSeconds);
+        } catch (IllegalArgumentException | WrongTypeException e) {
+            writeError(out, e.getMessage());
+            return;
         }
+        out.putInt(1 + Long.BYTES);
+        out.put((byte) (remaining >= 0 ? 1 : 0));
+        out.putLong(Math.max(remaining, 0));
+    }
+
+    // --- HASH: field-level access, the record is never re-encoded as a whole ---
+
+    private void handleHashSet(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        byte[] field = readByteArray(in);
+        byte[] value = readByteArray(in);
+        try {
+            boolean created = store.hset(key, field, value);
+            tracking.keyModified(key);
+            out.putInt(1);
+            out.put((byte) (created ? 1 : 0));
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleHashGet(ByteBuffer in, ByteBuffer out, KanSession session) {
+        String key = readString(in);
+        byte[] field = readByteArray(in);
+        try {
+            attachOrFail(store.hget(key, field, out), out, session);
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleHashDelete(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        byte[] field = readByteArray(in);
+        try {
+            boolean deleted = store.hdel(key, field);
+            tracking.keyModified(key);
+            out.putInt(1);
+            out.put((byte) (deleted ? 1 : 0));
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleHashGetAll(ByteBuffer in, ByteBuffer out, KanSession session) {
+        String key = readString(in);
+        try {
+            attachOrFail(store.hgetAll(key, out), out, session);
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    // A response body too large for the response buffer (ADR-003): the transport writes it after [Len]
+    private void attachOrFail(ByteBuffer body, ByteBuffer out, KanSession session) {
+        if (body == null) {
+            return; // Already written to out
+        }
+        if (session != null && session.attach(body)) {
+            out.putInt(body.remaining());
+        } else {
+            writeError(out, "response too large for this transport");
+        }
+    }
+
+    // --- SORTED SET: ranges are streamed from the skiplist into the response buffer ---
+
+    private void handleSortedSetAdd(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        double score = in.getDouble();
+        byte[] member = readByteArray(in);
+        if (Double.isNaN(score)) {
+            writeError(out, "score is not a number");
+            return;
+        }
+        try {
+            boolean created = store.zadd(key, score, member);
+            tracking.keyModified(key);
+            out.putInt(1);
+            out.put((byte) (created ? 1 : 0));
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleSortedSetRange(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        int start = in.getInt();
+        int stop = in.getInt();
+        try {
+            store.zrange(key, start, stop, out);
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleSortedSetRangeByScore(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        double min = in.getDouble();
+        double max = in.getDouble();
+        int offset = in.getInt();
+        int limit = in.getInt();
+        try {
+            store.zrangeByScore(key, min, max, offset, limit, out);
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    private void handleSortedSetRemove(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        byte[] member = readByteArray(in);
+        try {
+            boolean removed = store.zrem(key, member);
+            tracking.keyModified(key);
+            out.putInt(1);
+            out.put((byte) (removed ? 1 : 0));
+        } catch (WrongTypeException e) {
+            writeError(out, e.getMessage());
+        }
+    }
+
+    /**
+     * SCAN cursor pattern count: one bounded slice of the key space.
+     * An empty pattern means "every key"; a count of 0 means the default.
+     */
+    private void handleScan(ByteBuffer in, ByteBuffer out) {
+        long cursor = in.getLong();
+        String pattern = readString(in);
+        int count = in.getInt();
+        try {
+            store.scan(cursor, pattern, count > 0 ? count : KanScan.DEFAULT_COUNT, out);
+        } catch (IllegalArgumentException e) {
+            writeError(out, e.getMessage()); // Unknown or expired cursor: restart from 0
+        }
+    }
+
+    /**
+     * EXEC: N commands in one frame, applied atomically, answered in one response.
+     *
+     * Frame: [BodyLen] then
+     *   [WatchCount] ([KeyLen][Key][ExpectedLen][Expected]) x WatchCount   (WATCH-style guard)
+     *   [CmdCount]   ([CmdLen][Command frame]) x CmdCount                 (keyed commands only)
+     * Response: [Len][Executed (1 byte)][Count] then each command's own response, in order.
+     *
+     * If a watched key doesn't hold its expected value, nothing runs: Executed=0, Count=0,
+     * and the client re-reads and retries. Like Redis, a command that fails inside the batch
+     * (e.g. WRONGTYPE) answers with its own error and the others still apply.
+     *
+     * The whole response goes to the response buffer, so its size is bounded before anything
+     * runs: every command keeps room for a write's answer, and a read that doesn't fit in what
+     * is left answers like it does outside EXEC with a full buffer (error, or a shorter range).
+     */
+    private void handleExec(ByteBuffer in, ByteBuffer out) {
+        int bodyLength = in.getInt();
+        if (bodyLength < 0) {
+            writeError(out, "malformed EXEC");
+            return;
+        }
+        if (in.remaining() < bodyLength) throw new BufferUnderflowException(); // Wait for the whole batch
+        ByteBuffer body = in.slice(in.position(), bodyLength);
+        in.position(in.position() + bodyLength);
+
+        List<String> keys = new ArrayList<>();
+        List<String> watchKeys = new ArrayList<>();
+        List<String> expectedValues = new ArrayList<>();
+        List<ByteBuffer> commands = new ArrayList<>();
+        try {
+            int watchCount = body.getInt();
+            for (int i = 0; i < watchCount; i++) {
+                watchKeys.add(readExecKey(body));
+                expectedValues.add(readString(body));
+            }
+            int commandCount = body.getInt();
+            for (int i = 0; i < commandCount; i++) {
+                int commandLength = body.getInt();
+                ByteBuffer command = body.slice(body.position(), commandLength);
+                body.position(body.position() + commandLength);
+
+                if (!allowedInExec(CommandType.fromByte(command.get(0)))) {
+                    writeError(out, "command not allowed in EXEC");
+                    return;
+                }
+                // Every allowed command starts with [KeyLen][Key]: peek it to know what to lock
+                command.position(1);
+                keys.add(readExecKey(command));
+                command.position(0);
+                commands.add(command);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            writeError(out, "malformed EXEC"); // The batch was complete, so this is a client bug
+            return;
+        }
+        keys.addAll(watchKeys);
+
+        // Room for the header and every command's smallest answer, checked before anything is applied
+        if (out.remaining() < EXEC_HEADER_SIZE + (long) commands.size() * EXEC_RESERVED_PER_COMMAND) {
+            writeError(out, "EXEC response too large");
+            return;
+        }
+
+        int lengthAt = out.position();
+        int limit = out.limit();
+        try {
+            store.atomically(keys, () -> {
+                boolean watchOk = true;
+                for (int i = 0; i < watchKeys.size() && watchOk; i++) {
+                    watchOk = store.valueMatches(watchKeys.get(i), expectedValues.get(i));
+                }
+                out.putInt(0); // [Len], patched below
+                out.put((byte) (watchOk ? 1 : 0));
+                out.putInt(watchOk ? commands.size() : 0);
+                if (watchOk) {
+                    for (int i = 0; i < commands.size(); i++) {
+                        // Keep the later commands' share: a read only gets what is left beyond it, and
+                        // answers like it does when the buffer is full (error, or a shorter range)
+                        out.limit(limit - (commands.size() - 1 - i) * EXEC_RESERVED_PER_COMMAND);
+                        if (!process(commands.get(i), out)) {
+                            writeError(out, "truncated command in EXEC");
+                        }
+                        out.limit(limit);
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // The commands before the failure stay applied and logged (KanStore.atomically):
+            // answer with the error, don't take the connection down
+            LOG.error("EXEC failed partway", e);
+            out.limit(limit).position(lengthAt);
+            writeError(out, "EXEC failed");
+            return;
+        }
+        out.putInt(lengthAt, out.position() - lengthAt - 4);
+    }
+
+    // An empty key would get past the lock set and fail inside the batch, after the commands
+    // before it were applied: reject it while nothing has run
+    private String readExecKey(ByteBuffer buffer) {
+        String key = readString(buffer);
+        if (key == null) {
+            throw new IllegalArgumentException("empty key in EXEC");
+        }
+        return key;
+    }
+
+    // Commands with a key first ([KeyLen][Key], used for locking) and a bounded answer
+    private static boolean allowedInExec(CommandType type) {
+        if (type == null) {
+            return false;
+        }
+        return switch (type) {
+            case GET, SET, CAS, INCR, INCRBY, DECRBY, THROTTLE, HSET, HGET, HDEL, HGETALL,
+                 ZADD, ZRANGE, ZRANGEBYSCORE, ZREM, DEL -> true;
+            // No key (SCAN, TRACKING, MEMORY, HOTKEYS), a channel instead (Pub/Sub), or nested
+            default -> false;
+        };
+    }
+
+    // --- PUB/SUB: messages arrive as push frames ([Len=-2]...), see KanPubSub ---
+
+    private void handleSubscribe(ByteBuffer in, ByteBuffer out, KanSession session, boolean subscribe) {
+        String channel = readString(in);
+        if (session == null || channel == null) {
+            writeError(out, "SUBSCRIBE needs a connection that accepts pushes");
+            return;
+        }
+        int subscribed = subscribe ? pubSub.subscribe(session, channel) : pubSub.unsubscribe(session, channel);
+        out.putInt(4);
+        out.putInt(subscribed);
+    }
+
+    private void handlePublish(ByteBuffer in, ByteBuffer out) {
+        String channel = readString(in);
+        byte[] message = readByteArray(in);
+        int receivers = channel == null ? 0 : pubSub.publish(channel, message);
+        out.putInt(4);
+        out.putInt(receivers);
+    }
+
+    private void handleDelete(ByteBuffer in, ByteBuffer out) {
+        String key = readString(in);
+        boolean deleted = key != null && store.delete(key);
+        if (deleted) {
+            tracking.keyModified(key);
+        }
+        out.putInt(1);
+        out.put((byte) (deleted ? 1 : 0));
+    }
+
+    /**
+     * TRACKING on|off: while on, every key this connection GETs is remembered, and the
+     * connection receives an invalidation push ([Len=-2]...) the next time the key is written.
+     */
+    private void handleTracking(ByteBuffer in, ByteBuffer out, KanSession session) {
+        boolean on = in.get() != 0;
+        if (session == null) {
+            writeError(out, "TRACKING needs a connection that accepts pushes");
+            return;
+        }
+        if (on) {
+            tracking.enable(session);
+        } else {
+            tracking.disable(session);
+        }
+        out.putInt(1);
+        out.put((byte) 1);
+    }
+
+    /**
+     * MEMORY 0 = STATS: the off-heap breakdown, 1 = LEAKS: unreferenced allocations by call site
+     * (needs -Dkan.memory.debug=true). Response: [Len] then "name:value" text lines.
+     * STATS walks every key: O(keys), on the calling thread.
+     */
+    private void handleMemory(ByteBuffer in, ByteBuffer out) {
+        byte report = in.get();
+        String text = switch (report) {
+            case 0 -> memory.report().format();
+            case 1 -> memory.leakReport(MEMORY_LEAK_SITES);
+            default -> null;
+        };
+        if (text == null) {
+            writeError(out, "unknown MEMORY report " + report);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, out.remaining() - 4); // A long leak list is cut, not failed
+        out.putInt(length);
+        out.put(bytes, 0, length);
+    }
+
+    /**
+     * HOTKEYS [Count (1 byte)]: the Count most read and most written keys over the sliding window
+     * (0 = {@link #HOTKEYS_DEFAULT_COUNT}). Response: [Len] then text, see KanHotKeys.format.
+     */
+    private void handleHotKeys(ByteBuffer in, ByteBuffer out) {
+        int count = in.get() & 0xFF;
+        byte[] bytes = hotKeys.format(count == 0 ? HOTKEYS_DEFAULT_COUNT : count).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, out.remaining() - 4); // Long keys: cut, not failed
+        out.putInt(length);
+        out.put(bytes, 0, length);
     }
 
     private void handleCas(ByteBuffer in, ByteBuffer out) {
@@ -91,11 +588,89 @@ public class KanProtocol {
         byte[] newValueBytes = readByteArray(in); // New value stays raw bytes
 
         boolean success = store.cas(key, expected, newValueBytes);
+        if (success) {
+            tracking.keyModified(key);
+        }
 
         out.putInt(1);
         out.put((byte) (success ? 1 : 0));
     }
 
+    // --- Large SET streaming (ADR-003) ---
+
+    /** A SET whose value is copied from the socket straight into its off-heap entry. */
+    public static final class StreamingSet {
+        private final String key;
+        private final MemorySegment entry;
+        private final ByteBuffer target;
+
+        private StreamingSet(String key, MemorySegment entry, ByteBuffer target) {
+            this.key = key;
+            this.entry = entry;
+            this.target = target;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        /** Where the transport reads the rest of the value into (a direct view of the entry). */
+        public ByteBuffer target() {
+            return target;
+        }
+
+        public boolean isComplete() {
+            return !target.hasRemaining();
+        }
+    }
+
+    /**
+     * Called by the transport when {@link #process} stopped at an incomplete command.
+     * If that command is a SET with a value of at least {@link #STREAMING_THRESHOLD} bytes and its
+     * header ([CMD][KeyLen][Key][ValLen]) has arrived, allocates the entry, moves the value bytes
+     * already buffered into it and consumes them from {@code in}.
+     *
+     * @return the stream to fill, or null to keep buffering (ADR-001)
+     * @throws IllegalArgumentException if the value is larger than {@link #MAX_VALUE_SIZE}
+     */
+    public StreamingSet beginStreamingSet(ByteBuffer in) {
+        int start = in.position();
+        if (in.remaining() < 1 + 4 || in.get(start) != CommandType.SET.getCode()) {
+            return null;
+        }
+        int keyLength = in.getInt(start + 1);
+        int valueAt = start + 1 + 4 + keyLength + 4;
+        if (keyLength <= 0 || keyLength > in.capacity() || in.limit() < valueAt) {
+            return null; // Header incomplete (or odd): the normal path handles it
+        }
+        int valueLength = in.getInt(valueAt - 4);
+        if (valueLength < STREAMING_THRESHOLD) {
+            return null;
+        }
+        if (valueLength > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("value of " + valueLength + " bytes exceeds kan.max-value-size");
+        }
+
+        byte[] keyBytes = new byte[keyLength];
+        in.get(start + 5, keyBytes);
+        MemorySegment entry = store.allocateStreamedValue(valueLength);
+        ByteBuffer target = entry.asSlice(KanEntry.HEADER_SIZE).asByteBuffer();
+
+        int buffered = Math.min(valueLength, in.limit() - valueAt);
+        target.put(in.slice(valueAt, buffered));
+        in.position(valueAt + buffered);
+        return new StreamingSet(new String(keyBytes, StandardCharsets.UTF_8), entry, target);
+    }
+
+    /** Stores a completely received value and writes the usual SET response. */
+    public void completeStreamingSet(StreamingSet streaming, ByteBuffer out) {
+        metrics.recordCommand();
+        store.setStreamed(streaming.key, streaming.entry);
+        tracking.keyModified(streaming.key);
+        out.putInt(1);
+        out.put((byte) 1);
+    }
+
     // NEW HELPER: Reads bytes without converting to String
     private byte[] readByteArray(ByteBuffer buffer) {
         int len = buffer.getInt();
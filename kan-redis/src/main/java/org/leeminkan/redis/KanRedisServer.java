@@ -1,45 +1,52 @@
 package org.leeminkan.redis;
 
 import org.leeminkan.redis.jmx.KanMonitor;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.pubsub.KanPubSub;
+import org.leeminkan.redis.shard.KanShards;
+import org.leeminkan.redis.tracking.KanTracking;
+import org.leeminkan.redis.transport.IoUringTransport;
+import org.leeminkan.redis.transport.KanTls;
+import org.leeminkan.redis.transport.KanTransport;
+import org.leeminkan.redis.transport.NioTransport;
+import org.leeminkan.redis.transport.VirtualThreadTransport;
 
 import javax.management.ObjectName;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * KanRedisServer
- * A non-blocking, event-driven server using Java NIO.
- * Designed to handle C10K (10,000 concurrent connections) on a single thread.
+ * Wires the store, the protocol and JMX together, then hands the socket work to a
+ * pluggable {@link KanTransport}.
+ *
+ * Select the transport at startup with -Dkan.transport:
+ * - nio (default): single-threaded Selector event loop, designed for C10K.
+ * - io_uring: Linux io_uring via the FFM API, falls back to nio when unavailable.
+ * - virtual: one blocking Virtual Thread per connection.
+ *
+ * -Dkan.shards=N (N > 1) turns on shared-nothing mode: N worker threads, each owning a slice
+ * of the key space with its own store and WAL segment, fed by the nio event loop (see KanShards).
+ *
+ * -Dkan.tls=true serves TLS on the nio event loop (see KanTls and ADR-005).
  */
 public class KanRedisServer {
 
-    // Defined in ADR-001: Protection against OOM attacks
-    private static final int MAX_FRAME_SIZE = 10 * 1024 * 1024; // 10 MB
+    private static final KanLogger LOG = KanLogger.getLogger(KanRedisServer.class);
 
     private final int port;
-    private Selector selector;
-    private ServerSocketChannel serverChannel;
-    private boolean isRunning = true;
 
     // Dependencies
     private KanStore store;
     private KanProtocol protocol;
+    private KanTransport transport;
+    private KanShards shards;
 
-    public static final AtomicInteger connectedClients = new AtomicInteger(0);
-
-    // A map to store data associated with a connection (buffers, state)
-    // In a real Netty implementation, this would be the 'ChannelContext'
-    private final ConcurrentHashMap<SocketChannel, ByteBuffer> clientBuffers = new ConcurrentHashMap<>();
+    // Striped counters shared by the store, the protocol and JMX
+    private final KanMetrics metrics = new KanMetrics();
 
     public KanRedisServer(int port) {
         this.port = port;
@@ -47,156 +54,79 @@ public class KanRedisServer {
 
     public void start() throws IOException {
         // Initialize dependencies (WAL, Store, Protocol)
-        // 1. Initialize WAL
-        KanWal wal = new KanWal("kan-data.log");
-
-        // 2. Initialize Store with WAL
-        store = new KanStore(wal);
+        int shardCount = Integer.getInteger("kan.shards", 1);
+        if (shardCount > 1) {
+            // 1-3. One WAL segment and one store per shard, each replayed on its own
+            shards = new KanShards(shardCount, metrics);
+            // The event loop's protocol only runs Pub/Sub and allocates streamed values with it
+            store = shards.getStore(0);
+        } else {
+            // 1. Initialize WAL
+            KanWal wal = new KanWal("kan-data.log");
+
+            // 2. Initialize Store with WAL
+            store = new KanStore(wal, metrics);
+
+            // 3. Replay Old Data
+            wal.replay(store);
+        }
 
-        // 3. Replay Old Data
-        wal.replay(store);
+        // MEMORY STATS / JMX: one report over every store (each shard has its own)
+        List<KanStore> stores = new ArrayList<>();
+        for (int i = 0; i < (shards != null ? shards.size() : 1); i++) {
+            stores.add(shards != null ? shards.getStore(i) : store);
+        }
+        KanMemory memory = new KanMemory(stores, metrics);
 
-        // 4. Initialize Protocol
-        protocol = new KanProtocol(store);
+        // 4. Initialize Protocol (with the Pub/Sub channel registry and the client tracking table)
+        protocol = new KanProtocol(store, metrics, new KanPubSub(), new KanTracking(), memory);
 
         // JMX Registration
         try {
-            KanMonitor monitor = new KanMonitor(store);
+            KanMonitor monitor = new KanMonitor(store, metrics, memory);
             ObjectName name = new ObjectName("org.leeminkan.redis:type=KanMonitor");
             ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, name);
-            System.out.println("JMX Monitor registered. Connect using JConsole.");
+            LOG.info("JMX Monitor registered. Connect using JConsole.");
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("JMX registration failed", e);
         }
 
-        // Network Setup
-        selector = Selector.open();
-        serverChannel = ServerSocketChannel.open();
-        serverChannel.bind(new InetSocketAddress(port));
-        // CRITICAL: Must be non-blocking to work with Selector
-        serverChannel.configureBlocking(false);
-        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
-
-        System.out.println("Kan-Redis listening on port " + port + "...");
-        runEventLoop();
+        // 5. Network: blocks in the transport's event loop
+        KanTls tls = Boolean.getBoolean("kan.tls") ? new KanTls(KanTls.serverContext()) : null;
+        transport = createTransport(System.getProperty("kan.transport", "nio"), tls);
+        transport.serve(port, protocol);
     }
 
-    private void runEventLoop() {
-        while (isRunning) {
-            try {
-                // Blocks until at least one event occurs
-                selector.select();
-
-                // Get the set of keys (events) that are ready
-                Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                Iterator<SelectionKey> iter = selectedKeys.iterator();
-
-                while (iter.hasNext()) {
-                    SelectionKey key = iter.next();
-
-                    if (key.isAcceptable()) {
-                        handleAccept(key);
-                    } else if (key.isReadable()) {
-                        handleRead(key);
-                    }
-
-                    // Crucial: Remove the key from the iterator to prevent processing it twice
-                    iter.remove();
-                }
-
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    public void stop() {
+        if (transport != null) {
+            transport.stop();
         }
-    }
-
-    private void handleAccept(SelectionKey key) throws IOException {
-        ServerSocketChannel server = (ServerSocketChannel) key.channel();
-        SocketChannel client = server.accept();
-        client.configureBlocking(false);
-
-        // Register this new client for READ events (we want to know when they send data)
-        client.register(selector, SelectionKey.OP_READ);
-
-        // Allocate a buffer for this specific client (4KB)
-        clientBuffers.put(client, ByteBuffer.allocate(4096));
-
-        System.out.println("New Connection: " + client.getRemoteAddress());
-        connectedClients.incrementAndGet();
-    }
-
-    private void handleRead(SelectionKey key) throws IOException {
-        SocketChannel client = (SocketChannel) key.channel();
-        ByteBuffer buffer = clientBuffers.get(client);
-
-        int bytesRead = client.read(buffer);
-        if (bytesRead == -1) {
-            closeConnection(client);
-            return;
+        if (shards != null) {
+            shards.stop();
         }
+    }
 
-        if (bytesRead > 0) {
-            buffer.flip(); // Switch to READ mode
-
-            // Temp buffer for responses
-            ByteBuffer responseBuffer = ByteBuffer.allocate(4096);
-            boolean processedAny = false; // Tracks if we made progress
-
-            // Loop to process all complete commands in the buffer
-            while (protocol.process(buffer, responseBuffer)) {
-                processedAny = true;
-
-                // If a command was processed, we might have a response to send
-                if (responseBuffer.position() > 0) {
-                    responseBuffer.flip();
-                    while (responseBuffer.hasRemaining()) {
-                        client.write(responseBuffer);
-                    }
-                    responseBuffer.clear(); // Clear for next command's response
-                }
+    private KanTransport createTransport(String requested, KanTls tls) {
+        if (shards != null || tls != null) {
+            if (!"nio".equalsIgnoreCase(requested)) {
+                LOG.warn("kan.shards and kan.tls need the nio transport, using nio");
             }
-
-            // Buffer Management Strategy (ADR-001)
-            // If we processed NO commands, and the buffer is completely full,
-            // it means the current command is larger than the buffer capacity.
-            // Note: buffer.remaining() == capacity() implies the 'mark' is at 0 and 'limit' is at capacity.
-            if (!processedAny && buffer.remaining() == buffer.capacity()) {
-
-                // Check Safety Limit
-                if (buffer.capacity() * 2 > MAX_FRAME_SIZE) {
-                    System.err.println("Error: Client " + client.getRemoteAddress() + " exceeded max frame size.");
-                    closeConnection(client);
-                    return;
-                }
-
-                // Resize: Double the capacity
-                ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
-
-                // Copy the partial data from the old buffer to the new one
-                newBuffer.put(buffer);
-
-                // Update map
-                clientBuffers.put(client, newBuffer);
-
-                System.out.println("ADR-001: Resized buffer for " + client.getRemoteAddress() +
-                        " to " + newBuffer.capacity() + " bytes");
-            } else {
-                // Standard case: We made progress OR we have space left.
-                // Move partial bytes to the start for the next read.
-                buffer.compact();
+            return new NioTransport(metrics, shards, tls);
+        }
+        if ("io_uring".equalsIgnoreCase(requested)) {
+            if (IoUringTransport.isSupported()) {
+                return new IoUringTransport(metrics);
             }
+            LOG.warn("io_uring is not available (kernel, seccomp or platform), falling back to nio");
+        } else if ("virtual".equalsIgnoreCase(requested)) {
+            return new VirtualThreadTransport(metrics);
+        } else if (!"nio".equalsIgnoreCase(requested)) {
+            LOG.warn("Unknown transport '{}', using nio", requested);
         }
-    }
-
-    private void closeConnection(SocketChannel client) throws IOException {
-        System.out.println("Connection Closed: " + client.getRemoteAddress());
-        clientBuffers.remove(client);
-        connectedClients.decrementAndGet();
-        client.close();
-
+        return new NioTransport(metrics);
     }
 
     public static void main(String[] args) throws IOException {
         new KanRedisServer(6379).start();
     }
-}
\ No newline at end of file
+}
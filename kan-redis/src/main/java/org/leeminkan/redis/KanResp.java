@@ -0,0 +1,878 @@
+package org.leeminkan.redis;
+
+import org.leeminkan.redis.metrics.KanHotKeys;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.pubsub.KanPubSub;
+import org.leeminkan.redis.tracking.KanTracking;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KanResp
+ * A RESP2/RESP3 front-end on the same store as KanProtocol, so redis-cli, redis-benchmark and
+ * Lettuce can talk to Kan-Redis (ADR-006).
+ *
+ * Which protocol a connection speaks is decided by its first byte ({@link #isResp}): every Kan
+ * command code is below 32, while RESP starts with '*' (an array of bulk strings) or with a
+ * letter (an inline command, "PING\r\n"). HELLO 3 switches the connection to RESP3.
+ *
+ * The steady state allocates nothing beyond what the store API takes (the key String and a
+ * SET value's byte[], exactly like the Kan protocol):
+ * - Arguments are (offset, length) pairs into the input buffer, kept in the connection's
+ *   {@link State}. It grows once for a long command and is reused for every later one.
+ * - Command names are matched against byte constants, case-insensitively, with no String.
+ * - Numbers are parsed from, and written as, ASCII digits in place.
+ * Same contract as {@link KanProtocol#process}: false (and nothing consumed) until a whole
+ * command has arrived.
+ */
+public final class KanResp {
+
+    private static final int INCOMPLETE = -1;
+    private static final int MALFORMED = -2;
+    private static final int MAX_ARGUMENTS = 1 << 20;
+    // Argument slots a connection keeps between commands; a bigger command's arrays are dropped after it
+    private static final int RETAINED_ARGUMENTS = 1024;
+    private static final int MAX_INLINE = 64 * 1024;
+    private static final int MAX_HEADER_DIGITS = 20;
+
+    // Command names, upper case
+    private static final byte[] GET = ascii("GET");
+    private static final byte[] SET = ascii("SET");
+    private static final byte[] MGET = ascii("MGET");
+    private static final byte[] MSET = ascii("MSET");
+    private static final byte[] DEL = ascii("DEL");
+    private static final byte[] EXISTS = ascii("EXISTS");
+    private static final byte[] INCR = ascii("INCR");
+    private static final byte[] INCRBY = ascii("INCRBY");
+    private static final byte[] DECR = ascii("DECR");
+    private static final byte[] DECRBY = ascii("DECRBY");
+    private static final byte[] HSET = ascii("HSET");
+    private static final byte[] HGET = ascii("HGET");
+    private static final byte[] HDEL = ascii("HDEL");
+    private static final byte[] HGETALL = ascii("HGETALL");
+    private static final byte[] ZADD = ascii("ZADD");
+    private static final byte[] ZREM = ascii("ZREM");
+    private static final byte[] ZRANGE = ascii("ZRANGE");
+    private static final byte[] WITHSCORES = ascii("WITHSCORES");
+    private static final byte[] PUBLISH = ascii("PUBLISH");
+    private static final byte[] SUBSCRIBE = ascii("SUBSCRIBE");
+    private static final byte[] PSUBSCRIBE = ascii("PSUBSCRIBE");
+    private static final byte[] PING = ascii("PING");
+    private static final byte[] ECHO = ascii("ECHO");
+    private static final byte[] HELLO = ascii("HELLO");
+    private static final byte[] SELECT = ascii("SELECT");
+    private static final byte[] CLIENT = ascii("CLIENT");
+    private static final byte[] COMMAND = ascii("COMMAND");
+    private static final byte[] CONFIG = ascii("CONFIG");
+    private static final byte[] QUIT = ascii("QUIT");
+    private static final byte[] MEMORY = ascii("MEMORY");
+    private static final byte[] STATS = ascii("STATS");
+    private static final byte[] LEAKS = ascii("LEAKS");
+    private static final byte[] HOTKEYS = ascii("HOTKEYS");
+
+    // Whole replies, encoded once
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final ByteBuffer CRLF_FRAME = ByteBuffer.wrap(CRLF).asReadOnlyBuffer();
+    private static final byte[] OK = ascii("+OK\r\n");
+    private static final byte[] PONG = ascii("+PONG\r\n");
+    private static final byte[] NULL_BULK = ascii("$-1\r\n");
+    private static final byte[] NULL_RESP3 = ascii("_\r\n");
+    private static final byte[] EMPTY_ARRAY = ascii("*0\r\n");
+    private static final byte[] EMPTY_MAP = ascii("%0\r\n");
+    private static final byte[] ERR_PROTOCOL = ascii("-ERR Protocol error\r\n");
+    private static final byte[] ERR_ARITY = ascii("-ERR wrong number of arguments\r\n");
+    private static final byte[] ERR_SYNTAX = ascii("-ERR syntax error\r\n");
+    private static final byte[] ERR_SET_OPTIONS = ascii("-ERR SET options (EX, PX, NX, XX...) are not supported\r\n");
+    private static final byte[] ERR_NOT_INTEGER = ascii("-ERR value is not an integer or out of range\r\n");
+    private static final byte[] ERR_NOT_FLOAT = ascii("-ERR value is not a valid float\r\n");
+    private static final byte[] ERR_OVERFLOW = ascii("-ERR increment or decrement would overflow\r\n");
+    private static final byte[] ERR_WRONGTYPE = ascii("-WRONGTYPE Operation against a key holding the wrong kind of value\r\n");
+    private static final byte[] ERR_TOO_LARGE = ascii("-ERR reply too large for the response buffer\r\n");
+    private static final byte[] ERR_DB_INDEX = ascii("-ERR DB index is out of range\r\n");
+    private static final byte[] ERR_NOPROTO = ascii("-NOPROTO unsupported protocol version\r\n");
+    private static final byte[] ERR_SUBSCRIBE = ascii("-ERR Pub/Sub subscriptions need the Kan protocol (PUBLISH works)\r\n");
+    private static final byte[] ERR_UNKNOWN = ascii("-ERR unknown command '");
+    private static final byte[] HELLO_2 = hello(2);
+    private static final byte[] HELLO_3 = hello(3);
+
+    /** Per-connection parser state: one per RESP connection, reused for every command. */
+    public static final class State {
+        int version = 2; // RESP2 until HELLO 3
+        int[] start = new int[8];
+        int[] length = new int[8];
+        int count;
+        long number; // Result of the last parseLong()
+        // Kan-format output of HGET/HGETALL/ZRANGE, re-encoded as RESP (allocated on first use)
+        ByteBuffer scratch;
+
+        private void ensureArguments(int needed) {
+            if (needed > start.length) {
+                int size = Math.max(needed, start.length * 2);
+                start = java.util.Arrays.copyOf(start, size);
+                length = java.util.Arrays.copyOf(length, size);
+            }
+        }
+
+        // After a command with many arguments (MSET, a wide HSET): back to the small arrays
+        private void releaseArguments() {
+            if (start.length > RETAINED_ARGUMENTS) {
+                start = new int[8];
+                length = new int[8];
+            }
+        }
+
+        private ByteBuffer scratch(int capacity) {
+            if (scratch == null || scratch.capacity() < capacity) {
+                scratch = ByteBuffer.allocate(capacity);
+            }
+            return scratch.clear();
+        }
+    }
+
+    private final KanStore store;
+    private final KanMetrics metrics;
+    private final KanHotKeys hotKeys;
+    private final KanPubSub pubSub;
+    private final KanTracking tracking;
+    private final KanMemory memory;
+
+    KanResp(KanStore store, KanMetrics metrics, KanPubSub pubSub, KanTracking tracking, KanMemory memory) {
+        this.store = store;
+        this.metrics = metrics;
+        this.hotKeys = metrics.hotKeys();
+        this.pubSub = pubSub;
+        this.tracking = tracking;
+        this.memory = memory;
+    }
+
+    /** Decides a connection's protocol from its first byte: Kan command codes are all below 32. */
+    public static boolean isResp(byte firstByte) {
+        return firstByte >= 32;
+    }
+
+    /**
+     * Processes one RESP command from {@code in} (array or inline form).
+     * @return false if the command hasn't fully arrived: nothing was consumed
+     */
+    public boolean process(ByteBuffer in, ByteBuffer out, KanSession session, State state) {
+        if (!in.hasRemaining()) {
+            return false;
+        }
+        int end = in.get(in.position()) == '*' ? parseArray(in, state) : parseInline(in, state);
+        if (end == INCOMPLETE) {
+            return false;
+        }
+        if (end == MALFORMED) {
+            // No way to find the next command boundary: drop what's buffered (Redis closes instead)
+            out.put(ERR_PROTOCOL);
+            in.position(in.limit());
+            state.releaseArguments();
+            return true;
+        }
+        in.position(end);
+        if (state.count == 0) {
+            return true; // Empty line or "*0": Redis answers nothing either
+        }
+
+        metrics.recordCommand();
+        int replyStart = out.position();
+        try {
+            execute(in, out, session, state);
+        } catch (BufferOverflowException e) {
+            out.position(replyStart);
+            out.put(ERR_TOO_LARGE);
+        } catch (WrongTypeException e) {
+            out.position(replyStart);
+            out.put(ERR_WRONGTYPE);
+        }
+        if (state.count >= 2 && hotKeys.sample()) {
+            sampleKey(in, state);
+        }
+        state.releaseArguments();
+        return true;
+    }
+
+    // HOTKEYS: counts the first key of a sampled command, in place (its bytes are still in the buffer)
+    private void sampleKey(ByteBuffer in, State s) {
+        boolean write;
+        if (is(in, s, 0, GET) || is(in, s, 0, MGET) || is(in, s, 0, EXISTS) || is(in, s, 0, HGET)
+                || is(in, s, 0, HGETALL) || is(in, s, 0, ZRANGE)) {
+            write = false;
+        } else if (is(in, s, 0, SET) || is(in, s, 0, MSET) || is(in, s, 0, DEL) || is(in, s, 0, INCR)
+                || is(in, s, 0, INCRBY) || is(in, s, 0, DECR) || is(in, s, 0, DECRBY) || is(in, s, 0, HSET)
+                || is(in, s, 0, HDEL) || is(in, s, 0, ZADD) || is(in, s, 0, ZREM)) {
+            write = true;
+        } else {
+            return; // No key (PING, PUBLISH's channel, HELLO...)
+        }
+        if (s.length[1] > 0) {
+            hotKeys.record(write, in, s.start[1], s.length[1]);
+        }
+    }
+
+    // --- Parsing: absolute reads only, the position moves once the whole command is there ---
+
+    // "*<n>\r\n" then n x "$<len>\r\n<bytes>\r\n". Returns the position after it, or INCOMPLETE/MALFORMED
+    private static int parseArray(ByteBuffer in, State state) {
+        int limit = in.limit();
+        int lineEnd = findLineEnd(in, in.position() + 1, limit);
+        if (lineEnd < 0) {
+            return lineEnd;
+        }
+        long count = parseDigits(in, in.position() + 1, lineEnd);
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            return MALFORMED;
+        }
+        // Slots grow with the arguments that have actually arrived, not with the "*<n>" header:
+        // a header alone must not make a connection allocate 8 bytes per announced argument
+        int p = lineEnd + 2;
+        for (int i = 0; i < count; i++) {
+            if (p >= limit) {
+                return INCOMPLETE;
+            }
+            if (in.get(p) != '$') {
+                return MALFORMED;
+            }
+            lineEnd = findLineEnd(in, p + 1, limit);
+            if (lineEnd < 0) {
+                return lineEnd;
+            }
+            long length = parseDigits(in, p + 1, lineEnd);
+            if (length < 0 || length > KanProtocol.MAX_VALUE_SIZE) {
+                return MALFORMED;
+            }
+            int dataStart = lineEnd + 2;
+            if (dataStart + length + 2 > limit) {
+                return INCOMPLETE;
+            }
+            int dataEnd = dataStart + (int) length;
+            if (in.get(dataEnd) != '\r' || in.get(dataEnd + 1) != '\n') {
+                return MALFORMED;
+            }
+            state.ensureArguments(i + 1);
+            state.start[i] = dataStart;
+            state.length[i] = (int) length;
+            p = dataEnd + 2;
+        }
+        state.count = (int) count;
+        return p;
+    }
+
+    // "PING\r\n", "SET k v\n": words separated by spaces (no quoting), what telnet and PING_INLINE send
+    private static int parseInline(ByteBuffer in, State state) {
+        int limit = in.limit();
+        int newline = -1;
+        for (int p = in.position(); p < limit; p++) {
+            if (in.get(p) == '\n') {
+                newline = p;
+                break;
+            }
+        }
+        if (newline < 0) {
+            return limit - in.position() > MAX_INLINE ? MALFORMED : INCOMPLETE;
+        }
+        int end = newline > in.position() && in.get(newline - 1) == '\r' ? newline - 1 : newline;
+        int count = 0;
+        int p = in.position();
+        while (p < end) {
+            while (p < end && isBlank(in.get(p))) {
+                p++;
+            }
+            if (p == end) {
+                break;
+            }
+            int wordStart = p;
+            while (p < end && !isBlank(in.get(p))) {
+                p++;
+            }
+            state.ensureArguments(count + 1);
+            state.start[count] = wordStart;
+            state.length[count] = p - wordStart;
+            count++;
+        }
+        state.count = count;
+        return newline + 1;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    // Index of the '\r' ending a header line that starts at 'from'
+    private static int findLineEnd(ByteBuffer in, int from, int limit) {
+        int max = Math.min(limit - 1, from + MAX_HEADER_DIGITS + 1);
+        for (int p = from; p < max; p++) {
+            if (in.get(p) == '\r') {
+                return in.get(p + 1) == '\n' ? p : MALFORMED;
+            }
+        }
+        return limit - from > MAX_HEADER_DIGITS + 1 ? MALFORMED : INCOMPLETE;
+    }
+
+    // Non-negative decimal in [from, to), or -1
+    private static long parseDigits(ByteBuffer in, int from, int to) {
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int p = from; p < to; p++) {
+            int digit = in.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // --- Commands ---
+
+    private void execute(ByteBuffer in, ByteBuffer out, KanSession session, State s) {
+        int argc = s.count;
+        if (is(in, s, 0, GET)) {
+            if (argc != 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            writeValue(store.get(string(in, s, 1)), out, session, s, false);
+        } else if (is(in, s, 0, SET)) {
+            if (argc != 3) {
+                out.put(argc > 3 ? ERR_SET_OPTIONS : ERR_ARITY);
+                return;
+            }
+            String key = string(in, s, 1);
+            store.set(key, bytes(in, s, 2));
+            tracking.keyModified(key);
+            out.put(OK);
+        } else if (is(in, s, 0, INCR) || is(in, s, 0, DECR)) {
+            if (argc != 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            increment(string(in, s, 1), is(in, s, 0, INCR) ? 1 : -1, out);
+        } else if (is(in, s, 0, INCRBY) || is(in, s, 0, DECRBY)) {
+            if (argc != 3) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            if (!parseLong(in, s, 2)) {
+                out.put(ERR_NOT_INTEGER);
+                return;
+            }
+            long delta;
+            try {
+                delta = is(in, s, 0, INCRBY) ? s.number : Math.negateExact(s.number);
+            } catch (ArithmeticException e) {
+                out.put(ERR_OVERFLOW);
+                return;
+            }
+            increment(string(in, s, 1), delta, out);
+        } else if (is(in, s, 0, MGET)) {
+            if (argc < 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            writeArrayHeader(out, argc - 1);
+            for (int i = 1; i < argc; i++) {
+                writeValue(store.get(string(in, s, i)), out, null, s, true);
+            }
+        } else if (is(in, s, 0, MSET)) {
+            mset(in, out, s);
+        } else if (is(in, s, 0, DEL)) {
+            if (argc < 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            int deleted = 0;
+            for (int i = 1; i < argc; i++) {
+                String key = string(in, s, i);
+                if (store.delete(key)) {
+                    tracking.keyModified(key);
+                    deleted++;
+                }
+            }
+            writeInteger(out, deleted);
+        } else if (is(in, s, 0, EXISTS)) {
+            if (argc < 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            int found = 0;
+            for (int i = 1; i < argc; i++) {
+                if (store.get(string(in, s, i)) != null) {
+                    found++;
+                }
+            }
+            writeInteger(out, found);
+        } else if (is(in, s, 0, HSET)) {
+            if (argc < 4 || argc % 2 != 0) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            String key = string(in, s, 1);
+            int created = 0;
+            for (int i = 2; i < argc; i += 2) {
+                if (store.hset(key, bytes(in, s, i), bytes(in, s, i + 1))) {
+                    created++;
+                }
+            }
+            tracking.keyModified(key);
+            writeInteger(out, created);
+        } else if (is(in, s, 0, HGET)) {
+            if (argc != 3) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            ByteBuffer kan = s.scratch(out.capacity());
+            ByteBuffer tooLarge = store.hget(string(in, s, 1), bytes(in, s, 2), kan);
+            if (tooLarge != null) {
+                if (session == null || !session.attach(tooLarge, CRLF_FRAME.duplicate())) {
+                    throw new BufferOverflowException();
+                }
+                writeHeader(out, '$', tooLarge.remaining()); // Sent by the transport, like a large GET
+                return;
+            }
+            int length = kan.getInt(0);
+            if (length == 0) {
+                writeNull(out, s); // The Kan format can't tell a missing field from an empty value
+            } else {
+                writeBulk(out, kan, 4, length);
+            }
+        } else if (is(in, s, 0, HDEL)) {
+            if (argc < 3) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            String key = string(in, s, 1);
+            int deleted = 0;
+            for (int i = 2; i < argc; i++) {
+                if (store.hdel(key, bytes(in, s, i))) {
+                    deleted++;
+                }
+            }
+            tracking.keyModified(key);
+            writeInteger(out, deleted);
+        } else if (is(in, s, 0, HGETALL)) {
+            if (argc != 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            hgetAll(string(in, s, 1), out, s);
+        } else if (is(in, s, 0, ZADD)) {
+            zadd(in, out, s);
+        } else if (is(in, s, 0, ZREM)) {
+            if (argc < 3) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            String key = string(in, s, 1);
+            int removed = 0;
+            for (int i = 2; i < argc; i++) {
+                if (store.zrem(key, bytes(in, s, i))) {
+                    removed++;
+                }
+            }
+            tracking.keyModified(key);
+            writeInteger(out, removed);
+        } else if (is(in, s, 0, ZRANGE)) {
+            zrange(in, out, s);
+        } else if (is(in, s, 0, PUBLISH)) {
+            if (argc != 3) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            writeInteger(out, pubSub.publish(string(in, s, 1), bytes(in, s, 2)));
+        } else if (is(in, s, 0, SUBSCRIBE) || is(in, s, 0, PSUBSCRIBE)) {
+            out.put(ERR_SUBSCRIBE);
+        } else if (is(in, s, 0, PING)) {
+            if (argc == 1) {
+                out.put(PONG);
+            } else {
+                writeBulk(out, in, s.start[1], s.length[1]);
+            }
+        } else if (is(in, s, 0, ECHO)) {
+            if (argc != 2) {
+                out.put(ERR_ARITY);
+                return;
+            }
+            writeBulk(out, in, s.start[1], s.length[1]);
+        } else if (is(in, s, 0, HELLO)) {
+            hello(in, out, s);
+        } else if (is(in, s, 0, SELECT)) {
+            if (argc != 2) {
+                out.put(ERR_ARITY);
+            } else {
+                out.put(parseLong(in, s, 1) && s.number == 0 ? OK : ERR_DB_INDEX);
+            }
+        } else if (is(in, s, 0, CLIENT) || is(in, s, 0, QUIT)) {
+            out.put(OK); // SETNAME, SETINFO...: accepted and ignored
+        } else if (is(in, s, 0, COMMAND)) {
+            out.put(EMPTY_ARRAY); // No command table: clients fall back to their defaults
+        } else if (is(in, s, 0, MEMORY)) {
+            memory(in, out, s);
+        } else if (is(in, s, 0, HOTKEYS)) {
+            hotKeys(in, out, s);
+        } else if (is(in, s, 0, CONFIG)) {
+            out.put(s.version == 3 ? EMPTY_MAP : EMPTY_ARRAY); // CONFIG GET (redis-benchmark asks at startup)
+        } else {
+            out.put(ERR_UNKNOWN);
+            out.put(out.position(), in, s.start[0], Math.min(s.length[0], 64));
+            out.position(out.position() + Math.min(s.length[0], 64));
+            out.put((byte) '\'');
+            out.put(CRLF);
+        }
+    }
+
+    // GET / MGET. MGET answers nil for non-string keys (as Redis does) and never attaches
+    private void writeValue(MemorySegment entry, ByteBuffer out, KanSession session, State s, boolean nilIfWrongType) {
+        if (entry == null) {
+            writeNull(out, s);
+            return;
+        }
+        if (!KanEntry.isReadable(entry)) {
+            if (nilIfWrongType) {
+                writeNull(out, s);
+                return;
+            }
+            throw new WrongTypeException("");
+        }
+        if (KanEntry.type(entry) == KanEntry.TYPE_INTEGER) {
+            long counter = KanEntry.getCounter(entry);
+            writeHeader(out, '$', KanEntry.decimalLength(counter));
+            KanEntry.writeDigits(out, counter);
+            out.put(CRLF);
+            return;
+        }
+        long length = KanEntry.valueLength(entry);
+        if (KanEntry.decimalLength(length) + 3 + length + 2 <= out.remaining()) {
+            writeHeader(out, '$', length);
+            KanEntry.writeStringBytes(entry, out);
+            out.put(CRLF);
+        } else if (session != null && session.attach(KanEntry.valueView(entry), CRLF_FRAME.duplicate())) {
+            writeHeader(out, '$', length); // The transport sends the value, then the CRLF (ADR-003)
+        } else {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private void increment(String key, long delta, ByteBuffer out) {
+        try {
+            long value = store.incrementBy(key, delta);
+            tracking.keyModified(key);
+            writeInteger(out, value);
+        } catch (NumberFormatException e) {
+            out.put(ERR_NOT_INTEGER);
+        } catch (ArithmeticException e) {
+            out.put(ERR_OVERFLOW);
+        }
+    }
+
+    // MSET is atomic in Redis: all keys locked together, like EXEC
+    private void mset(ByteBuffer in, ByteBuffer out, State s) {
+        if (s.count < 3 || s.count % 2 == 0) {
+            out.put(ERR_ARITY);
+            return;
+        }
+        List<String> keys = new ArrayList<>(s.count / 2);
+        for (int i = 1; i < s.count; i += 2) {
+            keys.add(string(in, s, i));
+        }
+        store.atomically(keys, () -> {
+            for (int i = 1; i < s.count; i += 2) {
+                store.set(keys.get(i / 2), bytes(in, s, i + 1));
+            }
+            return null;
+        });
+        for (String key : keys) {
+            tracking.keyModified(key);
+        }
+        out.put(OK);
+    }
+
+    // Kan format: [Len][Count] then [FieldLen][Field][ValueLen][Value] per field
+    private void hgetAll(String key, ByteBuffer out, State s) {
+        ByteBuffer kan = s.scratch(out.capacity());
+        if (store.hgetAll(key, kan) != null) {
+            throw new BufferOverflowException(); // Can't fit in the reply once re-encoded either
+        }
+        int count = kan.getInt(4);
+        if (s.version == 3) {
+            writeHeader(out, '%', count);
+        } else {
+            writeArrayHeader(out, count * 2);
+        }
+        int p = 8;
+        for (int i = 0; i < count * 2; i++) {
+            int length = kan.getInt(p);
+            writeBulk(out, kan, p + 4, length);
+            p += 4 + length;
+        }
+    }
+
+    // ZADD key score member [score member ...]: no NX/XX/GT/LT/CH/INCR options
+    private void zadd(ByteBuffer in, ByteBuffer out, State s) {
+        if (s.count < 4 || s.count % 2 != 0) {
+            out.put(s.count >= 4 ? ERR_SYNTAX : ERR_ARITY);
+            return;
+        }
+        for (int i = 2; i < s.count; i += 2) {
+            if (Double.isNaN(parseDouble(in, s, i))) {
+                out.put(ERR_NOT_FLOAT);
+                return;
+            }
+        }
+        String key = string(in, s, 1);
+        int added = 0;
+        for (int i = 2; i < s.count; i += 2) {
+            if (store.zadd(key, parseDouble(in, s, i), bytes(in, s, i + 1))) {
+                added++;
+            }
+        }
+        tracking.keyModified(key);
+        writeInteger(out, added);
+    }
+
+    // ZRANGE key start stop [WITHSCORES]. Kan format: [Len][Count] then [MemberLen][Member][Score]
+    private void zrange(ByteBuffer in, ByteBuffer out, State s) {
+        boolean withScores = s.count == 5 && is(in, s, 4, WITHSCORES);
+        if (s.count != 4 && !withScores) {
+            out.put(s.count > 4 ? ERR_SYNTAX : ERR_ARITY);
+            return;
+        }
+        if (!parseLong(in, s, 2)) {
+            out.put(ERR_NOT_INTEGER);
+            return;
+        }
+        long start = s.number;
+        if (!parseLong(in, s, 3)) {
+            out.put(ERR_NOT_INTEGER);
+            return;
+        }
+        ByteBuffer kan = s.scratch(out.capacity());
+        store.zrange(string(in, s, 1), start, s.number, kan);
+        int count = kan.getInt(4);
+        // RESP2: a flat list, scores as strings. RESP3: [member, score] pairs, scores as doubles
+        writeArrayHeader(out, withScores && s.version == 2 ? count * 2 : count);
+        int p = 8;
+        for (int i = 0; i < count; i++) {
+            int length = kan.getInt(p);
+            if (withScores && s.version == 3) {
+                writeArrayHeader(out, 2);
+            }
+            writeBulk(out, kan, p + 4, length);
+            p += 4 + length;
+            if (withScores) {
+                writeDouble(out, kan.getDouble(p), s);
+            }
+            p += Double.BYTES;
+        }
+    }
+
+    // MEMORY STATS: name/value pairs (a map in RESP3), like Redis. MEMORY LEAKS: the text report
+    private void memory(ByteBuffer in, ByteBuffer out, State s) {
+        if (s.count == 2 && is(in, s, 1, STATS)) {
+            KanMemory.Report report = memory.report();
+            long[] values = report.values();
+            if (s.version == 3) {
+                writeHeader(out, '%', values.length);
+            } else {
+                writeArrayHeader(out, values.length * 2);
+            }
+            for (int i = 0; i < values.length; i++) {
+                byte[] name = ascii(KanMemory.Report.FIELDS.get(i));
+                writeBulk(out, ByteBuffer.wrap(name), 0, name.length);
+                writeInteger(out, values[i]);
+            }
+        } else if (s.count == 2 && is(in, s, 1, LEAKS)) {
+            byte[] text = ascii(memory.leakReport(KanProtocol.MEMORY_LEAK_SITES));
+            writeBulk(out, ByteBuffer.wrap(text), 0, Math.min(text.length, out.remaining() - 32));
+        } else {
+            out.put(ERR_SYNTAX);
+        }
+    }
+
+    // HOTKEYS [count]: the text report, like MEMORY LEAKS
+    private void hotKeys(ByteBuffer in, ByteBuffer out, State s) {
+        long count = KanProtocol.HOTKEYS_DEFAULT_COUNT;
+        if (s.count > 2) {
+            out.put(ERR_ARITY);
+            return;
+        }
+        if (s.count == 2) {
+            if (!parseLong(in, s, 1) || s.number < 1) {
+                out.put(ERR_NOT_INTEGER);
+                return;
+            }
+            count = Math.min(s.number, KanHotKeys.TOP_K);
+        }
+        byte[] text = hotKeys.format((int) count).getBytes(StandardCharsets.UTF_8);
+        writeBulk(out, ByteBuffer.wrap(text), 0, Math.min(text.length, out.remaining() - 32));
+    }
+
+    // HELLO [protover [AUTH user pass] [SETNAME name]]: options are accepted and ignored
+    private static void hello(ByteBuffer in, ByteBuffer out, State s) {
+        if (s.count >= 2) {
+            if (!parseLong(in, s, 1) || (s.number != 2 && s.number != 3)) {
+                out.put(ERR_NOPROTO);
+                return;
+            }
+            s.version = (int) s.number;
+        }
+        out.put(s.version == 3 ? HELLO_3 : HELLO_2);
+    }
+
+    // --- Arguments ---
+
+    // Case-insensitive match of argument 'arg' against an upper-case name
+    private static boolean is(ByteBuffer in, State s, int arg, byte[] name) {
+        if (s.length[arg] != name.length) {
+            return false;
+        }
+        int start = s.start[arg];
+        for (int i = 0; i < name.length; i++) {
+            if ((in.get(start + i) & 0xDF) != name[i]) { // 0xDF clears the lower-case bit
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(ByteBuffer in, State s, int arg) {
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + s.start[arg], s.length[arg], StandardCharsets.UTF_8);
+        }
+        return new String(bytes(in, s, arg), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer in, State s, int arg) {
+        byte[] bytes = new byte[s.length[arg]];
+        in.get(s.start[arg], bytes);
+        return bytes;
+    }
+
+    // Signed decimal into s.number, without a String. False if it isn't one (or overflows)
+    private static boolean parseLong(ByteBuffer in, State s, int arg) {
+        int p = s.start[arg];
+        int end = p + s.length[arg];
+        boolean negative = p < end && in.get(p) == '-';
+        if (negative) {
+            p++;
+        }
+        if (p == end || end - p > 19) {
+            return false;
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            int digit = in.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            // Accumulate negatively: Long.MIN_VALUE has no positive counterpart
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                return false;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            return false;
+        }
+        s.number = negative ? value : -value;
+        return true;
+    }
+
+    // ZADD scores are rare enough to go through a String; NaN means "not a float"
+    private static double parseDouble(ByteBuffer in, State s, int arg) {
+        String text = string(in, s, arg);
+        switch (text.toLowerCase()) {
+            case "inf", "+inf" -> {
+                return Double.POSITIVE_INFINITY;
+            }
+            case "-inf" -> {
+                return Double.NEGATIVE_INFINITY;
+            }
+            default -> {
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            }
+        }
+    }
+
+    // --- Reply encoding, straight into the response buffer ---
+
+    private static void writeHeader(ByteBuffer out, char type, long value) {
+        out.put((byte) type);
+        KanEntry.writeDigits(out, value);
+        out.put(CRLF);
+    }
+
+    private static void writeInteger(ByteBuffer out, long value) {
+        writeHeader(out, ':', value);
+    }
+
+    private static void writeArrayHeader(ByteBuffer out, int count) {
+        writeHeader(out, '*', count);
+    }
+
+    private static void writeNull(ByteBuffer out, State s) {
+        out.put(s.version == 3 ? NULL_RESP3 : NULL_BULK);
+    }
+
+    private static void writeBulk(ByteBuffer out, ByteBuffer src, int offset, int length) {
+        writeHeader(out, '$', length);
+        out.put(out.position(), src, offset, length);
+        out.position(out.position() + length);
+        out.put(CRLF);
+    }
+
+    // Whole numbers the way Redis prints them ("3", not "3.0")
+    private static void writeDouble(ByteBuffer out, double value, State s) {
+        byte[] text;
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text = null;
+        } else if (Double.isInfinite(value)) {
+            text = ascii(value > 0 ? "inf" : "-inf");
+        } else {
+            text = ascii(Double.toString(value));
+        }
+        if (s.version == 3) {
+            out.put((byte) ',');
+        } else {
+            writeHeader(out, '$', text == null ? KanEntry.decimalLength((long) value) : text.length);
+        }
+        if (text == null) {
+            KanEntry.writeDigits(out, (long) value);
+        } else {
+            out.put(text);
+        }
+        out.put(CRLF);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // The HELLO reply: a map in RESP3, the same pairs as a flat array in RESP2
+    private static byte[] hello(int version) {
+        String[][] fields = {{"server", "$kan-redis"}, {"version", "$1.0.0"}, {"proto", ":" + version},
+                {"id", ":0"}, {"mode", "$standalone"}, {"role", "$master"}, {"modules", "*0"}};
+        StringBuilder reply = new StringBuilder(version == 3 ? "%" + fields.length : "*" + fields.length * 2).append("\r\n");
+        for (String[] field : fields) {
+            reply.append('$').append(field[0].length()).append("\r\n").append(field[0]).append("\r\n");
+            String value = field[1];
+            if (value.charAt(0) == '$') {
+                reply.append('$').append(value.length() - 1).append("\r\n").append(value, 1, value.length()).append("\r\n");
+            } else {
+                reply.append(value).append("\r\n");
+            }
+        }
+        return ascii(reply.toString());
+    }
+}
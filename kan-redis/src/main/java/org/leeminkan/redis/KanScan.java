@@ -0,0 +1,198 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KanScan
+ * Cursor-based key iteration (SCAN cursor [MATCH pattern] [COUNT n]).
+ *
+ * Redis encodes its position in the hash table into the cursor itself. A ConcurrentHashMap
+ * does not expose its buckets, so instead the cursor is a handle to a server-side
+ * iterator over {@code store.keySet()}:
+ *
+ * - Weakly consistent: CHM iterators never throw ConcurrentModificationException and
+ *   tolerate concurrent resizes. A key present for the whole scan is returned exactly once;
+ *   keys added or removed during the scan may or may not be returned.
+ * - Bounded: each call examines at most COUNT keys (and never more than fit in the response),
+ *   so scanning 100M keys is many short calls instead of one long KEYS-style pause.
+ *
+ * Cursors are cheap but not free, so at most {@link #MAX_CURSORS} are kept: a client that
+ * abandons a scan just lets its cursor age out. Using an expired cursor returns an error,
+ * and the client starts again from cursor 0.
+ */
+final class KanScan {
+
+    static final int DEFAULT_COUNT = 10;
+    static final int MAX_COUNT = 10_000;
+    static final int MAX_CURSORS = 1024;
+
+    private final ConcurrentHashMap<String, MemorySegment> store;
+    private final AtomicLong nextCursorId = new AtomicLong();
+
+    // Oldest cursor is evicted first. Guarded by "this" (tiny critical sections: get/put/remove)
+    private final Map<Long, Cursor> cursors = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Cursor> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+
+    private static final class Cursor {
+        final Iterator<String> keys;
+        String pending; // Examined and matched, but did not fit in the previous response
+
+        Cursor(Iterator<String> keys) {
+            this.keys = keys;
+        }
+    }
+
+    KanScan(ConcurrentHashMap<String, MemorySegment> store) {
+        this.store = store;
+    }
+
+    /**
+     * Runs one SCAN step and writes the response:
+     * [Len][NextCursor (Long)][Count (Int)] then [KeyLen][Key] per key. NextCursor 0 = scan complete.
+     *
+     * @throws IllegalArgumentException if the cursor is unknown or expired
+     */
+    void scan(long cursorId, String pattern, int count, ByteBuffer out) {
+        Cursor cursor;
+        if (cursorId == 0) {
+            cursor = new Cursor(store.keySet().iterator());
+        } else {
+            // Claim the cursor: two clients can't advance the same iterator at once
+            synchronized (this) {
+                cursor = cursors.remove(cursorId);
+            }
+            if (cursor == null) {
+                throw new IllegalArgumentException("ERR invalid cursor");
+            }
+        }
+
+        int lengthAt = out.position();
+        out.putInt(0); // [Len], patched below
+        int cursorAt = out.position();
+        out.putLong(0); // [NextCursor], patched below
+        int countAt = out.position();
+        out.putInt(0); // [Count], patched below
+
+        int budget = Math.min(Math.max(count, 1), MAX_COUNT);
+        int written = 0;
+        boolean full = false;
+        while (budget > 0 && !full && (cursor.pending != null || cursor.keys.hasNext())) {
+            String key = cursor.pending;
+            cursor.pending = null;
+            if (key == null) {
+                key = cursor.keys.next();
+                budget--;
+                if (pattern != null && !globMatches(pattern, key)) {
+                    continue;
+                }
+            }
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < 4 + keyBytes.length) {
+                cursor.pending = key; // Response is full: send it first thing next call
+                full = true;
+            } else {
+                out.putInt(keyBytes.length);
+                out.put(keyBytes);
+                written++;
+            }
+        }
+
+        long nextCursor = 0;
+        if (cursor.pending != null || cursor.keys.hasNext()) {
+            nextCursor = nextCursorId.incrementAndGet();
+            synchronized (this) {
+                cursors.put(nextCursor, cursor);
+            }
+        }
+        out.putLong(cursorAt, nextCursor);
+        out.putInt(countAt, written);
+        out.putInt(lengthAt, out.position() - lengthAt - 4);
+    }
+
+    /**
+     * Redis-style glob: '*' any run, '?' any one char, [abc] / [a-z] / [^a] classes, '\' escapes.
+     * Iterative with single-star backtracking, so it is linear-ish and can't blow the stack.
+     */
+    static boolean globMatches(String pattern, String text) {
+        int p = 0;
+        int t = 0;
+        int starP = -1;
+        int starT = -1;
+        while (t < text.length()) {
+            if (p < pattern.length()) {
+                char c = pattern.charAt(p);
+                if (c == '*') {
+                    starP = p++;
+                    starT = t;
+                    continue;
+                }
+                int next = matchOne(pattern, p, text.charAt(t));
+                if (next >= 0) {
+                    p = next;
+                    t++;
+                    continue;
+                }
+            }
+            if (starP < 0) {
+                return false;
+            }
+            // Let the last '*' swallow one more character and retry
+            p = starP + 1;
+            t = ++starT;
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    // Matches one pattern element at p against ch: returns the index after the element, or -1
+    private static int matchOne(String pattern, int p, char ch) {
+        char c = pattern.charAt(p);
+        if (c == '?') {
+            return p + 1;
+        }
+        if (c == '\\' && p + 1 < pattern.length()) {
+            return pattern.charAt(p + 1) == ch ? p + 2 : -1;
+        }
+        if (c != '[') {
+            return c == ch ? p + 1 : -1;
+        }
+
+        int i = p + 1;
+        boolean negate = i < pattern.length() && pattern.charAt(i) == '^';
+        if (negate) {
+            i++;
+        }
+        boolean matched = false;
+        while (i < pattern.length() && pattern.charAt(i) != ']') {
+            char from = pattern.charAt(i);
+            if (from == '\\' && i + 1 < pattern.length()) {
+                from = pattern.charAt(++i);
+            }
+            if (i + 2 < pattern.length() && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+                char to = pattern.charAt(i + 2);
+                matched |= ch >= Math.min(from, to) && ch <= Math.max(from, to);
+                i += 3;
+            } else {
+                matched |= ch == from;
+                i++;
+            }
+        }
+        if (i >= pattern.length()) {
+            return c == ch ? p + 1 : -1; // Unterminated '[' is a literal, like Redis
+        }
+        return matched != negate ? i + 1 : -1;
+    }
+}
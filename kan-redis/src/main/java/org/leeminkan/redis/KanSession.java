@@ -0,0 +1,51 @@
+package org.leeminkan.redis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * KanSession
+ * One client connection, as seen by the protocol. Request/response traffic does not need it,
+ * but server-initiated frames do (Pub/Sub messages): the transport implements {@link #push}
+ * on top of its own non-blocking write path.
+ */
+public interface KanSession {
+
+    /** Push frame marker, in the [Len] slot where responses carry their length (-1 = error). */
+    int PUSH_MARKER = -2;
+
+    // Push kinds: [Marker][PushLen][Kind][...]
+    byte PUSH_MESSAGE = 1;    // Pub/Sub message
+    byte PUSH_INVALIDATE = 2; // Client tracking: a key this connection read has changed
+
+    enum PushResult {
+        WRITTEN, // Fully written to the socket: the caller may reuse the frame's memory
+        QUEUED,  // Kept (not copied) until the socket drains: the caller must not reuse the memory
+        DROPPED  // Over its output-buffer limit: the session has been closed
+    }
+
+    /**
+     * Sends a server-initiated frame without blocking.
+     * {@code frame} is a read-only view of a buffer shared with other sessions: its bytes are
+     * never modified, and if it can't be written at once the view itself is queued.
+     */
+    PushResult push(ByteBuffer frame);
+
+    /**
+     * Large responses (ADR-003): asks the transport to write {@code body} right after what the
+     * current command put in the response buffer, without copying it there first.
+     * {@code body} is a read-only view (typically of the stored off-heap value).
+     *
+     * @return false if this transport can't, and the command must answer differently
+     */
+    default boolean attach(ByteBuffer body) {
+        return attach(body, null);
+    }
+
+    /**
+     * Same as {@link #attach(ByteBuffer)}, followed by {@code trailer} (RESP ends a bulk string
+     * with CRLF). {@code trailer} is a small read-only buffer, written after the body.
+     */
+    default boolean attach(ByteBuffer body, ByteBuffer trailer) {
+        return false;
+    }
+}
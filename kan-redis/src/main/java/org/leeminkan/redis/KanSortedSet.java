@@ -0,0 +1,480 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KanSortedSet
+ * The ZSET type (ZADD/ZREM/ZRANGE/ZRANGEBYSCORE): a skiplist + hash table, like Redis,
+ * but with every node living in off-heap memory.
+ *
+ * - The SKIPLIST orders members by (score, member bytes) and keeps a "span" per level,
+ *   so both "find by score" and "find by rank" are O(log n).
+ * - The HASH TABLE maps member -> node for O(1) ZADD-update / ZREM lookups.
+ *   It is intrusive: each skiplist node carries its own dict "next" pointer,
+ *   so one allocation serves both structures.
+ *
+ * Entry: [Header][Count][Level][HeadAddress][DictBucketCount][DictBucketsAddress]
+ * Node:  [Score (double)][DictNext][Hash][MemberLen][Level] [Forward, Span] x Level [Member]
+ *
+ * Nodes are linked by raw 64-bit addresses. Each one is turned back into a segment sized to
+ * its node and bound to the store's arena before it is touched (see {@link #node}), so a bad
+ * pointer or a node read after the arena is closed throws instead of corrupting the process.
+ *
+ * Not thread-safe: KanStore calls these methods inside compute() for the key.
+ */
+final class KanSortedSet {
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED;
+
+    // Same parameters as Redis: P = 1/4, 32 levels is enough for 2^64 elements
+    private static final int MAX_LEVEL = 32;
+    private static final int LEVEL_P_BITS = 2;
+
+    // Entry
+    private static final long E_COUNT = KanEntry.HEADER_SIZE;
+    private static final long E_LEVEL = E_COUNT + 4;
+    private static final long E_HEAD = E_LEVEL + 4;
+    private static final long E_BUCKET_COUNT = E_HEAD + 8;
+    private static final long E_BUCKETS = E_BUCKET_COUNT + 4;
+    private static final long E_SIZE = E_BUCKETS + 8;
+
+    private static final int INITIAL_BUCKETS = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // Node
+    private static final long N_SCORE = 0;
+    private static final long N_DICT_NEXT = 8;
+    private static final long N_HASH = 16;
+    private static final long N_MEMBER_LEN = 20;
+    private static final long N_LEVEL = 24;
+    private static final long N_LEVELS = 28;
+    private static final long LEVEL_SIZE = 12; // [Forward (8)][Span (4)]
+
+    private KanSortedSet() {
+    }
+
+    static int count(MemorySegment zset) {
+        return zset.get(INT, E_COUNT);
+    }
+
+    static MemorySegment create(SegmentAllocator allocator) {
+        MemorySegment zset = allocator.allocate(E_SIZE);
+        KanEntry.writeHeader(zset, KanEntry.TYPE_ZSET);
+        zset.set(INT, E_COUNT, 0);
+        zset.set(INT, E_LEVEL, 1);
+
+        MemorySegment head = allocateNode(allocator, MAX_LEVEL, 0);
+        head.set(INT, N_MEMBER_LEN, 0);
+        zset.set(LONG, E_HEAD, head.address());
+
+        MemorySegment buckets = allocator.allocate((long) INITIAL_BUCKETS * Long.BYTES);
+        buckets.fill((byte) 0);
+        zset.set(INT, E_BUCKET_COUNT, INITIAL_BUCKETS);
+        zset.set(LONG, E_BUCKETS, buckets.address());
+        return zset;
+    }
+
+    // ------------------------------------------------------------------
+    // ZADD / ZREM
+    // ------------------------------------------------------------------
+
+    /**
+     * @param arena the arena the set was allocated from (node segments are bound to it)
+     * @return true if the member is new, false if only its score changed (or nothing changed)
+     */
+    static boolean add(MemorySegment zset, double score, byte[] member, SegmentAllocator allocator, Arena arena) {
+        int hash = KanHash.hashOf(member);
+        MemorySegment node = dictFind(zset, member, hash, arena);
+
+        if (node != null) {
+            if (node.get(DOUBLE, N_SCORE) != score) {
+                // Reposition the SAME node: unlink, change score, relink. No allocation.
+                skiplistUnlink(zset, node, arena);
+                node.set(DOUBLE, N_SCORE, score);
+                skiplistInsert(zset, node, count(zset) - 1, arena);
+            }
+            return false;
+        }
+
+        int level = randomLevel();
+        node = allocateNode(allocator, level, member.length);
+        node.set(DOUBLE, N_SCORE, score);
+        node.set(INT, N_HASH, hash);
+        node.set(INT, N_MEMBER_LEN, member.length);
+        MemorySegment.copy(member, 0, node, ValueLayout.JAVA_BYTE, memberOffset(node), member.length);
+
+        skiplistInsert(zset, node, count(zset), arena);
+        dictInsert(zset, node, allocator, arena);
+        zset.set(INT, E_COUNT, count(zset) + 1);
+        return true;
+    }
+
+    /** @return true if the member existed */
+    static boolean remove(MemorySegment zset, byte[] member, Arena arena) {
+        int hash = KanHash.hashOf(member);
+        MemorySegment node = dictFind(zset, member, hash, arena);
+        if (node == null) {
+            return false;
+        }
+        skiplistUnlink(zset, node, arena);
+        dictUnlink(zset, node, arena);
+        zset.set(INT, E_COUNT, count(zset) - 1);
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // ZRANGE / ZRANGEBYSCORE (streamed into the response buffer)
+    // ------------------------------------------------------------------
+
+    /**
+     * ZRANGE by rank (0-based, inclusive, negative = from the end).
+     * Response: [Len][Count] then [MemberLen][Member][Score (double)] per member.
+     *
+     * Work per call is bounded by the response buffer: members are copied until the next one
+     * would not fit, and Count says how many were sent. Clients page with start + Count.
+     */
+    static void writeRange(MemorySegment zset, long start, long stop, ByteBuffer out, Arena arena) {
+        long length = count(zset);
+        if (start < 0) start = Math.max(0, length + start);
+        if (stop < 0) stop = length + stop;
+        stop = Math.min(stop, length - 1);
+
+        MemorySegment node = start <= stop ? nodeAtRank(zset, start + 1, arena) : null;
+        writeMembers(node, stop - start + 1, Double.POSITIVE_INFINITY, out, arena);
+    }
+
+    /**
+     * ZRANGEBYSCORE min <= score <= max, skipping {@code offset} matches and
+     * returning at most {@code limit} (negative = no limit). Same response and paging rule as ZRANGE.
+     */
+    static void writeRangeByScore(MemorySegment zset, double min, double max, int offset, int limit,
+                                  ByteBuffer out, Arena arena) {
+        MemorySegment node = firstWithScoreAtLeast(zset, min, arena);
+        for (int skipped = 0; skipped < offset && node != null && node.get(DOUBLE, N_SCORE) <= max; skipped++) {
+            node = forward(node, 0, arena);
+        }
+        writeMembers(node, limit < 0 ? Long.MAX_VALUE : limit, max, out, arena);
+    }
+
+    private static void writeMembers(MemorySegment node, long maxCount, double maxScore, ByteBuffer out, Arena arena) {
+        int lengthAt = out.position();
+        out.putInt(0); // [Len], patched below
+        int countAt = out.position();
+        out.putInt(0); // [Count], patched below
+
+        // Off-heap -> response buffer copies, with no intermediate heap list
+        // (the segment starts at the buffer's current position, hence "- base" below)
+        int base = out.position();
+        MemorySegment target = MemorySegment.ofBuffer(out);
+        int written = 0;
+        while (node != null && written < maxCount) {
+            double score = node.get(DOUBLE, N_SCORE);
+            if (score > maxScore) {
+                break;
+            }
+            int memberLength = node.get(INT, N_MEMBER_LEN);
+            if (out.remaining() < 4 + memberLength + 8) {
+                break; // Response frame is full: the client asks for the next page
+            }
+            int at = out.position();
+            out.putInt(memberLength);
+            MemorySegment.copy(node, memberOffset(node), target, at + 4 - base, memberLength);
+            out.position(at + 4 + memberLength);
+            out.putDouble(score);
+            written++;
+            node = forward(node, 0, arena);
+        }
+        out.putInt(countAt, written);
+        out.putInt(lengthAt, out.position() - lengthAt - 4);
+    }
+
+    // ------------------------------------------------------------------
+    // Skiplist (spans maintained exactly like Redis' zslInsert/zslDeleteNode)
+    // ------------------------------------------------------------------
+
+    // length = members currently linked (excluding the node being inserted)
+    private static void skiplistInsert(MemorySegment zset, MemorySegment node, long length, Arena arena) {
+        MemorySegment head = head(zset, arena);
+        int level = zset.get(INT, E_LEVEL);
+        double score = node.get(DOUBLE, N_SCORE);
+
+        MemorySegment[] update = new MemorySegment[MAX_LEVEL];
+        long[] rank = new long[MAX_LEVEL];
+
+        MemorySegment x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            MemorySegment next;
+            while ((next = forward(x, i, arena)) != null && lessThan(next, score, node)) {
+                rank[i] += span(x, i);
+                x = next;
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = node.get(INT, N_LEVEL);
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                setSpan(head, i, length);
+            }
+            level = nodeLevel;
+            zset.set(INT, E_LEVEL, level);
+        }
+
+        for (int i = 0; i < nodeLevel; i++) {
+            setForward(node, i, forwardAddress(update[i], i));
+            setForward(update[i], i, node.address());
+            setSpan(node, i, span(update[i], i) - (rank[0] - rank[i]));
+            setSpan(update[i], i, (rank[0] - rank[i]) + 1);
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            setSpan(update[i], i, span(update[i], i) + 1);
+        }
+    }
+
+    private static void skiplistUnlink(MemorySegment zset, MemorySegment node, Arena arena) {
+        MemorySegment head = head(zset, arena);
+        int level = zset.get(INT, E_LEVEL);
+        double score = node.get(DOUBLE, N_SCORE);
+
+        MemorySegment[] update = new MemorySegment[MAX_LEVEL];
+        MemorySegment x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            MemorySegment next;
+            while ((next = forward(x, i, arena)) != null && lessThan(next, score, node)) {
+                x = next;
+            }
+            update[i] = x;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (forwardAddress(update[i], i) == node.address()) {
+                setSpan(update[i], i, span(update[i], i) + span(node, i) - 1);
+                setForward(update[i], i, forwardAddress(node, i));
+            } else {
+                setSpan(update[i], i, span(update[i], i) - 1);
+            }
+        }
+        while (level > 1 && forwardAddress(head, level - 1) == 0) {
+            level--;
+        }
+        zset.set(INT, E_LEVEL, level);
+    }
+
+    /** 1-based rank -> node, following spans: O(log n). */
+    private static MemorySegment nodeAtRank(MemorySegment zset, long rank, Arena arena) {
+        MemorySegment x = head(zset, arena);
+        long traversed = 0;
+        for (int i = zset.get(INT, E_LEVEL) - 1; i >= 0; i--) {
+            MemorySegment next;
+            while ((next = forward(x, i, arena)) != null && traversed + span(x, i) <= rank) {
+                traversed += span(x, i);
+                x = next;
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private static MemorySegment firstWithScoreAtLeast(MemorySegment zset, double min, Arena arena) {
+        MemorySegment x = head(zset, arena);
+        for (int i = zset.get(INT, E_LEVEL) - 1; i >= 0; i--) {
+            MemorySegment next;
+            while ((next = forward(x, i, arena)) != null && next.get(DOUBLE, N_SCORE) < min) {
+                x = next;
+            }
+        }
+        return forward(x, 0, arena);
+    }
+
+    /** Ordering: by score, then by member bytes (so equal scores have a stable order). */
+    private static boolean lessThan(MemorySegment candidate, double score, MemorySegment node) {
+        double candidateScore = candidate.get(DOUBLE, N_SCORE);
+        if (candidateScore != score) {
+            return candidateScore < score;
+        }
+        return compareMembers(candidate, node) < 0;
+    }
+
+    private static int compareMembers(MemorySegment a, MemorySegment b) {
+        int lengthA = a.get(INT, N_MEMBER_LEN);
+        int lengthB = b.get(INT, N_MEMBER_LEN);
+        long offsetA = memberOffset(a);
+        long offsetB = memberOffset(b);
+        // Plain loop: on JDK 21, MemorySegment.mismatch() reports "equal" when both sides are the same segment
+        int common = Math.min(lengthA, lengthB);
+        for (int i = 0; i < common; i++) {
+            int byteA = Byte.toUnsignedInt(a.get(ValueLayout.JAVA_BYTE, offsetA + i));
+            int byteB = Byte.toUnsignedInt(b.get(ValueLayout.JAVA_BYTE, offsetB + i));
+            if (byteA != byteB) {
+                return Integer.compare(byteA, byteB);
+            }
+        }
+        return Integer.compare(lengthA, lengthB); // one is a prefix of the other
+    }
+
+    // ------------------------------------------------------------------
+    // Intrusive member -> node hash table
+    // ------------------------------------------------------------------
+
+    private static MemorySegment dictFind(MemorySegment zset, byte[] member, int hash, Arena arena) {
+        long address = buckets(zset, arena).get(LONG, bucketOffset(zset, hash));
+        while (address != 0) {
+            MemorySegment node = node(address, arena);
+            if (node.get(INT, N_HASH) == hash && node.get(INT, N_MEMBER_LEN) == member.length
+                    && KanHash.equalsAt(node, memberOffset(node), member)) {
+                return node;
+            }
+            address = node.get(LONG, N_DICT_NEXT);
+        }
+        return null;
+    }
+
+    private static void dictInsert(MemorySegment zset, MemorySegment node, SegmentAllocator allocator, Arena arena) {
+        MemorySegment buckets = buckets(zset, arena);
+        long slot = bucketOffset(zset, node.get(INT, N_HASH));
+        node.set(LONG, N_DICT_NEXT, buckets.get(LONG, slot));
+        buckets.set(LONG, slot, node.address());
+
+        int bucketCount = zset.get(INT, E_BUCKET_COUNT);
+        if (count(zset) + 1 > bucketCount * LOAD_FACTOR) {
+            dictRehash(zset, bucketCount * 2, allocator, arena);
+        }
+    }
+
+    private static void dictUnlink(MemorySegment zset, MemorySegment node, Arena arena) {
+        // "link" = the 8 bytes that point at the current node (a bucket slot or a node's next field)
+        MemorySegment linkOwner = buckets(zset, arena);
+        long linkOffset = bucketOffset(zset, node.get(INT, N_HASH));
+        long current;
+        while ((current = linkOwner.get(LONG, linkOffset)) != 0) {
+            if (current == node.address()) {
+                linkOwner.set(LONG, linkOffset, node.get(LONG, N_DICT_NEXT));
+                return;
+            }
+            linkOwner = node(current, arena);
+            linkOffset = N_DICT_NEXT;
+        }
+    }
+
+    private static void dictRehash(MemorySegment zset, int newCount, SegmentAllocator allocator, Arena arena) {
+        int oldCount = zset.get(INT, E_BUCKET_COUNT);
+        MemorySegment oldBuckets = buckets(zset, arena);
+        MemorySegment newBuckets = allocator.allocate((long) newCount * Long.BYTES);
+        newBuckets.fill((byte) 0);
+
+        for (int i = 0; i < oldCount; i++) {
+            long address = oldBuckets.get(LONG, (long) i * Long.BYTES);
+            while (address != 0) {
+                MemorySegment node = node(address, arena);
+                long next = node.get(LONG, N_DICT_NEXT);
+                long slot = (long) (node.get(INT, N_HASH) & (newCount - 1)) * Long.BYTES;
+                node.set(LONG, N_DICT_NEXT, newBuckets.get(LONG, slot));
+                newBuckets.set(LONG, slot, address);
+                address = next;
+            }
+        }
+        zset.set(INT, E_BUCKET_COUNT, newCount);
+        zset.set(LONG, E_BUCKETS, newBuckets.address());
+    }
+
+    private static MemorySegment buckets(MemorySegment zset, Arena arena) {
+        long size = (long) zset.get(INT, E_BUCKET_COUNT) * Long.BYTES;
+        return MemorySegment.ofAddress(zset.get(LONG, E_BUCKETS)).reinterpret(size, arena, null);
+    }
+
+    private static long bucketOffset(MemorySegment zset, int hash) {
+        return (long) (hash & (zset.get(INT, E_BUCKET_COUNT) - 1)) * Long.BYTES;
+    }
+
+    // ------------------------------------------------------------------
+    // Memory accounting (MEMORY STATS, see KanMemory)
+    // ------------------------------------------------------------------
+
+    /** Every segment this sorted set owns: the entry, the dict buckets and each skiplist node (head included). */
+    static void visitSegments(MemorySegment zset, KanMemory.SegmentVisitor visitor, Arena arena) {
+        visitor.segment(zset.address(), zset.byteSize(), E_SIZE);
+        long bucketsSize = (long) zset.get(INT, E_BUCKET_COUNT) * Long.BYTES;
+        visitor.segment(zset.get(LONG, E_BUCKETS), bucketsSize, bucketsSize);
+        for (MemorySegment node = head(zset, arena); node != null; node = forward(node, 0, arena)) {
+            visitor.segment(node.address(), node.byteSize(), node.byteSize());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Node helpers
+    // ------------------------------------------------------------------
+
+    private static MemorySegment allocateNode(SegmentAllocator allocator, int level, int memberLength) {
+        MemorySegment node = allocator.allocate(nodeSize(level, memberLength));
+        node.fill((byte) 0);
+        node.set(INT, N_LEVEL, level);
+        return node;
+    }
+
+    private static long nodeSize(int level, int memberLength) {
+        return N_LEVELS + level * LEVEL_SIZE + memberLength;
+    }
+
+    /**
+     * Turns a raw node address back into a segment bounded to that node and to the arena's
+     * lifetime: the fixed header first, then the full size it records.
+     */
+    private static MemorySegment node(long address, Arena arena) {
+        MemorySegment header = MemorySegment.ofAddress(address).reinterpret(N_LEVELS, arena, null);
+        return header.reinterpret(nodeSize(header.get(INT, N_LEVEL), header.get(INT, N_MEMBER_LEN)));
+    }
+
+    private static MemorySegment head(MemorySegment zset, Arena arena) {
+        return node(zset.get(LONG, E_HEAD), arena);
+    }
+
+    private static long memberOffset(MemorySegment node) {
+        return N_LEVELS + node.get(INT, N_LEVEL) * LEVEL_SIZE;
+    }
+
+    /** @return the next node at this level, null at the end of the list */
+    private static MemorySegment forward(MemorySegment node, int level, Arena arena) {
+        long address = forwardAddress(node, level);
+        return address == 0 ? null : node(address, arena);
+    }
+
+    private static long forwardAddress(MemorySegment node, int level) {
+        return node.get(LONG, N_LEVELS + level * LEVEL_SIZE);
+    }
+
+    private static void setForward(MemorySegment node, int level, long target) {
+        node.set(LONG, N_LEVELS + level * LEVEL_SIZE, target);
+    }
+
+    private static long span(MemorySegment node, int level) {
+        return node.get(INT, N_LEVELS + level * LEVEL_SIZE + 8);
+    }
+
+    private static void setSpan(MemorySegment node, int level, long span) {
+        node.set(INT, N_LEVELS + level * LEVEL_SIZE + 8, (int) span);
+    }
+
+    private static int randomLevel() {
+        // Each extra level with probability 1/4: one per pair of zero bits, from the lowest up.
+        // 64 random bits hold 32 pairs, enough for the 31 promotions MAX_LEVEL allows
+        int level = 1;
+        long bits = ThreadLocalRandom.current().nextLong();
+        while (level < MAX_LEVEL && (bits & ((1 << LEVEL_P_BITS) - 1)) == 0) {
+            level++;
+            bits >>>= LEVEL_P_BITS;
+        }
+        return level;
+    }
+}
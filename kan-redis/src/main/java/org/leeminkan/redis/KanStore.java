@@ -1,31 +1,69 @@
 package org.leeminkan.redis;
 
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
 import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.lang.ref.Cleaner;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class KanStore {
 
+    private static final KanLogger LOG = KanLogger.getLogger(KanStore.class);
+
     // Global allocator for off-heap memory.
     // "ofShared" allows multiple threads to read/write these segments safely.
     private final Arena offHeapArena = Arena.ofShared();
-    private final AtomicLong usedMemoryBytes = new AtomicLong(0);
 
     // Store the POINTER (MemorySegment) not the data itself.
     private final ConcurrentHashMap<String, MemorySegment> store = new ConcurrentHashMap<>();
 
     private final KanWal wal;
+    private final KanMetrics metrics;
+
+    // STRING values at least this long are stored LZ4-compressed when it pays off (0 = never)
+    private final int compressionThreshold = Integer.getInteger("kan.compression.threshold", 0);
+
+    // Allocator handed to the off-heap data structures (KanHash): same arena, same accounting
+    private final SegmentAllocator trackedAllocator = this::allocateTracked;
+
+    // Server-side SCAN cursors over the key space
+    private final KanScan scanner = new KanScan(store);
+
+    // Leak detector (KanMemory): every allocation's size and call site, by address
+    static final boolean MEMORY_DEBUG = Boolean.getBoolean("kan.memory.debug");
+    private final ConcurrentHashMap<Long, Allocation> allocations = MEMORY_DEBUG ? new ConcurrentHashMap<>() : null;
 
-    public KanStore(KanWal wal) {
+    private record Allocation(long size, String site) {
+    }
+
+    // This store's share of the off-heap memory (metrics.usedMemoryBytes sums every shard)
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    public KanStore(KanWal wal, KanMetrics metrics) {
         this.wal = wal;
+        this.metrics = metrics;
     }
 
     // Add a getter for the JMX bean to call
     public long getUsedMemory() {
-        return usedMemoryBytes.get();
+        return metrics.getUsedMemoryBytes();
     }
 
     public MemorySegment get(String key) {
@@ -33,58 +71,603 @@ public class KanStore {
     }
 
     // Helper to avoid duplicating the allocation logic
-    private void putInMemory(String key, byte[] valueBytes) {
-        // 1. Allocate native memory (malloc)
-        MemorySegment nativeMem = offHeapArena.allocate(valueBytes.length);
+    private MemorySegment copyOffHeap(byte[] valueBytes) {
+        if (compressionThreshold > 0 && valueBytes.length >= compressionThreshold) {
+            MemorySegment compressed = compressOffHeap(valueBytes);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+
+        // 1. Allocate native memory (malloc): header + value
+        MemorySegment nativeMem = allocateEntry(KanEntry.TYPE_STRING, valueBytes.length);
 
         // 2. Copy the Java byte array INTO the native memory
         // Heap -> Off-Heap copy
-        MemorySegment.copy(valueBytes, 0, nativeMem, ValueLayout.JAVA_BYTE, 0, valueBytes.length);
+        MemorySegment.copy(valueBytes, 0, nativeMem, ValueLayout.JAVA_BYTE, KanEntry.HEADER_SIZE, valueBytes.length);
+        return nativeMem;
+    }
 
-        System.out.println("DEBUG: Allocated " + valueBytes.length + " bytes at Off-Heap Address: " + nativeMem.address());
-        // 3. Store the pointer
-        store.put(key, nativeMem);
+    /**
+     * Stores the value LZ4-compressed, flagged in the header (see KanEntry).
+     * Decided per value: returns null when it would save less than 1/8, so incompressible
+     * data (already compressed images, random tokens) is stored raw and costs nothing on GET.
+     */
+    private MemorySegment compressOffHeap(byte[] valueBytes) {
+        byte[] compressed = new byte[KanLz4.maxCompressedLength(valueBytes.length)];
+        int compressedLength = KanLz4.compress(valueBytes, compressed);
+        if (compressedLength + KanEntry.ORIGINAL_LENGTH_SIZE > valueBytes.length - valueBytes.length / 8) {
+            return null;
+        }
+        MemorySegment nativeMem = allocateEntry(KanEntry.TYPE_STRING, KanEntry.ORIGINAL_LENGTH_SIZE + compressedLength);
+        KanEntry.setFlags(nativeMem, KanEntry.FLAG_COMPRESSED);
+        nativeMem.set(ValueLayout.JAVA_INT_UNALIGNED, KanEntry.HEADER_SIZE, valueBytes.length);
+        MemorySegment.copy(compressed, 0, nativeMem, ValueLayout.JAVA_BYTE,
+                KanEntry.HEADER_SIZE + KanEntry.ORIGINAL_LENGTH_SIZE, compressedLength);
+        metrics.recordCompression(valueBytes.length, compressedLength);
+        return nativeMem;
+    }
 
-        usedMemoryBytes.addAndGet(valueBytes.length);
+    private MemorySegment allocateEntry(byte type, long payloadSize) {
+        MemorySegment nativeMem = allocateTracked(KanEntry.HEADER_SIZE + payloadSize, 1);
+        KanEntry.writeHeader(nativeMem, type);
+        return nativeMem;
+    }
+
+    private MemorySegment allocateTracked(long size, long alignment) {
+        MemorySegment nativeMem = offHeapArena.allocate(size, alignment);
+        LOG.debug("Allocated {} bytes at Off-Heap Address: {}", size, nativeMem.address());
+        metrics.recordAllocation(size);
+        allocatedBytes.add(size);
+        if (allocations != null) {
+            allocations.put(nativeMem.address(), new Allocation(size, callSite()));
+        }
+        return nativeMem;
+    }
+
+    // "KanHash.newNode:270 < KanHash.tableSet:233 < ...": the frames above the allocating method
+    private static String callSite() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .skip(2) // callSite() and the allocating method itself
+                .filter(frame -> !frame.getClassName().startsWith("java.")) // SegmentAllocator, compute()...
+                .limit(4)
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .collect(Collectors.joining(" < ")));
+    }
+
+    // ------------------------------------------------------------------
+    // Write locking: compute() locks ONE key. EXEC needs several keys at once, so every
+    // write also takes the key's stripe lock, and EXEC takes all of its stripes up front.
+    // ------------------------------------------------------------------
+
+    private static final int STRIPES = 1024; // power of two
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // compute() under the key's stripe lock (uncontended: one CAS on the stripe's own lock)
+    private MemorySegment update(String key, BiFunction<String, MemorySegment, MemorySegment> fn) {
+        ReentrantLock lock = stripes[stripeOf(key)];
+        lock.lock();
+        try {
+            return store.compute(key, fn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MemorySegment updateIfPresent(String key, BiFunction<String, MemorySegment, MemorySegment> fn) {
+        ReentrantLock lock = stripes[stripeOf(key)];
+        lock.lock();
+        try {
+            return store.computeIfPresent(key, fn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code body} with every key in {@code keys} locked against other writers (EXEC).
+     *
+     * - Stripes are locked in ascending order, so two transactions can never deadlock.
+     * - The store methods called by {@code body} re-enter their stripe locks (ReentrantLock).
+     * - Their WAL records are collected and written as ONE group when the body completes,
+     *   so replay applies the transaction entirely or not at all.
+     * - If {@code body} throws, what it applied before failing stays in memory, so its records
+     *   are logged one by one, like writes outside a transaction: after a restart the store
+     *   holds the same partial result the other clients could already read.
+     *
+     * Readers (GET, HGET, ZRANGE...) outside a transaction don't take stripe locks: each key is
+     * always consistent on its own, but a multi-key read that must see all-or-nothing should
+     * itself be an EXEC.
+     */
+    public <T> T atomically(Collection<String> keys, Supplier<T> body) {
+        int[] locked = keys.stream().mapToInt(KanStore::stripeOf).distinct().sorted().toArray();
+        for (int stripe : locked) {
+            stripes[stripe].lock();
+        }
+        if (wal != null) {
+            wal.beginGroup();
+        }
+        try {
+            T result = body.get();
+            if (wal != null) {
+                wal.commitGroup();
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Failed halfway: log what was applied, but not as a group that replays as if it were atomic
+            if (wal != null) {
+                wal.commitPartialGroup();
+            }
+            throw e;
+        } finally {
+            for (int i = locked.length - 1; i >= 0; i--) {
+                stripes[locked[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * WATCH-style check for EXEC: true if the key currently holds {@code expectedValue}
+     * (null = the key must not exist). Call it inside {@link #atomically} so the answer
+     * can't change before the transaction's writes.
+     */
+    public boolean valueMatches(String key, String expectedValue) {
+        return matches(store.get(key), expectedValue);
     }
 
     /**
      * Allocates off-heap memory for the value and stores the pointer.
+     *
+     * Thread-safety: the WAL write and the pointer swap happen inside compute(), i.e. under the
+     * map's per-bin lock. Two concurrent writers to the same key are therefore logged in the same
+     * order they are applied, so a WAL replay reproduces exactly the in-memory state.
      */
     public void set(String key, byte[] valueBytes) {
-        // 1. Write to Disk FIRST (Durability)
-        if (wal != null) {
-            wal.writeSet(key, valueBytes);
+        // Copy (and maybe compress) BEFORE taking the key's lock: only the pointer swap needs it
+        MemorySegment entry = copyOffHeap(valueBytes);
+        update(key, (k, current) -> {
+            // 1. Write to Disk FIRST (Durability)
+            if (wal != null) {
+                wal.writeSet(k, valueBytes);
+            }
+
+            // 2. Update Memory (store the pointer)
+            return entry;
+        });
+    }
+
+    /**
+     * Allocates the entry for a SET value streamed from the socket (ADR-003); the transport fills
+     * the payload, then calls {@link #setStreamed}.
+     *
+     * Each one gets its own automatic arena: if the client disconnects mid-value, or the value is
+     * later overwritten, the GC releases the native memory once nothing references it.
+     * The shared arena would keep abandoned uploads forever.
+     */
+    public MemorySegment allocateStreamedValue(int valueLength) {
+        MemorySegment entry = Arena.ofAuto().allocate(KanEntry.HEADER_SIZE + (long) valueLength, 1);
+        KanEntry.writeHeader(entry, KanEntry.TYPE_STRING);
+        long size = entry.byteSize();
+        long address = entry.address();
+        metrics.recordAllocation(size);
+        allocatedBytes.add(size);
+        if (allocations != null) {
+            allocations.put(address, new Allocation(size, callSite()));
         }
+        // Unlike the shared arena, this memory does go back: un-count it when the GC frees it.
+        // The action must not capture the entry, or it would keep it reachable forever
+        StreamedValues.CLEANER.register(entry.scope(), () -> {
+            metrics.recordAllocation(-size);
+            allocatedBytes.add(-size);
+            if (allocations != null) {
+                allocations.remove(address);
+            }
+        });
+        return entry;
+    }
 
-        // 2. Update Memory
-        putInMemory(key, valueBytes);
+    // Created on first use: only streamed values need a cleaner thread
+    private static final class StreamedValues {
+        static final Cleaner CLEANER = Cleaner.create();
+    }
+
+    /** SET for a streamed entry: the WAL is written from the off-heap bytes, the pointer swapped in. */
+    public void setStreamed(String key, MemorySegment entry) {
+        update(key, (k, current) -> {
+            if (wal != null) {
+                wal.writeSet(k, entry.asSlice(KanEntry.HEADER_SIZE));
+            }
+            return entry;
+        });
     }
 
     // Restore (Called by WAL Replay)
     public void restore(String key, byte[] valueBytes) {
-        putInMemory(key, valueBytes); // Skip WAL write
+        store.put(key, copyOffHeap(valueBytes)); // Skip WAL write
+    }
+
+    /**
+     * DEL: removes the key whatever its type. Logged as [CMD=DEL][KeyLen][Key].
+     * The off-heap memory stays in the arena (like every overwritten value).
+     *
+     * @return true if the key existed
+     */
+    public boolean delete(String key) {
+        boolean[] deleted = new boolean[1];
+        updateIfPresent(key, (k, current) -> {
+            if (wal != null) {
+                wal.writeFields(CommandType.DEL, k);
+            }
+            deleted[0] = true;
+            return null;
+        });
+        return deleted[0];
+    }
+
+    // Restore (Called by WAL Replay)
+    public void restoreDelete(String key) {
+        store.remove(key);
     }
 
+    /**
+     * Compare-And-Swap. The compare and the swap run inside one compute() call,
+     * so no other thread can change the key in between (safe with multi-threaded transports).
+     */
     public boolean cas(String key, String expectedValue, byte[] newValueBytes) {
-        MemorySegment currentSeg = store.get(key);
-        if (currentSeg == null) {
-            if (expectedValue == null) {
-                set(key, newValueBytes); // set() already handles WAL
-                return true;
+        boolean[] swapped = new boolean[1];
+        update(key, (k, currentSeg) -> {
+            if (!matches(currentSeg, expectedValue)) {
+                return currentSeg; // Collision: leave the value untouched
             }
-            return false;
+            // Log the NEW value as a standard SET operation
+            if (wal != null) {
+                wal.writeSet(k, newValueBytes);
+            }
+            swapped[0] = true;
+            return copyOffHeap(newValueBytes);
+        });
+        return swapped[0];
+    }
+
+    /**
+     * Atomically adds {@code delta} to a 64-bit counter and returns the new value (INCR / INCRBY / DECRBY).
+     *
+     * - Missing key: created as an INTEGER entry holding {@code delta}.
+     * - INTEGER entry: updated IN PLACE in its off-heap segment (no reallocation, no copy).
+     * - STRING entry holding a decimal (e.g. SET "100"): converted to INTEGER once, then updated in place.
+     *
+     * @throws NumberFormatException if the current value is not an integer
+     * @throws ArithmeticException   on 64-bit overflow
+     * @throws WrongTypeException    if the key holds a non-string structure
+     */
+    public long incrementBy(String key, long delta) {
+        long[] result = new long[1];
+        update(key, (k, current) -> {
+            long updated = Math.addExact(currentCounter(k, current), delta);
+
+            // Compact log record: [CMD][Key][Delta], not the whole value
+            if (wal != null) {
+                wal.writeIncrement(k, delta);
+            }
+            result[0] = updated;
+            return storeCounter(current, updated);
+        });
+        return result[0];
+    }
+
+    // Restore an INCRBY record (Called by WAL Replay)
+    public void restoreIncrement(String key, long delta) {
+        store.compute(key, (k, current) -> storeCounter(current, currentCounter(k, current) + delta));
+    }
+
+    private static long currentCounter(String key, MemorySegment current) {
+        if (current == null) {
+            return 0;
+        }
+        if (KanEntry.type(current) == KanEntry.TYPE_INTEGER) {
+            return KanEntry.getCounter(current);
+        }
+        if (KanEntry.type(current) != KanEntry.TYPE_STRING) {
+            throw new WrongTypeException(key);
         }
+        return Long.parseLong(new String(KanEntry.valueBytes(current), StandardCharsets.US_ASCII));
+    }
 
-        byte[] currentBytes = currentSeg.toArray(ValueLayout.JAVA_BYTE);
-        String currentStr = new String(currentBytes, StandardCharsets.UTF_8);
+    private MemorySegment storeCounter(MemorySegment current, long value) {
+        MemorySegment target = current;
+        if (target == null || KanEntry.type(target) != KanEntry.TYPE_INTEGER) {
+            target = allocateEntry(KanEntry.TYPE_INTEGER, Long.BYTES);
+        }
+        KanEntry.setCounter(target, value);
+        return target;
+    }
 
-        if (currentStr.equals(expectedValue)) {
-            // Log the NEW value as a standard SET operation
-            wal.writeSet(key, newValueBytes);
-            putInMemory(key, newValueBytes);
-            return true;
+    /**
+     * Rate-limit check (THROTTLE): consumes one token from the key's bucket if available.
+     * The check and the update happen inside compute(), so concurrent callers never
+     * both take the last token. The bucket is one 8-byte timestamp updated in place.
+     *
+     * Not written to the WAL: buckets are short-lived, and after a restart every
+     * limit simply starts from a full bucket (fail open).
+     *
+     * @return the remaining tokens if allowed, or -1 if the limit is exceeded
+     * @throws IllegalArgumentException if limit or window is not positive, or the window
+     *         overflows in microseconds
+     */
+    public long throttle(String key, long limit, long windowSeconds) {
+        // Checked before update(): a new key's bucket is allocated from the arena, which never
+        // frees, so a rejected call must not get that far
+        if (limit <= 0 || windowSeconds <= 0 || windowSeconds > Long.MAX_VALUE / 1_000_000) {
+            throw new IllegalArgumentException("limit and window must be positive");
+        }
+        long nowMicros = System.currentTimeMillis() * 1000;
+        long[] result = new long[1];
+        update(key, (k, current) -> {
+            MemorySegment bucket = current;
+            if (bucket == null) {
+                bucket = allocateEntry(KanEntry.TYPE_THROTTLE, KanThrottle.PAYLOAD_SIZE);
+                KanThrottle.init(bucket, nowMicros);
+            } else {
+                requireType(k, bucket, KanEntry.TYPE_THROTTLE);
+            }
+            result[0] = KanThrottle.tryAcquire(bucket, limit, windowSeconds * 1_000_000, nowMicros);
+            return bucket;
+        });
+        return result[0];
+    }
+
+    // ------------------------------------------------------------------
+    // HASH (HSET / HGET / HDEL / HGETALL), see KanHash for the memory layout
+    // ------------------------------------------------------------------
+
+    /** @return true if the field is new, false if an existing field was updated */
+    public boolean hset(String key, byte[] field, byte[] value) {
+        return hset(key, field, value, true);
+    }
+
+    // Restore (Called by WAL Replay)
+    public void restoreHashSet(String key, byte[] field, byte[] value) {
+        hset(key, field, value, false);
+    }
+
+    private boolean hset(String key, byte[] field, byte[] value, boolean logged) {
+        boolean[] created = new boolean[1];
+        update(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_HASH);
+            // Log only the field, never the whole record
+            if (logged && wal != null) {
+                wal.writeFields(CommandType.HSET, k, field, value);
+            }
+            return KanHash.set(current, field, value, trackedAllocator, offHeapArena, created);
+        });
+        return created[0];
+    }
+
+    /**
+     * Writes the HGET response ([Len][Value], or [Len=0]) directly from off-heap memory.
+     * @return null, or (nothing written) a copy of the value if it doesn't fit in {@code out}
+     */
+    public ByteBuffer hget(String key, byte[] field, ByteBuffer out) {
+        ByteBuffer[] tooLarge = new ByteBuffer[1];
+        // computeIfPresent holds the key's lock, so a concurrent HSET can't shift bytes under us
+        MemorySegment hash = store.computeIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_HASH);
+            tooLarge[0] = KanHash.writeField(current, field, out, offHeapArena);
+            return current;
+        });
+        if (hash == null) {
+            out.putInt(0);
+        }
+        return tooLarge[0];
+    }
+
+    /**
+     * Writes the HGETALL response ([Len][Count][Field/Value pairs...]).
+     * @return null, or (nothing written) a copy of everything after [Len] if it doesn't fit in {@code out}
+     */
+    public ByteBuffer hgetAll(String key, ByteBuffer out) {
+        ByteBuffer[] tooLarge = new ByteBuffer[1];
+        MemorySegment hash = store.computeIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_HASH);
+            tooLarge[0] = KanHash.writeAll(current, out, offHeapArena);
+            return current;
+        });
+        if (hash == null) {
+            out.putInt(4);
+            out.putInt(0); // Missing key = empty hash
+        }
+        return tooLarge[0];
+    }
+
+    /** @return true if the field existed. Removing the last field removes the key. */
+    public boolean hdel(String key, byte[] field) {
+        return hdel(key, field, true);
+    }
+
+    // Restore (Called by WAL Replay)
+    public void restoreHashDelete(String key, byte[] field) {
+        hdel(key, field, false);
+    }
+
+    private boolean hdel(String key, byte[] field, boolean logged) {
+        boolean[] deleted = new boolean[1];
+        updateIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_HASH);
+            deleted[0] = KanHash.delete(current, field, offHeapArena);
+            if (deleted[0] && logged && wal != null) {
+                wal.writeFields(CommandType.HDEL, k, field);
+            }
+            return KanHash.count(current) == 0 ? null : current;
+        });
+        return deleted[0];
+    }
+
+    // ------------------------------------------------------------------
+    // SORTED SET (ZADD / ZRANGE / ZRANGEBYSCORE / ZREM), see KanSortedSet for the memory layout
+    // ------------------------------------------------------------------
+
+    /** @return true if the member is new, false if it existed (its score is updated) */
+    public boolean zadd(String key, double score, byte[] member) {
+        return zadd(key, score, member, true);
+    }
+
+    // Restore (Called by WAL Replay)
+    public void restoreZAdd(String key, double score, byte[] member) {
+        zadd(key, score, member, false);
+    }
+
+    private boolean zadd(String key, double score, byte[] member, boolean logged) {
+        boolean[] created = new boolean[1];
+        update(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_ZSET);
+            if (logged && wal != null) {
+                wal.writeFields(CommandType.ZADD, k, ByteBuffer.allocate(Double.BYTES).putDouble(score).array(), member);
+            }
+            MemorySegment zset = current != null ? current : KanSortedSet.create(trackedAllocator);
+            created[0] = KanSortedSet.add(zset, score, member, trackedAllocator, offHeapArena);
+            return zset;
+        });
+        return created[0];
+    }
+
+    /** Writes the ZRANGE response ([Len][Count][Member/Score pairs...]) straight from the skiplist. */
+    public void zrange(String key, long start, long stop, ByteBuffer out) {
+        MemorySegment zset = store.computeIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_ZSET);
+            KanSortedSet.writeRange(current, start, stop, out, offHeapArena);
+            return current;
+        });
+        if (zset == null) {
+            out.putInt(4);
+            out.putInt(0); // Missing key = empty sorted set
+        }
+    }
+
+    /** Writes the ZRANGEBYSCORE response, same format as {@link #zrange}. */
+    public void zrangeByScore(String key, double min, double max, int offset, int limit, ByteBuffer out) {
+        MemorySegment zset = store.computeIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_ZSET);
+            KanSortedSet.writeRangeByScore(current, min, max, offset, limit, out, offHeapArena);
+            return current;
+        });
+        if (zset == null) {
+            out.putInt(4);
+            out.putInt(0);
+        }
+    }
+
+    /** @return true if the member existed. Removing the last member removes the key. */
+    public boolean zrem(String key, byte[] member) {
+        return zrem(key, member, true);
+    }
+
+    // Restore (Called by WAL Replay)
+    public void restoreZRem(String key, byte[] member) {
+        zrem(key, member, false);
+    }
+
+    private boolean zrem(String key, byte[] member, boolean logged) {
+        boolean[] removed = new boolean[1];
+        updateIfPresent(key, (k, current) -> {
+            requireType(k, current, KanEntry.TYPE_ZSET);
+            removed[0] = KanSortedSet.remove(current, member, offHeapArena);
+            if (removed[0] && logged && wal != null) {
+                wal.writeFields(CommandType.ZREM, k, member);
+            }
+            return KanSortedSet.count(current) == 0 ? null : current;
+        });
+        return removed[0];
+    }
+
+    /**
+     * One SCAN step: examines at most {@code count} keys and writes them to the response.
+     * Never locks the map, so other clients are not paused however large the key space is.
+     *
+     * @param pattern glob filter, or null for every key
+     */
+    public void scan(long cursor, String pattern, int count, ByteBuffer out) {
+        scanner.scan(cursor, pattern, count, out);
+    }
+
+    // ------------------------------------------------------------------
+    // Memory report (MEMORY STATS / MEMORY LEAKS, see KanMemory)
+    // ------------------------------------------------------------------
+
+    /** Off-heap bytes this store holds: the shared arena plus streamed values not freed yet. */
+    long allocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Adds every key and every segment reachable from it to {@code usage}. Each key is read
+     * inside computeIfPresent(), which excludes a writer restructuring the same hash or zset.
+     */
+    void visitMemory(KanMemory.Usage usage) {
+        for (String key : store.keySet()) {
+            store.computeIfPresent(key, (k, entry) -> {
+                usage.key(k);
+                visitSegments(entry, usage);
+                return entry;
+            });
+        }
+    }
+
+    /** Leak detector: adds the recorded allocations the index doesn't reach to {@code sites}. */
+    void collectUnreferenced(Map<String, long[]> sites) {
+        // Snapshot first: allocations made during the walk would look unreferenced
+        List<Map.Entry<Long, Allocation>> snapshot = new ArrayList<>(allocations.entrySet());
+        Set<Long> reachable = new HashSet<>();
+        for (String key : store.keySet()) {
+            store.computeIfPresent(key, (k, entry) -> {
+                visitSegments(entry, (address, capacity, used) -> reachable.add(address));
+                return entry;
+            });
+        }
+        for (Map.Entry<Long, Allocation> allocation : snapshot) {
+            if (!reachable.contains(allocation.getKey())) {
+                long[] site = sites.computeIfAbsent(allocation.getValue().site(), s -> new long[2]);
+                site[0]++;
+                site[1] += allocation.getValue().size();
+            }
+        }
+    }
+
+    private void visitSegments(MemorySegment entry, KanMemory.SegmentVisitor visitor) {
+        switch (KanEntry.type(entry)) {
+            case KanEntry.TYPE_HASH -> KanHash.visitSegments(entry, visitor, offHeapArena);
+            case KanEntry.TYPE_ZSET -> KanSortedSet.visitSegments(entry, visitor, offHeapArena);
+            default -> visitor.segment(entry.address(), entry.byteSize(), entry.byteSize());
+        }
+    }
+
+    private static void requireType(String key, MemorySegment current, byte type) {
+        if (current != null && KanEntry.type(current) != type) {
+            throw new WrongTypeException(key);
         }
-        return false;
     }
-}
\ No newline at end of file
+
+    private static boolean matches(MemorySegment currentSeg, String expectedValue) {
+        if (currentSeg == null) {
+            return expectedValue == null;
+        }
+        if (expectedValue == null || !KanEntry.isReadable(currentSeg)) {
+            return false;
+        }
+        byte[] currentBytes = KanEntry.valueBytes(currentSeg);
+        String currentStr = new String(currentBytes, StandardCharsets.UTF_8);
+        return currentStr.equals(expectedValue);
+    }
+}
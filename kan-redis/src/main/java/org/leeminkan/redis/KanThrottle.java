@@ -0,0 +1,52 @@
+package org.leeminkan.redis;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * KanThrottle
+ * Rate limiting with GCRA (Generic Cell Rate Algorithm), the algorithm behind redis-cell.
+ *
+ * GCRA is a token bucket that stores ONE number instead of (tokens, lastRefill):
+ * the "Theoretical Arrival Time" (TAT), i.e. when the bucket will be full again.
+ *
+ * With limit L per window W, each request "costs" an emission interval T = W / L.
+ *   tat    = max(storedTat, now)
+ *   newTat = tat + T
+ *   if newTat - now > W  -> DENY  (the request would overdraw the bucket)
+ *   else                 -> ALLOW, storedTat = newTat
+ *   remaining = (W - (newTat - now)) / T
+ *
+ * Payload layout (after the KanEntry header): [TAT in epoch microseconds (8 bytes)]
+ */
+final class KanThrottle {
+
+    static final int PAYLOAD_SIZE = Long.BYTES;
+
+    private static final ValueLayout.OfLong TAT = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    private KanThrottle() {
+    }
+
+    static void init(MemorySegment bucket, long nowMicros) {
+        bucket.set(TAT, KanEntry.HEADER_SIZE, nowMicros);
+    }
+
+    /**
+     * @return remaining tokens (>= 0) if the request is allowed, -1 if it is denied
+     */
+    static long tryAcquire(MemorySegment bucket, long limit, long windowMicros, long nowMicros) {
+        if (limit <= 0 || windowMicros <= 0) {
+            throw new IllegalArgumentException("limit and window must be positive");
+        }
+        long interval = Math.max(1, windowMicros / limit);
+
+        long tat = Math.max(bucket.get(TAT, KanEntry.HEADER_SIZE), nowMicros);
+        long newTat = tat + interval;
+        if (newTat - nowMicros > windowMicros) {
+            return -1;
+        }
+        bucket.set(TAT, KanEntry.HEADER_SIZE, newTat); // in place: no allocation
+        return (windowMicros - (newTat - nowMicros)) / interval;
+    }
+}
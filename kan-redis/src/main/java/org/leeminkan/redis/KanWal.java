@@ -1,14 +1,23 @@
 package org.leeminkan.redis;
 
+import org.leeminkan.redis.log.KanLogger;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
 public class KanWal {
+
+    private static final KanLogger LOG = KanLogger.getLogger(KanWal.class);
     private final FileChannel logChannel;
 
+    // Records of the EXEC running on this thread, written as one group at commit
+    private final ThreadLocal<ByteArrayOutputStream> group = new ThreadLocal<>();
+
     public KanWal(String filePath) throws IOException {
         this.logChannel = FileChannel.open(Paths.get(filePath),
                 StandardOpenOption.CREATE,
@@ -21,22 +30,131 @@ public class KanWal {
      * Format: [CMD=2][KeyLen][Key][ValLen][Value]
      */
     public void writeSet(String key, byte[] value) {
-        try {
-            byte[] keyBytes = key.getBytes();
-            int totalSize = 1 + 4 + keyBytes.length + 4 + value.length;
+        byte[] keyBytes = key.getBytes();
+        int totalSize = 1 + 4 + keyBytes.length + 4 + value.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(totalSize);
+        buffer.put(CommandType.SET.getCode()); // SET Command
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(value.length);
+        buffer.put(value);
+
+        buffer.flip();
+        append(buffer);
+    }
 
-            ByteBuffer buffer = ByteBuffer.allocate(totalSize);
-            buffer.put((byte) 2); // SET Command
-            buffer.putInt(keyBytes.length);
-            buffer.put(keyBytes);
-            buffer.putInt(value.length);
-            buffer.put(value);
+    /**
+     * Same record as {@link #writeSet(String, byte[])}, for a value that lives off-heap (ADR-003):
+     * header and value go out in one gathering write, the value is never copied to the heap.
+     */
+    public void writeSet(String key, MemorySegment value) {
+        byte[] keyBytes = key.getBytes();
+        ByteBuffer header = ByteBuffer.allocate(1 + 4 + keyBytes.length + 4);
+        header.put(CommandType.SET.getCode());
+        header.putInt(keyBytes.length);
+        header.put(keyBytes);
+        header.putInt((int) value.byteSize());
+        header.flip();
+        append(header, value.asByteBuffer());
+    }
+
+    /**
+     * Appends an INCRBY record. Only the delta is logged, not the resulting value.
+     * Format: [CMD=5][KeyLen][Key][Delta (8 bytes)]
+     */
+    public void writeIncrement(String key, long delta) {
+        byte[] keyBytes = key.getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + keyBytes.length + 8);
+        buffer.put(CommandType.INCRBY.getCode());
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putLong(delta);
+        buffer.flip();
+        append(buffer);
+    }
+
+    /**
+     * Appends a record made of length-prefixed fields (HSET, HDEL, ZADD, ZREM, ...).
+     * Format: [CMD][KeyLen][Key][Len1][Field1][Len2][Field2]...
+     */
+    public void writeFields(CommandType type, String key, byte[]... fields) {
+        byte[] keyBytes = key.getBytes();
+        int totalSize = 1 + 4 + keyBytes.length;
+        for (byte[] field : fields) {
+            totalSize += 4 + field.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(totalSize);
+        buffer.put(type.getCode());
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        for (byte[] field : fields) {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+        buffer.flip();
+        append(buffer);
+    }
+
+    /**
+     * Starts a record group on the calling thread (EXEC): until {@link #commitGroup()},
+     * records are collected in memory instead of being written one by one.
+     */
+    public void beginGroup() {
+        group.set(new ByteArrayOutputStream());
+    }
+
+    /**
+     * Writes the collected records as ONE log entry with one write and one force:
+     * [CMD=EXEC][BodyLen][Record][Record]...
+     * A crash mid-write leaves a short group, which replay discards as a whole.
+     */
+    public void commitGroup() {
+        ByteArrayOutputStream records = group.get();
+        group.remove();
+        if (records == null || records.size() == 0) {
+            return; // Read-only transaction (or nothing applied): nothing to log
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + records.size());
+        buffer.put(CommandType.EXEC.getCode());
+        buffer.putInt(records.size());
+        buffer.put(records.toByteArray());
+        buffer.flip();
+        append(buffer);
+    }
 
-            buffer.flip();
+    /**
+     * Writes the collected records one by one, as they are written outside a group (EXEC failed
+     * partway): the commands that ran stay applied in memory, so the log must hold them too,
+     * just not as a group that replay would treat as atomic.
+     */
+    public void commitPartialGroup() {
+        ByteArrayOutputStream records = group.get();
+        group.remove();
+        if (records == null || records.size() == 0) {
+            return; // Failed before anything was applied
+        }
+        append(ByteBuffer.wrap(records.toByteArray()));
+    }
 
+    private void append(ByteBuffer... buffers) {
+        ByteArrayOutputStream records = group.get();
+        if (records != null) {
+            // Inside a group: defer, the whole group is written at commit
+            for (ByteBuffer buffer : buffers) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                records.write(bytes, 0, bytes.length);
+            }
+            return;
+        }
+        try {
             // Synchronized to ensure sequential writes if we had multiple threads
             synchronized (this) {
-                logChannel.write(buffer);
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    logChannel.write(buffers);
+                }
                 // force(false) flushes to OS cache. force(true) flushes to disk hardware.
                 logChannel.force(false);
             }
@@ -52,7 +170,7 @@ public class KanWal {
      * Reads the log file and populates the store.
      */
     public void replay(KanStore store) throws IOException {
-        System.out.println("Replaying WAL...");
+        LOG.info("Replaying WAL...");
 
         // Move to start of file
         logChannel.position(0);
@@ -64,39 +182,90 @@ public class KanWal {
             if (header.remaining() < 5) break; // End of file or partial write
 
             byte type = header.get();
-            if (type != 2) {
-                // For this MVP, we only implemented logging for SET.
-                // Skip or handle other types if you add them.
-                System.out.println("Skipping unknown log entry type: " + type);
-                continue;
-            }
-
-            int keyLen = header.getInt();
+            int length = header.getInt();
             header.clear();
 
-            // Read Key
-            ByteBuffer keyBuf = ByteBuffer.allocate(keyLen);
-            logChannel.read(keyBuf);
-            String key = new String(keyBuf.array());
+            if (type == CommandType.EXEC.getCode()) {
+                // Transaction group: replay all of it or none of it
+                ByteBuffer records = readFully(length);
+                if (records.remaining() < length) {
+                    LOG.warn("Incomplete transaction group at end of log, discarding it");
+                    break;
+                }
+                RecordSource groupSource = size -> {
+                    ByteBuffer field = records.slice(records.position(), size);
+                    records.position(records.position() + size);
+                    return field;
+                };
+                boolean known = true;
+                while (known && records.hasRemaining()) {
+                    byte recordType = records.get();
+                    known = apply(store, recordType, records.getInt(), groupSource);
+                }
+                if (!known) break;
+            } else if (!apply(store, type, length, this::readFully)) {
+                break;
+            }
+        }
 
-            // Read Value Len
-            ByteBuffer valLenBuf = ByteBuffer.allocate(4);
-            logChannel.read(valLenBuf);
-            valLenBuf.flip();
-            int valLen = valLenBuf.getInt();
+        // Move position back to end for appending new writes
+        logChannel.position(logChannel.size());
+        LOG.info("Replay Complete.");
+    }
 
-            // Read Value
-            ByteBuffer valBuf = ByteBuffer.allocate(valLen);
-            logChannel.read(valBuf);
-            byte[] value = valBuf.array();
+    // Where replay reads a record's bytes from: the log file, or a transaction group in memory
+    private interface RecordSource {
+        ByteBuffer read(int size) throws IOException;
+    }
 
-            // Restore to memory (WITHOUT writing to WAL again!)
-            store.restore(key, value);
+    // Restores one record (WITHOUT writing to WAL again!). Returns false for an unknown type.
+    private boolean apply(KanStore store, byte type, int keyLen, RecordSource in) throws IOException {
+        // Read Key
+        String key = new String(toArray(in.read(keyLen)));
+
+        if (type == CommandType.SET.getCode()) {
+            int valLen = in.read(4).getInt();
+            store.restore(key, toArray(in.read(valLen)));
+        } else if (type == CommandType.INCRBY.getCode()) {
+            store.restoreIncrement(key, in.read(8).getLong());
+        } else if (type == CommandType.HSET.getCode()) {
+            byte[] field = readField(in);
+            store.restoreHashSet(key, field, readField(in));
+        } else if (type == CommandType.HDEL.getCode()) {
+            store.restoreHashDelete(key, readField(in));
+        } else if (type == CommandType.ZADD.getCode()) {
+            double score = ByteBuffer.wrap(readField(in)).getDouble();
+            store.restoreZAdd(key, score, readField(in));
+        } else if (type == CommandType.ZREM.getCode()) {
+            store.restoreZRem(key, readField(in));
+        } else if (type == CommandType.DEL.getCode()) {
+            store.restoreDelete(key);
+        } else {
+            // We cannot know the length of an unknown record, so the rest of the log is unreadable
+            LOG.warn("Unknown log entry type: {}, stopping replay", type);
+            return false;
         }
+        return true;
+    }
 
-        // Move position back to end for appending new writes
-        logChannel.position(logChannel.size());
-        System.out.println("Replay Complete.");
+    // [Len][Bytes]
+    private static byte[] readField(RecordSource in) throws IOException {
+        return toArray(in.read(in.read(4).getInt()));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private ByteBuffer readFully(int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining() && logChannel.read(buffer) > 0) {
+            // keep reading until the record is complete or EOF
+        }
+        buffer.flip();
+        return buffer;
     }
 
     public void close() throws IOException {
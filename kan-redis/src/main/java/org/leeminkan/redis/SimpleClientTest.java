@@ -47,6 +47,32 @@ public class SimpleClientTest {
             status = in.readByte();
             System.out.println("CAS Status: " + (status == 1 ? "SUCCESS" : "FAIL (Correct behavior)"));
 
+            // 4. INCRBY "user:1" 50 (Server-side, no CAS retry loop: 150 -> 200)
+            System.out.println("Sending INCRBY 50...");
+            out.writeByte(5); // INCRBY
+            writeString(out, "user:1");
+            out.writeLong(50);
+
+            in.readInt();
+            System.out.println("INCRBY Result: " + in.readLong());
+
+            // 5. DECRBY "user:1" 25 (200 -> 175)
+            System.out.println("Sending DECRBY 25...");
+            out.writeByte(6); // DECRBY
+            writeString(out, "user:1");
+            out.writeLong(25);
+
+            in.readInt();
+            System.out.println("DECRBY Result: " + in.readLong());
+
+            // 6. GET "user:1" (Counters are returned as decimal strings)
+            out.writeByte(1); // GET
+            writeString(out, "user:1");
+
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            System.out.println("GET Result: " + new String(value, StandardCharsets.UTF_8));
+
         } catch (Exception e) {
             e.printStackTrace();
         }
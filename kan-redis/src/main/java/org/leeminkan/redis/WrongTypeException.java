@@ -0,0 +1,14 @@
+package org.leeminkan.redis;
+
+/**
+ * Thrown when a command is used on a key holding another kind of value
+ * (e.g. INCR on a rate-limit bucket). The protocol turns it into the error response.
+ */
+public class WrongTypeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WrongTypeException(String key) {
+        super("WRONGTYPE Operation against a key holding the wrong kind of value: " + key);
+    }
+}
@@ -0,0 +1,102 @@
+package org.leeminkan.redis.bench;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConnectionBenchmark
+ * Load generator for comparing transports end to end: opens many connections against a
+ * running server and drives pipelined SET/GET traffic for a fixed duration.
+ *
+ * Start the server with the transport under test, e.g.
+ *   -Dkan.transport=nio   or   -Dkan.transport=io_uring
+ * then run:
+ *   mvn exec:java -Dexec.mainClass="org.leeminkan.redis.bench.ConnectionBenchmark" -Dexec.args="1000 16 10"
+ *
+ * Args: [connections=1000] [pipeline depth=16] [seconds=10] [active connections=all]
+ * With "active" lower than "connections", the rest stay open and idle (the many-idle-clients case).
+ * Run it under `strace -c -f -p <server pid>` to compare syscall counts between transports.
+ */
+public class ConnectionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int pipeline = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int active = args.length > 3 ? Integer.parseInt(args[3]) : connections;
+        String host = System.getProperty("kan.host", "localhost");
+        int port = Integer.getInteger("kan.port", 6379);
+
+        List<Socket> sockets = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            sockets.add(new Socket(host, port));
+        }
+        System.out.printf("Opened %,d connections (%,d active, pipeline %d)%n", connections, active, pipeline);
+
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(active);
+
+        // One virtual thread per client keeps the generator itself cheap at high connection counts
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < active; i++) {
+                Socket socket = sockets.get(i);
+                int clientId = i;
+                executor.submit(() -> {
+                    try {
+                        drive(socket, clientId, pipeline, deadline, completed);
+                    } catch (Exception e) {
+                        System.err.println("Client " + clientId + " failed: " + e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        long ops = completed.sum();
+        System.out.printf("Completed %,d commands in %d s = %,.0f ops/s%n", ops, seconds, ops / (double) seconds);
+    }
+
+    private static void drive(Socket socket, int clientId, int pipeline, long deadline, LongAdder completed) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        byte[] key = ("bench:" + clientId).getBytes(StandardCharsets.UTF_8);
+        byte[] value = "1000".getBytes(StandardCharsets.UTF_8);
+
+        while (System.nanoTime() < deadline) {
+            // Write a whole pipeline of commands, alternating SET and GET, then read all responses
+            for (int i = 0; i < pipeline; i++) {
+                out.writeByte(i % 2 == 0 ? 2 : 1);
+                out.writeInt(key.length);
+                out.write(key);
+                if (i % 2 == 0) {
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+            out.flush();
+            for (int i = 0; i < pipeline; i++) {
+                int len = in.readInt();
+                if (len > 0) {
+                    in.skipNBytes(len);
+                }
+            }
+            completed.add(pipeline);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.leeminkan.redis.bench;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LoggingBenchmark
+ * Measures in-process SET throughput (KanProtocol -> KanStore, no network, no WAL)
+ * with the DEBUG allocation log switched off and on.
+ *
+ * Run: mvn exec:java -Dexec.mainClass="org.leeminkan.redis.bench.LoggingBenchmark"
+ *
+ * The appender writes to a null stream so we measure the cost paid by the
+ * event loop thread, not the speed of the terminal.
+ */
+public class LoggingBenchmark {
+
+    private static final int COMMANDS_PER_BATCH = 1_000;
+    private static final int BATCHES = 500;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        KanLogger.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+
+        KanMetrics metrics = new KanMetrics();
+        KanStore store = new KanStore(null, metrics);
+        KanProtocol protocol = new KanProtocol(store, metrics);
+
+        ByteBuffer requests = buildSetBatch();
+        ByteBuffer responses = ByteBuffer.allocate(COMMANDS_PER_BATCH * 8);
+
+        // Warm-up so the JIT compiles the hot path before we measure
+        run(protocol, requests, responses, KanLogger.OFF);
+        run(protocol, requests, responses, KanLogger.DEBUG);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            double off = run(protocol, requests, responses, KanLogger.OFF);
+            long droppedBefore = KanLogger.getDroppedEvents();
+            double on = run(protocol, requests, responses, KanLogger.DEBUG);
+            long dropped = KanLogger.getDroppedEvents() - droppedBefore;
+
+            System.out.printf("Round %d: logging OFF = %,.0f SET/s | logging DEBUG = %,.0f SET/s (%,d events dropped)%n",
+                    round, off, on, dropped);
+        }
+        KanLogger.setLevel(KanLogger.INFO);
+    }
+
+    private static double run(KanProtocol protocol, ByteBuffer requests, ByteBuffer responses, int level) {
+        KanLogger.setLevel(level);
+        long start = System.nanoTime();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            requests.rewind();
+            while (protocol.process(requests, responses)) {
+                responses.clear();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        KanLogger.flush();
+        return (double) COMMANDS_PER_BATCH * BATCHES / (elapsed / 1_000_000_000.0);
+    }
+
+    private static ByteBuffer buildSetBatch() {
+        ByteBuffer buffer = ByteBuffer.allocate(COMMANDS_PER_BATCH * 64);
+        byte[] value = "42".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < COMMANDS_PER_BATCH; i++) {
+            byte[] key = ("bench:" + i).getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) 2); // SET
+            buffer.putInt(key.length);
+            buffer.put(key);
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,126 @@
+package org.leeminkan.redis.bench;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanResp;
+import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RespBenchmark
+ * The same pipelined SET/GET batch through the Kan protocol and through the RESP front-end
+ * (ADR-006), in-process (no network, no WAL): commands per second, and heap bytes allocated
+ * per command on this thread.
+ *
+ * Run: mvn exec:java -Dexec.mainClass="org.leeminkan.redis.bench.RespBenchmark"
+ *
+ * RESP allocates the key String and the SET value's byte[] the store takes, and nothing else:
+ * it should never show more bytes per command than the Kan protocol (which also copies each
+ * key into a byte[] first). For end-to-end numbers, point redis-benchmark at a running server
+ * (see SETUP.md).
+ */
+public class RespBenchmark {
+
+    private static final int COMMANDS_PER_BATCH = 1_000; // Half SET, half GET
+    private static final int BATCHES = 500;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        KanLogger.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+
+        KanMetrics metrics = new KanMetrics();
+        KanProtocol protocol = new KanProtocol(new KanStore(null, metrics), metrics);
+        KanResp resp = protocol.resp();
+        KanResp.State state = new KanResp.State();
+
+        ByteBuffer kanBatch = buildKanBatch();
+        ByteBuffer respBatch = buildRespBatch();
+        ByteBuffer responses = ByteBuffer.allocate(COMMANDS_PER_BATCH * 32);
+
+        // Warm-up so the JIT compiles both paths before we measure
+        run(kanBatch, responses, () -> protocol.process(kanBatch, responses));
+        run(respBatch, responses, () -> resp.process(respBatch, responses, null, state));
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long[] kan = run(kanBatch, responses, () -> protocol.process(kanBatch, responses));
+            long[] redis = run(respBatch, responses, () -> resp.process(respBatch, responses, null, state));
+            System.out.printf("Round %d: Kan = %,.0f cmd/s, %d B/cmd | RESP = %,.0f cmd/s, %d B/cmd%n", round,
+                    perSecond(kan[0]), kan[1], perSecond(redis[0]), redis[1]);
+        }
+    }
+
+    private interface Command {
+        boolean process();
+    }
+
+    /** @return {elapsed nanos, bytes allocated per command} */
+    private static long[] run(ByteBuffer requests, ByteBuffer responses, Command command) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            requests.rewind();
+            while (command.process()) {
+                responses.clear();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long perCommand = (allocatedBytes() - allocatedBefore) / ((long) BATCHES * COMMANDS_PER_BATCH);
+        return new long[]{elapsed, perCommand};
+    }
+
+    private static double perSecond(long nanos) {
+        return (double) BATCHES * COMMANDS_PER_BATCH / (nanos / 1e9);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // [Cmd][KeyLen][Key] ([ValLen][Val] for SET)
+    private static ByteBuffer buildKanBatch() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < COMMANDS_PER_BATCH; i++) {
+            byte[] key = key(i);
+            out.writeByte(i % 2 == 0 ? 2 : 1);
+            out.writeInt(key.length);
+            out.write(key);
+            if (i % 2 == 0) {
+                out.writeInt(3);
+                out.write(value());
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    // What redis-benchmark sends: *3 $3 SET $key $value, *2 $3 GET $key
+    private static ByteBuffer buildRespBatch() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < COMMANDS_PER_BATCH; i++) {
+            String key = new String(key(i), StandardCharsets.UTF_8);
+            if (i % 2 == 0) {
+                text.append("*3\r\n$3\r\nSET\r\n$").append(key.length()).append("\r\n").append(key).append("\r\n$3\r\nxyz\r\n");
+            } else {
+                text.append("*2\r\n$3\r\nGET\r\n$").append(key.length()).append("\r\n").append(key).append("\r\n");
+            }
+        }
+        return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] key(int i) {
+        return ("key:" + (i / 2 % 100)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] value() {
+        return "xyz".getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,239 @@
+package org.leeminkan.redis.bench;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.transport.KanTls;
+import org.leeminkan.redis.transport.NioTransport;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TlsBenchmark
+ * What TLS costs on the nio transport (ADR-005), measured over loopback in one process:
+ * 1. Throughput: the ConnectionBenchmark load (pipelined SET/GET) against a plaintext server,
+ *    then against a TLS server. Besides ops/s, it reports ops per CPU-second of the server's event
+ *    loop thread: the clients run in this process too and pay for their own encryption, so on a
+ *    small machine wall-clock ops/s mixes both ends' costs. Server capacity is what the budget is about.
+ * 2. Handshakes: reconnect latency with a full handshake every time vs. with session resumption.
+ *
+ * Run: mvn exec:java -Dexec.mainClass="org.leeminkan.redis.bench.TlsBenchmark" -Dexec.args="50 16 10"
+ *
+ * Args: [connections=50] [pipeline depth=16] [seconds=10] [reconnects=200]
+ * -Dkan.bench.tls-budget=30 is the server capacity overhead (%) we accept: the run fails (exit
+ * code 1) above it, so it can gate a CI job. Generates a throwaway self-signed key with the JDK's keytool.
+ */
+public class TlsBenchmark {
+
+    private static final String PASSWORD = "kan-bench";
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int pipeline = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int reconnects = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        double budget = Double.parseDouble(System.getProperty("kan.bench.tls-budget", "30"));
+        int plainPort = Integer.getInteger("kan.port", 16379);
+        int tlsPort = plainPort + 1;
+
+        KanLogger.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        // TLS connections always disable Nagle: compare against plaintext doing the same
+        System.setProperty("kan.tcp-nodelay", "true");
+        Path keyStore = generateKeyStore();
+        System.setProperty("kan.tls.keystore", keyStore.toString());
+        System.setProperty("kan.tls.keystore-password", PASSWORD);
+
+        Thread plainServer = startServer(plainPort, new NioTransport(new KanMetrics()));
+        Thread tlsServer = startServer(tlsPort, new NioTransport(new KanMetrics(), null, new KanTls(KanTls.serverContext())));
+        SSLContext client = clientContext(keyStore);
+
+        // 1. Throughput. A short warm-up each so both sides run JIT-compiled code
+        run(() -> new Socket("localhost", plainPort), connections, pipeline, 2);
+        long cpu = cpuNanos(plainServer);
+        double plain = run(() -> new Socket("localhost", plainPort), connections, pipeline, seconds);
+        double plainPerCpu = plain * seconds / ((cpuNanos(plainServer) - cpu) / 1e9);
+
+        run(() -> client.getSocketFactory().createSocket("localhost", tlsPort), connections, pipeline, 2);
+        cpu = cpuNanos(tlsServer);
+        double tls = run(() -> client.getSocketFactory().createSocket("localhost", tlsPort), connections, pipeline, seconds);
+        double tlsPerCpu = tls * seconds / ((cpuNanos(tlsServer) - cpu) / 1e9);
+
+        double overhead = (1 - tlsPerCpu / plainPerCpu) * 100;
+        System.out.printf("Plaintext: %,.0f ops/s, %,.0f ops per server CPU-second%n", plain, plainPerCpu);
+        System.out.printf("TLS:       %,.0f ops/s, %,.0f ops per server CPU-second%n", tls, tlsPerCpu);
+        System.out.printf("TLS overhead: %.1f%% of server capacity (budget %.0f%%), %.1f%% of ops/s%n",
+                overhead, budget, (1 - tls / plain) * 100);
+
+        // 2. Handshakes. Fresh contexts have no session to offer; their setup isn't timed
+        List<SSLContext> fresh = new ArrayList<>(reconnects);
+        for (int i = 0; i < reconnects; i++) {
+            fresh.add(clientContext(keyStore));
+        }
+        handshakes(fresh, tlsPort); // Warm-up
+        double full = handshakes(fresh, tlsPort);
+        handshakes(List.of(client), tlsPort); // Leaves a session (ticket) behind to resume
+        double resumed = handshakes(Collections.nCopies(reconnects, client), tlsPort);
+        System.out.printf("Reconnect, full handshake: %.2f ms%n", full);
+        System.out.printf("Reconnect, resumed:        %.2f ms%n", resumed);
+
+        Files.deleteIfExists(keyStore);
+        if (overhead > budget) {
+            System.out.println("FAIL: TLS throughput overhead is over budget");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0); // The servers run on non-daemon threads
+    }
+
+    private interface Connector {
+        Socket connect() throws Exception;
+    }
+
+    private static double run(Connector connector, int connections, int pipeline, int seconds) throws Exception {
+        List<Socket> sockets = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            sockets.add(connector.connect());
+        }
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(connections);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                Socket socket = sockets.get(i);
+                int clientId = i;
+                executor.submit(() -> {
+                    try {
+                        drive(socket, clientId, pipeline, deadline, completed);
+                    } catch (Exception e) {
+                        System.err.println("Client " + clientId + " failed: " + e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        return completed.sum() / (double) seconds;
+    }
+
+    // Same traffic as ConnectionBenchmark: a pipeline of alternating SET and GET, then all responses
+    private static void drive(Socket socket, int clientId, int pipeline, long deadline, LongAdder completed) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        byte[] key = ("bench:" + clientId).getBytes(StandardCharsets.UTF_8);
+        byte[] value = "1000".getBytes(StandardCharsets.UTF_8);
+
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < pipeline; i++) {
+                out.writeByte(i % 2 == 0 ? 2 : 1);
+                out.writeInt(key.length);
+                out.write(key);
+                if (i % 2 == 0) {
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+            out.flush();
+            for (int i = 0; i < pipeline; i++) {
+                int len = in.readInt();
+                if (len > 0) {
+                    in.skipNBytes(len);
+                }
+            }
+            completed.add(pipeline);
+        }
+    }
+
+    /** Connects once per context, handshakes, runs one GET. @return mean milliseconds per reconnect */
+    private static double handshakes(List<SSLContext> contexts, int port) throws Exception {
+        byte[] key = "bench:handshake".getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        for (SSLContext context : contexts) {
+            try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port)) {
+                socket.setTcpNoDelay(true);
+                socket.startHandshake();
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(1);
+                out.writeInt(key.length);
+                out.write(key);
+                out.flush();
+                // Reading also takes in the TLS 1.3 session ticket the server sends after the handshake
+                new DataInputStream(socket.getInputStream()).readInt();
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / contexts.size();
+    }
+
+    private static long cpuNanos(Thread thread) {
+        return ManagementFactory.getThreadMXBean().getThreadCpuTime(thread.threadId());
+    }
+
+    private static Thread startServer(int port, NioTransport transport) throws InterruptedException {
+        KanMetrics metrics = new KanMetrics();
+        KanProtocol protocol = new KanProtocol(new KanStore(null, metrics), metrics);
+        Thread server = Thread.ofPlatform().name("bench-server-" + port).start(() -> {
+            try {
+                transport.serve(port, protocol);
+            } catch (Exception e) {
+                System.err.println("Server on " + port + " failed: " + e);
+            }
+        });
+        Thread.sleep(500); // Let it bind
+        return server;
+    }
+
+    private static Path generateKeyStore() throws Exception {
+        Path path = Files.createTempFile("kan-bench", ".p12");
+        Files.delete(path); // keytool refuses to overwrite a file that isn't a keystore
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "kan", "-keyalg", "EC",
+                "-groupname", "secp256r1", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost",
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", path.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed");
+        }
+        return path;
+    }
+
+    // Trusts the benchmark's self-signed certificate
+    private static SSLContext clientContext(Path keyStorePath) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keyStorePath.toFile())) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trust.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -0,0 +1,219 @@
+package org.leeminkan.redis.client;
+
+import org.leeminkan.redis.CommandType;
+import org.leeminkan.redis.KanSession;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * KanNearCacheClient
+ * A Kan-Redis client with a bounded, coherent local cache for hot keys (e.g. FX rates).
+ *
+ * - The connection turns on TRACKING, so the server pushes an invalidation frame
+ *   whenever a key we have read is written by anyone.
+ * - get() answers from the local LRU when it can: a hit never leaves the JVM.
+ * - One reader thread consumes the socket IN ORDER. It fills the cache from GET responses
+ *   and applies invalidations as they arrive, so a response can never be cached after the
+ *   invalidation that makes it stale (the server sends them in that order on one connection).
+ *
+ * Thread-safe: requests are pipelined on the single connection, callers wait on their own future.
+ * If the connection breaks, the cache is cleared and every call fails: create a new client.
+ */
+public final class KanNearCacheClient implements Closeable {
+
+    private static final byte[] MISSING = new byte[0];
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    // Requests in flight, in send order (the server answers in the same order). Guarded by "out"
+    private final Queue<Pending> inFlight = new ArrayDeque<>();
+
+    // Access-ordered LRU. Guarded by "cache"
+    private final Map<String, byte[]> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile IOException failure;
+
+    private record Pending(String cacheKey, CompletableFuture<byte[]> response) {
+    }
+
+    public KanNearCacheClient(String host, int port, int maxEntries) throws IOException {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread.ofPlatform().daemon().name("kan-near-cache-reader").start(this::readLoop);
+
+        byte[] enabled = call(null, CommandType.TRACKING, new byte[]{1});
+        if (enabled == null) {
+            close();
+            throw new IOException("Server refused TRACKING (it needs the nio transport)");
+        }
+    }
+
+    /** @return the value, or null if the key does not exist (or is not a string) */
+    public byte[] get(String key) throws IOException {
+        synchronized (cache) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached == MISSING ? null : cached;
+            }
+        }
+        misses.increment();
+        byte[] value = call(key, CommandType.GET, key.getBytes(StandardCharsets.UTF_8));
+        return value == null || value.length == 0 ? null : value;
+    }
+
+    public void set(String key, byte[] value) throws IOException {
+        invalidate(key); // Our own write: the server's invalidation push will follow
+        call(null, CommandType.SET, key.getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    /** @return true if the key existed */
+    public boolean delete(String key) throws IOException {
+        invalidate(key);
+        byte[] response = call(null, CommandType.DEL, key.getBytes(StandardCharsets.UTF_8));
+        return response != null && response.length == 1 && response[0] == 1;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getCachedEntries() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close(); // Unblocks the reader, which fails whatever is still in flight
+    }
+
+    /**
+     * Sends one command and waits for its response.
+     * Fields are written as [Len][Bytes], except TRACKING's single flag byte.
+     * @return the response payload, or null for the error response
+     */
+    private byte[] call(String cacheKey, CommandType type, byte[]... fields) throws IOException {
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        synchronized (out) {
+            if (failure != null) {
+                throw failure;
+            }
+            out.writeByte(type.getCode());
+            if (type == CommandType.TRACKING) {
+                out.write(fields[0]);
+            } else {
+                for (byte[] field : fields) {
+                    out.writeInt(field.length);
+                    out.write(field);
+                }
+            }
+            out.flush();
+            inFlight.add(new Pending(cacheKey, response));
+        }
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Kan-Redis", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Kan-Redis connection failed", e.getCause());
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length == KanSession.PUSH_MARKER) {
+                    readPush();
+                    continue;
+                }
+                byte[] payload = null;
+                if (length >= 0) {
+                    payload = new byte[length];
+                    in.readFully(payload);
+                }
+                Pending pending;
+                synchronized (out) {
+                    pending = inFlight.poll();
+                }
+                if (pending == null) {
+                    throw new IOException("Response without a request");
+                }
+                if (pending.cacheKey() != null && payload != null) {
+                    // Cached HERE, in stream order: any later invalidation will find and remove it
+                    synchronized (cache) {
+                        cache.put(pending.cacheKey(), payload.length == 0 ? MISSING : payload);
+                    }
+                }
+                pending.response().complete(payload);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // [PushLen][Kind][...]: only invalidations matter here, anything else is skipped
+    private void readPush() throws IOException {
+        int pushLength = in.readInt();
+        byte kind = in.readByte();
+        if (kind == KanSession.PUSH_INVALIDATE) {
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            invalidate(new String(key, StandardCharsets.UTF_8));
+        } else {
+            in.skipNBytes(pushLength - 1);
+        }
+    }
+
+    private void invalidate(String key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    private void fail(IOException cause) {
+        synchronized (out) {
+            failure = cause;
+            Pending pending;
+            while ((pending = inFlight.poll()) != null) {
+                pending.response().completeExceptionally(cause);
+            }
+        }
+        synchronized (cache) {
+            cache.clear(); // Without invalidations we can't trust anything we hold
+        }
+    }
+}
@@ -1,25 +1,51 @@
 package org.leeminkan.redis.jmx;
 
-import org.leeminkan.redis.KanProtocol;
-import org.leeminkan.redis.KanRedisServer;
+import org.leeminkan.redis.KanMemory;
 import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.metrics.KanHotKeys;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class KanMonitor implements KanMonitorMBean {
 
+    // JConsole reads every attribute on each refresh: one index walk serves them all
+    private static final long REPORT_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
     private final KanStore store;
+    private final KanMetrics metrics;
+    private final KanMemory memory;
+
+    private KanMemory.Report report;
+    private long reportNanos;
 
-    public KanMonitor(KanStore store) {
+    public KanMonitor(KanStore store, KanMetrics metrics) {
+        this(store, metrics, new KanMemory(List.of(store), metrics));
+    }
+
+    public KanMonitor(KanStore store, KanMetrics metrics, KanMemory memory) {
         this.store = store;
+        this.metrics = metrics;
+        this.memory = memory;
+    }
+
+    private synchronized KanMemory.Report memoryReport() {
+        if (report == null || System.nanoTime() - reportNanos > REPORT_MAX_AGE_NANOS) {
+            report = memory.report();
+            reportNanos = System.nanoTime();
+        }
+        return report;
     }
 
     @Override
     public int getConnectedClients() {
-        return KanRedisServer.connectedClients.get();
+        return metrics.getConnectedClients();
     }
 
     @Override
     public long getTotalCommandsProcessed() {
-        return KanProtocol.totalCommands.get();
+        return metrics.getTotalCommands();
     }
 
     @Override
@@ -27,6 +53,72 @@ public class KanMonitor implements KanMonitorMBean {
         return store.getUsedMemory();
     }
 
+    @Override
+    public long getCompressedValues() {
+        return metrics.getCompressedValues();
+    }
+
+    @Override
+    public long getCompressionSavedBytes() {
+        return metrics.getCompressionSavedBytes();
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        return metrics.getRejectedConnections();
+    }
+
+    @Override
+    public long getIdleConnectionsClosed() {
+        return metrics.getIdleConnectionsClosed();
+    }
+
+    @Override
+    public long getConnectionBufferMemory() {
+        return metrics.getConnectionBufferBytes();
+    }
+
+    @Override
+    public long getOffHeapLiveBytes() {
+        return memoryReport().liveBytes();
+    }
+
+    @Override
+    public long getOffHeapFragmentationBytes() {
+        return memoryReport().fragmentationBytes();
+    }
+
+    @Override
+    public long getOffHeapUnreferencedBytes() {
+        return memoryReport().unreferencedBytes();
+    }
+
+    @Override
+    public long getIndexMemoryEstimate() {
+        return memoryReport().indexBytes();
+    }
+
+    @Override
+    public String memoryLeakReport() {
+        return memory.leakReport(20);
+    }
+
+    @Override
+    public String[] getHotReadKeys() {
+        return hotKeys(false);
+    }
+
+    @Override
+    public String[] getHotWriteKeys() {
+        return hotKeys(true);
+    }
+
+    private String[] hotKeys(boolean write) {
+        return metrics.hotKeys().top(write, KanHotKeys.TOP_K).stream()
+                .map(KanHotKeys.HotKey::toString)
+                .toArray(String[]::new);
+    }
+
     @Override
     public String getStatus() {
         return "Healthy";
@@ -4,5 +4,19 @@ public interface KanMonitorMBean {
     int getConnectedClients();
     long getTotalCommandsProcessed();
     long getOffHeapMemoryUsage();
+    long getCompressedValues();
+    long getCompressionSavedBytes();
+    long getRejectedConnections();
+    long getIdleConnectionsClosed();
+    long getConnectionBufferMemory();
+    // Off-heap breakdown (KanMemory): walks the index, at most once per few seconds
+    long getOffHeapLiveBytes();
+    long getOffHeapFragmentationBytes();
+    long getOffHeapUnreferencedBytes();
+    long getIndexMemoryEstimate();
+    String memoryLeakReport(); // Needs -Dkan.memory.debug=true
+    // Hot keys (KanHotKeys): "key = ops/s", hottest first, over the sliding window
+    String[] getHotReadKeys();
+    String[] getHotWriteKeys();
     String getStatus(); // Just for fun, e.g., "Running"
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package org.leeminkan.redis.log;
+
+import java.io.PrintStream;
+
+/**
+ * KanLogger
+ * A tiny leveled logger for Kan-Redis (we deliberately avoid SLF4J/Logback, see README: "Core Java only").
+ *
+ * Rules for the hot path:
+ * 1. Disabled levels cost one field read: guard expensive arguments with {@link #isDebugEnabled()}.
+ * 2. No String concatenation at the call site: use "{}" templates and pass the arguments.
+ *    Primitive overloads (long) avoid boxing, so a disabled or enabled call allocates nothing.
+ * 3. The calling thread never touches System.out. Events are copied into a pre-allocated
+ *    ring buffer ({@link RingBufferAppender}) and formatted by a background thread.
+ *
+ * The level is read from -Dkan.log.level (DEBUG, INFO, WARN, ERROR, OFF). Default: INFO.
+ */
+public final class KanLogger {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    public static final int OFF = 4;
+
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN", "ERROR"};
+
+    // Volatile so the level can be flipped at runtime (e.g. from a benchmark or JMX).
+    // On x86 a volatile read is a plain MOV, so the disabled check is effectively free.
+    private static volatile int threshold = parseLevel(System.getProperty("kan.log.level", "INFO"));
+
+    private static final RingBufferAppender APPENDER = new RingBufferAppender(8192);
+
+    private final String name;
+
+    private KanLogger(String name) {
+        this.name = name;
+    }
+
+    public static KanLogger getLogger(Class<?> type) {
+        return new KanLogger(type.getSimpleName());
+    }
+
+    public static void setLevel(int level) {
+        threshold = level;
+    }
+
+    public static int getLevel() {
+        return threshold;
+    }
+
+    /** Events dropped because the ring buffer was full (we never block the event loop). */
+    public static long getDroppedEvents() {
+        return APPENDER.getDropped();
+    }
+
+    /** Blocks until everything published so far has been written. Useful on shutdown. */
+    public static void flush() {
+        APPENDER.flush();
+    }
+
+    public static void setOutput(PrintStream out) {
+        APPENDER.setOutput(out);
+    }
+
+    static String levelName(int level) {
+        return LEVEL_NAMES[level];
+    }
+
+    // --- Level checks ---
+
+    public boolean isDebugEnabled() {
+        return threshold <= DEBUG;
+    }
+
+    public boolean isInfoEnabled() {
+        return threshold <= INFO;
+    }
+
+    // --- DEBUG ---
+
+    public void debug(String template) {
+        if (threshold <= DEBUG) APPENDER.append(DEBUG, name, template, 0, null, null, 0, 0, 0, null);
+    }
+
+    public void debug(String template, Object arg) {
+        if (threshold <= DEBUG) APPENDER.append(DEBUG, name, template, 1, arg, null, 0, 0, 0, null);
+    }
+
+    public void debug(String template, long arg) {
+        if (threshold <= DEBUG) APPENDER.append(DEBUG, name, template, 0, null, null, 1, arg, 0, null);
+    }
+
+    public void debug(String template, long arg1, long arg2) {
+        if (threshold <= DEBUG) APPENDER.append(DEBUG, name, template, 0, null, null, 2, arg1, arg2, null);
+    }
+
+    public void debug(String template, Object arg1, long arg2) {
+        if (threshold <= DEBUG) APPENDER.append(DEBUG, name, template, 1, arg1, null, 1, arg2, 0, null);
+    }
+
+    // --- INFO ---
+
+    public void info(String template) {
+        if (threshold <= INFO) APPENDER.append(INFO, name, template, 0, null, null, 0, 0, 0, null);
+    }
+
+    public void info(String template, Object arg) {
+        if (threshold <= INFO) APPENDER.append(INFO, name, template, 1, arg, null, 0, 0, 0, null);
+    }
+
+    public void info(String template, long arg) {
+        if (threshold <= INFO) APPENDER.append(INFO, name, template, 0, null, null, 1, arg, 0, null);
+    }
+
+    // --- WARN ---
+
+    public void warn(String template) {
+        if (threshold <= WARN) APPENDER.append(WARN, name, template, 0, null, null, 0, 0, 0, null);
+    }
+
+    public void warn(String template, Object arg) {
+        if (threshold <= WARN) APPENDER.append(WARN, name, template, 1, arg, null, 0, 0, 0, null);
+    }
+
+    public void warn(String template, Object arg1, Object arg2) {
+        if (threshold <= WARN) APPENDER.append(WARN, name, template, 2, arg1, arg2, 0, 0, 0, null);
+    }
+
+    // --- ERROR ---
+
+    public void error(String template, Throwable error) {
+        if (threshold <= ERROR) APPENDER.append(ERROR, name, template, 0, null, null, 0, 0, 0, error);
+    }
+
+    public void error(String template, Object arg, Throwable error) {
+        if (threshold <= ERROR) APPENDER.append(ERROR, name, template, 1, arg, null, 0, 0, 0, error);
+    }
+
+    private static int parseLevel(String value) {
+        return switch (value.toUpperCase()) {
+            case "DEBUG" -> DEBUG;
+            case "WARN" -> WARN;
+            case "ERROR" -> ERROR;
+            case "OFF" -> OFF;
+            default -> INFO;
+        };
+    }
+}
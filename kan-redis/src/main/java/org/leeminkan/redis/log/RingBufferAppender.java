@@ -0,0 +1,171 @@
+package org.leeminkan.redis.log;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RingBufferAppender
+ * A bounded, multi-producer / single-consumer ring of pre-allocated log events
+ * (a "Disruptor-lite").
+ *
+ * Producers (event loop, workers):
+ * 1. Claim a sequence number with a CAS on {@code head}.
+ * 2. Fill the slot's fields (no allocation: the Slot objects live forever).
+ * 3. Publish by writing the slot's volatile {@code published} field.
+ *
+ * Consumer (one daemon thread):
+ * Waits for the next slot to be published, formats it into a reusable StringBuilder,
+ * writes it out and only then advances {@code tail}, freeing the slot.
+ *
+ * If the ring is full the event is DROPPED and counted: a slow terminal must never
+ * stall the event loop.
+ */
+final class RingBufferAppender {
+
+    private static final class Slot {
+        volatile long published = -1;
+        int level;
+        String logger;
+        String template;
+        int objectCount;
+        Object arg1;
+        Object arg2;
+        long num1;
+        long num2;
+        int numCount;
+        Throwable error;
+        long timestampMillis;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong(0); // next sequence to claim
+    private volatile long tail = 0;                    // next sequence to consume
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private volatile PrintStream out = System.out;
+    private final StringBuilder line = new StringBuilder(256); // consumer-only
+
+    RingBufferAppender(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+
+        Thread consumer = new Thread(this::drainLoop, "kan-log-appender");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    void append(int level, String logger, String template,
+                int objectCount, Object arg1, Object arg2,
+                int numCount, long num1, long num2, Throwable error) {
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= slots.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+
+        Slot slot = slots[(int) (seq & mask)];
+        slot.level = level;
+        slot.logger = logger;
+        slot.template = template;
+        slot.objectCount = objectCount;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.num1 = num1;
+        slot.num2 = num2;
+        slot.numCount = numCount;
+        slot.error = error;
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.published = seq; // volatile write: makes the fields above visible to the consumer
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    void flush() {
+        long target = head.get();
+        while (tail < target) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private void drainLoop() {
+        long next = 0;
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                // Nothing new: flush what we wrote in this batch, then back off
+                out.flush();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+
+            write(slot);
+
+            // Release object references so the ring does not keep garbage alive
+            slot.arg1 = null;
+            slot.arg2 = null;
+            slot.error = null;
+            next++;
+            tail = next; // volatile write: frees the slot for producers
+        }
+    }
+
+    private void write(Slot slot) {
+        PrintStream target = out;
+        line.setLength(0);
+        line.append(slot.timestampMillis).append(' ')
+                .append(KanLogger.levelName(slot.level)).append(' ')
+                .append('[').append(slot.logger).append("] ");
+        format(slot);
+        target.append(line).append('\n');
+        if (slot.error != null) {
+            slot.error.printStackTrace(target);
+        }
+    }
+
+    /**
+     * Replaces each "{}" with the next argument: object arguments first, then primitive ones.
+     * (Every KanLogger overload passes its object arguments before its long arguments.)
+     */
+    private void format(Slot slot) {
+        String template = slot.template;
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while ((at = template.indexOf("{}", from)) >= 0) {
+            line.append(template, from, at);
+            appendArg(slot, argIndex++);
+            from = at + 2;
+        }
+        line.append(template, from, template.length());
+    }
+
+    private void appendArg(Slot slot, int index) {
+        int objectCount = slot.objectCount;
+        if (index < objectCount) {
+            line.append(index == 0 ? slot.arg1 : slot.arg2);
+        } else if (index - objectCount < slot.numCount) {
+            line.append(index - objectCount == 0 ? slot.num1 : slot.num2);
+        } else {
+            line.append("{}");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.leeminkan.redis.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * KanCountMinSketch
+ * "About how often did we see this key?" in a fixed 16 KB, however many distinct keys go by.
+ *
+ * DEPTH rows of WIDTH counters. Adding a key increments one counter per row (each row hashes
+ * differently); the estimate is the smallest of those counters. Collisions only ever add, so
+ * the estimate never undercounts, and it overcounts by at most e/WIDTH of everything added
+ * (about 0.3%) with probability 1 - e^-DEPTH (about 98%).
+ *
+ * Sketches are linear: {@link #subtract} removes everything another sketch counted, which is
+ * how KanHotKeys slides its window. Not thread-safe: the owner locks.
+ */
+final class KanCountMinSketch {
+
+    static final int DEPTH = 4;
+    static final int WIDTH = 1024; // Power of two: the column is a mask, not a modulo
+
+    private final int[] counters = new int[DEPTH * WIDTH];
+
+    /** 64-bit hash of in[offset, offset + length): FNV-1a, then a murmur3 finalizer to spread it. */
+    static long hash(ByteBuffer in, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= in.get(i) & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    void add(long hash) {
+        for (int row = 0; row < DEPTH; row++) {
+            counters[index(hash, row)]++;
+        }
+    }
+
+    long estimate(long hash) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[index(hash, row)]);
+        }
+        return min;
+    }
+
+    void subtract(KanCountMinSketch other) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] -= other.counters[i];
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    // Row i uses h1 + i * h2: DEPTH independent-enough hashes from one 64-bit hash (Kirsch-Mitzenmacher)
+    private static int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * WIDTH + ((h1 + row * h2) & (WIDTH - 1));
+    }
+}
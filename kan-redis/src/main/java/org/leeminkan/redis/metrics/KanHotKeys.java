@@ -0,0 +1,252 @@
+package org.leeminkan.redis.metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KanHotKeys
+ * Which keys take the most reads and writes right now: HOTKEYS and the JMX HotReadKeys /
+ * HotWriteKeys attributes.
+ *
+ * One account key hammered by every client slows the whole node down, and the total command
+ * count can't say which key it is. Counting every key exactly would need a map as big as the
+ * key space, updated on every command. Instead:
+ * - Sampling: the protocol reports 1 in {@link #SAMPLE_RATE} commands. The others pay one
+ *   ThreadLocalRandom call. A key hot enough to matter is sampled thousands of times a minute.
+ * - Count-min sketch: each sampled key increments a fixed-size sketch, which estimates its
+ *   count without storing it (see KanCountMinSketch).
+ * - Top-K heap: a min-heap of the TOP_K keys with the highest estimates. A key enters when its
+ *   estimate beats the smallest one in the heap. Only then is its name copied into a String.
+ * - Sliding window: the window is split into SLOTS sketches. Every slot period the oldest slot
+ *   is subtracted from the total and reused, and the heap is re-estimated, so a key that cooled
+ *   down leaves the list within one window.
+ *
+ * Reads and writes are tracked separately: a read-hot key wants a near-cache (TRACKING), a
+ * write-hot key wants sharding or batching.
+ *
+ * Each kind has its own lock, taken by sampled commands only: 1 in SAMPLE_RATE, so even with
+ * several shard workers it is rarely contended.
+ */
+public final class KanHotKeys {
+
+    /** 1 in this many keyed commands is counted (0 = tracking off). */
+    public static final int SAMPLE_RATE = Integer.getInteger("kan.hotkeys.sample-rate", 16);
+    /** Length of the sliding window, in seconds. */
+    public static final int WINDOW_SECONDS = Integer.getInteger("kan.hotkeys.window", 60);
+    /** Keys kept per kind (reads, writes): the most HOTKEYS can list. */
+    public static final int TOP_K = 32;
+
+    private static final int SLOTS = 6;
+
+    public record HotKey(String key, long opsPerSecond) {
+        @Override
+        public String toString() {
+            return key + " = " + opsPerSecond + "/s";
+        }
+    }
+
+    private final int sampleRate;
+    private final Window reads;
+    private final Window writes;
+
+    public KanHotKeys() {
+        this(SAMPLE_RATE, WINDOW_SECONDS);
+    }
+
+    public KanHotKeys(int sampleRate, int windowSeconds) {
+        this.sampleRate = sampleRate;
+        long slotNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds)) / SLOTS;
+        this.reads = new Window(slotNanos);
+        this.writes = new Window(slotNanos);
+    }
+
+    /** Hot path: should this command be counted? True for 1 in {@link #SAMPLE_RATE} calls. */
+    public boolean sample() {
+        return sampleRate > 0 && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    /** Counts one sampled access to the key in in[offset, offset + length) (UTF-8, not consumed). */
+    public void record(boolean write, ByteBuffer in, int offset, int length) {
+        (write ? writes : reads).add(in, offset, length, System.nanoTime());
+    }
+
+    /** The n hottest keys of one kind, hottest first. Rates are estimates, scaled up by the sample rate. */
+    public List<HotKey> top(boolean write, int n) {
+        return (write ? writes : reads).top(n, sampleRate, System.nanoTime());
+    }
+
+    /** HOTKEYS text: settings, then "# reads" and "# writes" sections with one "ops/s key" line each. */
+    public String format(int n) {
+        StringBuilder text = new StringBuilder()
+                .append("sample_rate:").append(sampleRate).append("\r\n")
+                .append("window_seconds:").append(WINDOW_SECONDS).append("\r\n");
+        appendSection(text, "# reads", top(false, n));
+        appendSection(text, "# writes", top(true, n));
+        return text.toString();
+    }
+
+    private static void appendSection(StringBuilder text, String title, List<HotKey> keys) {
+        text.append(title).append("\r\n");
+        for (HotKey key : keys) {
+            text.append(key.opsPerSecond()).append(' ').append(key.key()).append("\r\n");
+        }
+    }
+
+    // A key in the top-K heap. The hash identifies it, so the heap is searched without a String
+    private static final class Candidate {
+        final long hash;
+        final String key;
+        long count;
+
+        Candidate(long hash, String key, long count) {
+            this.hash = hash;
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    // One kind (reads or writes): the slot sketches, their running total, and the top-K min-heap
+    private static final class Window {
+        private final long slotNanos;
+        private final KanCountMinSketch[] slots = new KanCountMinSketch[SLOTS];
+        private final KanCountMinSketch total = new KanCountMinSketch();
+        private final Candidate[] heap = new Candidate[TOP_K];
+        private int size;
+        private int current;
+        private long slotStart = System.nanoTime();
+        private long countingSince = slotStart; // Oldest sample the slots can still hold
+
+        Window(long slotNanos) {
+            this.slotNanos = slotNanos;
+            for (int i = 0; i < SLOTS; i++) {
+                slots[i] = new KanCountMinSketch();
+            }
+        }
+
+        synchronized void add(ByteBuffer in, int offset, int length, long now) {
+            advance(now);
+            long hash = KanCountMinSketch.hash(in, offset, length);
+            slots[current].add(hash);
+            total.add(hash);
+            long estimate = total.estimate(hash);
+
+            // K is small: a linear search by hash is cheaper than keeping a second index
+            for (int i = 0; i < size; i++) {
+                if (heap[i].hash == hash) {
+                    heap[i].count = estimate;
+                    siftDown(i); // Counts only grow between rotations: it can only move away from the root
+                    return;
+                }
+            }
+            if (size < TOP_K) {
+                heap[size] = new Candidate(hash, key(in, offset, length), estimate);
+                siftUp(size++);
+            } else if (estimate > heap[0].count) {
+                heap[0] = new Candidate(hash, key(in, offset, length), estimate);
+                siftDown(0);
+            }
+        }
+
+        synchronized List<HotKey> top(int n, int sampleRate, long now) {
+            advance(now);
+            Candidate[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted, Comparator.comparingLong((Candidate c) -> c.count).reversed());
+
+            // Rate over the time the window actually covers (less than a full window right after start)
+            long covered = Math.min(now - countingSince, (SLOTS - 1) * slotNanos + (now - slotStart));
+            double seconds = Math.max(1.0, covered / 1e9);
+            List<HotKey> keys = new ArrayList<>();
+            for (int i = 0; i < Math.min(n, sorted.length); i++) {
+                keys.add(new HotKey(sorted[i].key, Math.round(sorted[i].count * sampleRate / seconds)));
+            }
+            return keys;
+        }
+
+        // Drops every slot that is older than the window, then re-estimates the heap
+        private void advance(long now) {
+            if (now - slotStart < slotNanos) {
+                return;
+            }
+            if (now - slotStart >= SLOTS * slotNanos) {
+                // Idle for a whole window: nothing left to subtract slot by slot
+                for (KanCountMinSketch slot : slots) {
+                    slot.clear();
+                }
+                total.clear();
+                slotStart = now;
+                countingSince = now;
+            } else {
+                while (now - slotStart >= slotNanos) {
+                    current = (current + 1) % SLOTS;
+                    total.subtract(slots[current]);
+                    slots[current].clear();
+                    slotStart += slotNanos;
+                }
+            }
+            rebuildHeap();
+        }
+
+        private void rebuildHeap() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                heap[i].count = total.estimate(heap[i].hash);
+                if (heap[i].count > 0) {
+                    heap[kept++] = heap[i];
+                }
+            }
+            Arrays.fill(heap, kept, size, null);
+            size = kept;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent].count <= heap[i].count) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left].count < heap[smallest].count) {
+                    smallest = left;
+                }
+                if (right < size && heap[right].count < heap[smallest].count) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            Candidate tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+
+        private static String key(ByteBuffer in, int offset, int length) {
+            byte[] bytes = new byte[length];
+            in.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.leeminkan.redis.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * KanMetrics
+ * Central registry for every counter Kan-Redis updates on the hot path.
+ *
+ * Counters are {@link LongAdder}s instead of AtomicLong/AtomicInteger:
+ * an AtomicLong is a single cache line that every writer thread fights over
+ * (CAS retry + cache-line ping-pong). A LongAdder stripes the value across
+ * per-thread cells, so writes are uncontended and the cost moves to the
+ * reader, which sums the cells.
+ *
+ * That trade-off fits monitoring perfectly: we increment millions of times
+ * per second, but JMX only reads a few times per minute.
+ */
+public final class KanMetrics {
+
+    private final LongAdder totalCommands = new LongAdder();
+    private final LongAdder connectedClients = new LongAdder();
+    private final LongAdder usedMemoryBytes = new LongAdder();
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder compressionSavedBytes = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder idleConnectionsClosed = new LongAdder();
+    private final LongAdder connectionBufferBytes = new LongAdder();
+    // Not a counter, but fed from the same hot path: which keys those commands hit
+    private final KanHotKeys hotKeys = new KanHotKeys();
+
+    // --- Hot path (writers) ---
+
+    public void recordCommand() {
+        totalCommands.increment();
+    }
+
+    public void clientConnected() {
+        connectedClients.increment();
+    }
+
+    public void clientDisconnected() {
+        connectedClients.decrement();
+    }
+
+    public void recordAllocation(long bytes) {
+        usedMemoryBytes.add(bytes);
+    }
+
+    public void recordCompression(long originalBytes, long compressedBytes) {
+        compressedValues.increment();
+        compressionSavedBytes.add(originalBytes - compressedBytes);
+    }
+
+    /** Over kan.max-clients: accepted, answered with an error, closed. */
+    public void recordRejectedConnection() {
+        rejectedConnections.increment();
+    }
+
+    public void recordIdleConnectionClosed() {
+        idleConnectionsClosed.increment();
+    }
+
+    /** Change in heap memory held by connections (input buffers, queued output). */
+    public void recordConnectionMemory(long deltaBytes) {
+        connectionBufferBytes.add(deltaBytes);
+    }
+
+    /** The hot-key tracker: the protocol samples into it, HOTKEYS and JMX read it. */
+    public KanHotKeys hotKeys() {
+        return hotKeys;
+    }
+
+    // --- Cold path (readers, e.g. KanMonitor) ---
+    // sum() is not an atomic snapshot, but it is exact once writers are quiet,
+    // which is all a metrics dashboard needs.
+
+    public long getTotalCommands() {
+        return totalCommands.sum();
+    }
+
+    public int getConnectedClients() {
+        return connectedClients.intValue();
+    }
+
+    public long getUsedMemoryBytes() {
+        return usedMemoryBytes.sum();
+    }
+
+    public long getCompressedValues() {
+        return compressedValues.sum();
+    }
+
+    public long getCompressionSavedBytes() {
+        return compressionSavedBytes.sum();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public long getIdleConnectionsClosed() {
+        return idleConnectionsClosed.sum();
+    }
+
+    public long getConnectionBufferBytes() {
+        return connectionBufferBytes.sum();
+    }
+}
@@ -0,0 +1,119 @@
+package org.leeminkan.redis.pubsub;
+
+import org.leeminkan.redis.KanSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * KanPubSub
+ * Channel registry and fan-out for SUBSCRIBE / UNSUBSCRIBE / PUBLISH.
+ *
+ * Fan-out cost is dominated by the write syscalls, so PUBLISH does the rest only once:
+ * - The push frame is encoded ONCE into a direct buffer (no heap -> native copy in the kernel write).
+ * - Every subscriber gets a read-only duplicate() of it: shared bytes, private position.
+ * - When every subscriber wrote it at once, the same direct buffer is reused for the next
+ *   message (zero allocation in the steady state). If any subscriber had to queue it,
+ *   that subscriber now owns a view of it, so the next PUBLISH encodes into a fresh buffer.
+ *
+ * Subscriber sets are copy-on-write: PUBLISH (hot) iterates without locking,
+ * SUBSCRIBE (rare) pays the copy.
+ */
+public class KanPubSub {
+
+    private static final int SCRATCH_SIZE = 4096;
+
+    private final ConcurrentHashMap<String, CopyOnWriteArraySet<KanSession>> channels = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<KanSession, Set<String>> subscriptions = new ConcurrentHashMap<>();
+
+    // Reusable encode buffer. Guarded by "this" (publish is serialized)
+    private ByteBuffer scratch;
+
+    /** @return the number of channels the session is now subscribed to */
+    public int subscribe(KanSession session, String channel) {
+        channels.computeIfAbsent(channel, c -> new CopyOnWriteArraySet<>()).add(session);
+        Set<String> subscribed = subscriptions.computeIfAbsent(session, s -> ConcurrentHashMap.newKeySet());
+        subscribed.add(channel);
+        return subscribed.size();
+    }
+
+    /** @return the number of channels the session is still subscribed to */
+    public int unsubscribe(KanSession session, String channel) {
+        channels.computeIfPresent(channel, (c, sessions) -> {
+            sessions.remove(session);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        Set<String> subscribed = subscriptions.computeIfPresent(session, (s, set) -> {
+            set.remove(channel);
+            return set.isEmpty() ? null : set;
+        });
+        return subscribed == null ? 0 : subscribed.size();
+    }
+
+    public boolean isSubscribed(KanSession session) {
+        return subscriptions.containsKey(session);
+    }
+
+    /** Called by the transport when a connection closes. */
+    public void unsubscribeAll(KanSession session) {
+        Set<String> subscribed = subscriptions.remove(session);
+        if (subscribed != null) {
+            for (String channel : subscribed) {
+                unsubscribe(session, channel);
+            }
+        }
+    }
+
+    /**
+     * Sends a message to every subscriber of the channel.
+     * Push frame: [Len=-2][PushLen][Kind=1][ChannelLen][Channel][MsgLen][Msg]
+     *
+     * @return the number of subscribers that received (or queued) it
+     */
+    public synchronized int publish(String channel, byte[] message) {
+        Set<KanSession> sessions = channels.get(channel);
+        if (sessions == null || sessions.isEmpty()) {
+            return 0;
+        }
+
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        int pushLength = 1 + 4 + channelBytes.length + 4 + message.length;
+        int frameLength = 4 + 4 + pushLength;
+
+        ByteBuffer frame = scratch;
+        if (frame == null || frame.capacity() < frameLength) {
+            frame = ByteBuffer.allocateDirect(Math.max(SCRATCH_SIZE, frameLength));
+        }
+        frame.clear();
+        frame.putInt(KanSession.PUSH_MARKER);
+        frame.putInt(pushLength);
+        frame.put(KanSession.PUSH_MESSAGE);
+        frame.putInt(channelBytes.length);
+        frame.put(channelBytes);
+        frame.putInt(message.length);
+        frame.put(message);
+        frame.flip();
+        ByteBuffer shared = frame.asReadOnlyBuffer();
+
+        int receivers = 0;
+        boolean retained = false;
+        for (KanSession session : sessions) {
+            switch (session.push(shared.duplicate())) {
+                case WRITTEN -> receivers++;
+                case QUEUED -> {
+                    receivers++;
+                    retained = true;
+                }
+                case DROPPED -> {
+                    // The transport closed it (and called unsubscribeAll): nothing else to do
+                }
+            }
+        }
+        // Someone still holds a view of these bytes: don't overwrite them with the next message
+        scratch = retained ? null : frame;
+        return receivers;
+    }
+}
@@ -0,0 +1,170 @@
+package org.leeminkan.redis.shard;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanSession;
+import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.KanWal;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.pubsub.KanPubSub;
+import org.leeminkan.redis.tracking.KanTracking;
+import org.leeminkan.redis.transport.KanTransport;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * KanShard
+ * One slice of the key space and the only thread that ever touches it.
+ *
+ * Owns a complete KanStore (its own off-heap arena, its own index, its own WAL segment) and a
+ * KanProtocol on top of it. The event loop hands it complete command frames through
+ * {@link #inbound}; the worker runs them and hands the requests back, response attached,
+ * through {@link #outbound}. Nothing else is shared, so the store's stripe locks are never
+ * contended and the data stays in this core's caches.
+ */
+final class KanShard implements Runnable {
+
+    private static final KanLogger LOG = KanLogger.getLogger(KanShard.class);
+
+    // Empty polls before the worker parks: a busy shard never pays for a park/unpark
+    private static final int SPIN_LIMIT = 1000;
+
+    final int index;
+    private final int shardCount;
+    final KanStore store;
+    private final KanWal wal;
+    private final KanProtocol protocol;
+
+    final KanSpscQueue<KanShards.Request> inbound;  // Event loop -> worker
+    final KanSpscQueue<KanShards.Request> outbound; // Worker -> event loop
+
+    // Requests submitted and not drained back yet. Event loop only: keeps outbound from ever filling
+    int inFlight;
+
+    private final ByteBuffer responseBuffer = ByteBuffer.allocate(KanTransport.INITIAL_BUFFER_SIZE);
+    private final WorkerSession session = new WorkerSession();
+
+    private Thread worker;
+    private Runnable completionSignal;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    KanShard(int index, int shardCount, String walPath, KanMetrics metrics, int queueCapacity) throws IOException {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.wal = new KanWal(walPath);
+        this.store = new KanStore(wal, metrics);
+        wal.replay(store);
+        // Pub/Sub and TRACKING run on the event loop, so this protocol never sees a subscriber
+        this.protocol = new KanProtocol(store, metrics, new KanPubSub(), new KanTracking());
+        this.inbound = new KanSpscQueue<>(queueCapacity);
+        this.outbound = new KanSpscQueue<>(queueCapacity);
+    }
+
+    void start(Runnable completionSignal) {
+        this.completionSignal = completionSignal;
+        this.worker = Thread.ofPlatform().name("kan-shard-" + index).daemon().start(this);
+    }
+
+    /** Event loop only. The caller guarantees {@code inFlight < capacity}, so this can't fail. */
+    void submit(KanShards.Request request) {
+        inbound.offer(request);
+        inFlight++;
+        // Dekker-style handshake with the worker's park: publish, then check whether it sleeps
+        VarHandle.fullFence();
+        if (sleeping) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    void stop() throws IOException {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        wal.close();
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        boolean posted = false;
+        while (running) {
+            KanShards.Request request = inbound.poll();
+            if (request != null) {
+                execute(request);
+                outbound.offer(request); // Never full: see inFlight
+                posted = true;
+                idle = 0;
+                continue;
+            }
+            if (posted) {
+                // One wake-up per batch, not per command
+                completionSignal.run();
+                posted = false;
+            }
+            if (++idle < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            sleeping = true;
+            VarHandle.fullFence();
+            if (inbound.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+            idle = 0;
+        }
+    }
+
+    private void execute(KanShards.Request request) {
+        responseBuffer.clear();
+        session.current = request;
+        try {
+            if (request.streaming != null) {
+                protocol.completeStreamingSet(request.streaming, responseBuffer);
+            } else if (!protocol.process(request.frame, responseBuffer, session)) {
+                responseBuffer.putInt(-1); // Can't happen: the router only sends complete frames
+            }
+            if (request.scanShard >= 0) {
+                KanShards.globalizeScanCursor(responseBuffer, request.scanShard, shardCount);
+            }
+        } catch (RuntimeException e) {
+            // Never let one bad command kill the shard: every later request would hang
+            LOG.error("Shard {} failed a command", index, e);
+            responseBuffer.clear();
+            responseBuffer.putInt(-1);
+        }
+        responseBuffer.flip();
+        ByteBuffer response = ByteBuffer.allocate(responseBuffer.remaining());
+        response.put(responseBuffer).flip();
+        request.response = response;
+        request.frame = null;
+        request.streaming = null;
+        session.current = null;
+    }
+
+    /** What the protocol sees as "the connection" on a worker: it can only take large GET bodies. */
+    private static final class WorkerSession implements KanSession {
+        KanShards.Request current;
+
+        @Override
+        public PushResult push(ByteBuffer frame) {
+            return PushResult.DROPPED; // No subscribers or tracking on shard workers
+        }
+
+        @Override
+        public boolean attach(ByteBuffer body) {
+            current.attached = body;
+            return true;
+        }
+    }
+}
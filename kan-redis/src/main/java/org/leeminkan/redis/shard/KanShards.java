@@ -0,0 +1,407 @@
+package org.leeminkan.redis.shard;
+
+import org.leeminkan.redis.CommandType;
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanSession;
+import org.leeminkan.redis.KanStore;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * KanShards
+ * Shared-nothing mode (-Dkan.shards=N): the key space is split into N {@link KanShard}s,
+ * each owned by one worker thread, the way Dragonfly and ScyllaDB split theirs per core.
+ *
+ * The event loop stays the only thread doing socket I/O. For each complete command it:
+ * 1. Finds the owner shard from the key's hash (the first field of every keyed command).
+ * 2. Copies the frame into a {@link Request} and puts it on that shard's SPSC queue.
+ * 3. Later drains the shard's completion queue and writes the responses, in each
+ *    connection's command order (a GET on shard 2 may finish before an earlier SET on shard 0).
+ *
+ * Commands that are not about one key:
+ * - SUBSCRIBE / UNSUBSCRIBE / PUBLISH: {@link #LOCAL}, run by the event loop's own KanProtocol.
+ * - MEMORY: {@link #LOCAL} too: its report walks every shard's store (under each key's map lock).
+ * - HOTKEYS: {@link #LOCAL}: every shard samples into the one tracker in the shared KanMetrics.
+ * - SCAN: walks the shards one after the other. The top byte of the cursor is the shard.
+ * - EXEC: runs on the shard that owns all of its keys; keys on several shards are an error
+ *   (like CROSSSLOT in Redis Cluster), since no thread may lock another shard's keys.
+ * - TRACKING: refused, invalidations would have to cross threads.
+ *
+ * Threading: every method here is for the event loop thread (the single producer of every
+ * inbound queue and single consumer of every outbound queue), except what KanShard runs.
+ */
+public final class KanShards {
+
+    private static final KanLogger LOG = KanLogger.getLogger(KanShards.class);
+
+    /** Requests per shard queue (in flight from the event loop to one shard). */
+    private static final int QUEUE_CAPACITY = Integer.getInteger("kan.shards.queue-capacity", 4096);
+
+    // SCAN cursors: [Shard (8 bits)][Shard-local cursor (56 bits)]
+    private static final int SCAN_SHARD_SHIFT = 56;
+    private static final long SCAN_LOCAL_MASK = (1L << SCAN_SHARD_SHIFT) - 1;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("kan-data-\\d+-of-(\\d+)\\.log");
+
+    /** Marker returned by {@link #route}: the event loop runs this command itself. */
+    public static final Request LOCAL = new Request(null);
+
+    private final KanShard[] shards;
+    private Consumer<Request> completionHandler;
+
+    /**
+     * One command on its way to a shard and back.
+     * Filled by the worker, then handed back through the outbound queue (which publishes
+     * every field to the event loop): nothing here is volatile.
+     */
+    public static final class Request {
+        private final KanSession owner;
+        ByteBuffer frame;                  // The command, copied out of the connection's buffer
+        KanProtocol.StreamingSet streaming; // ...or a large SET value received off-heap (ADR-003)
+        int scanShard = -1;                // SCAN: the shard whose cursor space this is
+        ByteBuffer response;
+        ByteBuffer attached;               // Large GET value (ADR-003), written after the response
+        boolean done;
+
+        private Request(KanSession owner) {
+            this.owner = owner;
+        }
+
+        /** A request answered without a shard (routing errors, or a local command queued behind others). */
+        public static Request completed(KanSession owner, ByteBuffer response) {
+            Request request = new Request(owner);
+            request.response = response;
+            request.done = true;
+            return request;
+        }
+
+        public KanSession owner() {
+            return owner;
+        }
+
+        /** True once the response is ready (always read on the event loop). */
+        public boolean isDone() {
+            return done;
+        }
+
+        public ByteBuffer response() {
+            return response;
+        }
+
+        public ByteBuffer attached() {
+            return attached;
+        }
+    }
+
+    /**
+     * Opens (and replays) one WAL segment per shard: kan-data-{i}-of-{N}.log.
+     * Keys are placed by hash modulo N, so segments written with another N can't be loaded.
+     */
+    public KanShards(int count, KanMetrics metrics) throws IOException {
+        if (count < 1 || count > 1 << (Long.SIZE - SCAN_SHARD_SHIFT - 1)) {
+            throw new IllegalArgumentException("kan.shards must be between 1 and 127, got " + count);
+        }
+        checkSegments(count);
+        shards = new KanShard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new KanShard(i, count, "kan-data-" + i + "-of-" + count + ".log", metrics, QUEUE_CAPACITY);
+        }
+        LOG.info("Shared-nothing mode: {} shards", count);
+    }
+
+    public int size() {
+        return shards.length;
+    }
+
+    /** The store behind shard {@code index} (memory figures are in the shared KanMetrics). */
+    public KanStore getStore(int index) {
+        return shards[index].store;
+    }
+
+    /**
+     * Starts the workers.
+     * @param wakeup      called by a worker after it queued completions (e.g. Selector::wakeup)
+     * @param onCompleted called by {@link #drainCompletions()} for each finished request
+     */
+    public void start(Runnable wakeup, Consumer<Request> onCompleted) {
+        this.completionHandler = onCompleted;
+        for (KanShard shard : shards) {
+            shard.start(wakeup);
+        }
+    }
+
+    public void stop() {
+        for (KanShard shard : shards) {
+            try {
+                shard.stop();
+            } catch (IOException e) {
+                LOG.error("Error closing shard {}", shard.index, e);
+            }
+        }
+    }
+
+    /** Hands every finished request back to the transport. */
+    public void drainCompletions() {
+        for (KanShard shard : shards) {
+            Request request;
+            while ((request = shard.outbound.poll()) != null) {
+                shard.inFlight--;
+                request.done = true;
+                completionHandler.accept(request);
+            }
+        }
+    }
+
+    /**
+     * Routes the command at the buffer's position.
+     *
+     * @return null if the command is incomplete (nothing consumed), {@link #LOCAL} if the caller
+     * must process it itself (nothing consumed), otherwise a request that consumed the frame:
+     * submitted to its shard, or already done (error response)
+     */
+    public Request route(ByteBuffer in, KanSession owner) {
+        int start = in.position();
+        if (!in.hasRemaining()) {
+            return null;
+        }
+        CommandType type = CommandType.fromByte(in.get(start));
+        if (type == null) {
+            return LOCAL; // The protocol answers unknown commands
+        }
+        return switch (type) {
+            case SUBSCRIBE, UNSUBSCRIBE, PUBLISH, MEMORY, HOTKEYS -> LOCAL;
+            case TRACKING -> {
+                if (in.remaining() < 2) {
+                    yield null;
+                }
+                in.position(start + 2);
+                yield Request.completed(owner, errorResponse()); // Not available with shards
+            }
+            case SCAN -> routeScan(in, owner);
+            case EXEC -> routeExec(in, owner);
+            default -> {
+                int length = frameLength(in, start, layout(type));
+                if (length < 0) {
+                    yield null;
+                }
+                yield submit(shardOf(in, start + 1), copyFrame(in, length), owner, -1);
+            }
+        };
+    }
+
+    /** ADR-003: a large SET value has been received off-heap, its shard stores it. */
+    public Request submitStreamed(KanProtocol.StreamingSet streaming, KanSession owner) {
+        byte[] key = streaming.key().getBytes(StandardCharsets.UTF_8);
+        Request request = new Request(owner);
+        request.streaming = streaming;
+        return submit(shards[indexOf(hash(ByteBuffer.wrap(key), 0, key.length))], request);
+    }
+
+    // --- Routing ---
+
+    private Request routeScan(ByteBuffer in, KanSession owner) {
+        int start = in.position();
+        int length = frameLength(in, start, "LBI");
+        if (length < 0) {
+            return null;
+        }
+        long cursor = in.getLong(start + 1);
+        int shard = (int) (cursor >>> SCAN_SHARD_SHIFT);
+        if (shard >= shards.length) {
+            in.position(start + length);
+            return Request.completed(owner, errorResponse()); // Not a cursor we handed out
+        }
+        ByteBuffer frame = copyFrame(in, length);
+        frame.putLong(1, cursor & SCAN_LOCAL_MASK); // The shard's own cursor
+        return submit(shard, frame, owner, shard);
+    }
+
+    /**
+     * Called by the worker on its SCAN response: [Len][NextCursor][Count]...
+     * Adds the shard to the cursor, and when this shard is done, points at the next one.
+     */
+    static void globalizeScanCursor(ByteBuffer response, int shard, int shardCount) {
+        if (response.position() < 4 + Long.BYTES || response.getInt(0) < 0) {
+            return; // Error response
+        }
+        long next = response.getLong(4);
+        long global;
+        if (next != 0) {
+            global = (long) shard << SCAN_SHARD_SHIFT | next;
+        } else if (shard + 1 < shardCount) {
+            global = (long) (shard + 1) << SCAN_SHARD_SHIFT; // Next shard, from its cursor 0
+        } else {
+            global = 0; // Last shard done: so is the scan
+        }
+        response.putLong(4, global);
+    }
+
+    /** EXEC runs on one shard: the one owning every key it watches or writes. */
+    private Request routeExec(ByteBuffer in, KanSession owner) {
+        int start = in.position();
+        if (in.remaining() < 1 + 4) {
+            return null;
+        }
+        int bodyLength = in.getInt(start + 1);
+        if (bodyLength < 0) {
+            return submit(0, copyFrame(in, 1 + 4), owner, -1); // Shard 0 answers "malformed"
+        }
+        if (in.remaining() < 1 + 4 + bodyLength) {
+            return null;
+        }
+        int shard = -1;
+        try {
+            int end = start + 1 + 4 + bodyLength;
+            int at = start + 1 + 4;
+            int watchCount = in.getInt(at);
+            at += 4;
+            for (int i = 0; i < watchCount; i++) {
+                shard = sameShard(shard, shardOf(in, at));
+                at = skipField(in, at, end); // Key
+                at = skipField(in, at, end); // Expected value
+            }
+            int commandCount = in.getInt(at);
+            at += 4;
+            for (int i = 0; i < commandCount; i++) {
+                shard = sameShard(shard, shardOf(in, at + 4 + 1));
+                at = skipField(in, at, end); // [CmdLen][Command frame]
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            shard = 0; // Malformed body: let a shard's KanProtocol answer it
+        } catch (IllegalStateException e) {
+            in.position(start + 1 + 4 + bodyLength);
+            return Request.completed(owner, errorResponse()); // Keys on several shards
+        }
+        return submit(Math.max(shard, 0), copyFrame(in, 1 + 4 + bodyLength), owner, -1);
+    }
+
+    // Skips a [Len][Bytes] field of an EXEC body, refusing to leave the body
+    private static int skipField(ByteBuffer in, int at, int end) {
+        int length = in.getInt(at);
+        if (length < 0 || length > end - at - 4) {
+            throw new IndexOutOfBoundsException("field outside the EXEC body");
+        }
+        return at + 4 + length;
+    }
+
+    private static int sameShard(int current, int next) {
+        if (current >= 0 && current != next) {
+            throw new IllegalStateException("EXEC keys span several shards");
+        }
+        return next;
+    }
+
+    private Request submit(int shard, ByteBuffer frame, KanSession owner, int scanShard) {
+        Request request = new Request(owner);
+        request.frame = frame;
+        request.scanShard = scanShard;
+        return submit(shards[shard], request);
+    }
+
+    private Request submit(KanShard shard, Request request) {
+        // Back-pressure: with at most "capacity" requests out, neither of its queues can overflow.
+        // Completions keep flowing while we wait, so the worker always makes progress
+        while (shard.inFlight >= shard.inbound.capacity()) {
+            drainCompletions();
+            Thread.onSpinWait();
+        }
+        shard.submit(request);
+        return request;
+    }
+
+    // The shard owning the key whose [KeyLen][Key] field starts at "at"
+    private int shardOf(ByteBuffer in, int at) {
+        int keyLength = Math.max(in.getInt(at), 0);
+        return indexOf(hash(in, at + 4, keyLength));
+    }
+
+    private int indexOf(int hash) {
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    // FNV-1a over the key bytes, then the high bits folded in (the modulo only sees the low ones)
+    private static int hash(ByteBuffer in, int from, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < from + length; i++) {
+            hash ^= in.get(i);
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static ByteBuffer copyFrame(ByteBuffer in, int length) {
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put(0, in, in.position(), length);
+        in.position(in.position() + length);
+        return frame;
+    }
+
+    private static ByteBuffer errorResponse() {
+        ByteBuffer response = ByteBuffer.allocate(4);
+        response.putInt(0, -1);
+        return response;
+    }
+
+    /**
+     * Field layout of the keyed commands (see PROTOCOL.md), after the command byte:
+     * B = [Len][Bytes], L = Long, D = Double, I = Int.
+     */
+    private static String layout(CommandType type) {
+        return switch (type) {
+            case GET, INCR, HGETALL, DEL -> "B";
+            case SET, HGET, HDEL, ZREM -> "BB";
+            case CAS, HSET -> "BBB";
+            case INCRBY, DECRBY -> "BL";
+            case THROTTLE -> "BLL";
+            case ZADD -> "BDB";
+            case ZRANGE -> "BII";
+            case ZRANGEBYSCORE -> "BDDII";
+            default -> throw new IllegalArgumentException("not a keyed command: " + type);
+        };
+    }
+
+    /** @return the frame's total length (command byte included), or -1 if it isn't all here yet */
+    private static int frameLength(ByteBuffer in, int start, String layout) {
+        long at = start + 1;
+        for (int i = 0; i < layout.length(); i++) {
+            switch (layout.charAt(i)) {
+                case 'B' -> {
+                    if (at + 4 > in.limit()) {
+                        return -1;
+                    }
+                    at += 4 + Math.max(in.getInt((int) at), 0);
+                }
+                case 'L', 'D' -> at += 8;
+                default -> at += 4;
+            }
+        }
+        return at > in.limit() ? -1 : (int) (at - start);
+    }
+
+    // Refuses to start on segments written with another shard count: their keys would be misplaced
+    private static void checkSegments(int count) throws IOException {
+        String[] names = new File(".").list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            Matcher matcher = SEGMENT_NAME.matcher(name);
+            if (matcher.matches() && Integer.parseInt(matcher.group(1)) != count) {
+                throw new IOException("Found " + name + " but kan.shards=" + count
+                        + ": start with the shard count the data was written with");
+            }
+        }
+        File unsharded = new File("kan-data.log");
+        if (unsharded.length() > 0) {
+            LOG.warn("kan-data.log (unsharded mode) is not loaded when kan.shards > 1");
+        }
+    }
+}
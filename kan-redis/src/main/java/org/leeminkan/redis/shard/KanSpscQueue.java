@@ -0,0 +1,111 @@
+package org.leeminkan.redis.shard;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * KanSpscQueue
+ * A bounded, lock-free Single-Producer / Single-Consumer ring buffer (Lamport's queue).
+ *
+ * Exactly one thread may call {@link #offer} and exactly one (other) thread {@link #poll}.
+ * With that restriction there is nothing to CAS: each index has one writer, and the
+ * element handover is ordered by a release-store of the index and an acquire-load on the other side.
+ *
+ * Two details matter for throughput:
+ * - Each side caches the other side's index and only re-reads it (a cache miss on a line the
+ *   other core owns) when the cached value says the queue looks full / empty.
+ * - Producer and consumer fields sit on different cache lines (the padding classes below),
+ *   so the two cores don't invalidate each other's line on every operation (false sharing).
+ */
+public final class KanSpscQueue<E> extends SpscConsumerFields {
+
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(SpscProducerFields.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(SpscConsumerFields.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] buffer;
+    private final int mask;
+
+    // Padding after the consumer fields (the JVM lays out superclass fields first)
+    @SuppressWarnings("unused")
+    private long p14, p15, p16, p17, p18, p19, p20;
+
+    /** @param capacity rounded up to a power of two */
+    public KanSpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /** Producer thread only. @return false if the queue is full */
+    public boolean offer(E element) {
+        long t = tail; // Only we write it: a plain read is fine
+        if (t - headCache >= buffer.length) {
+            headCache = (long) HEAD.getAcquire(this);
+            if (t - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = element;
+        TAIL.setRelease(this, t + 1); // Publishes the element to the consumer
+        return true;
+    }
+
+    /** Consumer thread only. @return the oldest element, or null if the queue is empty */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head;
+        if (h >= tailCache) {
+            tailCache = (long) TAIL.getAcquire(this);
+            if (h >= tailCache) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null; // Don't keep finished requests reachable
+        HEAD.setRelease(this, h + 1); // Hands the slot back to the producer
+        return element;
+    }
+
+    /** Either thread: a snapshot, exact only when called by the consumer with no concurrent offer. */
+    public boolean isEmpty() {
+        return (long) HEAD.getAcquire(this) >= (long) TAIL.getAcquire(this);
+    }
+}
+
+// --- Field layout of KanSpscQueue: [pad][tail, headCache][pad][head, tailCache][pad] ---
+// (Superclass fields are laid out first, so a class hierarchy is how Java code pins field order)
+
+@SuppressWarnings("unused")
+abstract class SpscLeftPad {
+    private long p0, p1, p2, p3, p4, p5, p6;
+}
+
+abstract class SpscProducerFields extends SpscLeftPad {
+    long tail;      // Next slot to write. Written by the producer only
+    long headCache; // Producer's last view of head
+}
+
+@SuppressWarnings("unused")
+abstract class SpscMiddlePad extends SpscProducerFields {
+    private long p7, p8, p9, p10, p11, p12, p13;
+}
+
+abstract class SpscConsumerFields extends SpscMiddlePad {
+    long head;      // Next slot to read. Written by the consumer only
+    long tailCache; // Consumer's last view of tail
+}
@@ -0,0 +1,96 @@
+package org.leeminkan.redis.tracking;
+
+import org.leeminkan.redis.KanSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * KanTracking
+ * Server side of client-side caching (like Redis CLIENT TRACKING, default mode).
+ *
+ * - A connection turns tracking on with TRACKING 1.
+ * - Every GET it sends afterwards records "this connection may have cached this key".
+ * - When the key is written (SET, CAS, INCR..., DEL, ...), each recorded connection gets one
+ *   invalidation push and the record is removed: the client will re-read (and so re-register)
+ *   only if it still cares about the key.
+ *
+ * Memory is bounded by {@link #MAX_KEYS}: when the table is full, an arbitrary tracked key is
+ * invalidated early to make room. Clients then just miss once more; they never read stale data.
+ * Closed connections are not searched for eagerly; they are skipped (and dropped from the
+ * table) the next time one of their keys changes.
+ */
+public class KanTracking {
+
+    private static final int MAX_KEYS = Integer.getInteger("kan.tracking.max-keys", 1_000_000);
+
+    private final Set<KanSession> enabled = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Set<KanSession>> readers = new ConcurrentHashMap<>();
+
+    public void enable(KanSession session) {
+        enabled.add(session);
+    }
+
+    public void disable(KanSession session) {
+        enabled.remove(session);
+    }
+
+    /** Called by the transport when a connection closes. */
+    public void connectionClosed(KanSession session) {
+        enabled.remove(session);
+    }
+
+    /** GET path: remember that this connection read the key (no-op unless it enabled tracking). */
+    public void keyRead(KanSession session, String key) {
+        if (session == null || !enabled.contains(session)) {
+            return;
+        }
+        if (readers.size() >= MAX_KEYS && !readers.containsKey(key)) {
+            evictOne();
+        }
+        readers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(session);
+    }
+
+    /** Write path: push an invalidation to every connection that read the key since its last change. */
+    public void keyModified(String key) {
+        if (readers.isEmpty()) {
+            return; // Nobody is tracking anything: the common case costs one read
+        }
+        Set<KanSession> sessions = readers.remove(key);
+        if (sessions != null) {
+            invalidate(key, sessions);
+        }
+    }
+
+    private void evictOne() {
+        Iterator<String> keys = readers.keySet().iterator();
+        if (keys.hasNext()) {
+            keyModified(keys.next());
+        }
+    }
+
+    /**
+     * Push frame: [Marker=-2][PushLen][Kind=2][KeyLen][Key].
+     * Encoded once; each connection gets a read-only duplicate.
+     */
+    private void invalidate(String key, Set<KanSession> sessions) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + 4 + 1 + 4 + keyBytes.length);
+        frame.putInt(KanSession.PUSH_MARKER);
+        frame.putInt(1 + 4 + keyBytes.length);
+        frame.put(KanSession.PUSH_INVALIDATE);
+        frame.putInt(keyBytes.length);
+        frame.put(keyBytes);
+        frame.flip();
+        ByteBuffer shared = frame.asReadOnlyBuffer();
+
+        for (KanSession session : sessions) {
+            if (enabled.contains(session)) { // Skips TRACKING 0 and closed connections
+                session.push(shared.duplicate());
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.leeminkan.redis.transport;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.VarHandle;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * IoUring
+ * A minimal io_uring ring (no liburing): setup, mmap of the SQ/CQ rings and SQE array,
+ * SQE preparation for ACCEPT/RECV/SEND/TIMEOUT/ASYNC_CANCEL, and batched submit + completion draining.
+ *
+ * The rings are shared memory between us and the kernel:
+ * - Submission Queue (SQ): we write SQEs and advance the tail, the kernel advances the head.
+ * - Completion Queue (CQ): the kernel writes CQEs and advances the tail, we advance the head.
+ * Ordering follows liburing: acquire fence after reading the other side's index,
+ * release fence before publishing our own.
+ *
+ * Not thread-safe: owned by the event loop thread.
+ */
+final class IoUring implements AutoCloseable {
+
+    static final byte OP_TIMEOUT = 11;
+    static final byte OP_ACCEPT = 13;
+    static final byte OP_ASYNC_CANCEL = 14;
+    static final byte OP_SEND = 26;
+    static final byte OP_RECV = 27;
+
+    private static final int ENTER_GETEVENTS = 1;
+    private static final int FEAT_SINGLE_MMAP = 1;
+
+    private static final long OFF_SQ_RING = 0L;
+    private static final long OFF_CQ_RING = 0x8000000L;
+    private static final long OFF_SQES = 0x10000000L;
+
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+
+    // Flushes tried before nextSqe gives up on a full SQ (the caller drops that one operation)
+    private static final int SQ_FULL_RETRIES = 8;
+
+    /** Callback for {@link #drainCompletions}. */
+    interface CompletionHandler {
+        void onCompletion(long userData, int result);
+    }
+
+    private final int ringFd;
+    private final MemorySegment sqRing;
+    private final MemorySegment cqRing;
+    private final MemorySegment sqes;
+
+    // SQ ring offsets (struct io_sqring_offsets)
+    private final long sqHeadOff;
+    private final long sqTailOff;
+    private final long sqArrayOff;
+    private final int sqMask;
+    private final int sqEntries;
+
+    // CQ ring offsets (struct io_cqring_offsets)
+    private final long cqHeadOff;
+    private final long cqTailOff;
+    private final long cqesOff;
+    private final int cqMask;
+
+    private int sqTail;       // our private copy, published on submit
+    private int toSubmit;     // SQEs written since the last io_uring_enter
+
+    private IoUring(int ringFd, MemorySegment params) throws IOException {
+        this.ringFd = ringFd;
+
+        // struct io_uring_params: sq_entries@0, cq_entries@4, features@20, sq_off@40, cq_off@80
+        this.sqEntries = params.get(JAVA_INT, 0);
+        int cqEntries = params.get(JAVA_INT, 4);
+        int features = params.get(JAVA_INT, 20);
+
+        this.sqHeadOff = params.get(JAVA_INT, 40);
+        this.sqTailOff = params.get(JAVA_INT, 44);
+        long sqMaskOff = params.get(JAVA_INT, 48);
+        this.sqArrayOff = params.get(JAVA_INT, 64);
+
+        this.cqHeadOff = params.get(JAVA_INT, 80);
+        this.cqTailOff = params.get(JAVA_INT, 84);
+        long cqMaskOff = params.get(JAVA_INT, 88);
+        this.cqesOff = params.get(JAVA_INT, 100);
+
+        long sqRingSize = sqArrayOff + (long) sqEntries * Integer.BYTES;
+        long cqRingSize = cqesOff + (long) cqEntries * CQE_SIZE;
+
+        if ((features & FEAT_SINGLE_MMAP) != 0) {
+            // Kernel >= 5.4: one mapping holds both rings
+            this.sqRing = LinuxNative.mmap(Math.max(sqRingSize, cqRingSize), ringFd, OFF_SQ_RING);
+            this.cqRing = sqRing;
+        } else {
+            this.sqRing = LinuxNative.mmap(sqRingSize, ringFd, OFF_SQ_RING);
+            this.cqRing = LinuxNative.mmap(cqRingSize, ringFd, OFF_CQ_RING);
+        }
+        this.sqes = LinuxNative.mmap((long) sqEntries * SQE_SIZE, ringFd, OFF_SQES);
+
+        this.sqMask = sqRing.get(JAVA_INT, sqMaskOff);
+        this.cqMask = cqRing.get(JAVA_INT, cqMaskOff);
+        this.sqTail = sqRing.get(JAVA_INT, sqTailOff);
+    }
+
+    static IoUring create(int entries) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment params = arena.allocate(120, 8); // sizeof(struct io_uring_params)
+            params.fill((byte) 0);
+
+            int fd = LinuxNative.ioUringSetup(entries, params);
+            if (fd < 0) {
+                throw new IOException("io_uring_setup failed, errno=" + LinuxNative.errno());
+            }
+            try {
+                return new IoUring(fd, params);
+            } catch (IOException e) {
+                LinuxNative.close(fd);
+                throw e;
+            }
+        }
+    }
+
+    // --- Submission side ---
+
+    void prepAccept(int listenFd, long userData) throws IOException {
+        MemorySegment sqe = nextSqe();
+        sqe.set(JAVA_BYTE, 0, OP_ACCEPT);
+        sqe.set(JAVA_INT, 4, listenFd);
+        // addr/addr2 (peer address out-params) stay NULL: we don't need the peer address
+        sqe.set(JAVA_LONG, 32, userData);
+    }
+
+    /**
+     * Completes (with -ETIME) once the {@code struct __kernel_timespec} at {@code timespec} has
+     * elapsed, so a loop blocked in {@link #submitAndWait} wakes up for its timers.
+     */
+    void prepTimeout(MemorySegment timespec, long userData) throws IOException {
+        MemorySegment sqe = nextSqe();
+        sqe.set(JAVA_BYTE, 0, OP_TIMEOUT);
+        sqe.set(JAVA_INT, 4, -1);
+        sqe.set(JAVA_LONG, 16, timespec.address());
+        sqe.set(JAVA_INT, 24, 1); // One timespec; off (completion count) stays 0: time only
+        sqe.set(JAVA_LONG, 32, userData);
+    }
+
+    /**
+     * Asks the kernel to cancel the request queued with {@code targetUserData}. That request still
+     * completes (usually with -ECANCELED): only its own CQE says the kernel is done with its buffer.
+     */
+    void prepCancel(long targetUserData, long userData) throws IOException {
+        MemorySegment sqe = nextSqe();
+        sqe.set(JAVA_BYTE, 0, OP_ASYNC_CANCEL);
+        sqe.set(JAVA_INT, 4, -1);
+        sqe.set(JAVA_LONG, 16, targetUserData);
+        sqe.set(JAVA_LONG, 32, userData);
+    }
+
+    void prepRecv(int fd, long bufferAddress, int length, long userData) throws IOException {
+        prepReadWrite(OP_RECV, fd, bufferAddress, length, userData);
+    }
+
+    void prepSend(int fd, long bufferAddress, int length, long userData) throws IOException {
+        prepReadWrite(OP_SEND, fd, bufferAddress, length, userData);
+    }
+
+    private void prepReadWrite(byte opcode, int fd, long bufferAddress, int length, long userData) throws IOException {
+        MemorySegment sqe = nextSqe();
+        sqe.set(JAVA_BYTE, 0, opcode);
+        sqe.set(JAVA_INT, 4, fd);
+        sqe.set(JAVA_LONG, 16, bufferAddress);
+        sqe.set(JAVA_INT, 24, length);
+        sqe.set(JAVA_LONG, 32, userData);
+    }
+
+    /**
+     * Returns a zeroed SQE slot. If the SQ is full, flushes it to the kernel first; a slot is
+     * only reused once the kernel has consumed it (moved the SQ head past it).
+     * @throws IOException if the kernel keeps refusing new work (EAGAIN/EBUSY: its CQ is backed up)
+     */
+    private MemorySegment nextSqe() throws IOException {
+        for (int attempt = 0; sqTail - sqHead() == sqEntries; attempt++) {
+            if (attempt == SQ_FULL_RETRIES) {
+                throw new IOException("io_uring submission queue full");
+            }
+            submitAndWait(0);
+        }
+
+        int index = sqTail & sqMask;
+        MemorySegment sqe = sqes.asSlice((long) index * SQE_SIZE, SQE_SIZE);
+        sqe.fill((byte) 0);
+        sqRing.set(JAVA_INT, sqArrayOff + (long) index * Integer.BYTES, index);
+        sqTail++;
+        toSubmit++;
+        return sqe;
+    }
+
+    private int sqHead() {
+        int head = sqRing.get(JAVA_INT, sqHeadOff);
+        VarHandle.acquireFence();
+        return head;
+    }
+
+    /**
+     * Publishes every prepared SQE and waits for at least {@code minComplete} completions,
+     * all in ONE io_uring_enter call. This is the batching that replaces the
+     * select() + read() + write() syscall-per-event pattern of NIO.
+     */
+    int submitAndWait(int minComplete) throws IOException {
+        VarHandle.releaseFence();
+        sqRing.set(JAVA_INT, sqTailOff, sqTail);
+
+        while (true) {
+            int flags = minComplete > 0 ? ENTER_GETEVENTS : 0;
+            int submitted = LinuxNative.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+            if (submitted >= 0) {
+                toSubmit -= submitted;
+                return submitted;
+            }
+            int errno = LinuxNative.errno();
+            if (errno == LinuxNative.EINTR) {
+                continue; // interrupted by a signal: just retry
+            }
+            if (errno == LinuxNative.EAGAIN || errno == LinuxNative.EBUSY) {
+                return 0; // CQ is backed up: caller drains completions, then we retry
+            }
+            throw new IOException("io_uring_enter failed, errno=" + errno);
+        }
+    }
+
+    // --- Completion side ---
+
+    /** Hands every available CQE to the handler and returns how many were consumed. */
+    int drainCompletions(CompletionHandler handler) {
+        int head = cqRing.get(JAVA_INT, cqHeadOff);
+        int tail = cqRing.get(JAVA_INT, cqTailOff);
+        VarHandle.acquireFence();
+
+        int count = 0;
+        while (head != tail) {
+            long offset = cqesOff + (long) (head & cqMask) * CQE_SIZE;
+            long userData = cqRing.get(JAVA_LONG, offset);
+            int result = cqRing.get(JAVA_INT, offset + 8);
+            head++;
+            count++;
+            // Release the slot before the callback: it may submit new SQEs (never touches the CQ)
+            VarHandle.releaseFence();
+            cqRing.set(JAVA_INT, cqHeadOff, head);
+            handler.onCompletion(userData, result);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        LinuxNative.munmap(sqes);
+        if (cqRing != sqRing) {
+            LinuxNative.munmap(cqRing);
+        }
+        LinuxNative.munmap(sqRing);
+        LinuxNative.close(ringFd);
+    }
+}
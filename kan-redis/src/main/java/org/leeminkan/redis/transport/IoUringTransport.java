@@ -0,0 +1,429 @@
+package org.leeminkan.redis.transport;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * IoUringTransport
+ * A completion-based transport on Linux io_uring, driven through the Foreign Function API.
+ *
+ * NIO is readiness-based: select() tells us a socket is readable, then we pay one more
+ * syscall per read() and per write(). io_uring is completion-based: we queue ACCEPT/RECV/SEND
+ * requests in shared memory and a single io_uring_enter() both submits every queued request
+ * and reaps every finished one. Under many busy connections that is one syscall per loop
+ * iteration instead of 1 + 2N.
+ *
+ * Per connection there is at most ONE operation in flight (either a RECV or a SEND),
+ * which keeps the state machine as simple as the NIO loop:
+ *   RECV done -> process commands -> SEND responses -> SEND done -> process rest -> RECV ...
+ *
+ * Connection hygiene matches NioTransport: past kan.max-clients a connection gets the error
+ * response and is closed, and a timing wheel closes connections silent for kan.idle-timeout.
+ * A TIMEOUT request wakes the loop once per wheel tick, which also bounds how long stop() waits.
+ *
+ * Buffers are off-heap (one confined Arena per buffer) so the kernel can read/write them
+ * directly. They are freed when the connection closes, which only happens once its operation
+ * has completed: a connection closed with one still queued (stop()) cancels it first.
+ */
+public class IoUringTransport implements KanTransport {
+
+    private static final KanLogger LOG = KanLogger.getLogger(IoUringTransport.class);
+
+    private static final int RING_ENTRIES = 4096;
+    private static final int LISTEN_BACKLOG = 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    // Stop parsing when less than this is left in the output buffer (same limit as the NIO response buffer)
+    private static final int RESPONSE_RESERVE = 4096;
+
+    // user_data = (fd << 8) | operation
+    private static final int OP_ACCEPT = 1;
+    private static final int OP_RECV = 2;
+    private static final int OP_SEND = 3;
+    private static final int OP_CANCEL = 4;
+    private static final int OP_TICK = 5;
+    private static final int OP_REJECT = 6;
+
+    // What a connection over kan.max-clients gets before we close it: the error response ([Len=-1])
+    private static final MemorySegment REJECTION = Arena.global().allocate(4).fill((byte) 0xFF);
+
+    private static final class Connection extends KanTimerWheel.Timeout {
+        final int fd;
+        Arena inArena;
+        MemorySegment inSegment;
+        ByteBuffer in;            // write mode between reads (position = bytes buffered)
+        final Arena outArena;
+        final MemorySegment outSegment;
+        final ByteBuffer out;     // write mode while building responses, read mode while sending
+        int pending;              // OP_RECV or OP_SEND while the kernel owns a buffer, else 0
+        boolean closing;          // cancel requested: close when the pending operation completes
+        long lastActivity;        // Last read, or send progress (a client slowly reading a reply is not idle)
+
+        Connection(int fd) {
+            this.fd = fd;
+            this.inArena = Arena.ofConfined();
+            this.inSegment = inArena.allocate(INITIAL_BUFFER_SIZE);
+            this.in = inSegment.asByteBuffer();
+            this.outArena = Arena.ofConfined();
+            this.outSegment = outArena.allocate(OUTPUT_BUFFER_SIZE);
+            this.out = outSegment.asByteBuffer();
+        }
+    }
+
+    private final KanMetrics metrics;
+    private KanProtocol protocol;
+    private IoUring ring;
+    private int listenFd;
+    private volatile boolean isRunning = true;
+    private boolean acceptArmed;
+    private int openConnections;
+
+    // Idle timeouts: one intrusive timer per connection, advanced on every tick completion
+    private final KanTimerWheel idleTimers = new KanTimerWheel(512, TimeUnit.SECONDS.toNanos(1));
+    private final long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS);
+    private final MemorySegment tickTimespec = Arena.ofAuto().allocate(16, 8); // struct __kernel_timespec
+    private boolean tickArmed;
+    private long loopNanos = System.nanoTime();
+
+    // Connections indexed by file descriptor (the kernel hands out the lowest free fd, so this stays dense)
+    private Connection[] connections = new Connection[1024];
+
+    public IoUringTransport(KanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * True if this JVM can reach io_uring: Linux, a kernel with io_uring_setup,
+     * and no seccomp profile blocking it (Docker's default profile does).
+     */
+    public static boolean isSupported() {
+        if (!System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            return false;
+        }
+        try {
+            IoUring.create(2).close();
+            return true;
+        } catch (Throwable t) {
+            LOG.debug("io_uring probe failed: {}", t.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "io_uring";
+    }
+
+    @Override
+    public void serve(int port, KanProtocol protocol) throws IOException {
+        this.protocol = protocol;
+        this.listenFd = LinuxNative.listenTcp(port, LISTEN_BACKLOG);
+        this.ring = IoUring.create(RING_ENTRIES);
+
+        LOG.info("Kan-Redis listening on port {} (transport: io_uring)...", port);
+        try {
+            while (isRunning) {
+                if (!acceptArmed) {
+                    armAccept(); // First pass, or the SQ was full when the last ACCEPT completed
+                }
+                if (!tickArmed) {
+                    armTick();
+                }
+                // ONE syscall: submit everything queued by the previous batch and wait for work
+                ring.submitAndWait(1);
+                loopNanos = System.nanoTime();
+                ring.drainCompletions(this::onCompletion);
+            }
+        } finally {
+            shutDown();
+        }
+    }
+
+    /**
+     * The kernel may still write into a connection's buffers while its RECV or SEND is queued, so
+     * every one is cancelled and its completion awaited before the buffers are freed. If the ring
+     * itself fails meanwhile, the remaining buffers are left to the process exit, never freed
+     * under the kernel.
+     */
+    private void shutDown() {
+        try {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    closeWhenIdle(connection);
+                }
+            }
+            while (openConnections > 0) {
+                ring.submitAndWait(1);
+                ring.drainCompletions(this::onCompletion);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Could not cancel pending io_uring operations, {} connections not freed", openConnections, e);
+        }
+        ring.close();
+        LinuxNative.close(listenFd);
+    }
+
+    @Override
+    public void stop() {
+        // Picked up after the next completion, at the latest the next tick (io_uring_enter is not
+        // interruptible from Java)
+        isRunning = false;
+    }
+
+    private static long userData(int fd, int operation) {
+        return ((long) fd << 8) | operation;
+    }
+
+    private void onCompletion(long userData, int result) {
+        int fd = (int) (userData >>> 8);
+        int operation = (int) (userData & 0xFF);
+
+        if (operation == OP_ACCEPT) {
+            onAccept(result);
+            return;
+        }
+        if (operation == OP_TICK) {
+            onTick();
+            return;
+        }
+        if (operation == OP_REJECT) {
+            LinuxNative.close(fd); // The error response is out (or the client is gone)
+            return;
+        }
+
+        Connection connection = fd < connections.length ? connections[fd] : null;
+        if (connection == null || operation == OP_CANCEL) {
+            return; // completion for a connection we already closed, or of a cancel request
+        }
+        connection.pending = 0; // The kernel is done with the buffer
+        if (connection.closing) {
+            closeConnection(connection);
+            return;
+        }
+        try {
+            if (operation == OP_RECV) {
+                onRecv(connection, result);
+            } else {
+                onSend(connection, result);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Closing connection fd={} after error: {}", fd, e);
+            closeConnection(connection);
+        }
+    }
+
+    private void onAccept(int result) {
+        acceptArmed = false;
+        if (!isRunning) {
+            if (result >= 0) {
+                LinuxNative.close(result); // Accepted while shutting down
+            }
+            return;
+        }
+        if (result >= 0 && openConnections >= MAX_CLIENTS) {
+            reject(result);
+        } else if (result >= 0) {
+            Connection connection = new Connection(result);
+            if (result >= connections.length) {
+                connections = Arrays.copyOf(connections, Math.max(result + 1, connections.length * 2));
+            }
+            connections[result] = connection;
+            openConnections++;
+            metrics.clientConnected();
+            connection.lastActivity = loopNanos;
+            if (idleTimeoutNanos > 0) {
+                idleTimers.schedule(connection, idleTimeoutNanos, loopNanos);
+            }
+            LOG.debug("New Connection: fd={}", result);
+            try {
+                submitRecv(connection);
+            } catch (IOException e) {
+                LOG.warn("Closing connection fd={}, could not queue its first read: {}", result, e.getMessage());
+                closeConnection(connection);
+            }
+        } else {
+            LOG.warn("accept failed, errno={}", -result);
+        }
+        // Multishot accept needs kernel 5.19+, so simply re-arm a single-shot ACCEPT
+        armAccept();
+    }
+
+    private void armAccept() {
+        try {
+            ring.prepAccept(listenFd, userData(listenFd, OP_ACCEPT));
+            acceptArmed = true;
+        } catch (IOException e) {
+            // SQ full: the loop tries again after the next batch of completions
+            LOG.error("Failed to queue accept", e);
+        }
+    }
+
+    /**
+     * Over kan.max-clients: queue the error response and close the socket when it completes,
+     * before allocating anything for it. The response is one static segment shared by all of them.
+     */
+    private void reject(int fd) {
+        metrics.recordRejectedConnection();
+        try {
+            ring.prepSend(fd, REJECTION.address(), (int) REJECTION.byteSize(), userData(fd, OP_REJECT));
+        } catch (IOException e) {
+            LinuxNative.close(fd); // No room to send it: the close tells the client anyway
+        }
+        LOG.debug("Rejected connection: {} clients connected (kan.max-clients)", openConnections);
+    }
+
+    private void armTick() {
+        long nanos = idleTimers.millisToNextTick(System.nanoTime()) * 1_000_000L;
+        tickTimespec.set(JAVA_LONG, 0, nanos / 1_000_000_000L);
+        tickTimespec.set(JAVA_LONG, 8, nanos % 1_000_000_000L);
+        try {
+            ring.prepTimeout(tickTimespec, userData(0, OP_TICK));
+            tickArmed = true;
+        } catch (IOException e) {
+            LOG.error("Failed to queue the timer tick", e); // Retried on the next loop iteration
+        }
+    }
+
+    private void onTick() {
+        tickArmed = false;
+        if (isRunning) {
+            idleTimers.advance(loopNanos, this::idleTimerExpired);
+        }
+    }
+
+    /**
+     * The timer fires once per timeout period; only then do we look at the connection.
+     * Activity since it was scheduled just pushes it back (completions never touch the wheel).
+     */
+    private void idleTimerExpired(KanTimerWheel.Timeout timeout) {
+        Connection connection = (Connection) timeout;
+        long idleFor = loopNanos - connection.lastActivity;
+        if (idleFor < idleTimeoutNanos) {
+            idleTimers.schedule(connection, idleTimeoutNanos - idleFor, loopNanos);
+            return;
+        }
+        LOG.debug("Closing idle connection: fd={}", connection.fd);
+        try {
+            closeWhenIdle(connection); // Its RECV is still queued: cancel it, close on its completion
+            metrics.recordIdleConnectionClosed();
+        } catch (IOException e) {
+            idleTimers.schedule(connection, TimeUnit.SECONDS.toNanos(1), loopNanos); // SQ full: next tick
+        }
+    }
+
+    private void onRecv(Connection connection, int result) throws IOException {
+        if (result <= 0) {
+            // 0 = peer closed (EOF), negative = -errno
+            closeConnection(connection);
+            return;
+        }
+        connection.lastActivity = loopNanos;
+        connection.in.position(connection.in.position() + result);
+        processInput(connection);
+    }
+
+    private void onSend(Connection connection, int result) throws IOException {
+        if (result < 0) {
+            closeConnection(connection);
+            return;
+        }
+        ByteBuffer out = connection.out;
+        out.position(out.position() + result);
+        connection.lastActivity = loopNanos;
+        if (out.hasRemaining()) {
+            submitSend(connection); // short write: send the rest
+            return;
+        }
+        out.clear();
+        // Commands may still be buffered (we stopped parsing when the output buffer was full)
+        processInput(connection);
+    }
+
+    private void processInput(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        ByteBuffer out = connection.out;
+
+        in.flip(); // Switch to READ mode
+        boolean processedAny = false;
+        while (out.remaining() >= RESPONSE_RESERVE && protocol.process(in, out)) {
+            processedAny = true;
+        }
+
+        // Buffer Management Strategy (ADR-001), same rule as NioTransport
+        if (!processedAny && in.remaining() == in.capacity()) {
+            if (in.capacity() * 2 > MAX_FRAME_SIZE) {
+                LOG.warn("Client fd={} exceeded max frame size.", connection.fd);
+                closeConnection(connection);
+                return;
+            }
+            growInput(connection);
+        } else {
+            in.compact();
+        }
+
+        if (out.position() > 0) {
+            out.flip();
+            submitSend(connection);
+        } else {
+            submitRecv(connection);
+        }
+    }
+
+    private void growInput(Connection connection) {
+        Arena newArena = Arena.ofConfined();
+        MemorySegment newSegment = newArena.allocate(connection.in.capacity() * 2L);
+        ByteBuffer newBuffer = newSegment.asByteBuffer();
+        newBuffer.put(connection.in);
+
+        connection.inArena.close(); // frees the old native buffer immediately
+        connection.inArena = newArena;
+        connection.inSegment = newSegment;
+        connection.in = newBuffer;
+        LOG.debug("ADR-001: Resized buffer for fd={} to {} bytes", connection.fd, newBuffer.capacity());
+    }
+
+    private void submitRecv(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        ring.prepRecv(connection.fd, connection.inSegment.address() + in.position(), in.remaining(),
+                userData(connection.fd, OP_RECV));
+        connection.pending = OP_RECV;
+    }
+
+    private void submitSend(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        ring.prepSend(connection.fd, connection.outSegment.address() + out.position(), out.remaining(),
+                userData(connection.fd, OP_SEND));
+        connection.pending = OP_SEND;
+    }
+
+    /** Closes now if the kernel holds none of its buffers, otherwise cancels and closes on completion. */
+    private void closeWhenIdle(Connection connection) throws IOException {
+        if (connection.pending == 0) {
+            closeConnection(connection);
+        } else if (!connection.closing) {
+            ring.prepCancel(userData(connection.fd, connection.pending), userData(connection.fd, OP_CANCEL));
+            connection.closing = true;
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        // Only called with no operation in flight (see closeWhenIdle): the kernel no longer uses the buffers
+        LOG.debug("Connection Closed: fd={}", connection.fd);
+        connections[connection.fd] = null;
+        openConnections--;
+        idleTimers.cancel(connection);
+        LinuxNative.close(connection.fd);
+        connection.inArena.close();
+        connection.outArena.close();
+        metrics.clientDisconnected();
+    }
+}
@@ -0,0 +1,111 @@
+package org.leeminkan.redis.transport;
+
+import java.util.function.Consumer;
+
+/**
+ * KanTimerWheel
+ * A hashed timing wheel (Varghese and Lauck; the same structure as Netty's HashedWheelTimer),
+ * driven by the event loop itself: no timer thread, no locks.
+ *
+ * Time is cut into ticks. A timeout due at tick T is linked into slot {@code T % slots};
+ * each tick the loop walks one slot and fires the timeouts whose tick has come (the others
+ * are a full revolution or more away). Schedule and cancel are O(1), and the nodes are
+ * intrusive (the connection IS the node), so 10K idle timers cost no allocation at all.
+ *
+ * Precision is one tick, which is all an idle timeout measured in seconds needs.
+ */
+final class KanTimerWheel {
+
+    /** Something that can be scheduled: extend it. Linked into at most one slot at a time. */
+    abstract static class Timeout {
+        private Timeout prev;
+        private Timeout next;
+        private long deadlineTick;
+        private boolean scheduled;
+    }
+
+    private final Timeout[] slots; // Head of each slot's doubly linked list
+    private final int mask;
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+    private long currentTick;     // Every slot up to this tick has been processed
+    private int size;
+
+    KanTimerWheel(int slotCount, long tickNanos) {
+        int count = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.slots = new Timeout[count];
+        this.mask = count - 1;
+        this.tickNanos = tickNanos;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Schedules (or moves) {@code timeout} to fire {@code delayNanos} after {@code now}. */
+    void schedule(Timeout timeout, long delayNanos, long now) {
+        cancel(timeout);
+        // Round up: firing a tick late is fine, firing early is not
+        long deadline = Math.max(tickOf(now + delayNanos) + 1, currentTick + 1);
+        timeout.deadlineTick = deadline;
+        Timeout head = slots[(int) deadline & mask];
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[(int) deadline & mask] = timeout;
+        timeout.scheduled = true;
+        size++;
+    }
+
+    void cancel(Timeout timeout) {
+        if (!timeout.scheduled) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[(int) timeout.deadlineTick & mask] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+        size--;
+    }
+
+    /**
+     * Fires every timeout due by {@code now}. The callback may schedule (the same or other)
+     * timeouts again.
+     */
+    void advance(long now, Consumer<Timeout> onExpired) {
+        long target = tickOf(now);
+        // After a long stall, one pass over every slot is enough
+        long steps = Math.min(target - currentTick, slots.length);
+        for (long i = 1; i <= steps; i++) {
+            Timeout timeout = slots[(int) (currentTick + i) & mask];
+            while (timeout != null) {
+                Timeout next = timeout.next; // The callback may re-link it
+                if (timeout.deadlineTick <= target) {
+                    cancel(timeout);
+                    onExpired.accept(timeout);
+                }
+                timeout = next;
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+    }
+
+    /** How long the loop may block before the next tick is due (for Selector.select(timeout)). */
+    long millisToNextTick(long now) {
+        long nextTickAt = origin + (tickOf(now) + 1) * tickNanos;
+        return Math.max(1, (nextTickAt - now + 999_999) / 1_000_000);
+    }
+
+    private long tickOf(long nanos) {
+        return (nanos - origin) / tickNanos;
+    }
+}
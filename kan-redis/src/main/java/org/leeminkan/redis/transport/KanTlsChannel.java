@@ -0,0 +1,327 @@
+package org.leeminkan.redis.transport;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * KanTlsChannel
+ * A non-blocking SocketChannel seen through an SSLEngine: read() returns plaintext, write()
+ * takes plaintext, with the same "0 means try later, -1 means end of stream" contract, so
+ * NioTransport keeps its loop and its buffers.
+ *
+ * The engine is driven from inside read() and write(): the handshake is just records that
+ * arrive, get unwrapped, and make the engine want to wrap a reply. Delegated tasks (the key
+ * agreement, certificate checks) run inline on the event loop. They are a few hundred
+ * microseconds per full handshake, and session resumption skips most of them.
+ *
+ * Writes are corked: write() only collects plaintext in appOut, and flush() (once per loop
+ * iteration, from NioTransport) seals it into as few records as possible. Sixteen pipelined
+ * responses become one record, one encryption and one send() instead of sixteen of each.
+ *
+ * Buffers (from {@link KanTls}'s pools, held only while they hold data):
+ * netIn  - ciphertext read from the socket, write mode (a partial record waits here)
+ * netOut - ciphertext to send, read mode (what the socket didn't take)
+ * appIn  - plaintext the caller had no room for, read mode
+ * appOut - plaintext written and not sealed yet, write mode
+ * Plaintext is unwrapped straight into the caller's buffer whenever it has room for a whole
+ * record (an input buffer grown by a large command), and a large value is wrapped straight
+ * from its own buffer, skipping appIn/appOut and a copy.
+ */
+final class KanTlsChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel socket;
+    private final SSLEngine engine;
+    private final KanTls tls;
+
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private ByteBuffer appIn;
+    private ByteBuffer appOut;
+    private boolean inboundDone; // The client sent close_notify
+
+    KanTlsChannel(SocketChannel socket, KanTls tls) throws IOException {
+        this.socket = socket;
+        this.tls = tls;
+        this.engine = tls.newEngine();
+        engine.beginHandshake();
+    }
+
+    /** Plaintext into {@code dst}, like SocketChannel.read: 0 = nothing yet, -1 = end of stream. */
+    int read(ByteBuffer dst) throws IOException {
+        int delivered = drainApplicationInput(dst);
+        if (!dst.hasRemaining()) {
+            return delivered;
+        }
+        if (inboundDone) {
+            return delivered > 0 ? delivered : -1;
+        }
+        if (netIn == null) {
+            netIn = tls.borrowPacketBuffer();
+        }
+        int bytesRead = socket.read(netIn);
+        delivered += unwrap(dst);
+        releaseIdleBuffers();
+        if (delivered > 0) {
+            return delivered;
+        }
+        return bytesRead == -1 || inboundDone ? -1 : 0;
+    }
+
+    /**
+     * Takes plaintext from {@code src}, to be sent by the next {@link #flush()}. Only takes
+     * less than all of it when the socket is backed up. Takes nothing until the handshake is done.
+     */
+    int write(ByteBuffer src) throws IOException {
+        if (isHandshaking()) {
+            return 0;
+        }
+        int consumed = 0;
+        while (src.hasRemaining()) {
+            if ((appOut == null || appOut.position() == 0) && src.remaining() >= tls.applicationBufferSize()) {
+                // A large value: seal it straight from its own buffer, a record at a time
+                if (!flushNetOut()) {
+                    break;
+                }
+                int before = src.position();
+                boolean sent = wrap(src);
+                consumed += src.position() - before;
+                if (!sent) {
+                    break;
+                }
+                continue;
+            }
+            if (appOut == null) {
+                appOut = tls.borrowApplicationBuffer();
+            }
+            int count = Math.min(appOut.remaining(), src.remaining());
+            appOut.put(appOut.position(), src, src.position(), count);
+            appOut.position(appOut.position() + count);
+            src.position(src.position() + count);
+            consumed += count;
+            if (!appOut.hasRemaining() && !sealApplicationOutput()) {
+                break; // A full record is waiting on the socket: stop taking more
+            }
+        }
+        return consumed;
+    }
+
+    /**
+     * Seals the corked plaintext, sends pending ciphertext and moves the handshake along.
+     * @return true if nothing is left to send
+     */
+    boolean flush() throws IOException {
+        return flushNetOut() && pumpHandshake() && sealApplicationOutput();
+    }
+
+    boolean hasPendingOutput() {
+        return (netOut != null && netOut.hasRemaining()) || (appOut != null && appOut.position() > 0);
+    }
+
+    /** Plaintext or ciphertext already read and not handed out yet: read() again before selecting. */
+    boolean hasBufferedInput() {
+        return (appIn != null && appIn.hasRemaining()) || (netIn != null && netIn.position() > 0);
+    }
+
+    /** Bytes of pooled buffers this connection holds right now. */
+    int heldBytes() {
+        return (netIn != null ? netIn.capacity() : 0)
+                + (netOut != null ? netOut.capacity() : 0)
+                + (appIn != null ? appIn.capacity() : 0)
+                + (appOut != null ? appOut.capacity() : 0);
+    }
+
+    /** Sends close_notify (best effort: the socket closes next anyway) and returns the buffers. */
+    void close() {
+        try {
+            flush();
+            engine.closeOutbound();
+            flush();
+        } catch (IOException ignored) {
+            // The peer is gone or the socket is full: it doesn't matter on close
+        }
+        if (netIn != null) {
+            tls.releasePacketBuffer(netIn);
+            netIn = null;
+        }
+        if (netOut != null) {
+            tls.releasePacketBuffer(netOut);
+            netOut = null;
+        }
+        if (appIn != null) {
+            tls.releaseApplicationBuffer(appIn);
+            appIn = null;
+        }
+        if (appOut != null) {
+            tls.releaseApplicationBuffer(appOut);
+            appOut = null;
+        }
+    }
+
+    /**
+     * Wraps and sends the plaintext collected in appOut.
+     * @return false if some of it is still waiting (unsealed or unsent)
+     */
+    private boolean sealApplicationOutput() throws IOException {
+        if (appOut == null) {
+            return true;
+        }
+        appOut.flip();
+        try {
+            while (appOut.hasRemaining()) {
+                int before = appOut.position();
+                boolean sent = wrap(appOut);
+                if (!sent || appOut.position() == before) {
+                    return false;
+                }
+            }
+        } finally {
+            appOut.compact();
+        }
+        tls.releaseApplicationBuffer(appOut);
+        appOut = null;
+        return true;
+    }
+
+    private boolean isHandshaking() {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return status != HandshakeStatus.NOT_HANDSHAKING && status != HandshakeStatus.FINISHED;
+    }
+
+    /** Unwraps complete records from netIn until it runs dry or {@code dst} fills. */
+    private int unwrap(ByteBuffer dst) throws IOException {
+        int delivered = 0;
+        int stalls = 0;
+        netIn.flip();
+        try {
+            while (netIn.hasRemaining() && dst.hasRemaining()) {
+                SSLEngineResult result;
+                if (dst.remaining() >= tls.applicationBufferSize()) {
+                    int before = dst.position();
+                    result = engine.unwrap(netIn, dst);
+                    delivered += dst.position() - before;
+                } else {
+                    // Too little room for a whole record: unwrap aside, hand out what fits
+                    if (appIn == null) {
+                        appIn = tls.borrowApplicationBuffer();
+                    }
+                    appIn.clear();
+                    result = engine.unwrap(netIn, appIn);
+                    appIn.flip();
+                    delivered += drainApplicationInput(dst);
+                }
+                switch (result.getStatus()) {
+                    case BUFFER_UNDERFLOW, BUFFER_OVERFLOW -> {
+                        return delivered; // Partial record: wait for the rest (compacted below)
+                    }
+                    case CLOSED -> {
+                        inboundDone = true;
+                        return delivered;
+                    }
+                    default -> {
+                    }
+                }
+                boolean moving = pumpHandshake();
+                if (result.bytesConsumed() > 0 || result.bytesProduced() > 0) {
+                    stalls = 0;
+                } else if (!moving || ++stalls > 1) {
+                    return delivered; // Blocked on sending a handshake reply: OP_WRITE resumes it
+                }
+            }
+            return delivered;
+        } finally {
+            netIn.compact();
+        }
+    }
+
+    /**
+     * Runs delegated tasks and sends handshake records until the engine wants input.
+     * @return false if the socket can't take the next record yet
+     */
+    private boolean pumpHandshake() throws IOException {
+        while (true) {
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK -> {
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                }
+                case NEED_WRAP -> {
+                    if (!wrap(EMPTY)) {
+                        return false;
+                    }
+                }
+                default -> {
+                    return true; // NEED_UNWRAP waits for the client; otherwise there's no handshake
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps one record from {@code src} (empty for handshake and close records) and sends it.
+     * @return false if some ciphertext is still unsent
+     */
+    private boolean wrap(ByteBuffer src) throws IOException {
+        if (!flushNetOut()) {
+            return false;
+        }
+        netOut = tls.borrowPacketBuffer();
+        SSLEngineResult result = engine.wrap(src, netOut);
+        // A handshake flight is several small records (ServerHello, certificate, Finished...):
+        // pack them into one send() rather than one each
+        while (result.getStatus() == SSLEngineResult.Status.OK && result.bytesProduced() > 0
+                && engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+            result = engine.wrap(EMPTY, netOut);
+        }
+        netOut.flip();
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED && result.bytesProduced() == 0
+                && src.hasRemaining()) {
+            throw new IOException("TLS session closed");
+        }
+        return flushNetOut();
+    }
+
+    private boolean flushNetOut() throws IOException {
+        if (netOut == null) {
+            return true;
+        }
+        if (netOut.hasRemaining()) {
+            socket.write(netOut);
+            if (netOut.hasRemaining()) {
+                return false;
+            }
+        }
+        tls.releasePacketBuffer(netOut);
+        netOut = null;
+        return true;
+    }
+
+    private int drainApplicationInput(ByteBuffer dst) {
+        if (appIn == null || !appIn.hasRemaining()) {
+            return 0;
+        }
+        int count = Math.min(appIn.remaining(), dst.remaining());
+        dst.put(dst.position(), appIn, appIn.position(), count);
+        dst.position(dst.position() + count);
+        appIn.position(appIn.position() + count);
+        return count;
+    }
+
+    private void releaseIdleBuffers() {
+        if (netIn != null && netIn.position() == 0) {
+            tls.releasePacketBuffer(netIn);
+            netIn = null;
+        }
+        if (appIn != null && !appIn.hasRemaining()) {
+            tls.releaseApplicationBuffer(appIn);
+            appIn = null;
+        }
+    }
+}
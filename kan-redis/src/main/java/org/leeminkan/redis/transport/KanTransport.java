@@ -0,0 +1,42 @@
+package org.leeminkan.redis.transport;
+
+import org.leeminkan.redis.KanProtocol;
+
+import java.io.IOException;
+
+/**
+ * KanTransport
+ * The network layer under KanRedisServer: accepts connections, moves bytes between
+ * sockets and {@link KanProtocol}, and owns the per-connection buffers.
+ *
+ * Implementations:
+ * - {@link NioTransport}: the portable java.nio Selector loop (default).
+ * - {@link IoUringTransport}: Linux io_uring through the Foreign Function API.
+ * - {@link VirtualThreadTransport}: blocking I/O on one Virtual Thread per connection.
+ */
+public interface KanTransport {
+
+    // Defined in ADR-001: Protection against OOM attacks
+    int MAX_FRAME_SIZE = 10 * 1024 * 1024; // 10 MB
+
+    // Initial per-connection read buffer (ADR-001)
+    int INITIAL_BUFFER_SIZE = 4096;
+
+    // Connections beyond this are answered with the error response and closed right away
+    int MAX_CLIENTS = Integer.getInteger("kan.max-clients", 10_000);
+
+    // Connections silent for this long are closed (0 = never). Subscribers are exempt, as in Redis
+    long IDLE_TIMEOUT_SECONDS = Long.getLong("kan.idle-timeout", 300);
+
+    /** Short name used in logs and in -Dkan.transport. */
+    String name();
+
+    /**
+     * Binds to the port and runs the event loop on the calling thread.
+     * Returns only when {@link #stop()} is called or the loop fails.
+     */
+    void serve(int port, KanProtocol protocol) throws IOException;
+
+    /** Asks the event loop to exit. */
+    void stop();
+}
@@ -0,0 +1,181 @@
+package org.leeminkan.redis.transport;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * LinuxNative
+ * The handful of libc functions the io_uring transport needs, bound with the
+ * Foreign Function API (Project Panama) instead of JNI.
+ *
+ * Every call captures errno (Linker.Option.captureCallState) so failures can be
+ * reported precisely. The capture buffer is shared, so this class must only be
+ * used from the event loop thread.
+ */
+final class LinuxNative {
+
+    // Syscall numbers (identical on x86_64 and aarch64 since io_uring was added after the table unification)
+    static final long SYS_IO_URING_SETUP = 425;
+    static final long SYS_IO_URING_ENTER = 426;
+
+    static final int EINTR = 4;
+    static final int EAGAIN = 11;
+    static final int EBUSY = 16;
+
+    private static final int AF_INET = 2;
+    private static final int SOCK_STREAM = 1;
+    private static final int SOL_SOCKET = 1;
+    private static final int SO_REUSEADDR = 2;
+
+    static final int PROT_READ_WRITE = 0x1 | 0x2;
+    static final int MAP_SHARED_POPULATE = 0x01 | 0x8000;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup LIBC = LINKER.defaultLookup();
+
+    private static final StructLayout CAPTURE_LAYOUT = Linker.Option.captureStateLayout();
+    private static final long ERRNO_OFFSET = CAPTURE_LAYOUT.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+    private static final MemorySegment CAPTURE = Arena.global().allocate(CAPTURE_LAYOUT);
+    private static final Linker.Option ERRNO = Linker.Option.captureCallState("errno");
+
+    // long syscall(long number, ...) - variadic, so every extra argument is passed as a full 64-bit word
+    private static final MethodHandle SYSCALL_SETUP = downcall("syscall",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG, ADDRESS),
+            ERRNO, Linker.Option.firstVariadicArg(1));
+    private static final MethodHandle SYSCALL_ENTER = downcall("syscall",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_LONG),
+            ERRNO, Linker.Option.firstVariadicArg(1));
+
+    private static final MethodHandle MMAP = downcall("mmap",
+            FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_LONG), ERRNO);
+    private static final MethodHandle MUNMAP = downcall("munmap",
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG), ERRNO);
+    private static final MethodHandle SOCKET = downcall("socket",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), ERRNO);
+    private static final MethodHandle SETSOCKOPT = downcall("setsockopt",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), ERRNO);
+    private static final MethodHandle BIND = downcall("bind",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), ERRNO);
+    private static final MethodHandle LISTEN = downcall("listen",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT), ERRNO);
+    private static final MethodHandle CLOSE = downcall("close",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT), ERRNO);
+
+    private LinuxNative() {
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+        MemorySegment symbol = LIBC.find(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("libc symbol not found: " + name));
+        return LINKER.downcallHandle(symbol, descriptor, options);
+    }
+
+    /** errno of the last failed call on this thread. */
+    static int errno() {
+        return CAPTURE.get(JAVA_INT, ERRNO_OFFSET);
+    }
+
+    // --- io_uring syscalls ---
+
+    static int ioUringSetup(int entries, MemorySegment params) {
+        try {
+            return (int) (long) SYSCALL_SETUP.invokeExact(CAPTURE, SYS_IO_URING_SETUP, (long) entries, params);
+        } catch (Throwable t) {
+            throw new IllegalStateException("io_uring_setup downcall failed", t);
+        }
+    }
+
+    static int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags) {
+        try {
+            return (int) (long) SYSCALL_ENTER.invokeExact(CAPTURE, SYS_IO_URING_ENTER,
+                    (long) ringFd, (long) toSubmit, (long) minComplete, (long) flags, MemorySegment.NULL, 0L);
+        } catch (Throwable t) {
+            throw new IllegalStateException("io_uring_enter downcall failed", t);
+        }
+    }
+
+    // --- Memory mapping ---
+
+    static MemorySegment mmap(long size, int fd, long offset) throws IOException {
+        MemorySegment address;
+        try {
+            address = (MemorySegment) MMAP.invokeExact(CAPTURE, MemorySegment.NULL, size,
+                    PROT_READ_WRITE, MAP_SHARED_POPULATE, fd, offset);
+        } catch (Throwable t) {
+            throw new IllegalStateException("mmap downcall failed", t);
+        }
+        if (address.address() == -1L) { // MAP_FAILED
+            throw new IOException("mmap failed, errno=" + errno());
+        }
+        // The kernel returned a raw pointer: give it the size it really has
+        return address.reinterpret(size);
+    }
+
+    static void munmap(MemorySegment segment) {
+        try {
+            int ignored = (int) MUNMAP.invokeExact(CAPTURE, segment, segment.byteSize());
+        } catch (Throwable t) {
+            throw new IllegalStateException("munmap downcall failed", t);
+        }
+    }
+
+    // --- Sockets ---
+
+    /** socket() + SO_REUSEADDR + bind(0.0.0.0:port) + listen(). Returns the listening fd. */
+    static int listenTcp(int port, int backlog) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            int fd = (int) SOCKET.invokeExact(CAPTURE, AF_INET, SOCK_STREAM, 0);
+            check(fd, "socket");
+            try {
+                MemorySegment one = arena.allocate(JAVA_INT);
+                one.set(JAVA_INT, 0, 1);
+                check((int) SETSOCKOPT.invokeExact(CAPTURE, fd, SOL_SOCKET, SO_REUSEADDR, one, 4), "setsockopt");
+
+                // struct sockaddr_in { sa_family_t family; in_port_t port (big endian); in_addr addr; zero[8] }
+                MemorySegment addr = arena.allocate(16, 4);
+                addr.fill((byte) 0);
+                addr.set(JAVA_BYTE, 0, (byte) AF_INET); // family is host order (little endian on x86/arm)
+                addr.set(JAVA_BYTE, 2, (byte) (port >>> 8));
+                addr.set(JAVA_BYTE, 3, (byte) port);
+                // sin_addr = 0.0.0.0 (INADDR_ANY), already zeroed
+                check((int) BIND.invokeExact(CAPTURE, fd, addr, 16), "bind");
+
+                check((int) LISTEN.invokeExact(CAPTURE, fd, backlog), "listen");
+                return fd;
+            } catch (IOException e) {
+                close(fd);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("socket downcall failed", t);
+        }
+    }
+
+    static void close(int fd) {
+        try {
+            int ignored = (int) CLOSE.invokeExact(CAPTURE, fd);
+        } catch (Throwable t) {
+            throw new IllegalStateException("close downcall failed", t);
+        }
+    }
+
+    private static void check(int result, String call) throws IOException {
+        if (result < 0) {
+            throw new IOException(call + " failed, errno=" + errno());
+        }
+    }
+}
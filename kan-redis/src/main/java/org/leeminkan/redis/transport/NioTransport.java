@@ -0,0 +1,734 @@
+package org.leeminkan.redis.transport;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanResp;
+import org.leeminkan.redis.KanSession;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+import org.leeminkan.redis.shard.KanShards;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NioTransport
+ * A non-blocking, event-driven transport using Java NIO.
+ * Designed to handle C10K (10,000 concurrent connections) on a single thread.
+ *
+ * Keeping that honest when clients leak connections:
+ * - kan.max-clients: connections past the limit get the error response and are closed at once.
+ * - kan.idle-timeout: silent connections are closed by a timing wheel run on this loop.
+ * - Each connection reports the heap it holds (input buffer, queued output) to KanMetrics,
+ *   and an input buffer grown for one large command shrinks back afterwards.
+ *
+ * With TLS (-Dkan.tls=true, ADR-005) every socket read and write goes through the
+ * connection's {@link KanTlsChannel}; the command loop above it doesn't change. TLS output is
+ * corked: responses collect in the channel and are sealed and sent once per loop iteration.
+ */
+public class NioTransport implements KanTransport {
+
+    private static final KanLogger LOG = KanLogger.getLogger(NioTransport.class);
+
+    private final KanMetrics metrics;
+    // Shared-nothing mode: keyed commands run on shard workers (null = this thread runs everything)
+    private final KanShards shards;
+    // TLS settings and buffer pools (null = plaintext)
+    private final KanTls tls;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private KanProtocol protocol;
+    private volatile boolean isRunning = true;
+
+    // Responses are built here, then written (or copied to the connection's queue). One loop thread = one buffer
+    private final ByteBuffer responseBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    // Pending output past which a connection is dropped (a subscriber that can't keep up)
+    private static final long OUTPUT_LIMIT = Long.getLong("kan.output-buffer-limit", 8L * 1024 * 1024);
+
+    // Idle timeouts: one intrusive timer per connection, advanced by the loop itself
+    private final KanTimerWheel idleTimers = new KanTimerWheel(512, TimeUnit.SECONDS.toNanos(1));
+    private final long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS);
+
+    // System.nanoTime() of the current loop iteration: one clock read per select(), not per event
+    private long loopNanos = System.nanoTime();
+
+    // Disable Nagle's algorithm. Always on with TLS: the channel already coalesces its writes,
+    // and Nagle would hold back the record that follows a handshake flight or a session ticket
+    private static final boolean TCP_NODELAY = Boolean.getBoolean("kan.tcp-nodelay");
+
+    // TLS: connections with corked output, sealed and sent at the end of this loop iteration
+    private final ArrayDeque<Connection> corked = new ArrayDeque<>();
+
+    // What a connection over kan.max-clients gets before we close it: the error response
+    private static final ByteBuffer REJECTION = ByteBuffer.allocateDirect(4).putInt(0, -1).asReadOnlyBuffer();
+    private static final ByteBuffer RESP_WITH_SHARDS = ByteBuffer.wrap(
+            "-ERR RESP clients are not supported with kan.shards\r\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+
+    // A map to store data associated with a connection (buffers, state)
+    // In a real Netty implementation, this would be the 'ChannelContext'
+    private final ConcurrentHashMap<SocketChannel, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Per-connection state: the input buffer (ADR-001), a value being streamed in (ADR-003)
+     * and the output queue. Everything here runs on the event loop thread (PUBLISH is processed on it too).
+     */
+    private final class Connection extends KanTimerWheel.Timeout implements KanSession {
+        final SocketChannel channel;
+        final SelectionKey key;
+        // TLS mode: the SSLEngine between the socket and everything below (null = plaintext)
+        final KanTlsChannel tlsChannel;
+        boolean isCorked; // Queued in 'corked'
+        ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        // Last read, or write progress (a client slowly draining a large reply is not idle)
+        long lastActivity = loopNanos;
+        // Heap bytes this connection holds (input buffer + queued output), as last reported to KanMetrics
+        long accountedBytes;
+
+        // Large SET in progress: socket reads go straight into its off-heap value (ADR-003)
+        KanProtocol.StreamingSet streaming;
+
+        // Large GET value handed over by the command just processed, sent after its response header
+        ByteBuffer attached;
+        ByteBuffer attachedTrailer; // Sent after it (RESP: the bulk string's CRLF)
+
+        // Decided by the first byte the client sends: Kan protocol, or RESP (null until then)
+        KanResp.State resp;
+        boolean dialectKnown;
+
+        // Shared-nothing mode: commands sent to shards, in arrival order (responses go out in this order)
+        final ArrayDeque<KanShards.Request> inFlight = new ArrayDeque<>();
+
+        // Bytes the socket didn't accept yet, in order (responses, large values and pushes interleaved)
+        final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+        // Pending bytes that count towards OUTPUT_LIMIT (a requested large value doesn't)
+        long limitedBytes;
+        long pendingBytes;
+        boolean closed;
+
+        Connection(SocketChannel channel, SelectionKey key, KanTlsChannel tlsChannel) {
+            this.channel = channel;
+            this.key = key;
+            this.tlsChannel = tlsChannel;
+        }
+
+        int read(ByteBuffer dst) throws IOException {
+            if (tlsChannel == null) {
+                return channel.read(dst);
+            }
+            int bytesRead = tlsChannel.read(dst);
+            cork(); // A handshake record the socket didn't take
+            return bytesRead;
+        }
+
+        int write(ByteBuffer src) throws IOException {
+            if (tlsChannel == null) {
+                return channel.write(src);
+            }
+            int written = tlsChannel.write(src);
+            cork();
+            return written;
+        }
+
+        private void cork() {
+            if (!isCorked && tlsChannel.hasPendingOutput()) {
+                isCorked = true;
+                corked.addLast(this);
+            }
+        }
+
+        /** Response path: the buffer is reused by the caller, so whatever is left over is copied. */
+        void send(ByteBuffer response) throws IOException {
+            if (pending.isEmpty()) {
+                write(response);
+            }
+            if (response.hasRemaining()) {
+                ByteBuffer copy = ByteBuffer.allocate(response.remaining());
+                copy.put(response).flip();
+                enqueue(copy, true);
+                if (limitedBytes > OUTPUT_LIMIT) {
+                    // Pipelining without ever reading the responses
+                    LOG.warn("Dropping slow client: {} bytes of output pending", limitedBytes);
+                    closeConnection(this);
+                    return;
+                }
+            }
+            if (attached != null) {
+                ByteBuffer body = attached;
+                attached = null;
+                if (pending.isEmpty()) {
+                    write(body);
+                }
+                if (body.hasRemaining()) {
+                    enqueue(body, false); // A view of the stored value: queued as is, no copy
+                }
+            }
+            if (attachedTrailer != null) {
+                ByteBuffer trailer = attachedTrailer;
+                attachedTrailer = null;
+                if (pending.isEmpty()) {
+                    write(trailer);
+                }
+                if (trailer.hasRemaining()) {
+                    enqueue(trailer, false);
+                }
+            }
+        }
+
+        @Override
+        public boolean attach(ByteBuffer body, ByteBuffer trailer) {
+            attached = body;
+            attachedTrailer = trailer;
+            return true;
+        }
+
+        @Override
+        public PushResult push(ByteBuffer frame) {
+            if (closed) {
+                return PushResult.DROPPED;
+            }
+            if (limitedBytes + frame.remaining() > OUTPUT_LIMIT) {
+                LOG.warn("Dropping slow client: {} bytes of output pending", limitedBytes);
+                closeConnection(this);
+                return PushResult.DROPPED;
+            }
+            try {
+                if (pending.isEmpty()) {
+                    write(frame);
+                }
+                if (!frame.hasRemaining()) {
+                    return PushResult.WRITTEN;
+                }
+                enqueue(frame, true); // Shared read-only view: queued as is, no copy
+                return PushResult.QUEUED;
+            } catch (IOException e) {
+                closeConnection(this);
+                return PushResult.DROPPED;
+            }
+        }
+
+        private void enqueue(ByteBuffer buffer, boolean limited) {
+            pending.addLast(new Chunk(buffer, limited));
+            pendingBytes += buffer.remaining();
+            if (limited) {
+                limitedBytes += buffer.remaining();
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            account();
+        }
+
+        /** Reports the change in this connection's buffer memory (cheap: one striped add, only on change). */
+        void account() {
+            if (closed) {
+                return; // closeConnection() already gave it all back
+            }
+            long held = input.capacity() + pendingBytes + (tlsChannel != null ? tlsChannel.heldBytes() : 0);
+            if (held != accountedBytes) {
+                metrics.recordConnectionMemory(held - accountedBytes);
+                accountedBytes = held;
+            }
+        }
+
+        /** OP_WRITE: the socket has room again. */
+        void flush() throws IOException {
+            if (tlsChannel != null && !tlsChannel.flush()) {
+                account();
+                return; // Earlier ciphertext (or a handshake record) still doesn't fit
+            }
+            while (!pending.isEmpty()) {
+                Chunk head = pending.peekFirst();
+                int written = write(head.data());
+                pendingBytes -= written;
+                if (written > 0) {
+                    lastActivity = loopNanos;
+                }
+                if (head.limited()) {
+                    limitedBytes -= written;
+                }
+                if (head.data().hasRemaining()) {
+                    account();
+                    return; // Socket full again: wait for the next OP_WRITE
+                }
+                pending.pollFirst();
+            }
+            if (tlsChannel != null && !tlsChannel.flush()) {
+                account();
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            account();
+        }
+    }
+
+    private record Chunk(ByteBuffer data, boolean limited) {
+    }
+
+    public NioTransport(KanMetrics metrics) {
+        this(metrics, null);
+    }
+
+    public NioTransport(KanMetrics metrics, KanShards shards) {
+        this(metrics, shards, null);
+    }
+
+    public NioTransport(KanMetrics metrics, KanShards shards, KanTls tls) {
+        this.metrics = metrics;
+        this.shards = shards;
+        this.tls = tls;
+    }
+
+    @Override
+    public String name() {
+        return "nio";
+    }
+
+    @Override
+    public void serve(int port, KanProtocol protocol) throws IOException {
+        this.protocol = protocol;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        // CRITICAL: Must be non-blocking to work with Selector
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        if (shards != null) {
+            // Workers wake the selector when responses are ready
+            shards.start(selector::wakeup, this::completed);
+        }
+
+        LOG.info("Kan-Redis listening on port {} (transport: nio)...", port);
+        if (tls != null) {
+            LOG.info("TLS enabled (ADR-005)");
+        }
+        runEventLoop();
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void runEventLoop() {
+        while (isRunning) {
+            try {
+                // Blocks until at least one event occurs (or the next timer tick is due)
+                if (idleTimers.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(idleTimers.millisToNextTick(System.nanoTime()));
+                }
+                loopNanos = System.nanoTime();
+                idleTimers.advance(loopNanos, this::idleTimerExpired);
+
+                if (shards != null) {
+                    shards.drainCompletions();
+                }
+
+                // Get the set of keys (events) that are ready
+                Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                Iterator<SelectionKey> iter = selectedKeys.iterator();
+
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+
+                    if (!key.isValid()) {
+                        // Closed earlier in this round (e.g. a subscriber dropped by PUBLISH)
+                    } else if (key.isAcceptable()) {
+                        handleAccept(key);
+                    } else {
+                        if (key.isWritable()) {
+                            handleWrite(key);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            handleRead(key);
+                        }
+                    }
+
+                    // Crucial: Remove the key from the iterator to prevent processing it twice
+                    iter.remove();
+                }
+
+                flushCorked();
+
+            } catch (IOException e) {
+                LOG.error("Event loop I/O error", e);
+            }
+        }
+    }
+
+    // TLS: seal and send what this iteration wrote; what the socket won't take waits for OP_WRITE
+    private void flushCorked() {
+        Connection connection;
+        while ((connection = corked.pollFirst()) != null) {
+            connection.isCorked = false;
+            if (connection.closed) {
+                continue;
+            }
+            try {
+                if (!connection.tlsChannel.flush()) {
+                    connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+                connection.account();
+            } catch (IOException e) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    private void handleAccept(SelectionKey key) throws IOException {
+        ServerSocketChannel server = (ServerSocketChannel) key.channel();
+        SocketChannel client = server.accept();
+        if (client == null) {
+            return;
+        }
+        if (connections.size() >= MAX_CLIENTS) {
+            reject(client);
+            return;
+        }
+        client.configureBlocking(false);
+        if (TCP_NODELAY || tls != null) {
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        // Register this new client for READ events (we want to know when they send data)
+        SelectionKey clientKey = client.register(selector, SelectionKey.OP_READ);
+
+        // Allocate a buffer for this specific client (4KB)
+        Connection connection = new Connection(client, clientKey, tls != null ? new KanTlsChannel(client, tls) : null);
+        clientKey.attach(connection);
+        connections.put(client, connection);
+        connection.account();
+        if (idleTimeoutNanos > 0) {
+            idleTimers.schedule(connection, idleTimeoutNanos, loopNanos);
+        }
+
+        // Per-connection logs are DEBUG: at C10K, one line per accept is a throughput limiter
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("New Connection: {}", client.getRemoteAddress());
+        }
+        metrics.clientConnected();
+    }
+
+    /**
+     * Over kan.max-clients: answer with the error response and close, before allocating
+     * anything or touching the selector. A fresh socket's send buffer is empty, so the
+     * 4 bytes go out in one non-blocking write (or not at all: the close tells the client anyway).
+     * A TLS client can't read anything before a handshake, so it just gets the close.
+     */
+    private void reject(SocketChannel client) {
+        metrics.recordRejectedConnection();
+        try (client) {
+            client.configureBlocking(false);
+            if (tls == null) {
+                client.write(REJECTION.duplicate());
+            }
+        } catch (IOException e) {
+            // Best effort: the client is going away either way
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Rejected connection: {} clients connected (kan.max-clients)", connections.size());
+        }
+    }
+
+    /**
+     * The timer fires once per timeout period; only then do we look at the connection.
+     * Activity since it was scheduled just pushes it back (reads never touch the wheel).
+     */
+    private void idleTimerExpired(KanTimerWheel.Timeout timeout) {
+        Connection connection = (Connection) timeout;
+        long idleFor = loopNanos - connection.lastActivity;
+        if (idleFor < idleTimeoutNanos) {
+            idleTimers.schedule(connection, idleTimeoutNanos - idleFor, loopNanos);
+            return;
+        }
+        if (!connection.inFlight.isEmpty() || protocol.hasSubscriptions(connection)) {
+            // Waiting for its shards, or a subscriber waiting for messages: not idle, just quiet
+            idleTimers.schedule(connection, idleTimeoutNanos, loopNanos);
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Closing idle connection: {}", connection.channel);
+        }
+        metrics.recordIdleConnectionClosed();
+        closeConnection(connection);
+    }
+
+    private void handleWrite(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            closeConnection(connection);
+        }
+    }
+
+    private void handleRead(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        boolean progress;
+        do {
+            progress = connection.streaming != null ? readStreaming(connection) : readCommands(connection);
+            // TLS: one socket read may have brought more records than the buffer took. The
+            // selector won't report them again (they're out of the kernel), so go on here
+        } while (progress && connection.tlsChannel != null && !connection.closed
+                && connection.tlsChannel.hasBufferedInput());
+    }
+
+    /** @return false if nothing was read (or the connection closed) */
+    private boolean readCommands(Connection connection) throws IOException {
+        int bytesRead;
+        try {
+            bytesRead = connection.read(connection.input);
+        } catch (IOException e) {
+            bytesRead = -1; // Connection reset by peer (or, with TLS, a failed handshake)
+        }
+        if (bytesRead == -1) {
+            closeConnection(connection);
+            return false;
+        }
+        if (bytesRead == 0) {
+            return false;
+        }
+        connection.lastActivity = loopNanos;
+        processInput(connection);
+        connection.account();
+        return true;
+    }
+
+    // Runs every complete command in the input buffer, then decides what to do with the leftover bytes
+    private void processInput(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.input;
+        SocketChannel client = connection.channel;
+        buffer.flip(); // Switch to READ mode
+
+        boolean processedAny = false; // Tracks if we made progress
+
+        // Loop to process all complete commands in the buffer
+        while (!connection.closed && processCommand(connection, buffer)) {
+            processedAny = true;
+
+            // If a command was processed, we might have a response to send
+            if (responseBuffer.position() > 0) {
+                responseBuffer.flip();
+                if (connection.inFlight.isEmpty()) {
+                    // Never spin on a full socket: leftovers wait in the queue for OP_WRITE
+                    connection.send(responseBuffer);
+                } else {
+                    // Earlier commands are still on their shards: this response waits its turn
+                    connection.inFlight.addLast(KanShards.Request.completed(connection, copyOf(responseBuffer)));
+                }
+                responseBuffer.clear(); // Clear for next command's response
+            }
+        }
+        if (connection.closed) {
+            return; // e.g. it subscribed, then got dropped while we were publishing
+        }
+
+        // ADR-003: a large SET value skips the input buffer and goes straight off-heap
+        if (startStreaming(connection, buffer)) {
+            buffer.compact();
+            return;
+        }
+
+        // Buffer Management Strategy (ADR-001)
+        // If we processed NO commands, and the buffer is completely full,
+        // it means the current command is larger than the buffer capacity.
+        // Note: buffer.remaining() == capacity() implies the 'mark' is at 0 and 'limit' is at capacity.
+        if (!processedAny && buffer.remaining() == buffer.capacity()) {
+
+            // Check Safety Limit
+            if (buffer.capacity() * 2 > MAX_FRAME_SIZE) {
+                LOG.warn("Client {} exceeded max frame size.", client.getRemoteAddress());
+                closeConnection(connection);
+                return;
+            }
+
+            // Resize: Double the capacity
+            ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+
+            // Copy the partial data from the old buffer to the new one
+            newBuffer.put(buffer);
+
+            // Update the connection
+            connection.input = newBuffer;
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("ADR-001: Resized buffer for {} to {} bytes", client.getRemoteAddress(), newBuffer.capacity());
+            }
+        } else {
+            // Standard case: We made progress OR we have space left.
+            // Move partial bytes to the start for the next read.
+            buffer.compact();
+            if (buffer.position() == 0 && buffer.capacity() > INITIAL_BUFFER_SIZE) {
+                // The large command is done: don't keep its buffer for the rest of the connection
+                connection.input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Runs one command: here, or on its shard in shared-nothing mode (its response then
+     * arrives through {@link #completed}).
+     * @return false if the command is incomplete
+     */
+    private boolean processCommand(Connection connection, ByteBuffer buffer) {
+        if (!connection.dialectKnown && buffer.hasRemaining()) {
+            connection.dialectKnown = true;
+            if (KanResp.isResp(buffer.get(buffer.position()))) {
+                if (shards != null) {
+                    // Shard routing reads Kan commands: RESP would need its own router
+                    try {
+                        connection.write(RESP_WITH_SHARDS.duplicate());
+                    } catch (IOException ignored) {
+                        // Closing anyway
+                    }
+                    closeConnection(connection);
+                    return false;
+                }
+                connection.resp = new KanResp.State();
+            }
+        }
+        if (connection.resp != null) {
+            return protocol.resp().process(buffer, responseBuffer, connection, connection.resp);
+        }
+        if (shards == null) {
+            return protocol.process(buffer, responseBuffer, connection);
+        }
+        KanShards.Request request = shards.route(buffer, connection);
+        if (request == null) {
+            return false;
+        }
+        if (request == KanShards.LOCAL) {
+            return protocol.process(buffer, responseBuffer, connection);
+        }
+        connection.inFlight.addLast(request);
+        if (request.isDone()) {
+            sendCompleted(connection); // Answered by the router itself (e.g. an error)
+        }
+        return true;
+    }
+
+    /** Shared-nothing mode: a shard finished a request. */
+    private void completed(KanShards.Request request) {
+        Connection connection = (Connection) request.owner();
+        if (!connection.closed) {
+            sendCompleted(connection);
+        }
+    }
+
+    // Sends the finished responses at the head of the connection's in-flight queue
+    private void sendCompleted(Connection connection) {
+        try {
+            while (!connection.closed && !connection.inFlight.isEmpty() && connection.inFlight.peekFirst().isDone()) {
+                KanShards.Request head = connection.inFlight.pollFirst();
+                connection.attached = head.attached();
+                connection.send(head.response());
+            }
+        } catch (IOException e) {
+            closeConnection(connection);
+        }
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer response) {
+        ByteBuffer copy = ByteBuffer.allocate(response.remaining());
+        copy.put(response).flip();
+        return copy;
+    }
+
+    private boolean startStreaming(Connection connection, ByteBuffer buffer) {
+        if (connection.resp != null) {
+            return false; // RESP values arrive whole (the input buffer grows up to MAX_FRAME_SIZE)
+        }
+        try {
+            connection.streaming = protocol.beginStreamingSet(buffer);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Client {} exceeded max value size.", connection.channel);
+            closeConnection(connection);
+            return true;
+        }
+        if (connection.streaming == null) {
+            return false;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("ADR-003: Streaming SET from {} off-heap ({} bytes)", connection.channel, connection.streaming.target().capacity());
+        }
+        return true;
+    }
+
+    // One read() per event, straight into the value's off-heap memory: kernel -> off-heap, no heap copy
+    // (with TLS: decrypted straight into it). Returns false if nothing was read
+    private boolean readStreaming(Connection connection) throws IOException {
+        KanProtocol.StreamingSet streaming = connection.streaming;
+        int bytesRead;
+        try {
+            bytesRead = connection.read(streaming.target());
+        } catch (IOException e) {
+            bytesRead = -1;
+        }
+        if (bytesRead == -1) {
+            closeConnection(connection); // The half-filled value is unreachable now: the GC frees it
+            return false;
+        }
+        if (bytesRead == 0) {
+            return false;
+        }
+        connection.lastActivity = loopNanos;
+        if (streaming.isComplete()) {
+            connection.streaming = null;
+            if (shards != null) {
+                connection.inFlight.addLast(shards.submitStreamed(streaming, connection));
+            } else {
+                protocol.completeStreamingSet(streaming, responseBuffer);
+                responseBuffer.flip();
+                connection.send(responseBuffer);
+                responseBuffer.clear();
+            }
+            if (!connection.closed && connection.input.position() > 0) {
+                processInput(connection); // Commands pipelined right behind the value
+            }
+        }
+        return true;
+    }
+
+    private void closeConnection(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connection Closed: {}", connection.channel);
+        }
+        connections.remove(connection.channel);
+        idleTimers.cancel(connection);
+        metrics.recordConnectionMemory(-connection.accountedBytes);
+        connection.accountedBytes = 0;
+        connection.inFlight.clear(); // Shards may still finish these: their responses are dropped
+        protocol.connectionClosed(connection);
+        metrics.clientDisconnected();
+        if (connection.tlsChannel != null) {
+            connection.tlsChannel.close(); // close_notify, and the pooled buffers go back
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOG.error("Error closing {}", connection.channel, e);
+        }
+    }
+}
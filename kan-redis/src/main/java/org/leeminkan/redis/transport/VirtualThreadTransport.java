@@ -0,0 +1,163 @@
+package org.leeminkan.redis.transport;
+
+import org.leeminkan.redis.KanProtocol;
+import org.leeminkan.redis.KanResp;
+import org.leeminkan.redis.log.KanLogger;
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * VirtualThreadTransport
+ * Thread-per-connection, but with Java 21 Virtual Threads (same idea as java-example/selector/VirtualServer).
+ *
+ * Each connection gets plain blocking code: read -> process -> write. When a read blocks,
+ * the virtual thread unmounts from its carrier and the JVM parks the socket in its own
+ * internal poller, so 10K idle connections cost 10K small heap stacks, not 10K OS threads.
+ *
+ * Unlike NioTransport, commands now run on many carrier threads at once,
+ * so KanStore must be (and is) safe for concurrent callers.
+ */
+public class VirtualThreadTransport implements KanTransport {
+
+    private static final KanLogger LOG = KanLogger.getLogger(VirtualThreadTransport.class);
+
+    // Flush responses once less than this is left (same limit as the NIO response buffer)
+    private static final int RESPONSE_RESERVE = 4096;
+
+    private final KanMetrics metrics;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean isRunning = true;
+
+    public VirtualThreadTransport(KanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return "virtual";
+    }
+
+    @Override
+    public void serve(int port, KanProtocol protocol) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        // Stays in blocking mode: accept() simply parks the calling thread
+
+        LOG.info("Kan-Redis listening on port {} (transport: virtual threads)...", port);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (isRunning) {
+                SocketChannel client;
+                try {
+                    client = serverChannel.accept();
+                } catch (ClosedChannelException e) {
+                    break; // stop() closed the channel
+                }
+                if (metrics.getConnectedClients() >= MAX_CLIENTS) {
+                    reject(client);
+                    continue;
+                }
+                // Counted here, not when the virtual thread starts: otherwise a burst of accepts
+                // all pass the check above before any of their threads has run
+                metrics.clientConnected();
+                executor.submit(() -> handleClient(client, protocol));
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close(); // unblocks accept()
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to close server channel", e);
+        }
+    }
+
+    // Over kan.max-clients: the error response, then close (no virtual thread started)
+    private void reject(SocketChannel client) {
+        metrics.recordRejectedConnection();
+        try (client) {
+            client.write(ByteBuffer.allocate(4).putInt(0, -1));
+        } catch (IOException e) {
+            // Best effort: the client is going away either way
+        }
+    }
+
+    // Already counted as connected by the accept loop
+    private void handleClient(SocketChannel client, KanProtocol protocol) {
+        LOG.debug("New Connection: {}", client);
+
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        ByteBuffer responseBuffer = ByteBuffer.allocate(RESPONSE_RESERVE * 4);
+        KanResp.State resp = null; // RESP connection (ADR-006), decided by the first byte
+        boolean dialectKnown = false;
+
+        try (client) {
+            // This 'read' looks blocking, but the virtual thread yields its carrier while waiting
+            while (client.read(buffer) != -1) {
+                buffer.flip(); // Switch to READ mode
+                if (!dialectKnown && buffer.hasRemaining()) {
+                    dialectKnown = true;
+                    resp = KanResp.isResp(buffer.get(0)) ? new KanResp.State() : null;
+                }
+
+                boolean processedAny = false;
+                while (resp != null
+                        ? protocol.resp().process(buffer, responseBuffer, null, resp)
+                        : protocol.process(buffer, responseBuffer)) {
+                    processedAny = true;
+                    if (responseBuffer.remaining() < RESPONSE_RESERVE) {
+                        flush(client, responseBuffer);
+                    }
+                }
+                // One write for every response produced by this read (pipelining)
+                flush(client, responseBuffer);
+
+                // Buffer Management Strategy (ADR-001), same rule as NioTransport
+                if (!processedAny && buffer.remaining() == buffer.capacity()) {
+                    if (buffer.capacity() * 2 > MAX_FRAME_SIZE) {
+                        LOG.warn("Client {} exceeded max frame size.", client);
+                        return;
+                    }
+                    ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                    newBuffer.put(buffer);
+                    buffer = newBuffer;
+                    LOG.debug("ADR-001: Resized buffer for {} to {} bytes", client, buffer.capacity());
+                } else {
+                    buffer.compact();
+                }
+            }
+        } catch (IOException e) {
+            // Reset, broken pipe...: the client is gone, nothing to report
+            LOG.debug("Connection error: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            // A server bug (parser, store): close this connection but keep the trace
+            LOG.error("Connection {} failed", client, e);
+        } finally {
+            LOG.debug("Connection Closed: {}", client);
+            metrics.clientDisconnected();
+        }
+    }
+
+    private static void flush(SocketChannel client, ByteBuffer responseBuffer) throws IOException {
+        if (responseBuffer.position() == 0) {
+            return;
+        }
+        responseBuffer.flip();
+        while (responseBuffer.hasRemaining()) {
+            client.write(responseBuffer);
+        }
+        responseBuffer.clear();
+    }
+}
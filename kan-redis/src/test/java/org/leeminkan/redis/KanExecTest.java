@@ -0,0 +1,113 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.leeminkan.redis.ProtocolFixture.bytes;
+import static org.leeminkan.redis.ProtocolFixture.exec;
+import static org.leeminkan.redis.ProtocolFixture.execFrame;
+import static org.leeminkan.redis.ProtocolFixture.frame;
+
+class KanExecTest {
+
+    private final ProtocolFixture server = new ProtocolFixture();
+    private final KanStore store = server.store;
+
+    @Test
+    void commandsWithoutAKeyAreRejectedBeforeAnythingRuns() {
+        ByteBuffer tracking = ByteBuffer.allocate(2).put(CommandType.TRACKING.getCode()).put((byte) 1).flip();
+        ByteBuffer publish = frame(CommandType.PUBLISH, "news", "hello");
+
+        for (ByteBuffer rejected : List.of(tracking, publish)) {
+            ByteBuffer reply = server.send(exec(frame(CommandType.SET, "k", "v"), rejected));
+            assertEquals(-1, reply.getInt());
+            assertNull(store.get("k"));
+        }
+    }
+
+    @Test
+    void emptyKeyRejectsTheWholeBatchBeforeAnythingRuns() {
+        ByteBuffer reply = server.send(exec(frame(CommandType.SET, "a", "1"), frame(CommandType.SET, "", "x")));
+
+        assertEquals(-1, reply.getInt());
+        assertEquals(0, reply.remaining()); // "malformed EXEC", not a partial batch
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    void emptyWatchKeyRejectsTheWholeBatchBeforeAnythingRuns() {
+        ByteBuffer body = ByteBuffer.allocate(64 * 1024);
+        body.putInt(1).putInt(0).putInt(0); // One watch: [KeyLen=0][ExpectedLen=0]
+        ByteBuffer set = frame(CommandType.SET, "a", "1");
+        body.putInt(1).putInt(set.remaining()).put(set).flip();
+
+        assertEquals(-1, server.send(execFrame(body)).getInt());
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    void readThatDoesNotFitAnswersWithAnErrorAndTheWritesStillApply() {
+        server.send(frame(CommandType.HSET, "big", "f", "v".repeat(5000)));
+
+        ByteBuffer reply = server.send(exec(
+                frame(CommandType.HGETALL, "big"),
+                frame(CommandType.SET, "k", "v")));
+
+        assertEquals(reply.remaining() - 4, reply.getInt());
+        assertEquals(1, reply.get()); // Executed
+        assertEquals(2, reply.getInt());
+        assertEquals(-1, reply.getInt()); // HGETALL: too large for the response buffer
+        assertEquals(1, reply.getInt()); // SET: [Len=1][OK]
+        assertEquals(1, reply.get());
+        assertNotNull(store.get("k"));
+    }
+
+    @Test
+    void batchWhoseAnswersCannotFitIsRejectedBeforeAnythingRuns() {
+        ByteBuffer[] commands = new ByteBuffer[400]; // 400 x 13 bytes reserved > 4 KB
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = frame(CommandType.INCR, "counter");
+        }
+
+        assertEquals(-1, server.send(exec(commands)).getInt());
+        assertNull(store.get("counter"));
+    }
+
+    @Test
+    void failedTransactionLogsWhatItApplied() throws IOException {
+        File log = File.createTempFile("kan-exec", ".wal");
+        log.deleteOnExit();
+        KanStore logged = new KanStore(new KanWal(log.getPath()), server.metrics);
+        logged.set("before", bytes("1"));
+        try {
+            logged.atomically(List.of("partial", "never"), () -> {
+                logged.set("partial", bytes("1"));
+                if (logged.get("partial") != null) {
+                    throw new IllegalStateException("failed halfway");
+                }
+                logged.set("never", bytes("1"));
+                return null;
+            });
+        } catch (IllegalStateException expected) {
+            // What ran before the failure stays applied
+        }
+        logged.set("after", bytes("1"));
+
+        // Memory and log agree: the write before the failure is in both, the one after in neither
+        assertNotNull(logged.get("partial"));
+        assertNull(logged.get("never"));
+        KanStore replayed = new KanStore(null, server.metrics);
+        new KanWal(log.getPath()).replay(replayed);
+        assertNotNull(replayed.get("before"));
+        assertNotNull(replayed.get("partial"));
+        assertNull(replayed.get("never"));
+        assertNotNull(replayed.get("after"));
+    }
+}
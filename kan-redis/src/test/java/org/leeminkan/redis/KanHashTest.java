@@ -0,0 +1,123 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.leeminkan.redis.ProtocolFixture.frame;
+import static org.leeminkan.redis.ProtocolFixture.readString;
+
+class KanHashTest {
+
+    private final ProtocolFixture server = new ProtocolFixture();
+
+    @Test
+    void hgetAllOfListpackSendsBigEndianLengths() {
+        hset("h", "name", "kan");
+        hset("h", "city", "hanoi");
+
+        ByteBuffer reply = server.send(frame(CommandType.HGETALL, "h"));
+
+        // The listpack body is copied to the wire as is: its lengths must already be big-endian
+        assertEquals(reply.remaining() - 4, reply.getInt());
+        assertEquals(2, reply.getInt());
+        assertEquals("name", readString(reply));
+        assertEquals("kan", readString(reply));
+        assertEquals("city", readString(reply));
+        assertEquals("hanoi", readString(reply));
+        assertEquals(0, reply.remaining());
+    }
+
+    @Test
+    void hgetOfValueLargerThanTheResponseBufferIsAttached() {
+        String value = "v".repeat(5000);
+        hset("big", "f", value);
+        RecordingSession session = new RecordingSession();
+
+        ByteBuffer reply = server.send(frame(CommandType.HGET, "big", "f"), session);
+
+        assertEquals(4, reply.remaining()); // Just [Len]: the transport writes the value after it
+        assertEquals(5000, reply.getInt());
+        assertEquals(value, StandardCharsets.UTF_8.decode(session.attached).toString());
+    }
+
+    @Test
+    void hgetAllLargerThanTheResponseBufferIsAttached() {
+        String value = "x".repeat(100); // Over MAX_LISTPACK_VALUE: table encoding
+        for (int i = 0; i < 100; i++) {
+            hset("wide", "field" + i, value);
+        }
+        RecordingSession session = new RecordingSession();
+
+        ByteBuffer reply = server.send(frame(CommandType.HGETALL, "wide"), session);
+
+        ByteBuffer body = session.attached;
+        assertEquals(body.remaining(), reply.getInt());
+        assertEquals(100, body.getInt());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(readString(body).startsWith("field"));
+            assertEquals(value, readString(body));
+        }
+        assertEquals(0, body.remaining());
+    }
+
+    @Test
+    void largeHashResponseWithoutAttachIsAnError() {
+        hset("big", "f", "v".repeat(5000));
+
+        // No session (e.g. inside EXEC): the error response, and the server keeps going
+        assertEquals(-1, server.send(frame(CommandType.HGET, "big", "f")).getInt());
+        assertEquals(-1, server.send(frame(CommandType.HGETALL, "big")).getInt());
+        assertEquals(1, server.send(frame(CommandType.HSET, "big", "g", "small")).getInt());
+    }
+
+    @Test
+    void aTableNodeFreedUnderTheEntryThrowsInsteadOfBeingRead() {
+        try (Arena entryArena = Arena.ofConfined()) {
+            // A value over 64 bytes makes a table: the listpack and the table entry stay readable,
+            // its buckets and node come from an arena we close
+            Arena nodeArena = Arena.ofConfined();
+            int[] allocations = {0};
+            SegmentAllocator allocator = (size, alignment) ->
+                    (allocations[0]++ < 2 ? entryArena : nodeArena).allocate(size, alignment);
+            byte[] value = "v".repeat(100).getBytes(StandardCharsets.UTF_8);
+            MemorySegment table = KanHash.set(null, "f".getBytes(StandardCharsets.UTF_8), value,
+                    allocator, nodeArena, new boolean[1]);
+            nodeArena.close();
+
+            // Dangling bucket and node pointers: the read fails its liveness check rather than touching freed memory
+            assertEquals(KanHash.ENCODING_TABLE, KanHash.encoding(table));
+            assertEquals(1, KanHash.count(table));
+            assertThrows(IllegalStateException.class,
+                    () -> KanHash.writeAll(table, ByteBuffer.allocate(1024), nodeArena));
+        }
+    }
+
+    private void hset(String key, String field, String value) {
+        ByteBuffer reply = server.send(frame(CommandType.HSET, key, field, value));
+        assertEquals(1, reply.getInt());
+    }
+
+    // A transport that supports attach, like NioTransport
+    private static final class RecordingSession implements KanSession {
+        ByteBuffer attached;
+
+        @Override
+        public PushResult push(ByteBuffer frame) {
+            return PushResult.WRITTEN;
+        }
+
+        @Override
+        public boolean attach(ByteBuffer body, ByteBuffer trailer) {
+            attached = body;
+            return true;
+        }
+    }
+}
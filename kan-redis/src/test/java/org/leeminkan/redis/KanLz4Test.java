@@ -0,0 +1,159 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KanLz4Test {
+
+    @Test
+    void emptyInputRoundTrips() {
+        byte[] compressed = compress(new byte[0]);
+
+        assertEquals(1, compressed.length); // A single token: no literals, no match
+        assertArrayEquals(new byte[0], decompress(compressed, 0));
+    }
+
+    @Test
+    void shortInputsRoundTripAroundTheEndOfBlockLimits() {
+        // Below MF_LIMIT nothing may match; around it the last literals must still be emitted
+        for (int length = 1; length <= 64; length++) {
+            byte[] zeros = new byte[length];
+            assertArrayEquals(zeros, roundTrip(zeros), "length " + length);
+        }
+    }
+
+    @Test
+    void incompressibleInputStaysWithinTheWorstCase() {
+        byte[] random = new byte[100_000];
+        new Random(1).nextBytes(random);
+
+        byte[] compressed = compress(random);
+
+        assertTrue(compressed.length <= KanLz4.maxCompressedLength(random.length));
+        assertArrayEquals(random, decompress(compressed, random.length));
+    }
+
+    @Test
+    void longRunIsOneOverlappingMatch() {
+        byte[] run = new byte[100_000];
+        Arrays.fill(run, (byte) 'a');
+
+        byte[] compressed = compress(run);
+
+        // Offset 1 repeats the previous byte: the match length needs ~390 overflow bytes
+        assertTrue(compressed.length < 500, "compressed to " + compressed.length);
+        assertEquals(1, maxOffset(compressed));
+        assertArrayEquals(run, decompress(compressed, run.length));
+    }
+
+    @Test
+    void repeatingPatternShorterThanItsMatchRoundTrips() {
+        // Offset 3 < match length: the decoder must copy byte by byte, reading what it just wrote
+        byte[] pattern = "abc".repeat(10_000).getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(pattern, roundTrip(pattern));
+
+        byte[] mixed = ("header:" + "xy".repeat(500) + ":middle:" + "0123456".repeat(300) + ":end")
+                .getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(mixed, roundTrip(mixed));
+    }
+
+    @Test
+    void matchAtTheMaximumOffsetIsUsed() {
+        // X, a run of 'z' up to position 65535, then X again: exactly MAX_OFFSET back
+        byte[] input = withRepeatAt(65_535);
+
+        byte[] compressed = compress(input);
+
+        assertEquals(65_535, maxOffset(compressed));
+        assertArrayEquals(input, decompress(compressed, input.length));
+    }
+
+    @Test
+    void matchBeyondTheMaximumOffsetIsLiterals() {
+        byte[] input = withRepeatAt(65_536);
+
+        byte[] compressed = compress(input);
+
+        assertTrue(maxOffset(compressed) < 65_536);
+        assertArrayEquals(input, decompress(compressed, input.length));
+    }
+
+    @Test
+    void decompressesFromAnOffsetIntoTheSource() {
+        // In the store the block sits behind the entry header: decompress() reads from srcOffset
+        byte[] value = "{\"balance\":100,\"currency\":\"VND\"}".repeat(200).getBytes(StandardCharsets.US_ASCII);
+        byte[] compressed = compress(value);
+        byte[] entry = new byte[7 + compressed.length];
+        System.arraycopy(compressed, 0, entry, 7, compressed.length);
+
+        byte[] out = new byte[value.length];
+        KanLz4.decompress(MemorySegment.ofArray(entry), 7, compressed.length, MemorySegment.ofArray(out));
+
+        assertArrayEquals(value, out);
+    }
+
+    // 32 random bytes (no 'z'), 'z' up to {@code repeatAt}, then the same 32 bytes and a short tail
+    private static byte[] withRepeatAt(int repeatAt) {
+        byte[] block = new byte[32];
+        Random random = new Random(3);
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) ('A' + random.nextInt(26));
+        }
+        byte[] input = new byte[repeatAt + block.length + 16];
+        Arrays.fill(input, (byte) 'z');
+        System.arraycopy(block, 0, input, 0, block.length);
+        System.arraycopy(block, 0, input, repeatAt, block.length);
+        return input;
+    }
+
+    private static byte[] roundTrip(byte[] input) {
+        return decompress(compress(input), input.length);
+    }
+
+    private static byte[] compress(byte[] input) {
+        byte[] dst = new byte[KanLz4.maxCompressedLength(input.length)];
+        return Arrays.copyOf(dst, KanLz4.compress(input, dst));
+    }
+
+    private static byte[] decompress(byte[] compressed, int originalLength) {
+        byte[] out = new byte[originalLength];
+        KanLz4.decompress(MemorySegment.ofArray(compressed), 0, compressed.length, MemorySegment.ofArray(out));
+        return out;
+    }
+
+    // Walks the sequences of a block (format in KanLz4) and returns the largest match offset, 0 if none
+    private static int maxOffset(byte[] block) {
+        int max = 0;
+        int ip = 0;
+        while (true) {
+            int token = Byte.toUnsignedInt(block[ip++]);
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int extra;
+                do {
+                    extra = Byte.toUnsignedInt(block[ip++]);
+                    literalLength += extra;
+                } while (extra == 255);
+            }
+            ip += literalLength;
+            if (ip >= block.length) {
+                return max;
+            }
+            max = Math.max(max, Byte.toUnsignedInt(block[ip]) | Byte.toUnsignedInt(block[ip + 1]) << 8);
+            ip += 2;
+            if ((token & 15) == 15) {
+                while (Byte.toUnsignedInt(block[ip++]) == 255) {
+                    // Match length overflow: only skipped here
+                }
+            }
+        }
+    }
+}
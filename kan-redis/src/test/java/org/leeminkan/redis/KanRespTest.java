@@ -0,0 +1,50 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KanRespTest {
+
+    private final ProtocolFixture server = new ProtocolFixture();
+    private final KanResp.State state = new KanResp.State();
+    private final ByteBuffer response = ByteBuffer.allocate(4096);
+
+    @Test
+    void arrayHeaderAloneAllocatesNoArgumentSlots() {
+        ByteBuffer header = resp("*1048576\r\n$3\r\nSET\r\n");
+
+        assertFalse(process(header)); // Waits for the other arguments
+        assertEquals(0, header.position());
+        assertTrue(state.start.length <= 8);
+    }
+
+    @Test
+    void largeCommandDoesNotKeepItsArgumentSlots() {
+        StringBuilder mset = new StringBuilder("*4001\r\n$4\r\nMSET\r\n");
+        for (int i = 0; i < 2000; i++) {
+            String key = "k" + i;
+            mset.append('$').append(key.length()).append("\r\n").append(key).append("\r\n$1\r\nv\r\n");
+        }
+
+        assertTrue(process(resp(mset.toString())));
+        assertEquals("+OK\r\n", StandardCharsets.US_ASCII.decode(response.flip()).toString());
+        assertTrue(state.start.length <= 8);
+        assertNotNull(server.store.get("k1999"));
+    }
+
+    private boolean process(ByteBuffer request) {
+        response.clear();
+        return server.protocol.resp().process(request, response, null, state);
+    }
+
+    private static ByteBuffer resp(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,97 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.leeminkan.redis.ProtocolFixture.readString;
+
+class KanSortedSetTest {
+
+    @Test
+    void matchesASortedModelOverRandomOperations() {
+        try (Arena arena = Arena.ofConfined()) {
+            SegmentAllocator allocator = arena::allocate;
+            MemorySegment zset = KanSortedSet.create(allocator);
+            Map<String, Double> model = new HashMap<>();
+            Random random = new Random(7);
+
+            for (int op = 0; op < 20_000; op++) {
+                String member = "m" + random.nextInt(500);
+                byte[] bytes = member.getBytes(StandardCharsets.UTF_8);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(model.remove(member) != null, KanSortedSet.remove(zset, bytes, arena));
+                } else {
+                    double score = random.nextInt(50); // Many ties: ordered by member bytes
+                    assertEquals(model.put(member, score) == null, KanSortedSet.add(zset, score, bytes, allocator, arena));
+                }
+            }
+
+            List<Map.Entry<String, Double>> expected = new ArrayList<>(model.entrySet());
+            expected.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            assertEquals(expected.size(), KanSortedSet.count(zset));
+            assertEquals(expected, range(zset, 0, -1, arena));
+            assertEquals(expected.subList(10, 21), range(zset, 10, 20, arena));
+            assertEquals(expected.subList(expected.size() - 5, expected.size()), range(zset, -5, -1, arena));
+            assertEquals(expected.stream().filter(e -> e.getValue() >= 10 && e.getValue() <= 12).toList(),
+                    rangeByScore(zset, 10, 12, arena));
+        }
+    }
+
+    @Test
+    void aNodeFreedUnderTheEntryThrowsInsteadOfBeingRead() {
+        try (Arena entryArena = Arena.ofConfined()) {
+            // The entry stays readable; its nodes (head, buckets, members) come from an arena we close
+            Arena nodeArena = Arena.ofConfined();
+            boolean[] entryAllocated = {false};
+            SegmentAllocator allocator = (size, alignment) -> {
+                Arena from = entryAllocated[0] ? nodeArena : entryArena;
+                entryAllocated[0] = true;
+                return from.allocate(size, alignment);
+            };
+            MemorySegment zset = KanSortedSet.create(allocator);
+            KanSortedSet.add(zset, 1.0, "a".getBytes(StandardCharsets.UTF_8), allocator, nodeArena);
+            nodeArena.close();
+
+            // A dangling node pointer: the read fails its liveness check rather than touching freed memory
+            assertEquals(1, KanSortedSet.count(zset));
+            assertThrows(IllegalStateException.class,
+                    () -> KanSortedSet.writeRange(zset, 0, -1, ByteBuffer.allocate(1024), nodeArena));
+        }
+    }
+
+    private static List<Map.Entry<String, Double>> range(MemorySegment zset, long start, long stop, Arena arena) {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        KanSortedSet.writeRange(zset, start, stop, out, arena);
+        return members(out.flip());
+    }
+
+    private static List<Map.Entry<String, Double>> rangeByScore(MemorySegment zset, double min, double max, Arena arena) {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        KanSortedSet.writeRangeByScore(zset, min, max, 0, -1, out, arena);
+        return members(out.flip());
+    }
+
+    // [Len][Count] then [MemberLen][Member][Score] per member
+    private static List<Map.Entry<String, Double>> members(ByteBuffer reply) {
+        assertEquals(reply.remaining() - 4, reply.getInt());
+        int count = reply.getInt();
+        List<Map.Entry<String, Double>> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(Map.entry(readString(reply), reply.getDouble()));
+        }
+        assertEquals(0, reply.remaining());
+        return members;
+    }
+}
@@ -0,0 +1,44 @@
+package org.leeminkan.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KanThrottleTest {
+
+    private final ProtocolFixture server = new ProtocolFixture();
+    private final KanStore store = server.store;
+
+    @Test
+    void allowsUpToTheLimitThenDenies() {
+        assertEquals(2, store.throttle("ip", 3, 60));
+        assertEquals(1, store.throttle("ip", 3, 60));
+        assertEquals(0, store.throttle("ip", 3, 60));
+        assertEquals(-1, store.throttle("ip", 3, 60));
+    }
+
+    @Test
+    void invalidArgumentsAllocateNothing() {
+        long windowOverflowingMicros = Long.MAX_VALUE / 1_000_000 + 1;
+        for (long[] arguments : new long[][]{{0, 60}, {-1, 60}, {10, 0}, {10, windowOverflowingMicros}}) {
+            assertThrows(IllegalArgumentException.class, () -> store.throttle("new", arguments[0], arguments[1]));
+        }
+
+        // Rejected before the bucket is allocated: the arena never frees, so nothing may leak
+        assertEquals(0, store.allocatedBytes());
+        assertNull(store.get("new"));
+    }
+
+    @Test
+    void invalidArgumentsAnswerWithAnError() {
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        frame.put(CommandType.THROTTLE.getCode()).putInt(1).put((byte) 'k').putLong(0).putLong(60).flip();
+
+        assertEquals(-1, server.send(frame).getInt());
+        assertEquals(0, store.allocatedBytes());
+    }
+}
@@ -0,0 +1,70 @@
+package org.leeminkan.redis;
+
+import org.leeminkan.redis.metrics.KanMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An in-memory store behind a KanProtocol, fed one TLV frame at a time with the response
+ * buffer size the transports use. Shared by the protocol tests.
+ */
+final class ProtocolFixture {
+
+    final KanMetrics metrics = new KanMetrics();
+    final KanStore store = new KanStore(null, metrics);
+    final KanProtocol protocol = new KanProtocol(store, metrics);
+    private final ByteBuffer response = ByteBuffer.allocate(4096); // KanTransport.INITIAL_BUFFER_SIZE
+
+    /** Processes one whole frame without a session (no attach, no pushes) and returns its response. */
+    ByteBuffer send(ByteBuffer request) {
+        return send(request, null);
+    }
+
+    ByteBuffer send(ByteBuffer request, KanSession session) {
+        response.clear();
+        assertTrue(protocol.process(request, response, session));
+        return response.flip();
+    }
+
+    /** [Command] then each argument as [Len][Bytes]. */
+    static ByteBuffer frame(CommandType type, String... arguments) {
+        ByteBuffer frame = ByteBuffer.allocate(64 * 1024);
+        frame.put(type.getCode());
+        for (String argument : arguments) {
+            byte[] bytes = bytes(argument);
+            frame.putInt(bytes.length).put(bytes);
+        }
+        return frame.flip();
+    }
+
+    /** EXEC with no watches, then the commands. */
+    static ByteBuffer exec(ByteBuffer... commands) {
+        ByteBuffer body = ByteBuffer.allocate(64 * 1024);
+        body.putInt(0);
+        body.putInt(commands.length);
+        for (ByteBuffer command : commands) {
+            body.putInt(command.remaining()).put(command);
+        }
+        return execFrame(body.flip());
+    }
+
+    /** [EXEC][BodyLen][Body] around a body already laid out by the caller. */
+    static ByteBuffer execFrame(ByteBuffer body) {
+        ByteBuffer frame = ByteBuffer.allocate(1 + 4 + body.remaining());
+        frame.put(CommandType.EXEC.getCode()).putInt(body.remaining()).put(body);
+        return frame.flip();
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
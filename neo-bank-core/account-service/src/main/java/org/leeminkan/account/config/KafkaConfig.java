@@ -0,0 +1,111 @@
+package org.leeminkan.account.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.leeminkan.account.exception.ResultNotPublishedException;
+import org.leeminkan.common.events.TransactionInitiatedEvent;
+import org.leeminkan.common.events.TransactionProcessedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+@Configuration
+@Slf4j
+public class KafkaConfig {
+
+    // Same count as transaction-events (see transaction-service KafkaTopicConfig)
+    @Value("${app.kafka.partitions:6}")
+    private int partitions;
+
+    // Compacted, not deleted after the retention period: transaction-service rebuilds its
+    // account directory by replaying this topic, and keying by account id keeps one event each
+    @Bean
+    public NewTopic accountEventsTopic() {
+        return TopicBuilder.name("account-events")
+                .partitions(partitions)
+                .replicas(1)
+                .config(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)
+                .build();
+    }
+
+    @Bean
+    public NewTopic transactionResultsTopic() {
+        return TopicBuilder.name("transaction-results")
+                .partitions(partitions)
+                .replicas(1)
+                .build();
+    }
+
+    /**
+     * Keying by sender puts all debits of an account on one partition, so they never race.
+     * The credit side can still meet a concurrent debit of the same account from another
+     * partition: @Version rejects one of them. Credits commute, so the loser just re-reads
+     * and retries after a short, growing pause instead of failing the transfer.
+     *
+     * A result that couldn't be published after its settlement committed is retried the same
+     * way: the redelivered event is a duplicate by then, and only its result goes out again.
+     *
+     * Nothing else is retried: a missing account or an unreadable payload fails the same way
+     * every time. Those records (and conflicts still losing after 5 s) go straight to the
+     * recoverer, which answers the transfer FAILED.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(KafkaTemplate<String, Object> kafkaTemplate) {
+        ExponentialBackOff backOff = new ExponentialBackOff(50L, 2.0);
+        backOff.setMaxElapsedTime(5_000L); // Then give up: the recoverer fails the transfer
+        DefaultErrorHandler handler = new DefaultErrorHandler(failTransfer(kafkaTemplate), backOff);
+        handler.defaultFalse();
+        handler.addRetryableExceptions(ObjectOptimisticLockingFailureException.class, ResultNotPublishedException.class);
+        handler.setRetryListeners((record, ex, attempt) ->
+                log.debug("Retrying {} after {}, attempt {}", record.key(), ex.getCause(), attempt));
+        return handler;
+    }
+
+    /**
+     * Publishes the FAILED result for a transfer we gave up on, so transaction-service doesn't
+     * leave it PENDING forever. The send is awaited: if it fails, so does the recovery, and the
+     * record is redelivered instead of skipped. A record that couldn't be deserialized has no
+     * transaction id to answer: it is only logged.
+     *
+     * A transfer whose result could not be published was settled: answering it FAILED would be
+     * a lie. The recovery fails instead, so the record keeps being redelivered until the result
+     * goes out.
+     */
+    private ConsumerRecordRecoverer failTransfer(KafkaTemplate<String, Object> kafkaTemplate) {
+        return (record, ex) -> {
+            if (resultNotPublished(ex)) {
+                log.error("Result of {}-{}@{} still not published, redelivering", record.topic(), record.partition(),
+                        record.offset(), ex);
+                throw new ResultNotPublishedException(ex);
+            }
+            if (!(record.value() instanceof TransactionInitiatedEvent event) || event.getTransactionId() == null) {
+                log.error("Skipping unreadable record {}-{}@{}", record.topic(), record.partition(), record.offset(), ex);
+                return;
+            }
+            log.error("Giving up on transaction {}", event.getTransactionId(), ex);
+            TransactionProcessedEvent result = TransactionProcessedEvent.builder()
+                    .transactionId(event.getTransactionId())
+                    .status("FAILED")
+                    .reason(NestedExceptionUtils.getMostSpecificCause(ex).getMessage())
+                    .build();
+            kafkaTemplate.send("transaction-results", event.getTransactionId().toString(), result).join();
+        };
+    }
+
+    private static boolean resultNotPublished(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResultNotPublishedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,14 @@
+package org.leeminkan.account.exception;
+
+/**
+ * A settlement committed but its result could not be sent to transaction-results.
+ *
+ * The transfer is settled: it must never be answered FAILED. KafkaConfig redelivers the event
+ * instead, and the redelivery publishes the result again.
+ */
+public class ResultNotPublishedException extends RuntimeException {
+
+    public ResultNotPublishedException(Throwable cause) {
+        super("Settlement committed, result not published", cause);
+    }
+}
@@ -2,66 +2,85 @@ package org.leeminkan.account.listener;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.leeminkan.account.domain.Account;
-import org.leeminkan.account.repository.AccountRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.leeminkan.account.exception.ResultNotPublishedException;
+import org.leeminkan.account.service.SettlementService;
 import org.leeminkan.common.events.TransactionInitiatedEvent;
 import org.leeminkan.common.events.TransactionProcessedEvent;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AccountEventListener {
 
-    private final AccountRepository accountRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final SettlementService settlementService;
 
     // Listen to the topic where Transaction Service sends messages
-    @KafkaListener(topics = "transaction-events", groupId = "account-group")
-    @Transactional
+    // Only one of the two listeners starts: app.settlement.batch.enabled picks the batch one
+    // Events are keyed by sender, so each partition (one thread each) settles its accounts in order
+    @KafkaListener(id = "settlement", topics = "transaction-events", groupId = "account-group",
+            concurrency = "${app.settlement.concurrency:3}",
+            autoStartup = "#{!${app.settlement.batch.enabled:false}}")
     public void handleTransactionInitiated(TransactionInitiatedEvent event) {
         log.info("Received transaction request: {}", event);
 
-        // 1. Fetch both accounts
-        Account fromAccount = accountRepository.findById(event.getFromAccountId())
-                .orElseThrow(() -> new RuntimeException("Sender account not found"));
+        // 1-3. Fetch, validate and move the money in one transaction (committed when this returns).
+        // A version conflict surfaces at that commit: KafkaConfig retries the event, nothing was sent yet
+        TransactionProcessedEvent result = settlementService.settle(event);
 
-        Account toAccount = accountRepository.findById(event.getToAccountId())
-                .orElseThrow(() -> new RuntimeException("Receiver account not found"));
-
-        // 2. Validate Balance
-        if (fromAccount.getBalance().compareTo(event.getAmount()) < 0) {
-            log.warn("Insufficient funds for Account ID: {}", fromAccount.getId());
-            publishResult(event.getTransactionId(), "FAILED", "Insufficient Funds");
-            return;
+        // 4. Publish the result only once the balances are committed (null: a redelivery with none recorded)
+        if (result != null) {
+            publishResults(List.of(result));
         }
+    }
 
-        // 3. Move the Money
-        fromAccount.setBalance(fromAccount.getBalance().subtract(event.getAmount()));
-        toAccount.setBalance(toAccount.getBalance().add(event.getAmount()));
+    // Batch mode: up to max.poll.records events per call, settled in one DB transaction
+    @KafkaListener(id = "settlement-batch", topics = "transaction-events", groupId = "account-group",
+            concurrency = "${app.settlement.concurrency:3}",
+            batch = "true", autoStartup = "${app.settlement.batch.enabled:false}",
+            properties = "max.poll.records=${app.settlement.batch.max-size:500}")
+    public void handleTransactionsInitiated(List<ConsumerRecord<String, TransactionInitiatedEvent>> records) {
+        log.info("Received {} transaction requests", records.size());
 
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+        // A payload that couldn't be deserialized arrives as null, with no transaction id to answer.
+        // The error handler never sees it in batch mode, so it is logged here like KafkaConfig does in single mode
+        List<TransactionInitiatedEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, TransactionInitiatedEvent> record : records) {
+            if (record.value() == null) {
+                log.error("Skipping unreadable record {}-{}@{}", record.topic(), record.partition(), record.offset());
+            } else {
+                events.add(record.value());
+            }
+        }
 
-        log.info("Money moved successfully from {} to {}", fromAccount.getId(), toAccount.getId());
+        // 1-3. Fetch, move and flush everything in one transaction (committed when this returns)
+        List<TransactionProcessedEvent> results = settlementService.settle(events);
 
-        // 4. Publish Success Event
-        publishResult(event.getTransactionId(), "SUCCESS", "Transfer Complete");
+        // 4. Publish the results only once the balances are committed
+        publishResults(results);
     }
 
-    private void publishResult(Long transactionId, String status, String reason) {
-        TransactionProcessedEvent resultEvent = TransactionProcessedEvent.builder()
-                .transactionId(transactionId)
-                .status(status)
-                .reason(reason)
-                .build();
-
-        // We send this to a NEW topic: "transaction-results"
-        kafkaTemplate.send("transaction-results", resultEvent);
+    /**
+     * Sends the results and waits until the broker has acknowledged every one of them, so the
+     * offsets are committed only for events whose result went out. The producer still packs
+     * them into one batch per partition.
+     */
+    private void publishResults(List<TransactionProcessedEvent> results) {
+        try {
+            // We send this to a NEW topic: "transaction-results"
+            CompletableFuture.allOf(results.stream()
+                    .map(result -> kafkaTemplate.send("transaction-results", result.getTransactionId().toString(), result))
+                    .toArray(CompletableFuture[]::new)).join();
+        } catch (RuntimeException e) { // A failed send, reported by its future or thrown by send() itself
+            throw new ResultNotPublishedException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -46,7 +46,9 @@ public class AccountService {
 
         // 3. Publish to Kafka Topic "account-events"
         // kafkaTemplate.send("account-events", event);
-        CompletableFuture<SendResult<String, Object>> future = kafkaTemplate.send("account-events", event);
+        // Keyed by account id: every event about one account stays in order on one partition
+        CompletableFuture<SendResult<String, Object>> future =
+                kafkaTemplate.send("account-events", savedAccount.getId().toString(), event);
         future
                 .thenAccept(result -> {
                     // Hành động này chỉ chạy sau khi Kafka Broker xác nhận đã nhận tin
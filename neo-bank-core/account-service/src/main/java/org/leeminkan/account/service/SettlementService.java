@@ -0,0 +1,219 @@
+package org.leeminkan.account.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.leeminkan.account.domain.Account;
+import org.leeminkan.account.repository.AccountRepository;
+import org.leeminkan.common.events.TransactionInitiatedEvent;
+import org.leeminkan.common.events.TransactionProcessedEvent;
+import org.leeminkan.common.idempotency.IdempotencyGuard;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the money for transfer events. Both listener modes call it, and both publish the
+ * results it returns only after it has committed: a version conflict is only detected at
+ * commit, and a result sent before that could announce a transfer that then rolls back.
+ *
+ * Batch listener mode settles a whole poll in one DB transaction. One event at a time costs
+ * two SELECTs, two UPDATEs and a commit per transfer. Here:
+ * 1. One findAllById loads every account the batch touches.
+ * 2. Transfers are applied to those entities in memory, in event order, so two transfers
+ *    from the same account see each other's effect (the second can fail on funds).
+ * 3. At commit, Hibernate flushes the changed accounts as one JDBC batch of UPDATEs
+ *    (hibernate.jdbc.batch_size), still version-checked.
+ *
+ * If the flush fails (e.g. an optimistic lock conflict with another writer), the whole batch
+ * rolls back and Kafka redelivers it. Nothing is half-applied. Events that were already settled
+ * by an earlier, committed poll are dropped first (IdempotencyGuard), so a redelivery doesn't
+ * move the money twice. Their result is answered again instead, from the copy recorded with
+ * the original settlement: a redelivery can be caused by that result getting lost. That needs
+ * app.idempotency.enabled; without it every delivery is settled.
+ */
+@Service
+@Slf4j
+public class SettlementService {
+
+    private final AccountRepository accountRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyGuard idempotencyGuard; // null when app.idempotency.enabled is off
+
+    public SettlementService(AccountRepository accountRepository, ObjectMapper objectMapper,
+                             ObjectProvider<IdempotencyGuard> idempotencyGuard) {
+        this.accountRepository = accountRepository;
+        this.objectMapper = objectMapper;
+        this.idempotencyGuard = idempotencyGuard.getIfAvailable();
+    }
+
+    /**
+     * Settles one transfer in its own transaction (single-event listener mode).
+     * A missing account throws: KafkaConfig's error handler answers the transfer FAILED.
+     * @return the result to publish once this commits. For a redelivery, the result the original
+     * delivery published (null if none was recorded)
+     */
+    @Transactional
+    public TransactionProcessedEvent settle(TransactionInitiatedEvent event) {
+        // 0. A redelivery (same eventId) doesn't move the money again: it answers what the original did
+        if (idempotencyGuard != null && !idempotencyGuard.firstDelivery(event)) {
+            return replay(List.of(event), List.of()).stream().findFirst().orElse(null);
+        }
+        TransactionProcessedEvent result = transfer(event);
+        remember(List.of(event), List.of(result));
+        return result;
+    }
+
+    private TransactionProcessedEvent transfer(TransactionInitiatedEvent event) {
+        // 1. Fetch both accounts
+        Account fromAccount = accountRepository.findById(event.getFromAccountId())
+                .orElseThrow(() -> new RuntimeException("Sender account not found"));
+
+        Account toAccount = accountRepository.findById(event.getToAccountId())
+                .orElseThrow(() -> new RuntimeException("Receiver account not found"));
+
+        // 2. Validate Balance
+        if (fromAccount.getBalance().compareTo(event.getAmount()) < 0) {
+            log.warn("Insufficient funds for Account ID: {}", fromAccount.getId());
+            return result(event, "FAILED", "Insufficient Funds");
+        }
+
+        // 3. Move the Money
+        fromAccount.setBalance(fromAccount.getBalance().subtract(event.getAmount()));
+        toAccount.setBalance(toAccount.getBalance().add(event.getAmount()));
+
+        accountRepository.save(fromAccount);
+        accountRepository.save(toAccount);
+
+        log.info("Money moved successfully from {} to {}", fromAccount.getId(), toAccount.getId());
+        return result(event, "SUCCESS", "Transfer Complete");
+    }
+
+    /**
+     * @return one result per event not settled before, in event order, then the recorded result
+     * of each event an earlier poll settled (a copy within this batch gets none): publish them
+     * only after this commits
+     */
+    @Transactional
+    public List<TransactionProcessedEvent> settle(List<TransactionInitiatedEvent> batch) {
+        // 0. Drop redeliveries: one INSERT ... ON CONFLICT for the ids not already cached
+        List<TransactionInitiatedEvent> events =
+                idempotencyGuard != null ? idempotencyGuard.firstDeliveries(batch) : batch;
+
+        // 1. Fetch every touched account at once
+        Set<Long> accountIds = new HashSet<>();
+        for (TransactionInitiatedEvent event : events) {
+            accountIds.add(event.getFromAccountId());
+            accountIds.add(event.getToAccountId());
+        }
+        Map<Long, Account> accounts = accountRepository.findAllById(accountIds).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+        // 2. Move the money in memory, in order
+        List<TransactionProcessedEvent> results = new ArrayList<>(events.size());
+        Map<Long, Account> changed = new LinkedHashMap<>();
+        for (TransactionInitiatedEvent event : events) {
+            Account fromAccount = accounts.get(event.getFromAccountId());
+            Account toAccount = accounts.get(event.getToAccountId());
+
+            if (fromAccount == null || toAccount == null) {
+                // The single-event listener throws here; in a batch that would redeliver every other transfer too
+                log.warn("Account not found for transaction {}", event.getTransactionId());
+                results.add(result(event, "FAILED", "Account not found"));
+            } else if (fromAccount.getBalance().compareTo(event.getAmount()) < 0) {
+                log.warn("Insufficient funds for Account ID: {}", fromAccount.getId());
+                results.add(result(event, "FAILED", "Insufficient Funds"));
+            } else {
+                fromAccount.setBalance(fromAccount.getBalance().subtract(event.getAmount()));
+                toAccount.setBalance(toAccount.getBalance().add(event.getAmount()));
+                changed.put(fromAccount.getId(), fromAccount);
+                changed.put(toAccount.getId(), toAccount);
+                results.add(result(event, "SUCCESS", "Transfer Complete"));
+            }
+        }
+
+        // 3. One UPDATE per changed account (not per transfer), batched at flush
+        accountRepository.saveAll(changed.values());
+        remember(events, results);
+        log.info("Settled {} transactions ({} duplicates skipped), {} accounts updated",
+                events.size(), batch.size() - events.size(), changed.size());
+
+        // 4. Answer the redeliveries with their original result: it may be the one that got lost
+        results.addAll(replay(batch, events));
+        return results;
+    }
+
+    // Stores each result with its event's processed record, in this transaction
+    private void remember(List<TransactionInitiatedEvent> events, List<TransactionProcessedEvent> results) {
+        if (idempotencyGuard == null) {
+            return;
+        }
+        Map<String, String> outcomes = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).getEventId() != null) {
+                outcomes.put(events.get(i).getEventId(), toJson(results.get(i)));
+            }
+        }
+        idempotencyGuard.recordOutcomes(outcomes);
+    }
+
+    // The recorded results of the events in the batch that weren't settled now, once per event id
+    private List<TransactionProcessedEvent> replay(List<TransactionInitiatedEvent> batch,
+                                                   List<TransactionInitiatedEvent> settled) {
+        if (idempotencyGuard == null || settled.size() == batch.size()) {
+            return List.of();
+        }
+        Set<String> seen = settled.stream().map(TransactionInitiatedEvent::getEventId)
+                .filter(Objects::nonNull).collect(Collectors.toCollection(HashSet::new));
+        List<TransactionInitiatedEvent> redelivered = batch.stream()
+                .filter(event -> event.getEventId() != null && seen.add(event.getEventId()))
+                .toList();
+
+        Map<String, String> outcomes = idempotencyGuard.outcomesOf(redelivered);
+        List<TransactionProcessedEvent> results = new ArrayList<>(redelivered.size());
+        for (TransactionInitiatedEvent event : redelivered) {
+            String outcome = outcomes.get(event.getEventId());
+            if (outcome == null) {
+                log.warn("No recorded result for redelivered event {}, not republished", event.getEventId());
+            } else {
+                results.add(fromJson(outcome));
+            }
+        }
+        return results;
+    }
+
+    private String toJson(TransactionProcessedEvent result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't serialize " + result, e);
+        }
+    }
+
+    private TransactionProcessedEvent fromJson(String outcome) {
+        try {
+            return objectMapper.readValue(outcome, TransactionProcessedEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't read recorded result " + outcome, e);
+        }
+    }
+
+    private static TransactionProcessedEvent result(TransactionInitiatedEvent event, String status, String reason) {
+        return TransactionProcessedEvent.builder()
+                .transactionId(event.getTransactionId())
+                .status(status)
+                .reason(reason)
+                .build();
+    }
+}
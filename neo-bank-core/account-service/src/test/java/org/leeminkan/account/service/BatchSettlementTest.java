@@ -0,0 +1,82 @@
+package org.leeminkan.account.service;
+
+import org.junit.jupiter.api.Test;
+import org.leeminkan.account.BaseIntegrationTest;
+import org.leeminkan.account.domain.Account;
+import org.leeminkan.account.repository.AccountRepository;
+import org.leeminkan.common.events.TransactionInitiatedEvent;
+import org.leeminkan.common.events.TransactionProcessedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BatchSettlementTest extends BaseIntegrationTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Test
+    public void testBatchAppliesTransfersInOrder() {
+        // 1. Setup: A has $100, B has $0
+        Account a = accountRepository.save(account("Batch Sender", "batch-a@test.com", "100.00"));
+        Account b = accountRepository.save(account("Batch Receiver", "batch-b@test.com", "0.00"));
+
+        // 2. One poll: the second transfer only fails because the first one already spent the money
+        List<TransactionProcessedEvent> results = settlementService.settle(List.of(
+                transfer(1L, a.getId(), b.getId(), "60.00"),
+                transfer(2L, a.getId(), b.getId(), "60.00"),
+                transfer(3L, b.getId(), a.getId(), "10.00"),
+                transfer(4L, a.getId(), -1L, "1.00")));
+
+        // 3. One result per event, in event order
+        assertEquals(List.of("SUCCESS", "FAILED", "SUCCESS", "FAILED"),
+                results.stream().map(TransactionProcessedEvent::getStatus).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L),
+                results.stream().map(TransactionProcessedEvent::getTransactionId).toList());
+
+        // 4. Verify Final State: 100 - 60 + 10 and 60 - 10
+        assertEquals(new BigDecimal("50.00"), accountRepository.findById(a.getId()).orElseThrow().getBalance().setScale(2));
+        assertEquals(new BigDecimal("50.00"), accountRepository.findById(b.getId()).orElseThrow().getBalance().setScale(2));
+    }
+
+    @Test
+    public void testRedeliveredTransferIsSettledOnce() {
+        // 1. Setup: A has $100, B has $0
+        Account a = accountRepository.save(account("Retry Sender", "retry-a@test.com", "100.00"));
+        Account b = accountRepository.save(account("Retry Receiver", "retry-b@test.com", "0.00"));
+        TransactionInitiatedEvent event = transfer(5L, a.getId(), b.getId(), "30.00");
+
+        // 2. The same event twice in one poll, then again in a later poll (e.g. after a rebalance)
+        List<TransactionProcessedEvent> first = settlementService.settle(List.of(event, event));
+        List<TransactionProcessedEvent> redelivered = settlementService.settle(List.of(event));
+
+        // 3. Only the first copy is settled; the redelivery answers the same result again
+        assertEquals(1, first.size());
+        assertEquals(first, redelivered);
+        assertEquals(new BigDecimal("70.00"), accountRepository.findById(a.getId()).orElseThrow().getBalance().setScale(2));
+        assertEquals(new BigDecimal("30.00"), accountRepository.findById(b.getId()).orElseThrow().getBalance().setScale(2));
+    }
+
+    private static Account account(String holderName, String email, String balance) {
+        Account account = new Account();
+        account.setHolderName(holderName);
+        account.setEmail(email);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+
+    private static TransactionInitiatedEvent transfer(Long transactionId, Long fromId, Long toId, String amount) {
+        return TransactionInitiatedEvent.builder()
+                .transactionId(transactionId)
+                .fromAccountId(fromId)
+                .toAccountId(toId)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
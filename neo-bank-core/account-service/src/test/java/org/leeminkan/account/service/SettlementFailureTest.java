@@ -0,0 +1,67 @@
+package org.leeminkan.account.service;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.junit.jupiter.api.Test;
+import org.leeminkan.account.BaseIntegrationTest;
+import org.leeminkan.common.events.TransactionInitiatedEvent;
+import org.leeminkan.common.events.TransactionProcessedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class SettlementFailureTest extends BaseIntegrationTest {
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private KafkaProperties kafkaProperties;
+
+    @Test
+    public void testTransferFromUnknownAccountIsAnsweredFailed() {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "settlement-failure-test");
+
+        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(props)) {
+            consumer.subscribe(List.of("transaction-results"));
+
+            // 1. A transfer out of an account that doesn't exist: fails the same way on every retry
+            TransactionInitiatedEvent event = TransactionInitiatedEvent.builder()
+                    .transactionId(424242L)
+                    .fromAccountId(-1L)
+                    .toAccountId(-2L)
+                    .amount(new BigDecimal("10.00"))
+                    .build();
+            kafkaTemplate.send("transaction-events", "-1", event).join();
+
+            // 2. Not retried until the backoff runs out and then skipped: answered FAILED right away
+            TransactionProcessedEvent result = awaitResult(consumer, 424242L, Duration.ofSeconds(4));
+            assertEquals("FAILED", result.getStatus());
+            assertEquals("Sender account not found", result.getReason());
+        }
+    }
+
+    private static TransactionProcessedEvent awaitResult(KafkaConsumer<String, Object> consumer, Long transactionId,
+                                                         Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, Object> record : consumer.poll(Duration.ofMillis(200))) {
+                if (record.value() instanceof TransactionProcessedEvent result
+                        && transactionId.equals(result.getTransactionId())) {
+                    return result;
+                }
+            }
+        }
+        return fail("No result for transaction " + transactionId + " within " + timeout);
+    }
+}
@@ -0,0 +1,219 @@
+package org.leeminkan.common.bench;
+
+import org.leeminkan.common.events.BaseEvent;
+import org.leeminkan.common.idempotency.IdempotencyGuard;
+import org.leeminkan.common.idempotency.JdbcProcessedEventStore;
+import org.leeminkan.common.idempotency.ProcessedEventStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * IdempotencyBenchmark
+ * Measures what IdempotencyGuard adds per event to a listener's transaction: for new events
+ * (record the id, then its outcome) and for redeliveries (answer the recorded outcome), one
+ * event per transaction (single listener) and 500 per transaction (batch listener).
+ * Each figure is compared with the same transactions doing nothing, so the difference is the guard.
+ *
+ * Run (in-memory store: the guard and its cache alone, no DB):
+ *   mvn -pl common-library dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp common-library/target/classes:$(cat common-library/cp.txt) org.leeminkan.common.bench.IdempotencyBenchmark
+ *
+ * Run against Postgres (add the driver to the class path; use a scratch database, the benchmark
+ * creates processed_events and deletes only its own "bench-" rows afterwards):
+ *   java -cp ...:postgresql.jar org.leeminkan.common.bench.IdempotencyBenchmark 20000 jdbc:postgresql://localhost:5432/bench admin password
+ *
+ * Args: [events per round] [jdbc url] [user] [password]
+ */
+public class IdempotencyBenchmark {
+
+    private static final int CACHE_SIZE = 100_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ROUNDS = 5;
+
+    // A settlement result as SettlementService records it
+    private static final String OUTCOME = """
+            {"eventId":"5b0e8f0e-9a51-4d8e-a3a2-6b0c2d7f4e11","eventDate":"2026-10-18T22:18:22.123456",\
+            "transactionId":123456,"status":"SUCCESS","reason":"Transfer Complete"}""";
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        ProcessedEventStore store;
+        PlatformTransactionManager transactionManager;
+        JdbcTemplate jdbcTemplate = null;
+        if (args.length >= 4) {
+            jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(args[1], args[2], args[3]));
+            JdbcProcessedEventStore jdbcStore = new JdbcProcessedEventStore(jdbcTemplate);
+            jdbcStore.createTableIfMissing();
+            store = jdbcStore;
+            transactionManager = new DataSourceTransactionManager(jdbcTemplate.getDataSource());
+            System.out.printf("Store: Postgres at %s, %,d events per round%n", args[1], events);
+        } else {
+            store = new InMemoryStore();
+            transactionManager = new NoOpTransactionManager();
+            System.out.printf("Store: in memory (guard and cache only), %,d events per round%n", events);
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        IdempotencyGuard guard = new IdempotencyGuard(store, CACHE_SIZE);
+
+        try {
+            // Warm-up so the JIT compiles the hot path before we measure
+            round(tx, guard, events);
+            for (int round = 1; round <= ROUNDS; round++) {
+                System.out.printf("Round %d:%n", round);
+                round(tx, guard, events);
+            }
+        } finally {
+            if (jdbcTemplate != null) {
+                jdbcTemplate.update("DELETE FROM processed_events WHERE event_id LIKE 'bench-%'");
+            }
+        }
+    }
+
+    private static void round(TransactionTemplate tx, IdempotencyGuard guard, int count) {
+        List<BaseEvent> single = newEvents(count);
+        List<BaseEvent> batched = newEvents(count);
+
+        double emptySingle = perEvent(count, () -> each(tx, single, event -> { }));
+        double newSingle = perEvent(count, () -> each(tx, single, event -> {
+            if (guard.firstDelivery(event)) {
+                guard.recordOutcomes(Map.of(event.getEventId(), OUTCOME));
+            }
+        }));
+        // The last CACHE_SIZE of them are still in memory, the older ones come from the store
+        double redeliveredSingle = perEvent(count, () -> each(tx, single, event -> {
+            if (!guard.firstDelivery(event)) {
+                guard.outcomesOf(List.of(event));
+            }
+        }));
+
+        double emptyBatch = perEvent(count, () -> batches(tx, batched, batch -> { }));
+        double newBatch = perEvent(count, () -> batches(tx, batched, batch -> {
+            Map<String, String> outcomes = new HashMap<>();
+            for (BaseEvent event : guard.firstDeliveries(batch)) {
+                outcomes.put(event.getEventId(), OUTCOME);
+            }
+            guard.recordOutcomes(outcomes);
+        }));
+        double redeliveredBatch = perEvent(count, () -> batches(tx, batched, batch -> {
+            if (guard.firstDeliveries(batch).isEmpty()) {
+                guard.outcomesOf(batch);
+            }
+        }));
+
+        report("single, new event", newSingle, emptySingle);
+        report("single, redelivery", redeliveredSingle, emptySingle);
+        report("batch of " + BATCH_SIZE + ", new events", newBatch, emptyBatch);
+        report("batch of " + BATCH_SIZE + ", redeliveries", redeliveredBatch, emptyBatch);
+    }
+
+    private static void report(String path, double withGuard, double without) {
+        System.out.printf("  %-28s %,10.0f ns/event (transaction alone %,10.0f, guard adds %,10.0f)%n",
+                path, withGuard, without, withGuard - without);
+    }
+
+    private static double perEvent(int count, Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return (double) (System.nanoTime() - start) / count;
+    }
+
+    private static void each(TransactionTemplate tx, List<BaseEvent> events, Consumer<BaseEvent> work) {
+        for (BaseEvent event : events) {
+            tx.executeWithoutResult(status -> work.accept(event));
+        }
+    }
+
+    private static void batches(TransactionTemplate tx, List<BaseEvent> events,
+                                Consumer<List<BaseEvent>> work) {
+        for (int from = 0; from < events.size(); from += BATCH_SIZE) {
+            List<BaseEvent> batch = events.subList(from, Math.min(from + BATCH_SIZE, events.size()));
+            tx.executeWithoutResult(status -> work.accept(batch));
+        }
+    }
+
+    private static List<BaseEvent> newEvents(int count) {
+        List<BaseEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(BaseEvent.builder().eventId("bench-" + UUID.randomUUID()).build());
+        }
+        return events;
+    }
+
+    // The table, as a map: what the guard costs without the DB round trip
+    private static final class InMemoryStore implements ProcessedEventStore {
+
+        private final Map<String, String> outcomes = new HashMap<>();
+
+        @Override
+        public Set<String> markProcessed(Collection<String> eventIds) {
+            Set<String> fresh = new HashSet<>();
+            for (String eventId : eventIds) {
+                if (!outcomes.containsKey(eventId)) {
+                    outcomes.put(eventId, null);
+                    fresh.add(eventId);
+                }
+            }
+            return fresh;
+        }
+
+        @Override
+        public void recordOutcomes(Map<String, String> recorded) {
+            outcomes.putAll(recorded);
+        }
+
+        @Override
+        public Map<String, String> outcomesOf(Collection<String> eventIds) {
+            Map<String, String> found = new HashMap<>();
+            for (String eventId : eventIds) {
+                String outcome = outcomes.get(eventId);
+                if (outcome != null) {
+                    found.put(eventId, outcome);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public int purgeOlderThan(LocalDateTime cutoff) {
+            return 0;
+        }
+    }
+
+    // Transactions with nothing behind them: only the synchronizations the guard registers run
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
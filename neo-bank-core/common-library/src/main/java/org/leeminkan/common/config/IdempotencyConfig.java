@@ -0,0 +1,61 @@
+package org.leeminkan.common.config;
+
+import org.leeminkan.common.idempotency.IdempotencyGuard;
+import org.leeminkan.common.idempotency.IdempotentListenerAspect;
+import org.leeminkan.common.idempotency.JdbcProcessedEventStore;
+import org.leeminkan.common.idempotency.ProcessedEventPurger;
+import org.leeminkan.common.idempotency.ProcessedEventStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+// Opt-in per service (app.idempotency.enabled): it needs a database to keep the processed_events table in.
+// Registered in AutoConfiguration.imports, after the JdbcTemplate and TransactionTemplate it uses
+@AutoConfiguration(after = {JdbcTemplateAutoConfiguration.class, TransactionAutoConfiguration.class})
+@ConditionalOnClass(JdbcTemplate.class)
+@ConditionalOnProperty(name = "app.idempotency.enabled", havingValue = "true")
+@EnableScheduling // ProcessedEventPurger
+public class IdempotencyConfig {
+
+    // Ids remembered in memory: ~130 bytes of heap each, plus the outcome string recorded with it
+    @Value("${app.idempotency.cache-size:100000}")
+    private int cacheSize;
+
+    // How long a processed event is remembered: longer than any redelivery can come after it
+    @Value("${app.idempotency.retention-days:7}")
+    private int retentionDays;
+
+    @Bean
+    @ConditionalOnMissingBean(ProcessedEventStore.class)
+    public JdbcProcessedEventStore processedEventStore(JdbcTemplate jdbcTemplate) {
+        JdbcProcessedEventStore store = new JdbcProcessedEventStore(jdbcTemplate);
+        store.createTableIfMissing();
+        return store;
+    }
+
+    @Bean
+    public IdempotencyGuard idempotencyGuard(ProcessedEventStore processedEventStore) {
+        return new IdempotencyGuard(processedEventStore, cacheSize);
+    }
+
+    @Bean
+    public ProcessedEventPurger processedEventPurger(ProcessedEventStore processedEventStore) {
+        return new ProcessedEventPurger(processedEventStore, Duration.ofDays(retentionDays));
+    }
+
+    @Bean
+    public IdempotentListenerAspect idempotentListenerAspect(IdempotencyGuard idempotencyGuard,
+                                                             TransactionTemplate transactionTemplate) {
+        return new IdempotentListenerAspect(idempotencyGuard, transactionTemplate);
+    }
+}
@@ -74,7 +74,34 @@ public class RateLimitConfig {
     public RateLimiterStrategy luaRateLimiter(GenericObjectPool<StatefulRedisConnection<String, String>> pool) {
         return new LuaScriptRateLimiter(pool);
     }
-    // --- Option C: Resilience4j (Local / In-Memory) ---
+    // --- Option C: Kan-Redis native THROTTLE command ---
+    @Bean
+    @ConditionalOnProperty(name = "app.rate-limit.provider", havingValue = "kan-redis")
+    public GenericObjectPool<KanRedisConnection> kanRedisConnectionPool(
+            @Value("${app.rate-limit.kan-redis.host:localhost}") String host,
+            @Value("${app.rate-limit.kan-redis.port:6379}") int port,
+            @Value("${app.rate-limit.kan-redis.evict-idle-after-seconds:60}") long evictIdleAfterSeconds) {
+
+        GenericObjectPoolConfig<KanRedisConnection> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(20);
+        poolConfig.setMaxIdle(5);
+        poolConfig.setMinIdle(1);
+        poolConfig.setTestOnBorrow(true); // Drop sockets closed on our side (a server-side close only shows up as EOF)
+        // Kan-Redis closes connections idle for kan.idle-timeout (300 s by default):
+        // close ours well before that, so a borrowed socket is rarely one the server already dropped
+        poolConfig.setTimeBetweenEvictionRuns(Duration.ofSeconds(Math.max(1, evictIdleAfterSeconds / 2)));
+        poolConfig.setMinEvictableIdleDuration(Duration.ofSeconds(evictIdleAfterSeconds));
+
+        return new GenericObjectPool<>(new KanRedisConnectionFactory(host, port), poolConfig);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rate-limit.provider", havingValue = "kan-redis")
+    public RateLimiterStrategy kanRedisRateLimiter(GenericObjectPool<KanRedisConnection> pool) {
+        return new KanRedisRateLimiter(pool);
+    }
+
+    // --- Option D: Resilience4j (Local / In-Memory) ---
     @Bean
     @ConditionalOnProperty(name = "app.rate-limit.provider", havingValue = "local")
     public RateLimiterStrategy resilience4jRateLimiter() {
@@ -1,5 +1,6 @@
 package org.leeminkan.common.events;
 
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
@@ -10,6 +11,9 @@ import java.util.UUID;
 @NoArgsConstructor
 @SuperBuilder
 public class BaseEvent {
+    // @Builder.Default: without it, events built with builder() had a null eventId and eventDate
+    @Builder.Default
     private String eventId = UUID.randomUUID().toString();
+    @Builder.Default
     private LocalDateTime eventDate = LocalDateTime.now();
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package org.leeminkan.common.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.leeminkan.common.events.BaseEvent;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops redelivered events (same BaseEvent.eventId) before they are applied twice.
+ *
+ * Kafka is at-least-once: after a rebalance, a crash, or an outbox relay retry, the same
+ * event comes back. Call this inside the transaction that applies the event:
+ * - Recently committed ids are answered from memory (RecentEventIds): no DB at all.
+ * - Anything else costs the one INSERT that records it (ProcessedEventStore), in the same
+ *   transaction as the business change. If that transaction rolls back, so does the record,
+ *   and the redelivery is processed again, as it should be.
+ * - An id enters the memory cache only after its transaction commits.
+ *
+ * Skipping a redelivery is not always enough: if it was redelivered because the reply to the
+ * original was lost, that reply has to go out again. recordOutcomes keeps what processing an
+ * event produced next to its record, and outcomesOf hands it back for the redelivery.
+ *
+ * Events without an id (from producers older than BaseEvent's @Builder.Default) can't be
+ * deduplicated; they are let through.
+ */
+@Slf4j
+public class IdempotencyGuard {
+
+    private final ProcessedEventStore store;
+    private final RecentEventIds recent;
+
+    public IdempotencyGuard(ProcessedEventStore store, int cacheSize) {
+        this.store = store;
+        this.recent = new RecentEventIds(cacheSize);
+    }
+
+    /** @return true the first time this event is seen: apply it. False for a redelivery: skip it. */
+    public boolean firstDelivery(BaseEvent event) {
+        return !firstDeliveries(List.of(event)).isEmpty();
+    }
+
+    /** The events of a batch listener that were not processed before, in their original order. */
+    public <T extends BaseEvent> List<T> firstDeliveries(List<T> events) {
+        requireTransaction();
+        List<String> unknown = new ArrayList<>(events.size());
+        for (T event : events) {
+            if (event.getEventId() != null && !recent.contains(event.getEventId())) {
+                unknown.add(event.getEventId());
+            }
+        }
+        Set<String> fresh = store.markProcessed(unknown);
+        rememberAfterCommit(unknown);
+
+        List<T> accepted = new ArrayList<>(events.size());
+        for (T event : events) {
+            String eventId = event.getEventId();
+            if (eventId == null) {
+                log.warn("Event without eventId, can't deduplicate: {}", event);
+                accepted.add(event);
+            } else if (fresh.remove(eventId)) { // remove: a second copy in the same batch is a duplicate too
+                accepted.add(event);
+            } else {
+                log.info("Skipping duplicate event {}", eventId);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Records what processing these events produced (event id to outcome), in the transaction that
+     * processed them, so that a redelivery can be answered the same way (see outcomesOf).
+     */
+    public void recordOutcomes(Map<String, String> outcomes) {
+        requireTransaction();
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        store.recordOutcomes(outcomes);
+        Map<String, String> committed = Map.copyOf(outcomes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed.forEach(recent::add);
+            }
+        });
+    }
+
+    /**
+     * The recorded outcome of each of these events (redeliveries) that has one, by event id:
+     * from memory when possible, the rest in one query.
+     */
+    public Map<String, String> outcomesOf(Collection<? extends BaseEvent> events) {
+        Map<String, String> outcomes = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (BaseEvent event : events) {
+            String eventId = event.getEventId();
+            if (eventId == null) {
+                continue;
+            }
+            String outcome = recent.outcomeOf(eventId);
+            if (outcome != null) {
+                outcomes.put(eventId, outcome);
+            } else {
+                unknown.add(eventId);
+            }
+        }
+        outcomes.putAll(store.outcomesOf(unknown));
+        return outcomes;
+    }
+
+    private static void requireTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("IdempotencyGuard must run inside the transaction that applies the events");
+        }
+    }
+
+    // New or duplicate, every id checked against the store is known to be processed once this commits
+    private void rememberAfterCommit(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eventIds.forEach(recent::add);
+            }
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package org.leeminkan.common.idempotency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Put on a @KafkaListener method whose first parameter is a BaseEvent (or a List of them, for
+ * batch listeners): redelivered events are skipped (see IdempotencyGuard).
+ *
+ * The method runs in a transaction (joined if it is @Transactional itself), so the processed
+ * record and the method's DB writes commit together. Anything the method does outside the DB,
+ * like a Kafka send, happens before that commit.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
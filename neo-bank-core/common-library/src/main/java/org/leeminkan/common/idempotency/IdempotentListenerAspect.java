@@ -0,0 +1,57 @@
+package org.leeminkan.common.idempotency;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.leeminkan.common.events.BaseEvent;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@Aspect
+@RequiredArgsConstructor
+public class IdempotentListenerAspect {
+
+    private final IdempotencyGuard idempotencyGuard;
+    private final TransactionTemplate transactionTemplate;
+
+    @Around("@annotation(idempotent)")
+    public Object skipDuplicates(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        if (args.length == 0) {
+            return joinPoint.proceed();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    if (args[0] instanceof BaseEvent event) {
+                        return idempotencyGuard.firstDelivery(event) ? joinPoint.proceed() : null;
+                    }
+                    if (args[0] instanceof List<?> events && !events.isEmpty() && events.get(0) instanceof BaseEvent) {
+                        @SuppressWarnings("unchecked")
+                        List<BaseEvent> fresh = idempotencyGuard.firstDeliveries((List<BaseEvent>) events);
+                        if (fresh.isEmpty()) {
+                            return null;
+                        }
+                        args[0] = fresh;
+                        return joinPoint.proceed(args);
+                    }
+                    return joinPoint.proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new ListenerFailure(e); // Checked: unwrapped below, after the rollback
+                }
+            });
+        } catch (ListenerFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ListenerFailure extends RuntimeException {
+        ListenerFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+}
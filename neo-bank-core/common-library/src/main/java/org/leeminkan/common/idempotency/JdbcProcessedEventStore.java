@@ -0,0 +1,94 @@
+package org.leeminkan.common.idempotency;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ProcessedEventStore on a Postgres table whose primary key is the event id.
+ *
+ * "Have we seen it?" and "remember it" are one statement: INSERT ... ON CONFLICT DO NOTHING
+ * RETURNING event_id returns exactly the ids that were new. No SELECT first, and no race
+ * between two consumers: the unique constraint decides. A whole batch is one round trip,
+ * and so is recording the batch's outcomes afterwards.
+ */
+@RequiredArgsConstructor
+public class JdbcProcessedEventStore implements ProcessedEventStore {
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS processed_events (
+                event_id     VARCHAR(64) PRIMARY KEY,
+                processed_at TIMESTAMP   NOT NULL,
+                outcome      TEXT
+            )""";
+
+    // Tables created before outcomes were recorded
+    private static final String ADD_OUTCOME = "ALTER TABLE processed_events ADD COLUMN IF NOT EXISTS outcome TEXT";
+
+    private static final String INSERT_NEW = """
+            INSERT INTO processed_events (event_id, processed_at)
+            SELECT id, now() FROM unnest(?::varchar[]) AS id
+            ON CONFLICT (event_id) DO NOTHING
+            RETURNING event_id""";
+
+    private static final String UPDATE_OUTCOMES = """
+            UPDATE processed_events p SET outcome = o.outcome
+            FROM unnest(?::varchar[], ?::text[]) AS o(event_id, outcome)
+            WHERE p.event_id = o.event_id""";
+
+    private static final String SELECT_OUTCOMES = """
+            SELECT event_id, outcome FROM processed_events
+            WHERE event_id = ANY(?::varchar[]) AND outcome IS NOT NULL""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Called once at startup (the services have no migration tool, JPA's ddl-auto doesn't see this table). */
+    public void createTableIfMissing() {
+        jdbcTemplate.execute(CREATE_TABLE);
+        jdbcTemplate.execute(ADD_OUTCOME);
+    }
+
+    @Override
+    public Set<String> markProcessed(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(INSERT_NEW, String.class,
+                (Object) eventIds.toArray(String[]::new)));
+    }
+
+    @Override
+    public void recordOutcomes(Map<String, String> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, String>> entries = List.copyOf(outcomes.entrySet());
+        jdbcTemplate.update(UPDATE_OUTCOMES,
+                entries.stream().map(Map.Entry::getKey).toArray(String[]::new),
+                entries.stream().map(Map.Entry::getValue).toArray(String[]::new));
+    }
+
+    @Override
+    public Map<String, String> outcomesOf(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> outcomes = new HashMap<>();
+        RowCallbackHandler collect = rs -> outcomes.put(rs.getString("event_id"), rs.getString("outcome"));
+        jdbcTemplate.query(SELECT_OUTCOMES, collect, (Object) eventIds.toArray(String[]::new));
+        return outcomes;
+    }
+
+    @Override
+    public int purgeOlderThan(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM processed_events WHERE processed_at < ?", cutoff);
+    }
+}
@@ -0,0 +1,34 @@
+package org.leeminkan.common.idempotency;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Keeps the processed-event store bounded: every event gets a record, so without this the
+ * table grows with the traffic forever.
+ *
+ * Records older than the retention are deleted. A redelivery older than that would be applied
+ * again, so the retention must outlast the longest redelivery window (see purgeOlderThan).
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessedEventPurger {
+
+    private final ProcessedEventStore store;
+    private final Duration retention;
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            int deleted = store.purgeOlderThan(LocalDateTime.now().minus(retention));
+            log.info("Purged {} processed events older than {}", deleted, retention);
+        } catch (Exception e) {
+            // DB unavailable: the records are still there, the next run deletes them
+            log.warn("Processed event purge failed, will retry: {}", e.getMessage());
+        }
+    }
+}
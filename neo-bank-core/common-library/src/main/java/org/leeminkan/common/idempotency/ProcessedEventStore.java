@@ -0,0 +1,33 @@
+package org.leeminkan.common.idempotency;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable record of the events a service has already processed (the source of truth behind
+ * IdempotencyGuard). Implementations must write in the caller's DB transaction, so an event
+ * counts as processed exactly when its effects are committed.
+ */
+public interface ProcessedEventStore {
+
+    /**
+     * Records the event ids.
+     * @return the ids that were not recorded before: the events to process
+     */
+    Set<String> markProcessed(Collection<String> eventIds);
+
+    /** Stores what processing each event produced, next to its record (same transaction). */
+    void recordOutcomes(Map<String, String> outcomes);
+
+    /** @return the recorded outcome of each of these events that has one */
+    Map<String, String> outcomesOf(Collection<String> eventIds);
+
+    /**
+     * Forgets events older than the cutoff. Only safe past the longest redelivery window
+     * (consumer lag + retention of the topic), so keep days, not minutes.
+     * @return records deleted
+     */
+    int purgeOlderThan(LocalDateTime cutoff);
+}
@@ -0,0 +1,47 @@
+package org.leeminkan.common.idempotency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last N event ids whose processing committed, with their recorded outcome (null when none
+ * was recorded), oldest evicted first.
+ *
+ * Redeliveries come soon after the original (a rebalance replays the uncommitted tail of a
+ * partition), so a few hundred thousand ids catch almost all of them without touching the DB.
+ * A miss proves nothing, the store still decides; a hit is certain, because only committed
+ * ids are added. That is why this is an exact bounded set and not a bloom filter: a bloom
+ * filter's "maybe" would need a DB read to confirm, and its "no" saves nothing, since a new
+ * event has to be recorded anyway. Keeping the outcome lets a hit answer the redelivery too.
+ */
+final class RecentEventIds {
+
+    private final Map<String, String> outcomes;
+
+    RecentEventIds(int capacity) {
+        this.outcomes = new LinkedHashMap<>(capacity * 4 / 3 + 1) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized boolean contains(String eventId) {
+        return outcomes.containsKey(eventId);
+    }
+
+    /** @return the outcome remembered for the event, null if there is none (or it was evicted) */
+    synchronized String outcomeOf(String eventId) {
+        return outcomes.get(eventId);
+    }
+
+    /** Remembers the event as processed, keeping any outcome already known for it. */
+    synchronized void add(String eventId) {
+        outcomes.putIfAbsent(eventId, null);
+    }
+
+    synchronized void add(String eventId, String outcome) {
+        outcomes.put(eventId, outcome);
+    }
+}
@@ -0,0 +1,66 @@
+package org.leeminkan.common.ratelimit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single blocking connection speaking Kan-Redis' binary TLV protocol.
+ * Only implements what the rate limiter needs (THROTTLE). Not thread-safe: use it through a pool.
+ */
+public class KanRedisConnection implements AutoCloseable {
+
+    private static final byte CMD_THROTTLE = 7;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    public KanRedisConnection(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        // One small frame per check: don't let Nagle hold it back
+        this.socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * THROTTLE key limit window -> evaluated atomically by the server in one round trip.
+     * @return true if the request is allowed
+     */
+    public boolean throttle(String key, long limit, long windowSeconds) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(CMD_THROTTLE);
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(limit);
+        out.writeLong(windowSeconds);
+        out.flush();
+
+        // Response: [Len=9][Allowed (1 byte)][Remaining (8 bytes)] or [Len=-1] on error
+        int len = in.readInt();
+        if (len < 0) {
+            throw new IOException("Kan-Redis rejected THROTTLE for key " + key);
+        }
+        boolean allowed = in.readByte() == 1;
+        in.readLong(); // remaining tokens, not needed by RateLimiterStrategy
+        return allowed;
+    }
+
+    /**
+     * False once this side closed the socket. A socket the server closed still reports open:
+     * that only shows up as an EOF or reset on the next THROTTLE.
+     */
+    public boolean isOpen() {
+        return !socket.isClosed() && socket.isConnected();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,33 @@
+package org.leeminkan.common.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+
+@RequiredArgsConstructor
+public class KanRedisConnectionFactory extends BasePooledObjectFactory<KanRedisConnection> {
+
+    private final String host;
+    private final int port;
+
+    @Override
+    public KanRedisConnection create() throws Exception {
+        return new KanRedisConnection(host, port);
+    }
+
+    @Override
+    public PooledObject<KanRedisConnection> wrap(KanRedisConnection connection) {
+        return new DefaultPooledObject<>(connection);
+    }
+
+    @Override
+    public boolean validateObject(PooledObject<KanRedisConnection> pooled) {
+        return pooled.getObject().isOpen();
+    }
+
+    @Override
+    public void destroyObject(PooledObject<KanRedisConnection> pooled) throws Exception {
+        pooled.getObject().close();
+    }
+}
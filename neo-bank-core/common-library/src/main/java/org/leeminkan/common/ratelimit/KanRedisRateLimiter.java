@@ -0,0 +1,59 @@
+package org.leeminkan.common.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+
+@Slf4j
+@RequiredArgsConstructor
+public class KanRedisRateLimiter implements RateLimiterStrategy {
+
+    // Kan-Redis evaluates the whole check natively (THROTTLE command):
+    // no script upload like the Lua strategy, no CAS retries like Bucket4j.
+    private final GenericObjectPool<KanRedisConnection> connectionPool;
+
+    @Override
+    public boolean isAllowed(String key, long limit, long durationSeconds) {
+        try {
+            KanRedisConnection connection = connectionPool.borrowObject();
+            try {
+                return throttle(connection, key, limit, durationSeconds);
+            } catch (EOFException | SocketException e) {
+                // An idle socket the server closed (kan.idle-timeout) only fails on first use.
+                // The others idle as long are likely closed too: drop them and retry once on a new one
+                log.debug("Kan-Redis connection closed by the server, retrying on a new one: {}", e.toString());
+                connectionPool.clear();
+                return throttle(connectionPool.borrowObject(), key, limit, durationSeconds);
+            }
+        } catch (Exception e) {
+            log.error("Kan-Redis Rate Limit Error", e);
+            throw new RuntimeException("Failed to check rate limit", e);
+        }
+    }
+
+    private boolean throttle(KanRedisConnection connection, String key, long limit, long durationSeconds)
+            throws IOException {
+        boolean allowed;
+        try {
+            allowed = connection.throttle(key, limit, durationSeconds);
+        } catch (IOException | RuntimeException e) {
+            // A broken socket must not go back into the pool
+            invalidate(connection);
+            throw e;
+        }
+        connectionPool.returnObject(connection);
+        return allowed;
+    }
+
+    private void invalidate(KanRedisConnection connection) {
+        try {
+            connectionPool.invalidateObject(connection);
+        } catch (Exception e) {
+            log.warn("Failed to invalidate Kan-Redis connection", e);
+        }
+    }
+}
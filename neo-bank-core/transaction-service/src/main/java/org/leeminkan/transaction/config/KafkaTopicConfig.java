@@ -0,0 +1,25 @@
+package org.leeminkan.transaction.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    // Events are keyed by account id: each account's events stay in order on one partition,
+    // and the partition count caps how many accounts the consumers settle in parallel.
+    // (An auto-created topic would get the broker default: 1 partition, so no parallelism at all)
+    @Value("${app.kafka.partitions:6}")
+    private int partitions;
+
+    @Bean
+    public NewTopic transactionEventsTopic() {
+        return TopicBuilder.name("transaction-events")
+                .partitions(partitions)
+                .replicas(1)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package org.leeminkan.transaction.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs OutboxRelay. It publishes through Boot's auto-configured KafkaTemplate, so it keeps
+ * the producer customizers, the ProducerListener and the observation (tracing) settings.
+ * The producer is tuned for the relay's large batches under spring.kafka.producer in
+ * application.yml: transaction-service only publishes through the outbox.
+ */
+@Configuration
+@EnableScheduling
+public class OutboxConfig {
+}
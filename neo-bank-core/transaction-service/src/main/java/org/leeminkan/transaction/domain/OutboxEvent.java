@@ -0,0 +1,50 @@
+package org.leeminkan.transaction.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event waiting to be published (transactional outbox).
+ * Written in the same DB transaction as the change it describes, so either both exist or
+ * neither does. OutboxRelay publishes committed rows, oldest id first, and deletes them.
+ * A row that can never be published (unreadable, or refused by the broker for good) is kept
+ * as a dead letter instead: failedAt and failureReason set, skipped by the relay from then on.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    private String messageKey;
+
+    // The event class: sent as the __TypeId__ header, which consumers' JsonDeserializer maps back
+    @Column(nullable = false)
+    private String eventType;
+
+    // JSON, serialized when the row is written
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    private LocalDateTime createdAt;
+
+    // Dead letter: set once publishing failed for good. Clear both to have the relay retry it
+    private LocalDateTime failedAt;
+
+    @Column(length = 1000)
+    private String failureReason;
+}
@@ -0,0 +1,29 @@
+package org.leeminkan.transaction.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.leeminkan.common.events.AccountCreatedEvent;
+import org.leeminkan.transaction.service.AccountDirectory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccountCreatedListener {
+
+    private final AccountDirectory accountDirectory;
+
+    // Every instance needs every account: all partitions are assigned to it directly (no group
+    // membership, no rebalance) and read from offset 0 on every startup. MANUAL acks that are
+    // never given: nothing is committed, so no consumer group is left behind per instance
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "account-events",
+            partitionOffsets = @PartitionOffset(partition = "*", initialOffset = "0")),
+            ackMode = "MANUAL")
+    public void handleAccountCreated(AccountCreatedEvent event) {
+        accountDirectory.accountCreated(event.getId());
+        log.debug("Account {} added to the local directory", event.getId());
+    }
+}
@@ -0,0 +1,20 @@
+package org.leeminkan.transaction.repository;
+
+import org.leeminkan.transaction.domain.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Only committed rows are visible, so id order here is not commit order (see OutboxRelay).
+    // FOR UPDATE without SKIP LOCKED on purpose: a second relay instance waits for the first
+    // batch to commit instead of publishing later rows first (that would break per-key order)
+    @Query(value = "SELECT * FROM outbox_events WHERE failed_at IS NULL ORDER BY id LIMIT :limit FOR UPDATE",
+            nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("limit") int limit);
+}
@@ -0,0 +1,55 @@
+package org.leeminkan.transaction.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.leeminkan.transaction.client.AccountFeignClient;
+import org.leeminkan.transaction.dto.AccountDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local read model of which accounts exist, so a transfer doesn't need an HTTP call to
+ * account-service just to check its sender.
+ *
+ * Filled from the AccountCreatedEvents on "account-events" (AccountCreatedListener replays
+ * the topic from the start on every boot). Accounts are never deleted or closed, so an id
+ * in the set stays valid for good. An id that isn't there yet (e.g. during the replay, or
+ * an event still in flight) is checked once via Feign and then remembered.
+ */
+@Service
+@Slf4j
+public class AccountDirectory {
+
+    private final AccountFeignClient accountFeignClient;
+    private final AccountIdSet knownAccounts;
+
+    public AccountDirectory(AccountFeignClient accountFeignClient,
+                            @Value("${app.account-directory.expected-accounts:100000}") int expectedAccounts) {
+        this.accountFeignClient = accountFeignClient;
+        this.knownAccounts = new AccountIdSet(expectedAccounts);
+    }
+
+    /** From account-events: no HTTP call for this account from now on. */
+    public void accountCreated(Long accountId) {
+        if (accountId != null && accountId > 0) {
+            knownAccounts.add(accountId);
+        }
+    }
+
+    /**
+     * @throws RuntimeException if account-service says the account doesn't exist, or can't be
+     * reached (Feign throws FeignException.NotFound on a 404, RetryableException if it's down)
+     */
+    public void requireExists(Long accountId) {
+        if (accountId != null && knownAccounts.contains(accountId)) {
+            return;
+        }
+        log.info("Account {} not in the local directory, validating via Feign...", accountId);
+        AccountDto account = accountFeignClient.getAccount(accountId);
+        log.info("Account found: {} (Balance: {})", account.getHolderName(), account.getBalance());
+        knownAccounts.add(accountId);
+    }
+
+    public int knownAccounts() {
+        return knownAccounts.size();
+    }
+}
@@ -0,0 +1,159 @@
+package org.leeminkan.transaction.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.leeminkan.transaction.domain.OutboxEvent;
+import org.leeminkan.transaction.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves outbox rows to Kafka, off the request path.
+ *
+ * Every poll locks the oldest committed rows, hands them all to the producer at once (it
+ * packs them into large compressed batches, see application.yml), waits for the broker to
+ * acknowledge all of them, then deletes them in the same DB transaction. Then it polls
+ * again at once, until the table is drained.
+ *
+ * Ordering is per key only. Ids are taken at INSERT, not at commit, so a row whose
+ * transaction commits late goes out in a later poll, behind rows with higher ids. Kafka
+ * keeps each key's events (one account's) in the order the relay sent them; across keys
+ * there is no order to keep.
+ *
+ * If Kafka is down, the send fails, the transaction rolls back and the rows stay for the
+ * next poll. Requests don't notice: they only ever wrote to their own database.
+ * A row that can never go out (its event can't be read back, or the broker refuses that record
+ * for good, e.g. too large) doesn't hold up the others: it is marked as a dead letter
+ * (OutboxEvent.failedAt) in the same transaction and the rest of the batch is published.
+ * Delivery is at-least-once: a crash between the broker ack and the DELETE commit
+ * re-publishes that batch, so consumers must tolerate duplicates.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Class<?>> eventTypes = new ConcurrentHashMap<>();
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:100}")
+    public void relay() {
+        try {
+            int published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published == batchSize);
+        } catch (Exception e) {
+            // Broker or DB unavailable: the rows are still there, the next poll retries
+            log.warn("Outbox relay failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private int publishBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            acks.add(send(event));
+        }
+        kafkaTemplate.flush(); // Don't wait for linger.ms: the whole batch is already queued
+
+        List<OutboxEvent> published = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            try {
+                acks.get(i).join();
+                published.add(event);
+            } catch (CompletionException e) {
+                Throwable cause = permanentCause(e);
+                if (cause == null) {
+                    throw e; // Broker unavailable, timeout...: roll back, nothing is deleted
+                }
+                deadLetter(event, cause);
+            }
+        }
+
+        outboxEventRepository.deleteAllInBatch(published);
+        log.debug("Relayed {} outbox events", published.size());
+        return batch.size();
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        try {
+            return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), toEvent(event));
+        } catch (RuntimeException e) {
+            // Unreadable row, or a producer-side refusal thrown before the record was queued
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // A failure that retrying the same row can't fix, or null. Anything else (including
+    // authorization errors, which are fixed in the broker) keeps the row and retries the batch
+    private static Throwable permanentCause(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnreadableEventException
+                    || cause instanceof SerializationException
+                    || cause instanceof RecordTooLargeException
+                    || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof InvalidTopicException) {
+                return cause;
+            }
+        }
+        return null;
+    }
+
+    // Kept, not deleted: the row stays in outbox_events for inspection, and the relay skips it
+    private void deadLetter(OutboxEvent event, Throwable cause) {
+        String reason = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        log.error("Outbox event {} ({} to {}) can't be published, kept as a dead letter: {}",
+                event.getId(), event.getEventType(), event.getTopic(), reason);
+        event.setFailedAt(LocalDateTime.now());
+        event.setFailureReason(reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+    }
+
+    // Back to the event object, so JsonSerializer writes it and its __TypeId__ header exactly
+    // as a direct send would. A few µs per event, on the relay thread, not the request path.
+    private Object toEvent(OutboxEvent event) {
+        try {
+            Class<?> type = eventTypes.computeIfAbsent(event.getEventType(),
+                    name -> ClassUtils.resolveClassName(name, getClass().getClassLoader()));
+            return objectMapper.readValue(event.getPayload(), type);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new UnreadableEventException("Cannot read outbox event " + event.getId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static final class UnreadableEventException extends IllegalStateException {
+        UnreadableEventException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -3,12 +3,9 @@ package org.leeminkan.transaction.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.leeminkan.common.events.TransactionInitiatedEvent;
-import org.leeminkan.transaction.client.AccountFeignClient;
 import org.leeminkan.transaction.domain.Transaction;
 import org.leeminkan.transaction.domain.TransactionStatus;
-import org.leeminkan.transaction.dto.AccountDto;
 import org.leeminkan.transaction.repository.TransactionRepository;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import io.micrometer.tracing.Tracer;
@@ -22,22 +19,18 @@ import java.time.LocalDateTime;
 public class TransactionService {
 
     private final TransactionRepository transactionRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
     private final Tracer tracer;
 
-    // REPLACE THIS:
-    // private final AccountValidationClient validationClient;
-    // WITH THIS:
-    private final AccountFeignClient accountFeignClient;
+    // Knows the accounts from account-events; calls account-service (Feign) only for unknown ones
+    private final AccountDirectory accountDirectory;
 
     @Transactional
     public Transaction initiateTransfer(Long fromId, Long toId, BigDecimal amount) {
-        // --- FEIGN VALIDATION ---
-        log.info("Validating account {} via Feign...", fromId);
+        // --- ACCOUNT VALIDATION ---
         try {
-            // This single line does discovery, load balancing, and the HTTP call
-            AccountDto account = accountFeignClient.getAccount(fromId);
-            log.info("Account found: {} (Balance: {})", account.getHolderName(), account.getBalance());
+            // Local lookup; a miss does discovery, load balancing, and the HTTP call
+            accountDirectory.requireExists(fromId);
         } catch (Exception e) {
             // Feign throws FeignException.NotFound if 404, or RetryableException if down
             log.error("Account validation failed", e);
@@ -60,7 +53,7 @@ public class TransactionService {
 
         Transaction savedTx = transactionRepository.save(transaction);
 
-        // 2. Publish Event to Kafka
+        // 2. Queue the Event in the outbox (same DB transaction), OutboxRelay publishes it to Kafka
         TransactionInitiatedEvent event = TransactionInitiatedEvent.builder()
                 .transactionId(savedTx.getId())
                 .fromAccountId(fromId)
@@ -68,7 +61,9 @@ public class TransactionService {
                 .amount(amount)
                 .build();
 
-        kafkaTemplate.send("transaction-events", event);
+        // Keyed by sender: all transfers out of one account land on one partition, in order,
+        // so the consumer never debits the same account from two threads at once
+        outboxService.enqueue("transaction-events", fromId.toString(), event);
         log.info("Transaction initiated: {}", event);
 
         return savedTx;
@@ -0,0 +1,138 @@
+package org.leeminkan.transaction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountIdSetTest {
+
+    @Test
+    public void testAddAndContainsAcrossRehash() {
+        // 1. Setup: sized for one id, so the table (16 slots) has to grow many times
+        AccountIdSet ids = new AccountIdSet(1);
+
+        // 2. Sequential ids, like the identity column hands them out
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(ids.add(id), "first add of " + id);
+            assertFalse(ids.add(id), "second add of " + id);
+            assertTrue(ids.contains(id), "just added " + id);
+        }
+
+        // 3. Every id survived every rehash, and nothing else appeared
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(ids.contains(id), "lost " + id);
+        }
+        assertFalse(ids.contains(10_001));
+        assertFalse(ids.contains(0));
+        assertFalse(ids.contains(-1));
+        assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    public void testRejectsNonPositiveIds() {
+        AccountIdSet ids = new AccountIdSet(16);
+
+        assertThrows(IllegalArgumentException.class, () -> ids.add(0));
+        assertThrows(IllegalArgumentException.class, () -> ids.add(-5));
+        assertEquals(0, ids.size());
+    }
+
+    @Test
+    public void testReadersNeverMissACompletedAdd() throws InterruptedException {
+        // 1. Setup: two writers add disjoint ranges while readers look up what they already added
+        int perWriter = 200_000;
+        AccountIdSet ids = new AccountIdSet(1); // Grows ~15 times while the readers run
+        AtomicLong oddAdded = new AtomicLong(); // Highest i whose id 2i-1 has been added
+        AtomicLong evenAdded = new AtomicLong(); // Highest i whose id 2i has been added
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.ofPlatform().unstarted(() -> {
+            for (long i = 1; i <= perWriter; i++) {
+                ids.add(2 * i - 1);
+                oddAdded.set(i);
+            }
+        }));
+        threads.add(Thread.ofPlatform().unstarted(() -> {
+            for (long i = 1; i <= perWriter; i++) {
+                ids.add(2 * i);
+                evenAdded.set(i);
+            }
+        }));
+        for (int r = 0; r < 2; r++) {
+            long seed = r;
+            threads.add(Thread.ofPlatform().unstarted(() -> {
+                Random random = new Random(seed);
+                while (failure.get() == null && (oddAdded.get() < perWriter || evenAdded.get() < perWriter)) {
+                    // 2. An add that has returned must be visible, even in the middle of a rehash
+                    long odd = oddAdded.get();
+                    if (odd > 0) {
+                        long id = 2 * (1 + random.nextLong(odd)) - 1;
+                        if (!ids.contains(id)) {
+                            failure.compareAndSet(null, "missed " + id + " after it was added");
+                        }
+                    }
+                    long even = evenAdded.get();
+                    if (even > 0) {
+                        long id = 2 * (1 + random.nextLong(even));
+                        if (!ids.contains(id)) {
+                            failure.compareAndSet(null, "missed " + id + " after it was added");
+                        }
+                    }
+                    // 3. And an id no writer will ever add is never reported
+                    if (ids.contains(2L * perWriter + 1 + random.nextInt(1_000))) {
+                        failure.compareAndSet(null, "found an id that was never added");
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 4. Verify Final State
+        assertNull(failure.get(), failure.get());
+        assertEquals(2 * perWriter, ids.size());
+        for (long id = 1; id <= 2L * perWriter; id++) {
+            assertTrue(ids.contains(id), "lost " + id);
+        }
+    }
+
+    @Test
+    public void testMatchesHashSetOverRandomOperations() {
+        // 1. Setup: the same random adds and lookups against AccountIdSet and HashSet<Long>
+        Random random = new Random(42);
+        AccountIdSet ids = new AccountIdSet(16);
+        Set<Long> expected = new HashSet<>();
+
+        // 2. 1M mixed operations over a range narrow enough to hit existing ids often
+        for (int op = 0; op < 1_000_000; op++) {
+            long id = 1 + random.nextLong(500_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.add(id), ids.add(id), "add " + id);
+            } else {
+                assertEquals(expected.contains(id), ids.contains(id), "contains " + id);
+            }
+        }
+
+        // 3. Verify Final State: same size, same members
+        assertEquals(expected.size(), ids.size());
+        for (long id : expected) {
+            assertTrue(ids.contains(id), "lost " + id);
+        }
+    }
+}